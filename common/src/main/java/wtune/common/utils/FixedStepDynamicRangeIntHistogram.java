@@ -17,13 +17,14 @@ class FixedStepDynamicRangeIntHistogram implements IntHistogram {
     reset();
   }
 
-  private FixedStepDynamicRangeIntHistogram(
-      int step, int from, TIntList indices, TIntList numbers) {
-    this.step = step;
-    this.from = from;
-    this.indicesMap = indices;
-    this.counts = numbers;
-    reset();
+  private FixedStepDynamicRangeIntHistogram(FixedStepDynamicRangeIntHistogram other) {
+    this.step = other.step;
+    this.from = other.from;
+    this.indicesMap = new TIntArrayList(other.indicesMap);
+    this.counts = new TIntArrayList(other.counts);
+    this.min = other.min;
+    this.max = other.max;
+    this.numSamples = other.numSamples;
   }
 
   static IntHistogram mk(int from, int step) {
@@ -77,7 +78,7 @@ class FixedStepDynamicRangeIntHistogram implements IntHistogram {
     counts.set(physIdx, counts.get(physIdx) + 1);
     ++numSamples;
     if (value > max) max = value;
-    else if (value < min) min = value;
+    if (value < min) min = value;
     return logicIdx;
   }
 
@@ -114,8 +115,7 @@ class FixedStepDynamicRangeIntHistogram implements IntHistogram {
 
   @Override
   public IntHistogram copy() {
-    return new FixedStepDynamicRangeIntHistogram(
-        step, from, new TIntArrayList(indicesMap), new TIntArrayList(counts));
+    return new FixedStepDynamicRangeIntHistogram(this);
   }
 
   private int rangeIndexOf(int value) {
@@ -74,7 +74,7 @@ class FixedStepFixedRangeIntHistogram implements IntHistogram {
     ++ranges[index];
     ++numSamples;
     if (value > max) max = value;
-    else if (value < min) min = value;
+    if (value < min) min = value;
 
     return index;
   }
@@ -102,6 +102,9 @@ class FixedStepFixedRangeIntHistogram implements IntHistogram {
     final FixedStepFixedRangeIntHistogram other =
         new FixedStepFixedRangeIntHistogram(from, to, step);
     System.arraycopy(ranges, 0, other.ranges, 0, ranges.length);
+    other.numSamples = numSamples;
+    other.min = min;
+    other.max = max;
     return other;
   }
 
@@ -46,4 +46,16 @@ public class IntHistogramMetric implements Metric<IntHistogram, IntHistogramMetr
   public void accumulate(IntHistogramMetric other) {
     histogram.merge(other.histogram);
   }
+
+  @Override
+  public String toString() {
+    if (histogram.numSamples() == 0) return name + "=<empty>";
+    return "%s=#%d,p50=%.0f,p99=%.0f,max=%d"
+        .formatted(
+            name,
+            histogram.numSamples(),
+            histogram.estimatedPercentile(0.5),
+            histogram.estimatedPercentile(0.99),
+            histogram.max());
+  }
 }
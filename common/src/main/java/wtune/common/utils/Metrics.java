@@ -3,31 +3,43 @@ package wtune.common.utils;
 import java.util.List;
 
 public interface Metrics<T extends Metrics<T>> {
-  List<Metric> metrics();
+  List<Metric<?, ?>> metrics();
 
   default void reset() {
-    for (Metric metric : metrics()) metric.reset();
+    for (Metric<?, ?> metric : metrics()) metric.reset();
   }
 
   default void accumulate(T other) {
-    final List<Metric> metrics = metrics();
-    final List<Metric> otherMetrics = other.metrics();
+    final List<Metric<?, ?>> metrics = metrics();
+    final List<Metric<?, ?>> otherMetrics = other.metrics();
     assert metrics.size() == otherMetrics.size();
     for (int i = 0, bound = metrics.size(); i < bound; i++) {
-      metrics.get(i).accumulate(otherMetrics.get(i));
+      accumulate(metrics.get(i), otherMetrics.get(i));
     }
   }
 
   default void assign(T other) {
-    final List<Metric> metrics = metrics();
-    final List<Metric> otherMetrics = other.metrics();
+    final List<Metric<?, ?>> metrics = metrics();
+    final List<Metric<?, ?>> otherMetrics = other.metrics();
     assert metrics.size() == otherMetrics.size();
     for (int i = 0, bound = metrics.size(); i < bound; i++) {
-      metrics.get(i).assign(otherMetrics.get(i));
+      assign(metrics.get(i), otherMetrics.get(i));
     }
   }
 
   default StringBuilder stringify(StringBuilder builder) {
     return Commons.joining("\n", metrics(), builder);
   }
+
+  // The metrics at the same index of two instances of `T` are always of the same class.
+  @SuppressWarnings("unchecked")
+  private static <V, M extends Metric<V, M>> void accumulate(
+      Metric<?, ?> metric, Metric<?, ?> other) {
+    ((M) metric).accumulate((M) other);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <V, M extends Metric<V, M>> void assign(Metric<?, ?> metric, Metric<?, ?> other) {
+    ((M) metric).assign((M) other);
+  }
 }
@@ -0,0 +1,338 @@
+package wtune.common.utils;
+
+import java.util.function.BiConsumer;
+
+import static java.lang.Integer.bitCount;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Identity-keyed map, as a hash array-mapped trie. Keys are non-null, and putting a null value
+ * removes the key.
+ *
+ * <p>{@link #copy()} is O(1): the two maps share the trie and from then on copy the path to a
+ * node before changing it, so an update costs O(log32(n)) allocation. A node allocated after the
+ * last copy is owned by the map and updated in place.
+ */
+public final class PersistentIdentityMap<K, V> {
+  private static final int BITS = 5, MASK = (1 << BITS) - 1;
+
+  private Object edit;
+  private Node root;
+  private int size;
+  private Object oldValue; // the value replaced or removed by the last update
+
+  public PersistentIdentityMap() {
+    this.edit = new Object();
+  }
+
+  private PersistentIdentityMap(Node root, int size) {
+    this.edit = new Object();
+    this.root = root;
+    this.size = size;
+  }
+
+  public PersistentIdentityMap<K, V> copy() {
+    edit = new Object(); // nodes are shared from now on
+    return new PersistentIdentityMap<>(root, size);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean containsKey(K key) {
+    return get(key) != null;
+  }
+
+  @SuppressWarnings("unchecked")
+  public V get(K key) {
+    return root == null ? null : (V) root.find(0, hash(key), key);
+  }
+
+  @SuppressWarnings("unchecked")
+  public V put(K key, V value) {
+    requireNonNull(key);
+    if (value == null) return remove(key);
+    oldValue = null;
+    final Node node = root == null ? new BitmapNode(edit, 0, new Object[0]) : root;
+    root = node.put(this, 0, hash(key), key, value);
+    final Object old = oldValue;
+    oldValue = null;
+    return (V) old;
+  }
+
+  @SuppressWarnings("unchecked")
+  public V remove(K key) {
+    if (root == null) return null;
+    oldValue = null;
+    root = root.remove(this, 0, hash(key), key);
+    final Object old = oldValue;
+    oldValue = null;
+    return (V) old;
+  }
+
+  /** Whether `value` is mapped to by some key, compared by identity. O(n). */
+  public boolean containsValue(V value) {
+    return root != null && root.containsValue(value);
+  }
+
+  public void clear() {
+    root = null;
+    size = 0;
+  }
+
+  public void forEach(BiConsumer<? super K, ? super V> consumer) {
+    if (root != null) root.forEach(consumer);
+  }
+
+  private static int hash(Object key) {
+    return System.identityHashCode(key);
+  }
+
+  private static int bitOf(int hash, int shift) {
+    return 1 << ((hash >>> shift) & MASK);
+  }
+
+  private abstract static class Node {
+    protected final Object edit;
+
+    protected Node(Object edit) {
+      this.edit = edit;
+    }
+
+    abstract Object find(int shift, int hash, Object key);
+
+    abstract Node put(PersistentIdentityMap<?, ?> map, int shift, int hash, Object key, Object val);
+
+    // returns null if the node becomes empty
+    abstract Node remove(PersistentIdentityMap<?, ?> map, int shift, int hash, Object key);
+
+    abstract boolean containsValue(Object val);
+
+    abstract <K, V> void forEach(BiConsumer<K, V> consumer);
+  }
+
+  // `array` holds a pair for each set bit of `bitmap`: either (key, value) or (null, sub-node)
+  private static final class BitmapNode extends Node {
+    private int bitmap;
+    private Object[] array;
+
+    private BitmapNode(Object edit, int bitmap, Object[] array) {
+      super(edit);
+      this.bitmap = bitmap;
+      this.array = array;
+    }
+
+    @Override
+    Object find(int shift, int hash, Object key) {
+      final int bit = bitOf(hash, shift);
+      if ((bitmap & bit) == 0) return null;
+      final int i = 2 * bitCount(bitmap & (bit - 1));
+      final Object k = array[i], v = array[i + 1];
+      if (k == null) return ((Node) v).find(shift + BITS, hash, key);
+      return k == key ? v : null;
+    }
+
+    @Override
+    Node put(PersistentIdentityMap<?, ?> map, int shift, int hash, Object key, Object val) {
+      final int bit = bitOf(hash, shift);
+      final int i = 2 * bitCount(bitmap & (bit - 1));
+
+      if ((bitmap & bit) == 0) {
+        final BitmapNode node = editable(map);
+        final Object[] newArray = new Object[array.length + 2];
+        System.arraycopy(array, 0, newArray, 0, i);
+        newArray[i] = key;
+        newArray[i + 1] = val;
+        System.arraycopy(array, i, newArray, i + 2, array.length - i);
+        node.array = newArray;
+        node.bitmap |= bit;
+        ++map.size;
+        return node;
+      }
+
+      final Object k = array[i], v = array[i + 1];
+      final Object newSlot;
+      if (k == null) {
+        final Node sub = ((Node) v).put(map, shift + BITS, hash, key, val);
+        if (sub == v) return this;
+        newSlot = sub;
+
+      } else if (k == key) {
+        map.oldValue = v;
+        if (v == val) return this;
+        final BitmapNode node = editable(map);
+        node.array[i + 1] = val;
+        return node;
+
+      } else {
+        ++map.size;
+        newSlot = mkNode(map.edit, shift + BITS, k, v, hash, key, val);
+      }
+
+      final BitmapNode node = editable(map);
+      node.array[i] = null;
+      node.array[i + 1] = newSlot;
+      return node;
+    }
+
+    @Override
+    Node remove(PersistentIdentityMap<?, ?> map, int shift, int hash, Object key) {
+      final int bit = bitOf(hash, shift);
+      if ((bitmap & bit) == 0) return this;
+      final int i = 2 * bitCount(bitmap & (bit - 1));
+      final Object k = array[i], v = array[i + 1];
+
+      if (k == null) {
+        final Node sub = ((Node) v).remove(map, shift + BITS, hash, key);
+        if (sub == v) return this;
+        if (sub != null) {
+          final BitmapNode node = editable(map);
+          node.array[i + 1] = sub;
+          return node;
+        }
+      } else if (k == key) {
+        map.oldValue = v;
+        --map.size;
+      } else {
+        return this;
+      }
+
+      if (bitmap == bit) return null;
+      final BitmapNode node = editable(map);
+      final Object[] newArray = new Object[array.length - 2];
+      System.arraycopy(array, 0, newArray, 0, i);
+      System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+      node.array = newArray;
+      node.bitmap ^= bit;
+      return node;
+    }
+
+    @Override
+    boolean containsValue(Object val) {
+      for (int i = 0; i < array.length; i += 2)
+        if (array[i] == null ? ((Node) array[i + 1]).containsValue(val) : array[i + 1] == val)
+          return true;
+      return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    <K, V> void forEach(BiConsumer<K, V> consumer) {
+      for (int i = 0; i < array.length; i += 2)
+        if (array[i] == null) ((Node) array[i + 1]).forEach(consumer);
+        else consumer.accept((K) array[i], (V) array[i + 1]);
+    }
+
+    private BitmapNode editable(PersistentIdentityMap<?, ?> map) {
+      if (edit == map.edit) return this;
+      return new BitmapNode(map.edit, bitmap, array.clone());
+    }
+
+    private static Node mkNode(
+        Object edit, int shift, Object k0, Object v0, int hash1, Object k1, Object v1) {
+      final int hash0 = hash(k0);
+      if (hash0 == hash1) return new CollisionNode(edit, hash0, new Object[] {k0, v0, k1, v1});
+
+      final int bit0 = bitOf(hash0, shift), bit1 = bitOf(hash1, shift);
+      if (bit0 == bit1) {
+        final Node sub = mkNode(edit, shift + BITS, k0, v0, hash1, k1, v1);
+        return new BitmapNode(edit, bit0, new Object[] {null, sub});
+      }
+      // bit 31 is negative, compare by unsigned
+      final Object[] array =
+          Integer.compareUnsigned(bit0, bit1) < 0
+              ? new Object[] {k0, v0, k1, v1}
+              : new Object[] {k1, v1, k0, v0};
+      return new BitmapNode(edit, bit0 | bit1, array);
+    }
+  }
+
+  // keys of the same hash, which is possible for distinct objects
+  private static final class CollisionNode extends Node {
+    private final int hash;
+    private Object[] array;
+
+    private CollisionNode(Object edit, int hash, Object[] array) {
+      super(edit);
+      this.hash = hash;
+      this.array = array;
+    }
+
+    @Override
+    Object find(int shift, int hash, Object key) {
+      final int i = indexOf(key);
+      return i < 0 ? null : array[i + 1];
+    }
+
+    @Override
+    Node put(PersistentIdentityMap<?, ?> map, int shift, int hash, Object key, Object val) {
+      if (hash != this.hash) {
+        // reached by a key of another hash that shares the prefix, split on its bit
+        final BitmapNode node =
+            new BitmapNode(map.edit, bitOf(this.hash, shift), new Object[] {null, this});
+        return node.put(map, shift, hash, key, val);
+      }
+
+      final int i = indexOf(key);
+      if (i >= 0) {
+        map.oldValue = array[i + 1];
+        if (array[i + 1] == val) return this;
+        final CollisionNode node = editable(map);
+        node.array[i + 1] = val;
+        return node;
+      }
+
+      final CollisionNode node = editable(map);
+      final Object[] newArray = new Object[array.length + 2];
+      System.arraycopy(array, 0, newArray, 0, array.length);
+      newArray[array.length] = key;
+      newArray[array.length + 1] = val;
+      node.array = newArray;
+      ++map.size;
+      return node;
+    }
+
+    @Override
+    Node remove(PersistentIdentityMap<?, ?> map, int shift, int hash, Object key) {
+      final int i = indexOf(key);
+      if (i < 0) return this;
+      map.oldValue = array[i + 1];
+      --map.size;
+      if (array.length == 2) return null;
+
+      final CollisionNode node = editable(map);
+      final Object[] newArray = new Object[array.length - 2];
+      System.arraycopy(array, 0, newArray, 0, i);
+      System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+      node.array = newArray;
+      return node;
+    }
+
+    @Override
+    boolean containsValue(Object val) {
+      for (int i = 1; i < array.length; i += 2) if (array[i] == val) return true;
+      return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    <K, V> void forEach(BiConsumer<K, V> consumer) {
+      for (int i = 0; i < array.length; i += 2) consumer.accept((K) array[i], (V) array[i + 1]);
+    }
+
+    private int indexOf(Object key) {
+      for (int i = 0; i < array.length; i += 2) if (array[i] == key) return i;
+      return -1;
+    }
+
+    private CollisionNode editable(PersistentIdentityMap<?, ?> map) {
+      if (edit == map.edit) return this;
+      return new CollisionNode(map.edit, hash, array.clone());
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package wtune.common.utils;
+
+import gnu.trove.procedure.TIntObjectProcedure;
+
+/**
+ * Map from non-negative int, as a 32-way array-mapped trie indexed by the key. Suited for dense
+ * keys like node ids. Putting a null value removes the key.
+ *
+ * <p>{@link #copy()} is O(1): the two maps share the trie and from then on copy the path to a
+ * node before changing it, so an update costs O(log32(key)) allocation. A node allocated after
+ * the last copy is owned by the map and updated in place.
+ */
+public final class PersistentIntMap<V> {
+  private static final int BITS = 5, WIDTH = 1 << BITS, MASK = WIDTH - 1;
+
+  private Object edit;
+  private Node root;
+  private int shift; // of the root level, leaves are at level 0
+  private int size;
+
+  public PersistentIntMap() {
+    this.edit = new Object();
+  }
+
+  private PersistentIntMap(Node root, int shift, int size) {
+    this.edit = new Object();
+    this.root = root;
+    this.shift = shift;
+    this.size = size;
+  }
+
+  public PersistentIntMap<V> copy() {
+    edit = new Object(); // nodes are shared from now on
+    return new PersistentIntMap<>(root, shift, size);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean containsKey(int key) {
+    return get(key) != null;
+  }
+
+  @SuppressWarnings("unchecked")
+  public V get(int key) {
+    if (root == null || key < 0 || (key >>> shift) >= WIDTH) return null;
+    Node node = root;
+    for (int s = shift; s > 0; s -= BITS) {
+      node = (Node) node.slots[(key >>> s) & MASK];
+      if (node == null) return null;
+    }
+    return (V) node.slots[key & MASK];
+  }
+
+  @SuppressWarnings("unchecked")
+  public V put(int key, V value) {
+    if (key < 0) throw new IllegalArgumentException("negative key: " + key);
+    if (value == null) return remove(key);
+
+    if (root == null) root = new Node(edit);
+    while ((key >>> shift) >= WIDTH) {
+      final Node newRoot = new Node(edit);
+      newRoot.slots[0] = root;
+      root = newRoot;
+      shift += BITS;
+    }
+
+    Node node = root = editable(root);
+    for (int s = shift; s > 0; s -= BITS) {
+      final int index = (key >>> s) & MASK;
+      final Node child = (Node) node.slots[index];
+      node = (Node) (node.slots[index] = child == null ? new Node(edit) : editable(child));
+    }
+
+    final Object old = node.slots[key & MASK];
+    node.slots[key & MASK] = value;
+    if (old == null) ++size;
+    return (V) old;
+  }
+
+  @SuppressWarnings("unchecked")
+  public V remove(int key) {
+    if (get(key) == null) return null;
+
+    Node node = root = editable(root);
+    for (int s = shift; s > 0; s -= BITS) {
+      final int index = (key >>> s) & MASK;
+      node = (Node) (node.slots[index] = editable((Node) node.slots[index]));
+    }
+
+    final Object old = node.slots[key & MASK];
+    node.slots[key & MASK] = null;
+    --size;
+    return (V) old;
+  }
+
+  public void clear() {
+    root = null;
+    shift = 0;
+    size = 0;
+  }
+
+  /** Applies `proc` to the entries in ascending order of keys, until it returns false. */
+  public boolean forEachEntry(TIntObjectProcedure<? super V> proc) {
+    return root == null || forEachEntry(root, shift, 0, proc);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <V> boolean forEachEntry(
+      Node node, int shift, int base, TIntObjectProcedure<? super V> proc) {
+    for (int i = 0; i < WIDTH; ++i) {
+      final Object slot = node.slots[i];
+      if (slot == null) continue;
+      final int key = base | (i << shift);
+      if (shift == 0) {
+        if (!proc.execute(key, (V) slot)) return false;
+      } else if (!forEachEntry((Node) slot, shift - BITS, key, proc)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Node editable(Node node) {
+    if (node.edit == edit) return node;
+    final Node copy = new Node(edit);
+    System.arraycopy(node.slots, 0, copy.slots, 0, WIDTH);
+    return copy;
+  }
+
+  private static final class Node {
+    private final Object edit;
+    private final Object[] slots = new Object[WIDTH];
+
+    private Node(Object edit) {
+      this.edit = edit;
+    }
+  }
+}
@@ -0,0 +1,187 @@
+package wtune.common.utils;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@Tag("utils")
+@Tag("fast")
+class PersistentIdentityMapTest {
+  private static final class Key {
+    private final int id;
+
+    private Key(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public String toString() {
+      return "k" + id;
+    }
+  }
+
+  // Two distinct keys of the same identity hash, found by the birthday paradox.
+  private static Key[] findCollision() {
+    final Map<Integer, Key> byHash = new HashMap<>();
+    for (int i = 0; i < 1 << 22; ++i) {
+      final Key key = new Key(i);
+      final Key other = byHash.putIfAbsent(System.identityHashCode(key), key);
+      if (other != null) return new Key[] {other, key};
+    }
+    return null;
+  }
+
+  // A key whose identity hash agrees with `hash` on the lowest `numBits` bits only.
+  private static Key findPrefixSharing(int hash, int numBits) {
+    final int mask = (1 << numBits) - 1;
+    for (int i = 0; ; ++i) {
+      final Key key = new Key(-i);
+      final int h = System.identityHashCode(key);
+      if (h != hash && (h & mask) == (hash & mask)) return key;
+    }
+  }
+
+  private static Map<Key, String> entriesOf(PersistentIdentityMap<Key, String> map) {
+    final Map<Key, String> entries = new IdentityHashMap<>();
+    map.forEach((k, v) -> assertNull(entries.put(k, v), "visited twice: " + k));
+    assertEquals(map.size(), entries.size());
+    return entries;
+  }
+
+  private static List<Key> mkKeys(int n) {
+    final List<Key> keys = new ArrayList<>(n);
+    for (int i = 0; i < n; ++i) keys.add(new Key(i));
+    return keys;
+  }
+
+  @Test
+  void testCopyIsolation() {
+    final List<Key> keys = mkKeys(200);
+    final PersistentIdentityMap<Key, String> map = new PersistentIdentityMap<>();
+    for (Key key : keys) map.put(key, "a" + key.id);
+
+    final PersistentIdentityMap<Key, String> copy = map.copy();
+    copy.put(keys.get(3), "b3");
+    copy.remove(keys.get(4));
+    final Key extra = new Key(1000);
+    copy.put(extra, "b1000");
+    assertEquals("a3", map.get(keys.get(3)));
+    assertEquals("a4", map.get(keys.get(4)));
+    assertNull(map.get(extra));
+    assertEquals(200, map.size());
+    assertEquals(200, copy.size());
+
+    map.put(keys.get(7), "c7");
+    map.remove(keys.get(8));
+    assertEquals("a7", copy.get(keys.get(7)));
+    assertEquals("a8", copy.get(keys.get(8)));
+    assertEquals("b3", copy.get(keys.get(3)));
+    assertEquals(199, map.size());
+    assertTrue(copy.containsValue("b1000"));
+    assertFalse(map.containsValue("b1000"));
+  }
+
+  @Test
+  void testCollision() {
+    final Key[] pair = findCollision();
+    assumeTrue(pair != null, "no identity hash collision found");
+    final Key k0 = pair[0], k1 = pair[1];
+    final int hash = System.identityHashCode(k0);
+
+    final PersistentIdentityMap<Key, String> map = new PersistentIdentityMap<>();
+    map.put(k0, "v0");
+    map.put(k1, "v1");
+    assertEquals(2, map.size());
+    assertEquals("v0", map.get(k0));
+    assertEquals("v1", map.get(k1));
+    assertEquals("v0", map.put(k0, "w0"));
+    assertEquals(2, map.size());
+
+    // a key sharing a prefix of the hash splits above the collision
+    final Key k2 = findPrefixSharing(hash, 10);
+    map.put(k2, "v2");
+    assertEquals(3, map.size());
+    assertEquals(Map.of(k0, "w0", k1, "v1", k2, "v2"), Map.copyOf(entriesOf(map)));
+
+    final PersistentIdentityMap<Key, String> copy = map.copy();
+    assertEquals("v1", copy.remove(k1));
+    assertNull(copy.remove(k1));
+    assertEquals(2, copy.size());
+    assertEquals("v1", map.get(k1)); // the shared collision node is untouched
+
+    assertEquals("w0", copy.remove(k0)); // the collision node is now empty
+    assertEquals(1, copy.size());
+    assertNull(copy.get(k0));
+    assertEquals("v2", copy.get(k2));
+    assertEquals(Map.of(k2, "v2"), Map.copyOf(entriesOf(copy)));
+
+    copy.put(k1, "x1");
+    copy.put(k0, "x0");
+    assertEquals(3, copy.size());
+    assertEquals("x0", copy.get(k0));
+    assertEquals("w0", map.get(k0));
+    assertEquals(3, map.size());
+  }
+
+  @Test
+  void testRemove() {
+    final List<Key> keys = mkKeys(5000);
+    final PersistentIdentityMap<Key, String> map = new PersistentIdentityMap<>();
+    for (Key key : keys) map.put(key, "a" + key.id);
+    assertEquals(5000, map.size());
+
+    assertNull(map.remove(new Key(0)));
+    assertEquals(5000, map.size());
+    for (int i = 0; i < 5000; i += 2) assertEquals("a" + i, map.remove(keys.get(i)));
+    assertEquals(2500, map.size());
+    assertEquals("a1", map.put(keys.get(1), null)); // putting null removes
+    assertEquals(2499, map.size());
+
+    for (int i = 0; i < 5000; ++i)
+      assertEquals(i % 2 == 0 || i == 1 ? null : "a" + i, map.get(keys.get(i)));
+
+    // removing everything leaves an empty map that can be refilled
+    for (Key key : keys) map.remove(key);
+    assertTrue(map.isEmpty());
+    assertTrue(entriesOf(map).isEmpty());
+    map.put(keys.get(42), "b");
+    assertEquals(1, map.size());
+    assertEquals(Map.of(keys.get(42), "b"), Map.copyOf(entriesOf(map)));
+  }
+
+  @Test
+  void testAgainstIdentityHashMap() {
+    final Random random = new Random(42);
+    final List<Key> keys = mkKeys(3000);
+    final PersistentIdentityMap<Key, String> map = new PersistentIdentityMap<>();
+    final Map<Key, String> expected = new IdentityHashMap<>();
+    final List<PersistentIdentityMap<Key, String>> snapshots = new ArrayList<>();
+    final List<Map<Key, String>> expectedSnapshots = new ArrayList<>();
+
+    for (int i = 0; i < 30000; ++i) {
+      final Key key = keys.get(random.nextInt(keys.size()));
+      final String value = "v" + i; // IdentityHashMap.equals compares values by identity too
+      if (random.nextInt(3) == 0) assertEquals(expected.remove(key), map.remove(key));
+      else assertEquals(expected.put(key, value), map.put(key, value));
+
+      if (i % 1000 == 0) {
+        // the snapshots share nodes with the map, which keeps being edited
+        snapshots.add(map.copy());
+        expectedSnapshots.add(new IdentityHashMap<>(expected));
+      }
+    }
+
+    assertEquals(expected, entriesOf(map));
+    for (int i = 0; i < snapshots.size(); ++i)
+      assertEquals(expectedSnapshots.get(i), entriesOf(snapshots.get(i)));
+  }
+}
@@ -0,0 +1,123 @@
+package wtune.common.utils;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("utils")
+@Tag("fast")
+class PersistentIntMapTest {
+  private static TreeMap<Integer, String> entriesOf(PersistentIntMap<String> map) {
+    final TreeMap<Integer, String> entries = new TreeMap<>();
+    final List<Integer> keys = new ArrayList<>();
+    map.forEachEntry(
+        (k, v) -> {
+          keys.add(k);
+          assertNull(entries.put(k, v));
+          return true;
+        });
+    // in ascending order of keys
+    assertEquals(new ArrayList<>(entries.keySet()), keys);
+    assertEquals(map.size(), entries.size());
+    return entries;
+  }
+
+  @Test
+  void testCopyIsolation() {
+    final PersistentIntMap<String> map = new PersistentIntMap<>();
+    for (int i = 0; i < 100; ++i) map.put(i, "a" + i);
+
+    final PersistentIntMap<String> copy = map.copy();
+    copy.put(3, "b3");
+    copy.remove(4);
+    copy.put(5000, "b5000"); // grows the root of the copy only
+    assertEquals("a3", map.get(3));
+    assertEquals("a4", map.get(4));
+    assertNull(map.get(5000));
+    assertEquals(100, map.size());
+    assertEquals(100, copy.size());
+
+    map.put(7, "c7");
+    map.remove(8);
+    assertEquals("a7", copy.get(7));
+    assertEquals("a8", copy.get(8));
+    assertEquals("b3", copy.get(3));
+    assertEquals(99, map.size());
+
+    // either side can be copied again
+    final PersistentIntMap<String> copy2 = copy.copy();
+    copy2.clear();
+    assertTrue(copy2.isEmpty());
+    assertEquals(100, copy.size());
+    assertEquals("b5000", copy.get(5000));
+  }
+
+  @Test
+  void testRemove() {
+    final PersistentIntMap<String> map = new PersistentIntMap<>();
+    assertNull(map.remove(1));
+    map.put(1, "a");
+    map.put(40, "b");
+    map.put(1 << 20, "c");
+    assertEquals(3, map.size());
+
+    assertNull(map.remove(2));
+    assertNull(map.remove(1 << 25)); // beyond the root
+    assertEquals(3, map.size());
+    assertEquals("b", map.remove(40));
+    assertNull(map.remove(40));
+    assertEquals(2, map.size());
+    assertEquals("a", map.put(1, null)); // putting null removes
+    assertEquals(1, map.size());
+    assertFalse(map.containsKey(1));
+    assertEquals("c", map.get(1 << 20));
+
+    assertThrows(IllegalArgumentException.class, () -> map.put(-1, "x"));
+    assertNull(map.get(-1));
+  }
+
+  @Test
+  void testAgainstTreeMap() {
+    final Random random = new Random(42);
+    final PersistentIntMap<String> map = new PersistentIntMap<>();
+    final TreeMap<Integer, String> expected = new TreeMap<>();
+    final List<PersistentIntMap<String>> snapshots = new ArrayList<>();
+    final List<TreeMap<Integer, String>> expectedSnapshots = new ArrayList<>();
+
+    for (int i = 0; i < 20000; ++i) {
+      final int key = random.nextInt(i % 3 == 0 ? 1 << 16 : 2000);
+      if (random.nextInt(3) == 0) assertEquals(expected.remove(key), map.remove(key));
+      else assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+
+      if (i % 1000 == 0) {
+        // the snapshots share nodes with the map, which keeps being edited
+        snapshots.add(map.copy());
+        expectedSnapshots.add(new TreeMap<>(expected));
+      }
+    }
+
+    assertEquals(expected, entriesOf(map));
+    for (int i = 0; i < snapshots.size(); ++i)
+      assertEquals(expectedSnapshots.get(i), entriesOf(snapshots.get(i)));
+  }
+
+  @Test
+  void testForEachStops() {
+    final PersistentIntMap<String> map = new PersistentIntMap<>();
+    for (int i = 0; i < 100; i += 10) map.put(i, "a" + i);
+    final List<Integer> visited = new ArrayList<>();
+    assertFalse(
+        map.forEachEntry(
+            (k, v) -> {
+              visited.add(k);
+              return k < 30;
+            }));
+    assertEquals(List.of(0, 10, 20, 30), visited);
+  }
+}
@@ -6,6 +6,8 @@ if [[ ! -f "${targetFile}" ]]; then
 fi
 tag='base'
 verbose='0'
+parallelism='1'
+db=''
 
 while [[ $# -gt 0 ]]; do
   case "$1" in
@@ -21,6 +23,14 @@ while [[ $# -gt 0 ]]; do
     target="${2}"
     shift 2
     ;;
+  "-j")
+    parallelism="${2}"
+    shift 2
+    ;;
+  "-db")
+    db=' -db'
+    shift
+    ;;
   *)
     positionalArgs+=("${1}")
     shift
@@ -29,7 +39,7 @@ while [[ $# -gt 0 ]]; do
 done
 
 if [ -n "${target}" ]; then
-  gradle :testbed:run --args="runner.GenerateTableData -T=${target} -t=${tag} -v=${verbose}"
+  gradle :testbed:run --args="runner.GenerateTableData -T=${target} -t=${tag} -v=${verbose} -j=${parallelism}${db}"
 else
-  gradle :testbed:run --args="runner.GenerateTableData -targetFile=${targetFile} -t=${tag} -v=${verbose}"
+  gradle :testbed:run --args="runner.GenerateTableData -targetFile=${targetFile} -t=${tag} -v=${verbose} -j=${parallelism}${db}"
 fi
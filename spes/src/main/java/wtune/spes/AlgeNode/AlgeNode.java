@@ -81,8 +81,9 @@ public abstract class AlgeNode {
     this.conditions.add(condition);
   }
 
-  public void addConditions(Collection<RexNode> conditions) {
-    this.conditions.addAll(conditions);
+  // returns whether any of the conditions is new
+  public boolean addConditions(Collection<RexNode> conditions) {
+    return this.conditions.addAll(conditions);
   }
 
   // return the symbolic output tuple
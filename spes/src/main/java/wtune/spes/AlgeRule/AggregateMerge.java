@@ -15,49 +15,55 @@ import java.util.List;
 import java.util.Set;
 
 public class AggregateMerge extends AlgeRuleBase {
-  private List<AggregateCall> newCalls;
+  AggregateMerge() {}
 
-  public AggregateMerge(AlgeNode input) {
-    this.input = input;
+  @Override
+  public List<Class<? extends AlgeNode>> nodeTypes() {
+    return List.of(AggregateNode.class);
   }
 
-  public boolean preCondition() {
-    if (this.input instanceof AggregateNode) {
-      AggregateNode aggNode = (AggregateNode) this.input;
-      AlgeNode subInput = aggNode.getInput();
-      if (subInput instanceof SPJNode) {
-        SPJNode parent = (SPJNode) subInput;
-        if (parent.getInputs().size() == 1) {
-          AlgeNode child = parent.getInputs().get(0);
-          if (child instanceof AggregateNode) {
-            return canMerge(aggNode, (AggregateNode) child, parent);
+  @Override
+  public AlgeNode apply(AlgeNode input) {
+    AggregateNode aggNode = (AggregateNode) input;
+    AlgeNode subInput = aggNode.getInput();
+    if (subInput instanceof SPJNode) {
+      SPJNode parent = (SPJNode) subInput;
+      if (parent.getInputs().size() == 1) {
+        AlgeNode child = parent.getInputs().get(0);
+        if (child instanceof AggregateNode) {
+          List<AggregateCall> newCalls = mergeCalls(aggNode, (AggregateNode) child, parent);
+          if (newCalls != null) {
+            return transformation(aggNode, newCalls);
           }
         }
       }
     }
-    return false;
+    return null;
   }
 
-  private boolean canMerge(AggregateNode input, AggregateNode subInput, SPJNode parent) {
+  // the merged aggregate calls, or null if the two aggregates can't be merged
+  private static List<AggregateCall> mergeCalls(
+      AggregateNode input, AggregateNode subInput, SPJNode parent) {
     if (GroupByEntail(input, subInput, parent.getOutputExpr())) {
       if (conditionsNoAgg(subInput, parent.getConditions())) {
-        return isMergeAggCalls(input, subInput, parent.getOutputExpr());
+        return mergeAggCalls(input, subInput, parent.getOutputExpr());
       }
     }
-    return false;
+    return null;
   }
 
-  private boolean isMergeAggCalls(AggregateNode input, AggregateNode subInput, List<RexNode> outputExprs) {
-    this.newCalls = new ArrayList<>();
+  private static List<AggregateCall> mergeAggCalls(
+      AggregateNode input, AggregateNode subInput, List<RexNode> outputExprs) {
+    List<AggregateCall> newCalls = new ArrayList<>();
     for (AggregateCall aggregateCall : input.getAggregateCallList()) {
-      if (!isMergeAggCall(aggregateCall, subInput, outputExprs)) {
-        return false;
+      if (!isMergeAggCall(aggregateCall, subInput, outputExprs, newCalls)) {
+        return null;
       }
     }
-    return true;
+    return newCalls;
   }
 
-  private AggregateCall setDistinct(AggregateCall call) {
+  private static AggregateCall setDistinct(AggregateCall call) {
     return AggregateCall.create(
         call.getAggregation(),
         true,
@@ -69,7 +75,11 @@ public class AggregateMerge extends AlgeRuleBase {
         call.getName());
   }
 
-  private boolean isMergeAggCall(AggregateCall call, AggregateNode subInput, List<RexNode> outputExprs) {
+  private static boolean isMergeAggCall(
+      AggregateCall call,
+      AggregateNode subInput,
+      List<RexNode> outputExprs,
+      List<AggregateCall> newCalls) {
     if (isAppendableAgg(call)) {
       // TODO: currently only support aggCall take one operands
       Integer operand = call.getArgList().get(0);
@@ -84,7 +94,7 @@ public class AggregateMerge extends AlgeRuleBase {
                 && (!inputAggCall.isApproximate())
                 && (!call.isDistinct())
                 && (!call.isApproximate())) {
-              this.newCalls.add(call);
+              newCalls.add(call);
               return true;
             }
           } else {
@@ -92,9 +102,9 @@ public class AggregateMerge extends AlgeRuleBase {
           }
         } else {
           if ((index == 0) && (groupBySize == 1)) {
-            this.newCalls.add(setDistinct(call));
+            newCalls.add(setDistinct(call));
           } else {
-            this.newCalls.add(call);
+            newCalls.add(call);
           }
           return true;
         }
@@ -103,7 +113,7 @@ public class AggregateMerge extends AlgeRuleBase {
     return false;
   }
 
-  private boolean isAppendableAgg(AggregateCall call) {
+  private static boolean isAppendableAgg(AggregateCall call) {
     for (SqlKind sqlKind : AggregateNode.appendableAgg) {
       if (call.getAggregation().getKind().equals(sqlKind)) {
         return true;
@@ -112,7 +122,7 @@ public class AggregateMerge extends AlgeRuleBase {
     return false;
   }
 
-  private boolean GroupByEntail(AggregateNode input, AggregateNode subInput, List<RexNode> outputExprs) {
+  private static boolean GroupByEntail(AggregateNode input, AggregateNode subInput, List<RexNode> outputExprs) {
     List<RexNode> subInputGroups = subInput.getGroupByVariables();
     for (int index : input.getGroupByList()) {
       RexNode outputExpr = outputExprs.get(index);
@@ -123,7 +133,7 @@ public class AggregateMerge extends AlgeRuleBase {
     return true;
   }
 
-  private boolean conditionsNoAgg(AggregateNode input, Set<RexNode> conditions) {
+  private static boolean conditionsNoAgg(AggregateNode input, Set<RexNode> conditions) {
     List<RexNode> groupByVariables = input.getGroupByVariables();
     for (RexNode condition : conditions) {
       if (!groupByVariables.containsAll(RexNodeHelper.collectVariables(condition))) {
@@ -133,8 +143,7 @@ public class AggregateMerge extends AlgeRuleBase {
     return true;
   }
 
-  public AlgeNode transformation() {
-    AggregateNode aggNode = (AggregateNode) input;
+  private static AlgeNode transformation(AggregateNode aggNode, List<AggregateCall> newCalls) {
     SPJNode parent = (SPJNode) aggNode.getInput();
     AggregateNode child = (AggregateNode) parent.getInputs().get(0);
     AlgeNode childInput = child.getInput();
@@ -149,11 +158,11 @@ public class AggregateMerge extends AlgeRuleBase {
     List<AlgeNode> newInput = new ArrayList<>();
     newInput.add(childInput);
     aggNode.setInputs(newInput);
-    aggNode.setAggregateCallList(this.newCalls);
+    aggNode.setAggregateCallList(newCalls);
     return aggNode;
   }
 
-  private void normalizeSPJNode(SPJNode input, AggregateNode aggNode) {
+  private static void normalizeSPJNode(SPJNode input, AggregateNode aggNode) {
     List<RexNode> newOutputExpr = new ArrayList<>();
     for (Integer columnIndex : aggNode.getGroupByList()) {
       newOutputExpr.add(input.getOutputExpr().get(columnIndex));
@@ -167,13 +176,13 @@ public class AggregateMerge extends AlgeRuleBase {
     input.setOutputExpr(newOutputExpr);
   }
 
-  private void normalizeUnionNode(UnionNode input, AggregateNode aggNode) {
+  private static void normalizeUnionNode(UnionNode input, AggregateNode aggNode) {
     for (AlgeNode spj : input.getInputs()) {
       normalizeSPJNode((SPJNode) spj, aggNode);
     }
   }
 
-  private void updateSPJCode(SPJNode input, List<RexNode> outputExprs, Set<RexNode> conditions) {
+  private static void updateSPJCode(SPJNode input, List<RexNode> outputExprs, Set<RexNode> conditions) {
     List<RexNode> newOutputExprs = new ArrayList<>();
     for (RexNode oldExpr : outputExprs) {
       newOutputExprs.add(RexNodeHelper.substitute(oldExpr, input.getOutputExpr()));
@@ -184,7 +193,7 @@ public class AggregateMerge extends AlgeRuleBase {
     }
   }
 
-  private void updateUnionNode(
+  private static void updateUnionNode(
       UnionNode input, List<RexNode> outputExprs, Set<RexNode> conditions) {
     for (AlgeNode spj : input.getInputs()) {
       updateSPJCode((SPJNode) spj, outputExprs, conditions);
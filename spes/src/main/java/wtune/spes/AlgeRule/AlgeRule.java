@@ -3,63 +3,95 @@ package wtune.spes.AlgeRule;
 import wtune.spes.AlgeNode.AlgeNode;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class AlgeRule {
+  private static final RuleTable PULL_UP_RULES = new RuleTable(new SPJ2Empty(), new CleanEmpty());
+  private static final RuleTable PUSH_DOWN_RULES =
+      new RuleTable(new AggregateMerge(), new ConditionPushAgg(), new JoinToProject());
+
   public static AlgeNode normalize(AlgeNode node) {
     return pushDownNormalize(pullUpNormalize(node));
   }
 
   private static AlgeNode pullUpNormalize(AlgeNode node) {
-    List<Class> pullUpSimplifyRules = new ArrayList<>();
-    pullUpSimplifyRules.add(SPJ2Empty.class);
-    pullUpSimplifyRules.add(CleanEmpty.class);
-    List<AlgeNode> newInputs = new ArrayList<>();
-    for (AlgeNode input : node.getInputs()) {
-      newInputs.add(pullUpNormalize(input));
+    List<AlgeNode> inputs = node.getInputs();
+    for (int i = 0, bound = inputs.size(); i < bound; i++) {
+      final AlgeNode input = inputs.get(i);
+      final AlgeNode newInput = pullUpNormalize(input);
+      if (newInput != input) inputs = replaceInput(node, inputs, i, newInput);
+    }
+    return simplifyBaseRules(node, PULL_UP_RULES);
+  }
+
+  private static AlgeNode pushDownNormalize(AlgeNode node) {
+    node = simplifyBaseRules(node, PUSH_DOWN_RULES);
+    List<AlgeNode> inputs = node.getInputs();
+    for (int i = 0, bound = inputs.size(); i < bound; i++) {
+      final AlgeNode input = inputs.get(i);
+      final AlgeNode newInput = pushDownNormalize(input);
+      if (newInput != input) inputs = replaceInput(node, inputs, i, newInput);
     }
-    node.setInputs(newInputs);
-    node = simplifyBaseRules(node, pullUpSimplifyRules);
     return node;
   }
 
-  private static AlgeNode simplifyBaseRules(AlgeNode node, List<Class> simplifyRules) {
+  // Rules run in table order, each on the result of the previous one, until none of them reports a
+  // change. A rule not indexed for the type of the current node is skipped without being tried.
+  private static AlgeNode simplifyBaseRules(AlgeNode node, RuleTable rules) {
     boolean canBeRewrite = true;
     while (canBeRewrite) {
       canBeRewrite = false;
-      for (Class rule : simplifyRules) {
-        AlgeRuleBase rulePerform = new DummyRule(node);
-        try {
-          rulePerform =
-              (AlgeRuleBase) rule.getDeclaredConstructor(AlgeNode.class).newInstance(node);
-        } catch (Exception e) {
-          System.out.println(e);
-        }
-        if (rulePerform.preCondition()) {
-          final String before = node.toString();
-          node = rulePerform.transformation();
-          final String after = node.toString();
-          if (!before.equals(after)) {
-            node.enableRewrite();
-            canBeRewrite = true;
-          }
+      for (int i = rules.next(node, 0); i >= 0; i = rules.next(node, i + 1)) {
+        final AlgeNode rewritten = rules.get(i).apply(node);
+        if (rewritten != null) {
+          node = rewritten;
+          node.enableRewrite();
+          canBeRewrite = true;
         }
       }
     }
     return node;
   }
 
-  private static AlgeNode pushDownNormalize(AlgeNode node) {
-    List<Class> pushDownSimplifyRules = new ArrayList<>();
-    pushDownSimplifyRules.add(AggregateMerge.class);
-    pushDownSimplifyRules.add(ConditionPushAgg.class);
-    pushDownSimplifyRules.add(JoinToProject.class);
-    node = simplifyBaseRules(node, pushDownSimplifyRules);
-    List<AlgeNode> newInputs = new ArrayList<>();
-    for (AlgeNode input : node.getInputs()) {
-      newInputs.add(pushDownNormalize(input));
+  // The input list may be shared with another node, so it is copied before the first replacement.
+  private static List<AlgeNode> replaceInput(
+      AlgeNode node, List<AlgeNode> inputs, int index, AlgeNode newInput) {
+    if (inputs == node.getInputs()) {
+      inputs = new ArrayList<>(inputs);
+      node.setInputs(inputs);
+    }
+    inputs.set(index, newInput);
+    return inputs;
+  }
+
+  private static class RuleTable {
+    private final AlgeRuleBase[] rules;
+    // bit i of the mask of a node type is set iff rules[i] applies to the type
+    private final Map<Class<?>, Integer> masks;
+
+    private RuleTable(AlgeRuleBase... rules) {
+      assert rules.length < Integer.SIZE;
+      this.rules = rules;
+      this.masks = new HashMap<>();
+      for (int i = 0; i < rules.length; i++) {
+        for (Class<? extends AlgeNode> nodeType : rules[i].nodeTypes()) {
+          masks.merge(nodeType, 1 << i, (x, y) -> x | y);
+        }
+      }
+    }
+
+    private AlgeRuleBase get(int index) {
+      return rules[index];
+    }
+
+    // the index of the first rule at or after `from` that applies to `node`, or -1 if none
+    private int next(AlgeNode node, int from) {
+      final Integer mask = masks.get(node.getClass());
+      if (mask == null || from >= rules.length) return -1;
+      final int remaining = mask & (-1 << from);
+      return remaining == 0 ? -1 : Integer.numberOfTrailingZeros(remaining);
     }
-    node.setInputs(newInputs);
-    return node;
   }
 }
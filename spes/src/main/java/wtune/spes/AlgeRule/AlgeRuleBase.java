@@ -2,10 +2,19 @@ package wtune.spes.AlgeRule;
 
 import wtune.spes.AlgeNode.AlgeNode;
 
-public abstract class AlgeRuleBase {
-  protected AlgeNode input;
+import java.util.List;
 
-  public abstract boolean preCondition();
+/**
+ * A normalization rule. Rules are constructed once and shared by all threads, so an implementation
+ * must keep anything computed for a particular node in locals.
+ */
+public abstract class AlgeRuleBase {
+  /** The node types the rule may rewrite. {@link #apply} is never called on other nodes. */
+  public abstract List<Class<? extends AlgeNode>> nodeTypes();
 
-  public abstract AlgeNode transformation();
+  /**
+   * Rewrites `input`, either in place or into a new node. Returns the result, or null if the rule
+   * doesn't apply or wouldn't change anything.
+   */
+  public abstract AlgeNode apply(AlgeNode input);
 }
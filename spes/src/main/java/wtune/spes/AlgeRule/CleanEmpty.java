@@ -6,57 +6,60 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class CleanEmpty extends AlgeRuleBase {
-  private List<AlgeNode> unionInputs;
+  CleanEmpty() {}
 
-  public CleanEmpty(AlgeNode input) {
-    this.input = input;
+  @Override
+  public List<Class<? extends AlgeNode>> nodeTypes() {
+    return List.of(UnionNode.class, AggregateNode.class, SPJNode.class);
   }
 
   @Override
-  public boolean preCondition() {
+  public AlgeNode apply(AlgeNode input) {
     if (input instanceof UnionNode) {
-      unionInputs = new ArrayList<>();
-      for (AlgeNode input : input.getInputs()) {
-        if (!(input instanceof EmptyNode)) {
-          unionInputs.add(input);
-        }
-      }
-      return (unionInputs.size() == 1) || (unionInputs.size() != input.getInputs().size());
+      return cleanUnion((UnionNode) input);
     }
     if (input instanceof AggregateNode) {
       AggregateNode aggNode = (AggregateNode) input;
-      if (aggNode.getGroupByList().isEmpty()) {
-        if (aggNode.getInput() instanceof EmptyNode) {
-          return true;
-        }
+      if (aggNode.getGroupByList().isEmpty() && aggNode.getInput() instanceof EmptyNode) {
+        return new EmptyNode(input.getZ3Context());
       }
     }
     if (input instanceof SPJNode) {
-      for (AlgeNode input : input.getInputs()) {
-        if (input instanceof EmptyNode) {
-          return true;
+      for (AlgeNode subInput : input.getInputs()) {
+        if (subInput instanceof EmptyNode) {
+          return new EmptyNode(input.getZ3Context());
         }
       }
     }
-    return false;
+    return null;
   }
 
-  @Override
-  public AlgeNode transformation() {
-    if (this.input instanceof UnionNode) {
-      if (this.unionInputs.isEmpty()) {
-        return (new EmptyNode(this.input.getZ3Context()));
-      }
-      if (this.unionInputs.size() == 1) {
-        return this.unionInputs.get(0);
-      } else {
-        this.input.setInputs(this.unionInputs);
-        return (this.input);
+  private static AlgeNode cleanUnion(UnionNode union) {
+    List<AlgeNode> inputs = union.getInputs();
+    AlgeNode lastNonEmpty = null;
+    int numNonEmpty = 0;
+    for (AlgeNode input : inputs) {
+      if (!(input instanceof EmptyNode)) {
+        lastNonEmpty = input;
+        numNonEmpty++;
       }
     }
-    if (this.input instanceof SPJNode || this.input instanceof AggregateNode) {
-      return (new EmptyNode(this.input.getZ3Context()));
+    if (numNonEmpty == 1) {
+      return lastNonEmpty;
+    }
+    if (numNonEmpty == inputs.size()) {
+      return null;
+    }
+    if (numNonEmpty == 0) {
+      return new EmptyNode(union.getZ3Context());
+    }
+    List<AlgeNode> unionInputs = new ArrayList<>(numNonEmpty);
+    for (AlgeNode input : inputs) {
+      if (!(input instanceof EmptyNode)) {
+        unionInputs.add(input);
+      }
     }
-    return this.input;
+    union.setInputs(unionInputs);
+    return union;
   }
 }
@@ -14,97 +14,87 @@ import java.util.List;
 import java.util.Set;
 
 public class ConditionPushAgg extends AlgeRuleBase {
-  private Set<pushDownCondition> pushDownConditions;
-  private Set<RexNode> nonPushedConditions;
+  private static class pushDownCondition {
+    private final int tableIndex;
+    private final RexNode condition;
 
-  class pushDownCondition {
-    private int tableIndex;
-    private RexNode condition;
-
-    public pushDownCondition(int tableIndex, RexNode condition) {
+    private pushDownCondition(int tableIndex, RexNode condition) {
       this.tableIndex = tableIndex;
       this.condition = condition;
     }
-
-    public int getTableIndex() {
-      return tableIndex;
-    }
-
-    public RexNode getCondition() {
-      return condition;
-    }
   }
 
-  public ConditionPushAgg(AlgeNode input) {
-    this.input = input;
+  ConditionPushAgg() {}
+
+  @Override
+  public List<Class<? extends AlgeNode>> nodeTypes() {
+    return List.of(SPJNode.class);
   }
 
-  public boolean preCondition() {
-    this.pushDownConditions = new HashSet<>();
-    this.nonPushedConditions = new HashSet<>();
-    boolean result = false;
-    if (this.input instanceof SPJNode) {
-      SPJNode spjNode = (SPJNode) this.input;
-      Set<RexNode> conditions = spjNode.getConditions();
-      int offSize = 0;
-      int tableIndex = 0;
-      for (AlgeNode input : spjNode.getInputs()) {
-        if (input instanceof AggregateNode) {
-          AggregateNode aggNode = (AggregateNode) input;
-          for (RexNode condition : conditions) {
-            if (isPushDown(aggNode, condition, offSize)) {
-              result = true;
-              RexNode newCondition = offsetCondition(condition, offSize);
-              this.pushDownConditions.add(new pushDownCondition(tableIndex, newCondition));
-            } else {
-              this.nonPushedConditions.add(condition);
+  @Override
+  public AlgeNode apply(AlgeNode input) {
+    SPJNode spjNode = (SPJNode) input;
+    List<pushDownCondition> pushDownConditions = null;
+    Set<RexNode> nonPushedConditions = new HashSet<>();
+    Set<RexNode> conditions = spjNode.getConditions();
+    int offSize = 0;
+    int tableIndex = 0;
+    for (AlgeNode subInput : spjNode.getInputs()) {
+      if (subInput instanceof AggregateNode) {
+        AggregateNode aggNode = (AggregateNode) subInput;
+        for (RexNode condition : conditions) {
+          if (isPushDown(aggNode, condition)) {
+            if (pushDownConditions == null) {
+              pushDownConditions = new ArrayList<>();
             }
+            RexNode newCondition = RexNodeHelper.minusOffSize(condition, offSize);
+            pushDownConditions.add(new pushDownCondition(tableIndex, newCondition));
+          } else {
+            nonPushedConditions.add(condition);
           }
         }
-        offSize = offSize + input.getOutputExpr().size();
-        tableIndex++;
       }
+      offSize = offSize + subInput.getOutputExpr().size();
+      tableIndex++;
+    }
+    if (pushDownConditions == null) {
+      return null;
     }
-    return result;
-  }
 
-  private RexNode offsetCondition(RexNode condition, int offsize) {
-    return RexNodeHelper.minusOffSize(condition, offsize);
+    // Pushing a condition that is already there changes nothing.
+    boolean modified = false;
+    for (pushDownCondition c : pushDownConditions) {
+      AggregateNode aggNode = (AggregateNode) spjNode.getInputs().get(c.tableIndex);
+      modified |= pushDown(aggNode, c.condition);
+    }
+    if (!nonPushedConditions.equals(conditions)) {
+      spjNode.setConditions(nonPushedConditions);
+      modified = true;
+    }
+    return modified ? spjNode : null;
   }
 
-  private boolean isPushDown(AggregateNode aggNode, RexNode condition, int offsize) {
+  private static boolean isPushDown(AggregateNode aggNode, RexNode condition) {
     List<RexNode> groupByVariables = aggNode.getGroupByVariables();
-    List<RexNode> newGroupByVariables = new ArrayList<>();
-    for (RexNode groupByVariable : groupByVariables) {
-      newGroupByVariables.add(RexNodeHelper.addOffSize(groupByVariable, offsize));
-    }
     Set<RexNode> variables = new HashSet<>();
     RexNodeHelper.collectVariables(condition, variables);
     return groupByVariables.containsAll(variables);
   }
 
-  public AlgeNode transformation() {
-    for (pushDownCondition c : pushDownConditions) {
-      AggregateNode aggNode = (AggregateNode) input.getInputs().get(c.getTableIndex());
-      pushDown(aggNode, c.getCondition());
-    }
-    this.input.setConditions(this.nonPushedConditions);
-    return input;
-  }
-
-  private AlgeNode pushDown(AggregateNode aggNode, RexNode condition) {
+  private static boolean pushDown(AggregateNode aggNode, RexNode condition) {
     AlgeNode inputNode = aggNode.getInput();
+    boolean modified = false;
     if (inputNode instanceof UnionNode) {
       UnionNode unionNode = (UnionNode) inputNode;
       for (AlgeNode input : unionNode.getInputs()) {
         RexNode newCondition = RexNodeHelper.substitute(condition, input.getOutputExpr());
-        input.addConditions(FilterParser.conjunctiveForm(newCondition));
+        modified |= input.addConditions(FilterParser.conjunctiveForm(newCondition));
       }
     }
     if (inputNode instanceof SPJNode) {
       RexNode newCondition = RexNodeHelper.substitute(condition, inputNode.getOutputExpr());
-      inputNode.addConditions(FilterParser.conjunctiveForm(newCondition));
+      modified |= inputNode.addConditions(FilterParser.conjunctiveForm(newCondition));
     }
-    return aggNode;
+    return modified;
   }
 }
@@ -18,73 +18,57 @@ import wtune.spes.Z3Helper.z3Utility;
 import java.util.*;
 
 public class JoinToProject extends AlgeRuleBase {
-  static Map<String, Integer> keys;
-
-  private Map<String, Set<Integer>> duplicateIndexes;
+  private static final Map<String, Integer> KEYS = Map.of("EMP", 0, "DEPT", 0);
 
   public static int checkKeyIndex(String name) {
-    if (keys == null) {
-      keys = new HashMap<>();
-      keys.put("EMP", 0);
-      keys.put("DEPT", 0);
-    }
-    if (keys.containsKey(name)) {
-      return keys.get(name);
-    } else {
-      return -1;
-    }
+    return KEYS.getOrDefault(name, -1);
   }
 
-  public JoinToProject(AlgeNode input) {
-    this.input = input;
+  JoinToProject() {}
+
+  @Override
+  public List<Class<? extends AlgeNode>> nodeTypes() {
+    return List.of(SPJNode.class);
   }
 
-  public boolean preCondition() {
-    if (this.input instanceof SPJNode) {
-      SPJNode spjNode = (SPJNode) this.input;
-      List<AlgeNode> inputs = spjNode.getInputs();
-      calculateDuplicateSet(inputs);
-      //      System.out.println("it is here");
-      //      System.out.println(this.input.toString());
-      return !this.duplicateIndexes.isEmpty();
+  @Override
+  public AlgeNode apply(AlgeNode input) {
+    SPJNode spjNode = (SPJNode) input;
+    Map<String, Set<Integer>> duplicateIndexes = calculateDuplicateSet(spjNode);
+    if (duplicateIndexes.isEmpty()) {
+      return null;
     }
-    return false;
+    return transformation(spjNode, duplicateIndexes);
   }
 
-  private void calculateDuplicateSet(List<AlgeNode> inputs) {
+  private static Map<String, Set<Integer>> calculateDuplicateSet(SPJNode spjNode) {
     Map<String, Set<Integer>> nameToTableIndex = new HashMap<>();
     int tableIndex = 0;
-    for (AlgeNode input : inputs) {
+    for (AlgeNode input : spjNode.getInputs()) {
       if (input instanceof TableNode) {
         TableNode tableNode = (TableNode) input;
-        String tableName = tableNode.getName();
-        if (nameToTableIndex.containsKey(tableName)) {
-          Set<Integer> indexes = nameToTableIndex.get(tableName);
-          indexes.add(tableIndex);
-        } else {
-          Set<Integer> indexes = new HashSet<>();
-          indexes.add(tableIndex);
-          nameToTableIndex.put(tableName, indexes);
-        }
+        nameToTableIndex.computeIfAbsent(tableNode.getName(), k -> new HashSet<>()).add(tableIndex);
       }
       tableIndex++;
     }
-    //    System.out.println("first result");
-    //    System.out.println(nameToTableIndex);
-    this.duplicateIndexes = new HashMap<>();
+    Map<String, Set<Integer>> result = new HashMap<>();
     for (Map.Entry<String, Set<Integer>> tableIndexes : nameToTableIndex.entrySet()) {
       String tableName = tableIndexes.getKey();
-      Set<Integer> duplicateIndexes = verifyDuplicateJoin(tableName, tableIndexes.getValue());
-      //      System.out.println("duplicate index:");
-      //      System.out.println(duplicateIndexes);
+      Set<Integer> duplicateIndexes =
+          verifyDuplicateJoin(spjNode, tableName, tableIndexes.getValue());
       if (duplicateIndexes.size() > 1) {
-        this.duplicateIndexes.put(tableName, duplicateIndexes);
+        result.put(tableName, duplicateIndexes);
       }
     }
+    return result;
   }
 
-  private Set<Integer> verifyDuplicateJoin(String tableName, Set<Integer> tableIndexes) {
-    SPJNode spjNode = (SPJNode) this.input;
+  private static Set<Integer> verifyDuplicateJoin(
+      SPJNode spjNode, String tableName, Set<Integer> tableIndexes) {
+    int columnIndex = checkKeyIndex(tableName);
+    if (columnIndex == -1 || tableIndexes.size() < 2) {
+      return Collections.emptySet();
+    }
     Set<RexNode> conditions = spjNode.getConditions();
     List<Integer> startIndex = new ArrayList<>();
     int count = 0;
@@ -93,16 +77,12 @@ public class JoinToProject extends AlgeRuleBase {
       count = count + input.getOutputExpr().size();
     }
     Set<Integer> duplicateIndex = new HashSet<>();
-    int columnIndex = checkKeyIndex(tableName);
-    if (columnIndex == -1) {
-      return new HashSet<>();
-    }
     for (Integer i1 : tableIndexes) {
       for (Integer i2 : tableIndexes) {
         if (!duplicateIndex.contains(i1) || !duplicateIndex.contains(i2)) {
           int columnIndex1 = startIndex.get(i1) + columnIndex;
           int columnIndex2 = startIndex.get(i2) + columnIndex;
-          if (checkEquivalent(columnIndex1, columnIndex2, conditions)) {
+          if (checkEquivalent(spjNode, columnIndex1, columnIndex2, conditions)) {
             duplicateIndex.add(i1);
             duplicateIndex.add(i2);
           }
@@ -148,11 +128,11 @@ public class JoinToProject extends AlgeRuleBase {
     }
   }
 
-  private boolean checkEquivalent(int index1, int index2, Set<RexNode> conditions) {
+  private static boolean checkEquivalent(
+      SPJNode spjNode, int index1, int index2, Set<RexNode> conditions) {
     List<SymbolicColumn> symbolicColumns = new ArrayList<>();
-    Context z3Context = this.input.getZ3Context();
-    for (int i = 0; i < this.input.getInputs().size(); i++) {
-      AlgeNode input = this.input.getInputs().get(i);
+    Context z3Context = spjNode.getZ3Context();
+    for (AlgeNode input : spjNode.getInputs()) {
       for (RexNode inputColumn : input.getOutputExpr()) {
         symbolicColumns.add(SymbolicColumn.mkNewSymbolicColumn(z3Context, inputColumn.getType()));
       }
@@ -168,108 +148,64 @@ public class JoinToProject extends AlgeRuleBase {
     return z3Utility.symbolicOutputEqual(conditionHold, column1, column2, z3Context);
   }
 
-  public AlgeNode transformation() {
-    //    System.out.println("what is repeat");
-    //    System.out.println(this.duplicateIndexes);
-    //    System.out.println("something needs to be done");
-    Map<String, Integer> minTableIndex = new HashMap<>();
-    for (Map.Entry<String, Set<Integer>> duplicateIndex : this.duplicateIndexes.entrySet()) {
-      minTableIndex.put(duplicateIndex.getKey(), getMin(duplicateIndex.getValue()));
-    }
-    List<AlgeNode> newInputs = new ArrayList<AlgeNode>();
+  private static AlgeNode transformation(
+      SPJNode spjNode, Map<String, Set<Integer>> duplicateIndexes) {
+    List<AlgeNode> inputs = spjNode.getInputs();
+    List<AlgeNode> newInputs = new ArrayList<>();
     int tableIndex = 0;
     Map<Integer, Integer> columnIndexSub = new HashMap<>();
     List<Integer> removedTable = new ArrayList<>();
     List<Integer> newInputStartIndex = new ArrayList<>();
     int removedInputs = 0;
     int startIndex = 0;
-    for (AlgeNode input : this.input.getInputs()) {
+    int oldStartIndex = 0;
+    for (AlgeNode input : inputs) {
       removedTable.add(removedInputs);
       newInputStartIndex.add(startIndex);
-      if (isRemove(input, tableIndex)) {
+      if (isRemove(input, tableIndex, duplicateIndexes)) {
         removedInputs++;
-        buildMap(tableIndex, removedTable, newInputStartIndex, columnIndexSub);
+        int minIndex = getMin(duplicateIndexes.get(((TableNode) input).getName()));
+        int currentTableIndex = minIndex - removedTable.get(minIndex);
+        buildMap(input, oldStartIndex, newInputStartIndex.get(currentTableIndex), columnIndexSub);
       } else {
-        buildMap(tableIndex, startIndex, columnIndexSub);
+        buildMap(input, oldStartIndex, startIndex, columnIndexSub);
         startIndex = startIndex + input.getOutputExpr().size();
         newInputs.add(input);
       }
+      oldStartIndex = oldStartIndex + input.getOutputExpr().size();
       tableIndex++;
     }
     List<RexNode> newOutputExprs = new ArrayList<>();
-    for (RexNode outputExpr : this.input.getOutputExpr()) {
+    for (RexNode outputExpr : spjNode.getOutputExpr()) {
       newOutputExprs.add(RexNodeHelper.substitute(outputExpr, columnIndexSub));
     }
     Set<RexNode> newConditions = new HashSet<>();
-    for (RexNode condition : this.input.getConditions()) {
+    for (RexNode condition : spjNode.getConditions()) {
       newConditions.add(RexNodeHelper.substitute(condition, columnIndexSub));
     }
-    //    System.out.println("after transformation");
-    //    System.out.println(new SPJNode(newOutputExprs, newConditions, newInputs,
-    // this.input.getZ3Context()));
-    return new SPJNode(newOutputExprs, newConditions, newInputs, this.input.getZ3Context());
+    return new SPJNode(newOutputExprs, newConditions, newInputs, spjNode.getZ3Context());
   }
 
-  private void buildMap(int tableIndex, int startIndex, Map<Integer, Integer> columnIndexSub) {
-    int oldStartIndex = getOldStartIndex(tableIndex);
-    int bound = this.input.getInputs().get(tableIndex).getOutputExpr().size();
-    for (int i = 0; i < bound; i++) {
+  private static void buildMap(
+      AlgeNode input, int oldStartIndex, int startIndex, Map<Integer, Integer> columnIndexSub) {
+    for (int i = 0, bound = input.getOutputExpr().size(); i < bound; i++) {
       columnIndexSub.put(oldStartIndex + i, startIndex + i);
     }
   }
 
-  // TODO
-  private void buildMap(
-      int removeIndex,
-      List<Integer> tableOffSet,
-      List<Integer> startIndexes,
-      Map<Integer, Integer> columnIndexSub) {
-    TableNode removeTable = (TableNode) this.input.getInputs().get(removeIndex);
-    //    System.out.println("show again" + this.duplicateIndexes);
-    //    System.out.println("table name:"+removeTable.getName());
-    //    System.out.println();
-    int minIndex = this.getMin(this.duplicateIndexes.get(removeTable.getName()));
-    //    System.out.println("minIndex:"+minIndex);
-    //    System.out.println("tableOffSet:"+tableOffSet.get(minIndex));
-    int currentTableIndex = minIndex - tableOffSet.get(minIndex);
-    int startIndex = startIndexes.get(currentTableIndex);
-    int oldStartIndex = getOldStartIndex(removeIndex);
-    for (int i = 0; i < removeTable.getOutputExpr().size(); i++) {
-      columnIndexSub.put(oldStartIndex + i, startIndex + i);
-    }
-  }
-
-  private int getOldStartIndex(int removeIndex) {
-    int count = 0;
-    for (int i = 0; i < removeIndex; i++) {
-      count = count + this.input.getInputs().get(i).getOutputExpr().size();
-    }
-    return count;
-  }
-
-  private boolean isRemove(AlgeNode input, int tableIndex) {
+  private static boolean isRemove(
+      AlgeNode input, int tableIndex, Map<String, Set<Integer>> duplicateIndexes) {
     if (input instanceof TableNode) {
-      TableNode tableNode = (TableNode) input;
-      if (this.duplicateIndexes.containsKey(tableNode.getName())) {
-        Set<Integer> copyIndex = this.duplicateIndexes.get(tableNode.getName());
-        if (copyIndex.contains(tableIndex)) {
-          int minIndex = getMin(copyIndex);
-          if (minIndex != tableIndex) {
-            return true;
-          }
-        }
-      }
+      Set<Integer> copyIndex = duplicateIndexes.get(((TableNode) input).getName());
+      return copyIndex != null && copyIndex.contains(tableIndex) && getMin(copyIndex) != tableIndex;
     }
     return false;
   }
 
-  private int getMin(Set<Integer> indexes) {
+  private static int getMin(Set<Integer> indexes) {
     int min = Integer.MAX_VALUE;
     for (Integer index : indexes) {
-      int value = index.intValue();
-      if (value < min) {
-        min = value;
-      }
+      min = Math.min(min, index);
     }
     return min;
   }
@@ -16,34 +16,35 @@ import java.util.List;
 import java.util.Set;
 
 public class SPJ2Empty extends AlgeRuleBase {
-  public SPJ2Empty(AlgeNode input) {
-    this.input = input;
+  SPJ2Empty() {}
+
+  @Override
+  public List<Class<? extends AlgeNode>> nodeTypes() {
+    return List.of(SPJNode.class);
   }
 
   @Override
-  public boolean preCondition() {
-    if (this.input instanceof SPJNode) {
-      SPJNode spjNode = (SPJNode) this.input;
-      List<BoolExpr> assign = new ArrayList<>();
-      Set<RexNode> conditions = spjNode.getConditions();
-      if (!conditions.isEmpty()) {
-        Context z3Context = this.input.getZ3Context();
-        List<SymbolicColumn> inputSymbolicColumns = inputSymbolicColumns(spjNode, z3Context);
-        RexNodeUtility.reset();
-        SymbolicColumn symbolicCondition =
-            BoolPredicate.getAndNodeSymbolicColumn(
-                conditions, inputSymbolicColumns, assign, z3Context);
-        RexNodeUtility.reset();
-        assign.add(symbolicCondition.isValueTrue());
-        if (z3Utility.isUnsat(z3Utility.mkAnd(assign, z3Context), z3Context)) {
-          return true;
-        }
-      }
+  public AlgeNode apply(AlgeNode input) {
+    SPJNode spjNode = (SPJNode) input;
+    Set<RexNode> conditions = spjNode.getConditions();
+    if (conditions.isEmpty()) {
+      return null;
+    }
+    List<BoolExpr> assign = new ArrayList<>();
+    Context z3Context = spjNode.getZ3Context();
+    List<SymbolicColumn> inputSymbolicColumns = inputSymbolicColumns(spjNode, z3Context);
+    RexNodeUtility.reset();
+    SymbolicColumn symbolicCondition =
+        BoolPredicate.getAndNodeSymbolicColumn(conditions, inputSymbolicColumns, assign, z3Context);
+    RexNodeUtility.reset();
+    assign.add(symbolicCondition.isValueTrue());
+    if (z3Utility.isUnsat(z3Utility.mkAnd(assign, z3Context), z3Context)) {
+      return new EmptyNode(z3Context);
     }
-    return false;
+    return null;
   }
 
-  private List<SymbolicColumn> inputSymbolicColumns(SPJNode node, Context z3Context) {
+  private static List<SymbolicColumn> inputSymbolicColumns(SPJNode node, Context z3Context) {
     List<SymbolicColumn> inputColumns = new ArrayList<>();
     for (AlgeNode input : node.getInputs()) {
       for (RexNode outputExpr : input.getOutputExpr()) {
@@ -52,9 +53,4 @@ public class SPJ2Empty extends AlgeRuleBase {
     }
     return inputColumns;
   }
-
-  @Override
-  public AlgeNode transformation() {
-    return (new EmptyNode(this.input.getZ3Context()));
-  }
 }
@@ -0,0 +1,127 @@
+package wtune.spes.Z3Helper;
+
+import com.microsoft.z3.*;
+
+import java.util.List;
+
+/**
+ * The solver shared by all checks of one SPES proof.
+ *
+ * <p>{@link #open} binds the session to the current thread, and {@link z3Utility} then runs every
+ * check on the session's context through it instead of a fresh solver. The environment of a check
+ * (the assignment constraints of the compared nodes) is asserted in its own scope and kept as long
+ * as the following checks share it, e.g. while the candidate matchings of inputs are tried. The
+ * checked formula itself is asserted under push/pop.
+ *
+ * <p>The whole proof has a time budget. A check that runs out of time answers "not unsat", as
+ * before for any check the solver gave up on, and marks the session as {@link #isIncomplete()
+ * incomplete}. Once the budget is used up, every further check throws {@link
+ * SolverTimeoutException}.
+ */
+public class SolverSession implements AutoCloseable {
+  public static final int DEFAULT_CHECK_TIMEOUT = 2000; // ms
+
+  private static final ThreadLocal<SolverSession> CURRENT = new ThreadLocal<>();
+
+  private final Context z3Context;
+  private final Solver solver;
+  private final long deadline;
+  private final int baseScopes;
+  private final SolverSession outer;
+
+  private BoolExpr[] env; // asserted in the scope right above `baseScopes`
+  private int timeout;
+  private boolean incomplete;
+  private int numChecks;
+
+  private SolverSession(Context z3Context, Solver solver, long budget, SolverSession outer) {
+    this.z3Context = z3Context;
+    this.solver = solver;
+    this.deadline = budget <= 0 ? Long.MAX_VALUE : System.currentTimeMillis() + budget;
+    this.baseScopes = solver.getNumScopes();
+    this.outer = outer;
+  }
+
+  /**
+   * Opens a session on `solver`, which must belong to `z3Context`. The session sets the timeout of
+   * the solver and pops its scopes back on close. A non-positive `budget` (ms) means no budget,
+   * each check still gives up after {@link #DEFAULT_CHECK_TIMEOUT}.
+   */
+  public static SolverSession open(Context z3Context, Solver solver, long budget) {
+    final SolverSession session = new SolverSession(z3Context, solver, budget, CURRENT.get());
+    CURRENT.set(session);
+    return session;
+  }
+
+  public static SolverSession open(Context z3Context, long budget) {
+    return open(z3Context, z3Context.mkSolver(), budget);
+  }
+
+  static SolverSession current(Context z3Context) {
+    final SolverSession session = CURRENT.get();
+    return session != null && session.z3Context == z3Context ? session : null;
+  }
+
+  /** Whether any check was given up by the solver. */
+  public boolean isIncomplete() {
+    return incomplete;
+  }
+
+  public int numChecks() {
+    return numChecks;
+  }
+
+  /** Checks whether the conjunction of `env` and `goal` is unsatisfiable. */
+  public boolean isUnsat(List<BoolExpr> env, BoolExpr goal) {
+    final long now = System.currentTimeMillis();
+    if (now >= deadline) throw new SolverTimeoutException(numChecks);
+
+    ++numChecks;
+    if (!isCurrentEnv(env)) {
+      if (this.env != null) solver.pop();
+      this.env = null;
+      solver.push();
+      final BoolExpr[] newEnv = env.toArray(new BoolExpr[0]);
+      if (newEnv.length > 0) solver.add(newEnv);
+      this.env = newEnv;
+    }
+
+    setTimeout((int) Math.min(DEFAULT_CHECK_TIMEOUT, deadline - now));
+    solver.push();
+    try {
+      solver.add(goal);
+      final Status status = solver.check();
+      if (status == Status.UNKNOWN) incomplete = true;
+      return status == Status.UNSATISFIABLE;
+    } finally {
+      solver.pop();
+    }
+  }
+
+  private boolean isCurrentEnv(List<BoolExpr> env) {
+    if (this.env == null || this.env.length != env.size()) return false;
+    // ASTs are hash-consed by Z3, equals() is a pointer comparison on the native side
+    for (int i = 0; i < this.env.length; ++i) if (!this.env[i].equals(env.get(i))) return false;
+    return true;
+  }
+
+  private void setTimeout(int timeout) {
+    if (timeout == this.timeout) return;
+    solver.setParameters(timeoutParams(z3Context, timeout));
+    this.timeout = timeout;
+  }
+
+  private static Params timeoutParams(Context z3Context, int timeout) {
+    final Params params = z3Context.mkParams();
+    params.add("timeout", timeout);
+    return params;
+  }
+
+  @Override
+  public void close() {
+    assert CURRENT.get() == this;
+    CURRENT.set(outer);
+    final int numScopes = solver.getNumScopes() - baseScopes;
+    if (numScopes > 0) solver.pop(numScopes);
+  }
+}
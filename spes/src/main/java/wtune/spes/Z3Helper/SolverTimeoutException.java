@@ -0,0 +1,10 @@
+package wtune.spes.Z3Helper;
+
+/** Thrown when a {@link SolverSession} has used up the time budget of its proof. */
+public class SolverTimeoutException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  public SolverTimeoutException(int numChecks) {
+    super("SPES proof out of budget after " + numChecks + " checks");
+  }
+}
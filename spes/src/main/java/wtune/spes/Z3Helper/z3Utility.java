@@ -21,12 +21,8 @@ public class z3Utility {
       BoolExpr condition1,
       BoolExpr condition2,
       Context z3Context) {
-    BoolExpr[] equation = new BoolExpr[assignConstraints.size() + 1];
-    assignConstraints.toArray(equation);
-    equation[assignConstraints.size()] = z3Context.mkNot(z3Context.mkEq(condition1, condition2));
-    Solver s = z3Context.mkSolver();
-    s.add(equation);
-    return s.check() == Status.UNSATISFIABLE;
+    return isUnsat(
+        assignConstraints, z3Context.mkNot(z3Context.mkEq(condition1, condition2)), z3Context);
   }
 
   public static BoolExpr makeColumnsEq(
@@ -36,19 +32,16 @@ public class z3Utility {
       for (int i = 0; i < columns1.size(); i++) {
         columnsEq[i] = simpleColumnEq(columns1.get(i), columns2.get(i), z3Context);
       }
-      return (BoolExpr) z3Context.mkAnd(columnsEq).simplify();
+      return z3Context.mkAnd(columnsEq);
     }
     return null;
   }
 
   public static BoolExpr simpleColumnEq(
       SymbolicColumn column1, SymbolicColumn column2, Context z3Context) {
-    BoolExpr valueEqual =
-        (BoolExpr)
-            z3Context.mkEq(column1.getSymbolicValue(), column2.getSymbolicValue()).simplify();
-    BoolExpr isNullEqual =
-        (BoolExpr) z3Context.mkEq(column1.getSymbolicNull(), column2.getSymbolicNull()).simplify();
-    return (BoolExpr) z3Context.mkAnd(valueEqual, isNullEqual).simplify();
+    BoolExpr valueEqual = z3Context.mkEq(column1.getSymbolicValue(), column2.getSymbolicValue());
+    BoolExpr isNullEqual = z3Context.mkEq(column1.getSymbolicNull(), column2.getSymbolicNull());
+    return z3Context.mkAnd(valueEqual, isNullEqual);
   }
 
   public static boolean symbolicOutputEqual(
@@ -67,10 +60,8 @@ public class z3Utility {
       if (columnEqs.isEmpty()) {
         return true;
       }
-      BoolExpr notEq = (BoolExpr) z3Context.mkNot(z3Utility.mkAnd(columnEqs, z3Context)).simplify();
-      Solver s = z3Context.mkSolver();
-      s.add((BoolExpr) z3Context.mkAnd(conditions, notEq).simplify());
-      return s.check() == Status.UNSATISFIABLE;
+      BoolExpr notEq = z3Context.mkNot(z3Utility.mkAnd(columnEqs, z3Context));
+      return isUnsat(Collections.singletonList(conditions), notEq, z3Context);
     }
     return false;
   }
@@ -93,21 +84,46 @@ public class z3Utility {
     return newVariable;
   }
 
+  // Constants are folded here, anything else is left to the solver rather than simplified at
+  // every step.
   public static BoolExpr mkAnd(List<BoolExpr> constraints, Context z3Context) {
-    BoolExpr[] andC = new BoolExpr[constraints.size()];
-    constraints.toArray(andC);
-    return (BoolExpr) z3Context.mkAnd(andC).simplify();
+    List<BoolExpr> operands = new ArrayList<>(constraints.size());
+    for (BoolExpr constraint : constraints) {
+      if (constraint.isFalse()) return constraint;
+      if (!constraint.isTrue()) operands.add(constraint);
+    }
+    if (operands.isEmpty()) return z3Context.mkTrue();
+    if (operands.size() == 1) return operands.get(0);
+    return z3Context.mkAnd(operands.toArray(new BoolExpr[0]));
   }
 
   public static BoolExpr mkOr(List<BoolExpr> constraints, Context z3Context) {
-    BoolExpr[] orC = new BoolExpr[constraints.size()];
-    constraints.toArray(orC);
-    return (BoolExpr) z3Context.mkOr(orC).simplify();
+    List<BoolExpr> operands = new ArrayList<>(constraints.size());
+    for (BoolExpr constraint : constraints) {
+      if (constraint.isTrue()) return constraint;
+      if (!constraint.isFalse()) operands.add(constraint);
+    }
+    if (operands.isEmpty()) return z3Context.mkFalse();
+    if (operands.size() == 1) return operands.get(0);
+    return z3Context.mkOr(operands.toArray(new BoolExpr[0]));
   }
 
   public static boolean isUnsat(BoolExpr expr, Context z3Context) {
+    return isUnsat(Collections.emptyList(), expr, z3Context);
+  }
+
+  // Checks on the solver of the current session if there is one, see SolverSession. Checks
+  // outside a session have no timeout.
+  private static boolean isUnsat(List<BoolExpr> env, BoolExpr goal, Context z3Context) {
+    SolverSession session = SolverSession.current(z3Context);
+    if (session != null) {
+      return session.isUnsat(env, goal);
+    }
     Solver s = z3Context.mkSolver();
-    s.add(expr);
+    for (BoolExpr e : env) {
+      s.add(e);
+    }
+    s.add(goal);
     return s.check() == Status.UNSATISFIABLE;
   }
 
@@ -121,7 +137,7 @@ public class z3Utility {
         z3Context.mkAnd(
             z3Context.mkEq(column1.getSymbolicNull(), column2.getSymbolicNull()),
             z3Context.mkEq(column1.getSymbolicValue(), column2.getSymbolicValue()));
-    return (BoolExpr) z3Context.mkOr(bothNull, valueEq).simplify();
+    return z3Context.mkOr(bothNull, valueEq);
   }
 
   private static boolean trivialEqual(SymbolicColumn column1, SymbolicColumn column2) {
@@ -5,10 +5,13 @@ import wtune.common.field.FieldKey;
 import wtune.common.tree.LabeledTreeFields;
 import wtune.sql.ast.constants.*;
 import wtune.sql.parser.AstParser;
+import wtune.sql.parser.TwoStageParser;
 import wtune.sql.preprocess.CastHandler;
+import wtune.sql.preprocess.PreprocessContext;
 import wtune.sql.preprocess.SemiAntiJoinHandler;
 import wtune.sql.copreprocess.SqlNodeCoPreprocess;
 import wtune.sql.preprocess.SqlNodePreprocess;
+import wtune.sql.schema.Schema;
 import wtune.sql.util.SqlCopier;
 import wtune.sql.ast.*;
 //import
@@ -33,6 +36,16 @@ public abstract class SqlSupport {
     PARSING_ERROR_MUTED = true;
   }
 
+  /** Set whether statements are parsed with SLL first, see {@link TwoStageParser}. */
+  public static void setSllParsingEnabled(boolean enabled) {
+    TwoStageParser.setSllEnabled(enabled);
+  }
+
+  /** Number of parses that went through full LL, including the ones that SLL failed on. */
+  public static long numLlParses() {
+    return TwoStageParser.numLlParses();
+  }
+
   public static int coalesceEndIndex(int startIndex, String query) {
     int counter = 1;
     for (int i = startIndex + 1; i < query.length(); ++ i) {
@@ -227,14 +240,15 @@ public abstract class SqlSupport {
     return query;
   }
 
-  public static String parsePreprocess(String str) {
+  public static String parsePreprocess(String str, Schema schema) {
+    final PreprocessContext context = new PreprocessContext(schema);
     // replace $
     // queries with VALUES skip the replacement of $
     if (!str.toUpperCase().contains("_DOLLAR_") && !str.toUpperCase().contains("VALUES"))
       str = str.replace("$", "_DOLLAR_");
     // handlers/rewriters
-    str = SemiAntiJoinHandler.handle(str);
-    str = CastHandler.handle(str);
+    str = SemiAntiJoinHandler.handle(str, context);
+    str = CastHandler.handle(str, schema);
     str = coalesceHandler(str, 0);
 //    str = aggNatHandler(str);
     str = aggNullHandler(str);
@@ -243,7 +257,7 @@ public abstract class SqlSupport {
     //str = aggArithHandler(str);
     str = aggGroupByHandler(str);
     str = dateFormatHandler(str);
-    str = SqlNodePreprocess.preprocessAll(str);
+    str = SqlNodePreprocess.preprocessAll(str, context);
     return str;
   }
 
@@ -9,6 +9,7 @@ import wtune.sql.mysql.internal.MySQLLexer;
 import wtune.sql.mysql.internal.MySQLParser;
 import wtune.sql.parser.AstParser;
 import wtune.sql.parser.ThrowingErrorListener;
+import wtune.sql.parser.TwoStageParser;
 
 import java.util.Properties;
 import java.util.function.Function;
@@ -26,22 +27,17 @@ public class MySQLAstParser implements AstParser {
   }
 
   public SqlNode parse(String str, Function<MySQLParser, ParserRuleContext> rule) {
-    final MySQLLexer lexer = new MySQLLexer(CharStreams.fromString(str));
-    lexer.setServerVersion(serverVersion);
-    lexer.setSqlMode(sqlMode);
-    if (str.contains("OVER (")) lexer.setServerVersion(Integer.MAX_VALUE);
-
-    final MySQLParser parser = new MySQLParser(new CommonTokenStream(lexer));
-    parser.setServerVersion(serverVersion);
-    parser.setSqlMode(sqlMode);
-    if (str.contains("OVER (")) parser.setServerVersion(Integer.MAX_VALUE);
-
-    lexer.removeErrorListeners();
-    lexer.addErrorListener(ThrowingErrorListener.instance());
-    parser.removeErrorListeners();
-    parser.addErrorListener(ThrowingErrorListener.instance());
-
-    return rule.apply(parser).accept(new MySQLAstBuilder());
+    final long serverVersion = str.contains("OVER (") ? Integer.MAX_VALUE : this.serverVersion;
+    final Recognizers recognizers = Recognizers.acquire();
+    boolean clean = false;
+    try {
+      final MySQLParser parser = recognizers.reset(str, serverVersion, sqlMode);
+      final SqlNode ast = TwoStageParser.parse(parser, rule).accept(new MySQLAstBuilder());
+      clean = true;
+      return ast;
+    } finally {
+      recognizers.release(clean);
+    }
   }
 
   @Override
@@ -57,4 +53,47 @@ public class MySQLAstParser implements AstParser {
     setServerVersion((int) props.getOrDefault("serverVersion", this.serverVersion));
     setSqlMode((int) props.getOrDefault("sqlMode", this.sqlMode));
   }
+
+  /** Lexer and parser reused by the parses on a thread. */
+  private static class Recognizers {
+    private static final ThreadLocal<Recognizers> CACHED =
+        ThreadLocal.withInitial(Recognizers::new);
+
+    private final MySQLLexer lexer;
+    private final CommonTokenStream tokens;
+    private final MySQLParser parser;
+    private boolean inUse;
+
+    private Recognizers() {
+      lexer = new MySQLLexer(CharStreams.fromString(""));
+      tokens = new CommonTokenStream(lexer);
+      parser = new MySQLParser(tokens);
+      lexer.removeErrorListeners();
+      lexer.addErrorListener(ThrowingErrorListener.instance());
+    }
+
+    private static Recognizers acquire() {
+      final Recognizers cached = CACHED.get();
+      if (cached.inUse) return new Recognizers(); // re-entrant parse
+      cached.inUse = true;
+      return cached;
+    }
+
+    private MySQLParser reset(String str, long serverVersion, int sqlMode) {
+      lexer.setServerVersion(serverVersion);
+      lexer.setSqlMode(sqlMode);
+      lexer.setInputStream(CharStreams.fromString(str));
+      tokens.setTokenSource(lexer);
+      parser.setServerVersion(serverVersion);
+      parser.setSqlMode(sqlMode);
+      parser.setTokenStream(tokens);
+      return parser;
+    }
+
+    // a failed parse may leave state in the lexer (e.g. dollar-quote tags), don't reuse it
+    private void release(boolean clean) {
+      inUse = false;
+      if (!clean && CACHED.get() == this) CACHED.remove();
+    }
+  }
 }
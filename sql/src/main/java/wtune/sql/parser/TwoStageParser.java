@@ -0,0 +1,76 @@
+package wtune.sql.parser;
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Two-stage parsing: SLL prediction with a bail-out error strategy first, full LL only if SLL
+ * fails or leaves input unconsumed. SLL succeeds on almost all statements and is cheaper. A
+ * statement that is truly invalid fails in both stages, and the error of the LL stage is thrown.
+ *
+ * <p>The DFA cache of a generated parser is static, so it is already shared by all instances and
+ * threads.
+ */
+public class TwoStageParser {
+  private static final AtomicLong NUM_SLL = new AtomicLong();
+  private static final AtomicLong NUM_LL = new AtomicLong();
+  private static volatile boolean sllEnabled = !"false".equals(System.getProperty("wetune.sll"));
+
+  private TwoStageParser() {}
+
+  public static void setSllEnabled(boolean enabled) {
+    sllEnabled = enabled;
+  }
+
+  public static long numSllParses() {
+    return NUM_SLL.get();
+  }
+
+  /** Number of parses that went through full LL, including the ones that SLL failed on. */
+  public static long numLlParses() {
+    return NUM_LL.get();
+  }
+
+  /** Parses `rule` by `parser`, whose token stream is at the beginning of the input. */
+  public static <P extends Parser> ParserRuleContext parse(
+      P parser, Function<P, ParserRuleContext> rule) {
+    if (sllEnabled) {
+      parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+      parser.setErrorHandler(new BailErrorStrategy());
+      parser.removeErrorListeners();
+      try {
+        final ParserRuleContext tree = rule.apply(parser);
+        // A rule not ended by EOF may stop early under SLL, where LL would go on.
+        if (parser.getInputStream().LA(1) == Token.EOF) {
+          NUM_SLL.incrementAndGet();
+          return tree;
+        }
+      } catch (ParseCancellationException ignored) {
+      }
+      rewind(parser);
+    }
+
+    NUM_LL.incrementAndGet();
+    parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+    parser.setErrorHandler(new DefaultErrorStrategy());
+    parser.removeErrorListeners();
+    parser.addErrorListener(ThrowingErrorListener.instance());
+    return rule.apply(parser);
+  }
+
+  // A lexer error thrown by the listener leaves the lexer in the middle of a token, so the tokens
+  // are lexed again from the beginning.
+  private static void rewind(Parser parser) {
+    final TokenStream tokens = parser.getTokenStream();
+    if (tokens instanceof BufferedTokenStream buffered
+        && buffered.getTokenSource() instanceof Lexer lexer) {
+      lexer.reset();
+      buffered.setTokenSource(lexer);
+    }
+    parser.setTokenStream(tokens);
+  }
+}
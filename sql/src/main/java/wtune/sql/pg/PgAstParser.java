@@ -7,6 +7,7 @@ import wtune.common.datasource.DbSupport;
 import wtune.sql.ast.SqlNode;
 import wtune.sql.parser.AstParser;
 import wtune.sql.parser.ThrowingErrorListener;
+import wtune.sql.parser.TwoStageParser;
 import wtune.sql.pg.internal.PGLexer;
 import wtune.sql.pg.internal.PGParser;
 
@@ -14,17 +15,16 @@ import java.util.function.Function;
 
 public class PgAstParser implements AstParser {
   public SqlNode parse(String str, Function<PGParser, ParserRuleContext> rule) {
-    final PGLexer lexer = new PGLexer(CharStreams.fromString(str));
-    final PGParser parser = new PGParser(new CommonTokenStream(lexer));
-
-    lexer.removeErrorListeners();
-    lexer.addErrorListener(ThrowingErrorListener.instance());
-    parser.removeErrorListeners();
-    parser.addErrorListener(ThrowingErrorListener.instance());
-
-    //    lexer.getInterpreter().clearDFA();
-    //    parser.getInterpreter().clearDFA();
-    return rule.apply(parser).accept(new PgAstBuilder());
+    final Recognizers recognizers = Recognizers.acquire();
+    boolean clean = false;
+    try {
+      final PGParser parser = recognizers.reset(str);
+      final SqlNode ast = TwoStageParser.parse(parser, rule).accept(new PgAstBuilder());
+      clean = true;
+      return ast;
+    } finally {
+      recognizers.release(clean);
+    }
   }
 
   @Override
@@ -34,4 +34,43 @@ public class PgAstParser implements AstParser {
     ast.context().setDbType(DbSupport.PostgreSQL);
     return ast;
   }
+
+  /** Lexer and parser reused by the parses on a thread. */
+  private static class Recognizers {
+    private static final ThreadLocal<Recognizers> CACHED =
+        ThreadLocal.withInitial(Recognizers::new);
+
+    private final PGLexer lexer;
+    private final CommonTokenStream tokens;
+    private final PGParser parser;
+    private boolean inUse;
+
+    private Recognizers() {
+      lexer = new PGLexer(CharStreams.fromString(""));
+      tokens = new CommonTokenStream(lexer);
+      parser = new PGParser(tokens);
+      lexer.removeErrorListeners();
+      lexer.addErrorListener(ThrowingErrorListener.instance());
+    }
+
+    private static Recognizers acquire() {
+      final Recognizers cached = CACHED.get();
+      if (cached.inUse) return new Recognizers(); // re-entrant parse
+      cached.inUse = true;
+      return cached;
+    }
+
+    private PGParser reset(String str) {
+      lexer.setInputStream(CharStreams.fromString(str));
+      tokens.setTokenSource(lexer);
+      parser.setTokenStream(tokens);
+      return parser;
+    }
+
+    // a failed parse may leave state in the lexer (e.g. dollar-quote tags), don't reuse it
+    private void release(boolean clean) {
+      inUse = false;
+      if (!clean && CACHED.get() == this) CACHED.remove();
+    }
+  }
 }
@@ -20,7 +20,10 @@ public interface Expression {
   /** The used col-refs in the `template()`. */
   List<SqlNode> internalRefs();
 
-  /** BE CAREFUL TO USE. This updates itself with a new template. */
+  /**
+   * BE CAREFUL TO USE. This updates itself with a new template. The cached hashes of plans are not
+   * aware of it, see {@link PlanContext#setTemplateOf(Expression, SqlNode)}.
+   */
   Expression setTemplate(SqlNode ast);
 
   /** Interpolate names to placeholders. */
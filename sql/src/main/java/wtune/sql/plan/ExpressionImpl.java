@@ -14,6 +14,7 @@ public class ExpressionImpl implements Expression {
   private SqlNode template;
   private final List<SqlNode> internalRefs;
   private final List<SqlNode> colRefs;
+  private PlanHash fingerprint;
 
   ExpressionImpl(SqlNode ast) {
     final SqlContext tempCtx = SqlContext.mk(8);
@@ -55,6 +56,7 @@ public class ExpressionImpl implements Expression {
 
   public Expression setTemplate(SqlNode ast) {
     template = ast;
+    fingerprint = null;
     return this;
   }
 
@@ -83,6 +85,11 @@ public class ExpressionImpl implements Expression {
     return new ExpressionImpl(template, internalRefs, colRefs);
   }
 
+  PlanHash fingerprint() {
+    if (fingerprint == null) fingerprint = PlanHasher.hashString(template.toString());
+    return fingerprint;
+  }
+
   @Override
   public String toString() {
     return template.toString();
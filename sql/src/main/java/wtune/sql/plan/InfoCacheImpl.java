@@ -1,152 +1,151 @@
 package wtune.sql.plan;
 
 import gnu.trove.list.TIntList;
-import gnu.trove.map.TIntIntMap;
-import gnu.trove.map.TIntObjectMap;
-import gnu.trove.map.hash.TIntIntHashMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
 import gnu.trove.procedure.TIntObjectProcedure;
 import org.apache.commons.lang3.tuple.Pair;
-import wtune.common.utils.COW;
+import wtune.common.utils.PersistentIdentityMap;
+import wtune.common.utils.PersistentIntMap;
 import wtune.sql.ast.constants.JoinKind;
 
-import java.util.HashMap;
-import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
 
 import static wtune.common.tree.TreeContext.NO_SUCH_NODE;
 
 public class InfoCacheImpl implements InfoCache {
-  private final COW<TIntIntMap> deduplicated;
-  private final COW<TIntObjectMap<Pair<List<Value>, List<Value>>>> joinKeys;
-  private final COW<TIntObjectMap<JoinKind>> joinKinds;
-  private final COW<TIntObjectMap<Expression>> subqueryExprs;
-  private final COW<TIntObjectMap<TIntList>> dependentNodes;
-  private final COW<Map<Expression, int[]>> virtualExprs;
-
-  InfoCacheImpl() {
-    this.deduplicated = new COW<>(new TIntIntHashMap(4), null);
-    this.joinKeys = new COW<>(new TIntObjectHashMap<>(4), null);
-    this.joinKinds = new COW<>(new TIntObjectHashMap<>(4), null);
-    this.subqueryExprs = new COW<>(new TIntObjectHashMap<>(4), null);
-    this.dependentNodes = new COW<>(new TIntObjectHashMap<>(4), null);
-    this.virtualExprs = new COW<>(new IdentityHashMap<>(4), null);
-  }
-
-  InfoCacheImpl(InfoCacheImpl toCopy) {
-    this.deduplicated = new COW<>(toCopy.deduplicated.forRead(), TIntIntHashMap::new);
-    this.joinKeys = new COW<>(toCopy.joinKeys.forRead(), TIntObjectHashMap::new);
-    this.joinKinds = new COW<>(toCopy.joinKinds.forRead(), TIntObjectHashMap::new);
-    this.subqueryExprs = new COW<>(toCopy.subqueryExprs.forRead(), TIntObjectHashMap::new);
-    this.dependentNodes = new COW<>(toCopy.dependentNodes.forRead(), TIntObjectHashMap::new);
-    this.virtualExprs = new COW<>(toCopy.virtualExprs.forRead(), HashMap::new);
+  private final PersistentIntMap<Boolean> deduplicated;
+  private final PersistentIntMap<Pair<List<Value>, List<Value>>> joinKeys;
+  private final PersistentIntMap<JoinKind> joinKinds;
+  private final PersistentIntMap<Expression> subqueryExprs;
+  private final PersistentIntMap<TIntList> dependentNodes;
+  private final PersistentIdentityMap<Expression, int[]> virtualExprs;
+  private final PlanContextImpl plan;
+
+  InfoCacheImpl(PlanContextImpl plan) {
+    this.plan = plan;
+    this.deduplicated = new PersistentIntMap<>();
+    this.joinKeys = new PersistentIntMap<>();
+    this.joinKinds = new PersistentIntMap<>();
+    this.subqueryExprs = new PersistentIntMap<>();
+    this.dependentNodes = new PersistentIntMap<>();
+    this.virtualExprs = new PersistentIdentityMap<>();
+  }
+
+  InfoCacheImpl(InfoCacheImpl toCopy, PlanContextImpl newPlan) {
+    this.plan = newPlan;
+    this.deduplicated = toCopy.deduplicated.copy();
+    this.joinKeys = toCopy.joinKeys.copy();
+    this.joinKinds = toCopy.joinKinds.copy();
+    this.subqueryExprs = toCopy.subqueryExprs.copy();
+    this.dependentNodes = toCopy.dependentNodes.copy();
+    this.virtualExprs = toCopy.virtualExprs.copy();
   }
 
   @Override
   public void putDeduplicatedOf(int projNodeId, boolean flag) {
-    deduplicated.forWrite().put(projNodeId, flag ? 2 : 1);
+    deduplicated.put(projNodeId, flag);
+    plan.invalidateHashOf(projNodeId);
   }
 
   @Override
   public void putJoinKeyOf(int joinNodeId, List<Value> lhsKeys, List<Value> rhsKeys) {
-    joinKeys.forWrite().put(joinNodeId, Pair.of(lhsKeys, rhsKeys));
+    joinKeys.put(joinNodeId, Pair.of(lhsKeys, rhsKeys));
+    plan.invalidatePropsOf(joinNodeId);
   }
 
   @Override
   public void putJoinKindOf(int joinNodeId, JoinKind joinKind) {
-    joinKinds.forWrite().put(joinNodeId, joinKind);
+    joinKinds.put(joinNodeId, joinKind);
+    plan.invalidateHashOf(joinNodeId);
   }
 
   @Override
   public void putSubqueryExprOf(int inSubNodeId, Expression expr) {
-    subqueryExprs.forWrite().put(inSubNodeId, expr);
+    subqueryExprs.put(inSubNodeId, expr);
   }
 
   @Override
   public void putDependentNodesIn(int inSubNodeId, TIntList nodeIds) {
-    dependentNodes.forWrite().put(inSubNodeId, nodeIds);
+    dependentNodes.put(inSubNodeId, nodeIds);
   }
 
   @Override
   public void putVirtualExpr(Expression compoundExpr, int... nodes) {
-    virtualExprs.forWrite().put(compoundExpr, nodes);
+    virtualExprs.put(compoundExpr, nodes);
   }
 
   @Override
   public Boolean getDeduplicatedOf(int projNodeId) {
-    final int value = deduplicated.forRead().get(projNodeId);
-    return value == 2 ? Boolean.TRUE : value == 1 ? Boolean.FALSE : null;
+    return deduplicated.get(projNodeId);
   }
 
   @Override
   public Pair<List<Value>, List<Value>> getJoinKeyOf(int nodeId) {
-    return joinKeys.forRead().get(nodeId);
+    return joinKeys.get(nodeId);
   }
 
   @Override
   public JoinKind getJoinKindOf(int nodeId) {
-    return joinKinds.forRead().get(nodeId);
+    return joinKinds.get(nodeId);
   }
 
   @Override
   public Expression getSubqueryExprOf(int nodeId) {
-    return subqueryExprs.forRead().get(nodeId);
+    return subqueryExprs.get(nodeId);
   }
 
   @Override
   public int getSubqueryNodeOf(Expression expr) {
     final SubqueryNodeFinder finder = new SubqueryNodeFinder(expr);
-    subqueryExprs.forRead().forEachEntry(finder);
+    subqueryExprs.forEachEntry(finder);
     return finder.subqueryNode;
   }
 
   @Override
   public TIntList getDependentNodesIn(int nodeId) {
-    return dependentNodes.forRead().get(nodeId);
+    return dependentNodes.get(nodeId);
   }
 
   @Override
   public int[] getVirtualExprComponents(Expression expr) {
-    return virtualExprs.forRead().get(expr);
+    return virtualExprs.get(expr);
   }
 
   void deleteNode(int nodeId) {
-    if (joinKeys.forRead().containsKey(nodeId)) joinKeys.forWrite().remove(nodeId);
-    if (joinKinds.forRead().containsKey(nodeId)) joinKinds.forWrite().remove(nodeId);
-    if (subqueryExprs.forRead().containsKey(nodeId)) subqueryExprs.forWrite().remove(nodeId);
-    if (deduplicated.forRead().containsKey(nodeId)) deduplicated.forWrite().remove(nodeId);
+    joinKeys.remove(nodeId);
+    joinKinds.remove(nodeId);
+    subqueryExprs.remove(nodeId);
+    deduplicated.remove(nodeId);
   }
 
   void renumberNode(int from, int to) {
-    final var keys = joinKeys.forRead().get(from);
+    final var keys = joinKeys.get(from);
     if (keys != null) {
-      joinKeys.forWrite().put(to, keys);
-      joinKeys.forWrite().remove(from);
+      joinKeys.put(to, keys);
+      joinKeys.remove(from);
     }
 
-    final JoinKind kind = joinKinds.forRead().get(from);
+    final JoinKind kind = joinKinds.get(from);
     if (kind != null) {
-      joinKinds.forWrite().put(to, kind);
-      joinKeys.forWrite().remove(from);
+      joinKinds.put(to, kind);
+      joinKinds.remove(from);
     }
 
-    final Expression subqueryExpr = subqueryExprs.forRead().get(from);
+    final Expression subqueryExpr = subqueryExprs.get(from);
     if (subqueryExpr != null) {
-      subqueryExprs.forWrite().put(to, subqueryExpr);
-      subqueryExprs.forWrite().remove(from);
+      subqueryExprs.put(to, subqueryExpr);
+      subqueryExprs.remove(from);
     }
 
-    final int deduplicated = this.deduplicated.forRead().get(from);
-    if (deduplicated != 0) {
-      this.deduplicated.forWrite().put(to, deduplicated);
-      this.deduplicated.forWrite().remove(from);
+    final Boolean deduplicated = this.deduplicated.get(from);
+    if (deduplicated != null) {
+      this.deduplicated.put(to, deduplicated);
+      this.deduplicated.remove(from);
     }
   }
 
   void cleanTemporary() {
-    virtualExprs.forWrite().clear();
-    dependentNodes.forWrite().clear();
+    virtualExprs.clear();
+    dependentNodes.clear();
   }
 
   private static class SubqueryNodeFinder implements TIntObjectProcedure<Expression> {
@@ -22,7 +22,7 @@ class NotNullInference {
     else if (kind == Filter) return onFilter(toCheck, surfaceId);
     else if (kind == Proj) return onProj(toCheck, surfaceId);
     else if (kind == Agg) return onAgg(toCheck, surfaceId);
-    else return isNotNullAt(toCheck, ctx.childOf(surfaceId, 0));
+    else return ctx.isNotNullAt(toCheck, ctx.childOf(surfaceId, 0));
   }
 
   private boolean onInput(Value toCheck) {
@@ -34,12 +34,12 @@ class NotNullInference {
 
   private boolean onAgg(Value toCheck, int surfaceId) {
     final Value ref = PlanSupport.deRef(ctx, toCheck);
-    return ref != null && isNotNullAt(ref, ctx.childOf(ctx.childOf(surfaceId, 0), 0));
+    return ref != null && ctx.isNotNullAt(ref, ctx.childOf(ctx.childOf(surfaceId, 0), 0));
   }
 
   private boolean onProj(Value toCheck, int surfaceId) {
     final Value ref = PlanSupport.deRef(ctx, toCheck);
-    return ref != null && isNotNullAt(ref, ctx.childOf(surfaceId, 0));
+    return ref != null && ctx.isNotNullAt(ref, ctx.childOf(surfaceId, 0));
   }
 
   private boolean onJoin(Value toCheck, int surfaceId) {
@@ -55,8 +55,8 @@ class NotNullInference {
       if (joinKeys.contains(toCheck)) return true;
       else {
         final boolean fromLhs = lhsValues.contains(toCheck);
-        return (fromLhs && isNotNullAt(toCheck, ctx.childOf(surfaceId, 0)))
-            || (!fromLhs && isNotNullAt(toCheck, ctx.childOf(surfaceId, 1)));
+        return (fromLhs && ctx.isNotNullAt(toCheck, ctx.childOf(surfaceId, 0)))
+            || (!fromLhs && ctx.isNotNullAt(toCheck, ctx.childOf(surfaceId, 1)));
       }
     }
 
@@ -64,9 +64,9 @@ class NotNullInference {
     // e.g. From t Left Join s On ..., even if s.c is defined NOT_NULL,
     // it still can be NULL after Left-Join.
     if (joinKind == JoinKind.LEFT_JOIN) {
-      return lhsValues.contains(toCheck) && isNotNullAt(toCheck, ctx.childOf(surfaceId, 0));
+      return lhsValues.contains(toCheck) && ctx.isNotNullAt(toCheck, ctx.childOf(surfaceId, 0));
     } else if (joinKind == JoinKind.RIGHT_JOIN) {
-      return !lhsValues.contains(toCheck) && isNotNullAt(toCheck, ctx.childOf(surfaceId, 1));
+      return !lhsValues.contains(toCheck) && ctx.isNotNullAt(toCheck, ctx.childOf(surfaceId, 1));
     } else {
       return false;
     }
@@ -82,6 +82,6 @@ class NotNullInference {
       assert refs.size() == 1;
       if (refs.get(0) == toCheck) return true;
     }
-    return isNotNullAt(toCheck, ctx.childOf(surfaceId, 0));
+    return ctx.isNotNullAt(toCheck, ctx.childOf(surfaceId, 0));
   }
 }
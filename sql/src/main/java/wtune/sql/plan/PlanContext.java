@@ -4,6 +4,8 @@ import wtune.common.tree.UniformTreeContext;
 import wtune.sql.ast.SqlNode;
 import wtune.sql.schema.Schema;
 
+import java.util.Set;
+
 public interface PlanContext extends UniformTreeContext<PlanKind> {
   Schema schema();
 
@@ -15,8 +17,27 @@ public interface PlanContext extends UniformTreeContext<PlanKind> {
 
   ValuesRegistry valuesReg();
 
+  /** Structural hash of the sub-tree rooted at `id`. Cached until the sub-tree is mutated. */
+  PlanHash hashOf(int id);
+
   InfoCache infoCache();
 
+  /**
+   * Replaces the template of `expr`, which belongs to a node of this plan, by `template`. Unlike
+   * {@link Expression#setTemplate(SqlNode)}, the hashes of the node and its ancestors are dropped,
+   * also in the copies of this plan that share `expr`.
+   */
+  void setTemplateOf(Expression expr, SqlNode template);
+
+  /**
+   * Whether `attrs` is a unique core of the sub-tree rooted at `id`, i.e., `attrs` determine the
+   * tuples there. Cached until the sub-tree is mutated.
+   */
+  boolean isUniqueCoreAt(Set<Value> attrs, int id);
+
+  /** Whether `attr` is never NULL in the output of `id`. Cached until the sub-tree is mutated. */
+  boolean isNotNullAt(Value attr, int id);
+
   void setSubQueryPlanRootId(int sqlNodeId, int rootId);
 
   int getSubQueryPlanRootId(int sqlNodeId);
@@ -1,38 +1,53 @@
 package wtune.sql.plan;
 
 import gnu.trove.map.TIntIntMap;
-import gnu.trove.map.TObjectIntMap;
-import gnu.trove.map.custom_hash.TObjectIntCustomHashMap;
 import gnu.trove.map.hash.TIntIntHashMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
-import gnu.trove.strategy.IdentityHashingStrategy;
 import wtune.common.tree.UniformTreeContextBase;
 import wtune.common.utils.COW;
+import wtune.common.utils.PersistentIdentityMap;
 import wtune.sql.ast.SqlNode;
 import wtune.sql.schema.Schema;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import static wtune.common.tree.TreeSupport.checkNodePresent;
+import static wtune.sql.plan.PlanSupport.getExprsIn;
 
 class PlanContextImpl extends UniformTreeContextBase<PlanKind> implements PlanContext {
   private int root;
   private final Schema schema;
-  private final COW<TObjectIntMap<PlanNode>> nodeReg;
+  private final PersistentIdentityMap<PlanNode, Integer> nodeReg;
   private final ValuesRegistryImpl valuesReg;
   private final InfoCacheImpl infoCache;
   private final COW<TIntIntMap> subQueryPlanReg;
   private final COW<Map<SqlNode, Integer>> subQueryPlanRegSqlNode;
+  private PlanHash[] hashes; // indexed by node id, null if not computed or invalidated
+  // the node whose cached hash or properties cover the expression, to find what an edit of it hits
+  private final PersistentIdentityMap<Expression, PlanNode> hashedExprs;
+  // copies share the expressions, so an in-place edit through one of them is logged for all
+  private final ExprEdits exprEdits;
+  private int numSeenExprEdits;
+  private DerivedProps[] props; // indexed by node id, null if not computed or invalidated
+  private UniquenessInference uniqueness;
+  private NotNullInference notNull;
 
   protected PlanContextImpl(int root, int expectedNumNodes, Schema schema) {
     super(new PlanNd[(expectedNumNodes <= 0 ? 16 : expectedNumNodes) + 1], 2);
     this.schema = schema;
-    this.nodeReg = new COW<>(mkIdentityMap(), null);
+    this.nodeReg = new PersistentIdentityMap<>();
     this.valuesReg = new ValuesRegistryImpl(this);
-    this.infoCache = new InfoCacheImpl();
+    this.infoCache = new InfoCacheImpl(this);
     this.subQueryPlanReg = new COW<>(new TIntIntHashMap(2), null);
     this.subQueryPlanRegSqlNode = new COW<>(new HashMap<>(), null);
+    this.hashes = new PlanHash[nodes.length];
+    this.hashedExprs = new PersistentIdentityMap<>();
+    this.exprEdits = new ExprEdits();
+    this.props = new DerivedProps[nodes.length];
   }
 
   private PlanContextImpl(PlanContextImpl other) {
@@ -40,11 +55,17 @@ class PlanContextImpl extends UniformTreeContextBase<PlanKind> implements PlanCo
     this.root = other.root;
     this.maxNodeId = other.maxNodeId;
     this.schema = other.schema;
-    this.nodeReg = new COW<>(other.nodeReg.forRead(), PlanContextImpl::copyIdentityMap);
+    this.nodeReg = other.nodeReg.copy();
     this.valuesReg = new ValuesRegistryImpl(other.valuesReg, this);
-    this.infoCache = new InfoCacheImpl(other.infoCache);
+    this.infoCache = new InfoCacheImpl(other.infoCache, this);
     this.subQueryPlanReg = new COW<>(other.subQueryPlanReg.forRead(), TIntIntHashMap::new);
     this.subQueryPlanRegSqlNode = new COW<>(other.subQueryPlanRegSqlNode.forRead(), HashMap::new);
+    this.hashes = Arrays.copyOf(other.hashes, Math.max(other.hashes.length, nodes.length));
+    this.hashedExprs = other.hashedExprs.copy();
+    this.exprEdits = other.exprEdits;
+    this.numSeenExprEdits = other.numSeenExprEdits;
+    // the memos are filled lazily and not thread-safe, so they are not shared with the copy
+    this.props = new DerivedProps[nodes.length];
   }
 
   @Override
@@ -71,30 +92,151 @@ class PlanContextImpl extends UniformTreeContextBase<PlanKind> implements PlanCo
 
   @Override
   public int nodeIdOf(PlanNode node) {
-    return nodeReg.forRead().get(node);
+    final Integer id = nodeReg.get(node);
+    return id == null ? NO_SUCH_NODE : id;
   }
 
   @Override
   public int bindNode(PlanNode node) {
     final int newNodeId = mkNode(node.kind());
     ((PlanNd) nodes[newNodeId]).planNode = node;
-    nodeReg.forWrite().put(node, newNodeId);
+    nodeReg.put(node, newNodeId);
+    if (newNodeId < hashes.length) hashes[newNodeId] = null;
+    if (newNodeId < props.length) props[newNodeId] = null;
     return newNodeId;
   }
 
+  @Override
+  public PlanHash hashOf(int id) {
+    checkNodePresent(this, id);
+    if (hashes.length <= id) hashes = Arrays.copyOf(hashes, nodes.length);
+    syncExprEdits();
+
+    PlanHash hash = hashes[id];
+    if (hash == null) hashes[id] = hash = PlanHasher.hashTree(this, id);
+    return hash;
+  }
+
+  @Override
+  public boolean isUniqueCoreAt(Set<Value> attrs, int id) {
+    if (uniqueness == null) uniqueness = new UniquenessInference(this);
+    final DerivedProps props = propsOf(id);
+    if (props == null) return uniqueness.isUniqueCoreAt(attrs, id);
+
+    Boolean unique = props.uniqueCores.get(attrs);
+    if (unique == null) {
+      final Set<Value> key = new HashSet<>(attrs); // the inference may extend `attrs`
+      unique = uniqueness.isUniqueCoreAt(attrs, id);
+      props.uniqueCores.put(key, unique);
+    }
+    return unique;
+  }
+
+  @Override
+  public boolean isNotNullAt(Value attr, int id) {
+    if (notNull == null) notNull = new NotNullInference(this);
+    final DerivedProps props = propsOf(id);
+    if (props == null) return notNull.isNotNullAt(attr, id);
+
+    Boolean result = props.notNulls.get(attr);
+    if (result == null) {
+      result = notNull.isNotNullAt(attr, id);
+      props.notNulls.put(attr, result);
+    }
+    return result;
+  }
+
+  private DerivedProps propsOf(int id) {
+    if (id == NO_SUCH_NODE || !isPresent(id)) return null;
+    syncExprEdits();
+    if (props.length <= id) props = Arrays.copyOf(props, nodes.length);
+
+    DerivedProps nodeProps = props[id];
+    if (nodeProps == null) {
+      props[id] = nodeProps = new DerivedProps();
+      // a change of the expressions, or of their refs, must drop the properties
+      for (Expression expr : getExprsIn(this, id)) if (expr != null) dependOn(expr, id);
+    }
+    return nodeProps;
+  }
+
+  @Override
+  public void setTemplateOf(Expression expr, SqlNode template) {
+    expr.setTemplate(template);
+    exprEdits.add(expr);
+    syncExprEdits();
+  }
+
+  /** Drops the caches covering the expressions edited through this plan or its copies. */
+  private void syncExprEdits() {
+    final int numEdits = exprEdits.size();
+    while (numSeenExprEdits < numEdits) invalidateHashOf(exprEdits.get(numSeenExprEdits++));
+  }
+
+  /** Records that the cached hash or properties of `nodeId` cover `expr`. */
+  void dependOn(Expression expr, int nodeId) {
+    hashedExprs.put(expr, nodeAt(nodeId));
+  }
+
+  /** Drops the caches covering `expr`, i.e., those of its node and the ancestors. */
+  void invalidateHashOf(Expression expr) {
+    final PlanNode owner = hashedExprs.get(expr);
+    if (owner == null) return;
+    final int nodeId = nodeIdOf(owner);
+    if (nodeId != NO_SUCH_NODE && isPresent(nodeId) && nodeAt(nodeId) == owner)
+      invalidateHashOf(nodeId);
+  }
+
+  /** Drops the cached hashes and properties of `nodeId` and its ancestors. */
+  void invalidateHashOf(int nodeId) {
+    while (nodeId != NO_SUCH_NODE && isPresent(nodeId)) {
+      if (nodeId < hashes.length) hashes[nodeId] = null;
+      if (nodeId < props.length) props[nodeId] = null;
+      nodeId = parentOf(nodeId);
+    }
+  }
+
+  /** Drops the cached properties of `nodeId` and its ancestors, for a change the hash ignores. */
+  void invalidatePropsOf(int nodeId) {
+    while (nodeId != NO_SUCH_NODE && isPresent(nodeId)) {
+      if (nodeId < props.length) props[nodeId] = null;
+      nodeId = parentOf(nodeId);
+    }
+  }
+
+  @Override
+  public void setChild(int parentNodeId, int childIndex, int childNodeId) {
+    super.setChild(parentNodeId, childIndex, childNodeId);
+    invalidateHashOf(parentNodeId);
+  }
+
+  @Override
+  public void detachNode(int nodeId) {
+    if (isPresent(nodeId)) invalidateHashOf(parentOf(nodeId));
+    super.detachNode(nodeId);
+  }
+
+  @Override
+  public void myDetachNode(int nodeId) {
+    if (isPresent(nodeId)) invalidateHashOf(parentOf(nodeId));
+    super.myDetachNode(nodeId);
+  }
+
   @Override
   public void deleteNode(int nodeId) {
-    nodeReg.forWrite().remove(nodeId);
     valuesReg.deleteNode(nodeId);
     infoCache.deleteNode(nodeId);
     super.deleteNode(nodeId);
+    if (nodeId < hashes.length) hashes[nodeId] = null;
+    if (nodeId < props.length) props[nodeId] = null;
   }
 
   public void myDeleteNode(int nodeId) {
-    nodeReg.forWrite().remove(nodeId);
     valuesReg.deleteNode(nodeId);
     infoCache.deleteNode(nodeId);
     super.deleteNode(nodeId, parentOf(nodeId));
+    if (nodeId < hashes.length) hashes[nodeId] = null;
+    if (nodeId < props.length) props[nodeId] = null;
   }
 
   public int parent(int nodeId) {
@@ -112,13 +254,22 @@ class PlanContextImpl extends UniformTreeContextBase<PlanKind> implements PlanCo
 
   @Override
   protected void relocate(int from, int to) {
-    nodeReg.forWrite().put(nodeAt(from), to);
+    nodeReg.put(nodeAt(from), to);
     valuesReg.deleteNode(to);
     valuesReg.relocateNode(from, to);
     infoCache.deleteNode(to);
     infoCache.renumberNode(from, to);
     if (root == from) root = to;
     super.relocate(from, to);
+    // neither the hash nor the properties of a sub-tree depend on the node ids
+    if (from < hashes.length) {
+      if (to < hashes.length) hashes[to] = hashes[from];
+      hashes[from] = null;
+    }
+    if (from < props.length) {
+      if (to < props.length) props[to] = props[from];
+      props[from] = null;
+    }
   }
 
   @Override
@@ -166,14 +317,6 @@ class PlanContextImpl extends UniformTreeContextBase<PlanKind> implements PlanCo
     return PlanSupport.stringifyTree(this, root());
   }
 
-  private static <K> TObjectIntMap<K> mkIdentityMap() {
-    return new TObjectIntCustomHashMap<>(IdentityHashingStrategy.INSTANCE);
-  }
-
-  private static <K> TObjectIntMap<K> copyIdentityMap(TObjectIntMap<K> other) {
-    return new TObjectIntCustomHashMap<>(IdentityHashingStrategy.INSTANCE, other);
-  }
-
   private static PlanNd[] copyNodesArray(PlanNd[] nds) {
     final PlanNd[] copiedNodes = new PlanNd[nds.length];
     for (int i = 0; i < nds.length; i++) {
@@ -182,6 +325,31 @@ class PlanContextImpl extends UniformTreeContextBase<PlanKind> implements PlanCo
     return copiedNodes;
   }
 
+  // The expressions edited by setTemplateOf, in order. Each plan of the family keeps its own cursor.
+  private static class ExprEdits {
+    private Expression[] exprs = new Expression[4];
+    private int size;
+
+    private synchronized void add(Expression expr) {
+      if (size == exprs.length) exprs = Arrays.copyOf(exprs, size << 1);
+      exprs[size++] = expr;
+    }
+
+    private synchronized int size() {
+      return size;
+    }
+
+    private synchronized Expression get(int i) {
+      return exprs[i];
+    }
+  }
+
+  // Memoized inference results at a node. They depend only on the sub-tree of the node.
+  private static class DerivedProps {
+    private final Map<Set<Value>, Boolean> uniqueCores = new HashMap<>(4);
+    private final Map<Value, Boolean> notNulls = new HashMap<>(4);
+  }
+
   private static class PlanNd extends Nd<PlanKind> {
     private PlanNode planNode;
 
@@ -0,0 +1,46 @@
+package wtune.sql.plan;
+
+/**
+ * 128-bit structural hash of a plan (sub-)tree.
+ *
+ * <p>Two trees that stringify identically (in compact form) have the same hash.
+ */
+public final class PlanHash {
+  private final long hi, lo;
+
+  PlanHash(long hi, long lo) {
+    this.hi = hi;
+    this.lo = lo;
+  }
+
+  long hi() {
+    return hi;
+  }
+
+  long lo() {
+    return lo;
+  }
+
+  /** Returns a new hash that additionally distinguishes `salt`. */
+  public PlanHash mix(long salt) {
+    return new PlanHash(PlanHasher.fmix(hi ^ salt * PlanHasher.P0), PlanHasher.fmix(lo ^ salt * PlanHasher.P1));
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof PlanHash)) return false;
+    final PlanHash that = (PlanHash) o;
+    return hi == that.hi && lo == that.lo;
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (lo ^ (lo >>> 32));
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%016x%016x", hi, lo);
+  }
+}
@@ -0,0 +1,179 @@
+package wtune.sql.plan;
+
+import java.util.List;
+
+import static wtune.common.tree.TreeContext.NO_SUCH_NODE;
+import static wtune.sql.plan.PlanSupport.joinKindOf;
+
+/**
+ * Computes {@link PlanHash}. Covers the same information as the compact form of {@link
+ * PlanStringifier}, so that it can replace the string as a structural key.
+ */
+class PlanHasher {
+  static final long P0 = 0x9E3779B97F4A7C15L, P1 = 0xC2B2AE3D27D4EB4FL;
+  private static final long SEED0 = 0x243F6A8885A308D3L, SEED1 = 0x13198A2E03707344L;
+
+  private final PlanContext plan;
+  private int nodeId;
+  private long h0 = SEED0, h1 = SEED1;
+
+  private PlanHasher(PlanContext plan) {
+    this.plan = plan;
+  }
+
+  /** Hashes the node `id`, combined with the (cached) hashes of its children. */
+  static PlanHash hashTree(PlanContext ctx, int id) {
+    final PlanHasher hasher = new PlanHasher(ctx);
+    hasher.nodeId = id;
+    hasher.putNode(id);
+    final int[] children = ctx.childrenOf(id);
+    for (int i = 0; i < children.length; ++i) {
+      if (children[i] == NO_SUCH_NODE) continue;
+      final PlanHash child = ctx.hashOf(children[i]);
+      hasher.put(i);
+      hasher.put(child.hi());
+      hasher.put(child.lo());
+    }
+    return hasher.finish();
+  }
+
+  static PlanHash hashString(String str) {
+    final PlanHasher hasher = new PlanHasher(null);
+    hasher.put(str);
+    return hasher.finish();
+  }
+
+  static long fmix(long k) {
+    k ^= k >>> 33;
+    k *= 0xFF51AFD7ED558CCDL;
+    k ^= k >>> 33;
+    k *= 0xC4CEB9FE1A85EC53L;
+    k ^= k >>> 33;
+    return k;
+  }
+
+  private PlanHash finish() {
+    return new PlanHash(fmix(h0 ^ h1), fmix(h1 + h0 * P0));
+  }
+
+  private void put(long x) {
+    h0 = Long.rotateLeft(h0 ^ x, 31) * P0;
+    h1 = Long.rotateLeft(h1 ^ Long.reverseBytes(x), 27) * P1;
+  }
+
+  private void put(boolean b) {
+    put(b ? 1 : 2);
+  }
+
+  private void put(String str) {
+    if (str == null) {
+      put(-1L);
+      return;
+    }
+    final int length = str.length();
+    put(length);
+    long word = 0;
+    for (int i = 0; i < length; ++i) {
+      word = (word << 16) | str.charAt(i);
+      if ((i & 3) == 3) {
+        put(word);
+        word = 0;
+      }
+    }
+    if ((length & 3) != 0) put(word);
+  }
+
+  private void put(Expression expr) {
+    if (expr == null) {
+      put(-1L);
+      return;
+    }
+    // a change of the expression, or of its refs, must drop the hash
+    if (plan instanceof PlanContextImpl) ((PlanContextImpl) plan).dependOn(expr, nodeId);
+    final PlanHash fp =
+        expr instanceof ExpressionImpl ? ((ExpressionImpl) expr).fingerprint() : hashString(expr.toString());
+    put(fp.hi());
+    put(fp.lo());
+  }
+
+  private void putExprs(List<Expression> exprs) {
+    put(exprs.size());
+    for (Expression expr : exprs) put(expr);
+  }
+
+  private void putRefs(Expression expr) {
+    final Values refs = plan.valuesReg().valueRefsOf(expr);
+    if (refs == null) {
+      put(-1L);
+      return;
+    }
+    put(refs.size());
+    for (Value ref : refs) {
+      put(ref.qualification());
+      put(ref.name());
+    }
+  }
+
+  private void putNode(int nodeId) {
+    final PlanKind kind = plan.kindOf(nodeId);
+    put(kind.ordinal());
+    switch (kind) {
+      case SetOp -> {
+        final SetOpNode setOp = (SetOpNode) plan.nodeAt(nodeId);
+        put(setOp.opKind().ordinal());
+        put(setOp.deduplicated());
+      }
+      case Limit -> {
+        final LimitNode limit = (LimitNode) plan.nodeAt(nodeId);
+        put(limit.limit());
+        put(limit.offset());
+      }
+      case Sort -> {
+        final SortNode sort = (SortNode) plan.nodeAt(nodeId);
+        putExprs(sort.sortSpec());
+        for (Expression expr : sort.sortSpec()) putRefs(expr);
+      }
+      case Agg -> {
+        final AggNode agg = (AggNode) plan.nodeAt(nodeId);
+        putExprs(agg.attrExprs());
+        for (String name : agg.attrNames()) put(name);
+        putExprs(agg.groupByExprs());
+        put(agg.havingExpr());
+        for (Expression expr : agg.attrExprs()) putRefs(expr);
+        for (Expression expr : agg.groupByExprs()) putRefs(expr);
+        if (agg.havingExpr() != null) putRefs(agg.havingExpr());
+        put(agg.qualification());
+      }
+      case Proj -> {
+        final ProjNode proj = (ProjNode) plan.nodeAt(nodeId);
+        put(PlanSupport.isDedup(plan, nodeId));
+        putExprs(proj.attrExprs());
+        for (String name : proj.attrNames()) put(name);
+        for (Expression expr : proj.attrExprs()) putRefs(expr);
+        put(proj.qualification());
+      }
+      case Filter -> {
+        final Expression predicate = ((SimpleFilterNode) plan.nodeAt(nodeId)).predicate();
+        put(predicate);
+        putRefs(predicate);
+      }
+      case InSub -> {
+        final Expression expr = ((InSubNode) plan.nodeAt(nodeId)).expr();
+        put(expr);
+        putRefs(expr);
+      }
+      case Exists -> {}
+      case Join -> {
+        final Expression joinCond = ((JoinNode) plan.nodeAt(nodeId)).joinCond();
+        put(joinKindOf(plan, nodeId).ordinal());
+        put(joinCond);
+        if (joinCond != null) putRefs(joinCond);
+      }
+      case Input -> {
+        final InputNode input = (InputNode) plan.nodeAt(nodeId);
+        put(input.table().name());
+        put(input.qualification());
+      }
+    }
+  }
+}
@@ -217,11 +217,12 @@ public abstract class PlanSupport {
   }
 
   public static boolean isUniqueCoreAt(PlanContext ctx, Collection<Value> attrs, int surfaceId) {
-    return new UniquenessInference(ctx).isUniqueCoreAt(attrs, surfaceId);
+    if (attrs instanceof Set<Value> set) return ctx.isUniqueCoreAt(set, surfaceId);
+    else return ctx.isUniqueCoreAt(new HashSet<>(attrs), surfaceId);
   }
 
   public static boolean isNotNullAt(PlanContext ctx, Value attrs, int surfaceId) {
-    return new NotNullInference(ctx).isNotNullAt(attrs, surfaceId);
+    return ctx.isNotNullAt(attrs, surfaceId);
   }
 
   // Must be invoked after `resolvePlan`
@@ -256,6 +257,8 @@ public abstract class PlanSupport {
 
       qualified.setQualification(newQualification);
       for (Value value : ctx.valuesOf(node)) value.setQualification(newQualification);
+      // qualifications are mutated in place, and only the node and its ancestors refer to them
+      if (ctx instanceof PlanContextImpl) ((PlanContextImpl) ctx).invalidateHashOf(ctx.nodeIdOf(node));
     }
 
     return ctx;
@@ -38,7 +38,7 @@ class UniquenessInference {
       case Proj -> onProj(toCheck, surfaceId);
       case Filter -> onFilter(toCheck, surfaceId);
       case Agg -> onAgg(toCheck, surfaceId);
-      default -> isUniqueCoreAt(toCheck, ctx.childOf(surfaceId, 0));
+      default -> ctx.isUniqueCoreAt(toCheck, ctx.childOf(surfaceId, 0));
     };
   }
 
@@ -73,8 +73,8 @@ class UniquenessInference {
       }
     }
 
-    return isUniqueCoreAt(rhsToCheck, ctx.childOf(surfaceId, 1))
-        && isUniqueCoreAt(lhsToCheck, ctx.childOf(surfaceId, 0));
+    return ctx.isUniqueCoreAt(rhsToCheck, ctx.childOf(surfaceId, 1))
+        && ctx.isUniqueCoreAt(lhsToCheck, ctx.childOf(surfaceId, 0));
   }
 
   private boolean onProj(Set<Value> toCheck, int surfaceId) {
@@ -87,7 +87,7 @@ class UniquenessInference {
       final Value ref = PlanSupport.deRef(ctx, value);
       if (ref != null) refAttrs.add(ref);
     }
-    return isUniqueCoreAt(refAttrs, ctx.childOf(surfaceId, 0));
+    return ctx.isUniqueCoreAt(refAttrs, ctx.childOf(surfaceId, 0));
   }
 
   private boolean onFilter(Set<Value> toCheck, int surfaceId) {
@@ -102,7 +102,7 @@ class UniquenessInference {
       assert refs.size() == 1;
       toCheck.add(refs.get(0));
     }
-    return isUniqueCoreAt(toCheck, ctx.childOf(surfaceId, 0));
+    return ctx.isUniqueCoreAt(toCheck, ctx.childOf(surfaceId, 0));
   }
 
   private boolean onAgg(Set<Value> toCheck, int surfaceId) {
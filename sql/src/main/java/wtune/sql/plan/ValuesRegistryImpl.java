@@ -1,16 +1,14 @@
 package wtune.sql.plan;
 
-import gnu.trove.map.TIntObjectMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
-import gnu.trove.procedure.TIntObjectProcedure;
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.tuple.Pair;
-import wtune.common.utils.COW;
+import wtune.common.utils.PersistentIdentityMap;
+import wtune.common.utils.PersistentIntMap;
 import wtune.sql.schema.Column;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
 
 import static java.util.Collections.emptyList;
 import static wtune.common.tree.TreeContext.NO_SUCH_NODE;
@@ -19,35 +17,43 @@ import static wtune.common.utils.ListSupport.join;
 
 class ValuesRegistryImpl implements ValuesRegistry {
   private int nextId;
-  private final PlanContext ctx;
-  private final COW<TIntObjectMap<Values>> nodeValues;
-  private final COW<Map<Value, Column>> valueColumns;
-  private final COW<Map<Value, Expression>> valueExprs;
-  private final COW<Map<Expression, Values>> exprRefs;
-
-  protected ValuesRegistryImpl(PlanContext ctx) {
+  private final PlanContextImpl ctx;
+  private final PersistentIntMap<Values> nodeValues;
+  // reverse index of `nodeValues`, the nodes whose values contain the key, in order of binding
+  private final PersistentIdentityMap<Value, int[]> valueNodes;
+  private final PersistentIdentityMap<Value, Column> valueColumns;
+  private final PersistentIdentityMap<Value, Expression> valueExprs;
+  // number of values in `valueExprs` that map to the key, to know when its refs become unused
+  private final PersistentIdentityMap<Expression, Integer> exprCounts;
+  private final PersistentIdentityMap<Expression, Values> exprRefs;
+
+  protected ValuesRegistryImpl(PlanContextImpl ctx) {
     this.nextId = 0;
     this.ctx = ctx;
-    this.nodeValues = new COW<>(new TIntObjectHashMap<>(ctx.maxNodeId()), null);
-    this.valueColumns = new COW<>(new IdentityHashMap<>(), null);
-    this.valueExprs = new COW<>(new IdentityHashMap<>(), null);
-    this.exprRefs = new COW<>(new IdentityHashMap<>(), null);
+    this.nodeValues = new PersistentIntMap<>();
+    this.valueNodes = new PersistentIdentityMap<>();
+    this.valueColumns = new PersistentIdentityMap<>();
+    this.valueExprs = new PersistentIdentityMap<>();
+    this.exprCounts = new PersistentIdentityMap<>();
+    this.exprRefs = new PersistentIdentityMap<>();
   }
 
-  protected ValuesRegistryImpl(ValuesRegistryImpl toCopy, PlanContext newPlan) {
+  protected ValuesRegistryImpl(ValuesRegistryImpl toCopy, PlanContextImpl newPlan) {
     this.ctx = newPlan;
     this.nextId = toCopy.nextId;
-    this.nodeValues = new COW<>(toCopy.nodeValues.forRead(), TIntObjectHashMap::new);
-    this.valueColumns = new COW<>(toCopy.valueColumns.forRead(), IdentityHashMap::new);
-    this.valueExprs = new COW<>(toCopy.valueExprs.forRead(), IdentityHashMap::new);
-    this.exprRefs = new COW<>(toCopy.exprRefs.forRead(), IdentityHashMap::new);
+    this.nodeValues = toCopy.nodeValues.copy();
+    this.valueNodes = toCopy.valueNodes.copy();
+    this.valueColumns = toCopy.valueColumns.copy();
+    this.valueExprs = toCopy.valueExprs.copy();
+    this.exprCounts = toCopy.exprCounts.copy();
+    this.exprRefs = toCopy.exprRefs.copy();
   }
 
   @Override
   public Values valuesOf(int nodeId) {
     if (nodeId == NO_SUCH_NODE) return Values.mk(emptyList());
 
-    Values values = nodeValues.forRead().get(nodeId);
+    Values values = nodeValues.get(nodeId);
     if (values != null) return values;
 
     List<Expression> exprs = null;
@@ -79,27 +85,27 @@ class ValuesRegistryImpl implements ValuesRegistry {
         throw new PlanException("unknown plan node kind: " + ctx.kindOf(nodeId));
     }
 
-    bindValues(nodeId, values);
-    if (exprs != null) zip(values, exprs, this::bindExpr);
+    // lazily derived, not a change
+    putValues(nodeId, values);
+    if (exprs != null) zip(values, exprs, this::putExpr);
 
     return values;
   }
 
   @Override
   public int initiatorOf(Value value) {
-    final InitiatorFinder finder = new InitiatorFinder(value);
-    nodeValues.forRead().forEachEntry(finder);
-    return finder.initiator;
+    final int[] nodes = valueNodes.get(value);
+    return nodes == null ? NO_SUCH_NODE : nodes[0];
   }
 
   @Override
   public Column columnOf(Value value) {
-    return valueColumns.forRead().get(value);
+    return valueColumns.get(value);
   }
 
   @Override
   public Expression exprOf(Value value) {
-    return valueExprs.forRead().get(value);
+    return valueExprs.get(value);
   }
 
   @Override
@@ -107,12 +113,13 @@ class ValuesRegistryImpl implements ValuesRegistry {
     final Values vs;
     if (valueRefs instanceof Values) vs = (Values) valueRefs;
     else vs = Values.mk(valueRefs);
-    exprRefs.forWrite().put(expr, vs);
+    exprRefs.put(expr, vs);
+    ctx.invalidateHashOf(expr);
   }
 
   @Override
   public Values valueRefsOf(Expression expr) {
-    return exprRefs.forRead().get(expr);
+    return exprRefs.get(expr);
   }
 
   @Override
@@ -120,36 +127,95 @@ class ValuesRegistryImpl implements ValuesRegistry {
     final Values values;
     if (rawValues instanceof Values) values = (Values) rawValues;
     else values = Values.mk(rawValues);
-    nodeValues.forWrite().put(nodeId, values);
+    putValues(nodeId, values);
+    ctx.invalidatePropsOf(nodeId);
   }
 
   @Override
   public void bindExpr(Value value, Expression expr) {
-    valueExprs.forWrite().put(value, expr);
+    putExpr(value, expr);
+    ctx.invalidatePropsOf(initiatorOf(value));
   }
 
   void relocateNode(int from, int to) {
-    final Values values = nodeValues.forRead().get(from);
+    final Values values = nodeValues.get(from);
     if (values != null) {
-      nodeValues.forWrite().put(to, values);
-      nodeValues.forWrite().remove(from);
+      removeValues(from);
+      putValues(to, values);
     }
   }
 
   void deleteNode(int id) {
-    if (nodeValues.forRead().containsKey(id)) {
-      final Values values = nodeValues.forWrite().remove(id);
+    if (nodeValues.containsKey(id)) {
+      final Values values = removeValues(id);
       if (values != null && !values.isEmpty() && initiatorOf(values.get(0)) == NO_SUCH_NODE)
         for (Value value : values) deleteValue(value);
     }
   }
 
+  private void putValues(int nodeId, Values values) {
+    final Values oldValues = nodeValues.put(nodeId, values);
+    if (oldValues != null) unindex(nodeId, oldValues);
+    for (Value value : values) {
+      final int[] nodes = valueNodes.get(value);
+      if (nodes == null) valueNodes.put(value, new int[] {nodeId});
+      else if (!ArrayUtils.contains(nodes, nodeId)) {
+        final int[] newNodes = Arrays.copyOf(nodes, nodes.length + 1);
+        newNodes[nodes.length] = nodeId;
+        valueNodes.put(value, newNodes);
+      }
+    }
+  }
+
+  private Values removeValues(int nodeId) {
+    final Values values = nodeValues.remove(nodeId);
+    if (values != null) unindex(nodeId, values);
+    return values;
+  }
+
+  // The arrays are shared by copies of the registry, so they are replaced rather than modified.
+  private void unindex(int nodeId, Values values) {
+    for (Value value : values) {
+      final int[] nodes = valueNodes.get(value);
+      if (nodes == null) continue;
+      int i = nodes.length - 1;
+      while (i >= 0 && nodes[i] != nodeId) --i;
+      if (i < 0) continue;
+      if (nodes.length == 1) {
+        valueNodes.remove(value);
+      } else {
+        final int[] newNodes = new int[nodes.length - 1];
+        System.arraycopy(nodes, 0, newNodes, 0, i);
+        System.arraycopy(nodes, i + 1, newNodes, i, nodes.length - i - 1);
+        valueNodes.put(value, newNodes);
+      }
+    }
+  }
+
   private void deleteValue(Value value) {
-    if (valueColumns.forRead().containsKey(value)) valueColumns.forWrite().remove(value);
-    if (valueExprs.forRead().containsKey(value)) {
-      final Expression expr = valueExprs.forWrite().remove(value);
-      if (!valueExprs.forRead().containsValue(expr)) exprRefs.forWrite().remove(expr);
+    valueColumns.remove(value);
+    final Expression expr = valueExprs.remove(value);
+    if (expr != null && release(expr)) exprRefs.remove(expr);
+  }
+
+  private void putExpr(Value value, Expression expr) {
+    final Expression oldExpr = valueExprs.put(value, expr);
+    if (oldExpr == expr) return;
+    if (oldExpr != null) release(oldExpr);
+    if (expr == null) return;
+    final Integer count = exprCounts.get(expr);
+    exprCounts.put(expr, count == null ? 1 : count + 1);
+  }
+
+  // Returns whether no value maps to `expr` any more.
+  private boolean release(Expression expr) {
+    final Integer count = exprCounts.get(expr);
+    if (count == null || count <= 1) {
+      exprCounts.remove(expr);
+      return true;
     }
+    exprCounts.put(expr, count - 1);
+    return false;
   }
 
   private Values mkValuesOfInput(InputNode input) {
@@ -161,7 +227,7 @@ class ValuesRegistryImpl implements ValuesRegistry {
       int id = ++nextId;
       final Value value = new ValueImpl(id, qualification, column.name());
       values.add(value);
-      valueColumns.forWrite().put(value, column);
+      valueColumns.put(value, column);
     }
 
     return values;
@@ -179,22 +245,4 @@ class ValuesRegistryImpl implements ValuesRegistry {
 
     return Pair.of(values, exporter.attrExprs());
   }
-
-  private static class InitiatorFinder implements TIntObjectProcedure<Values> {
-    private int initiator = NO_SUCH_NODE;
-    private final Value target;
-
-    private InitiatorFinder(Value target) {
-      this.target = target;
-    }
-
-    @Override
-    public boolean execute(int a, Values b) {
-      if (b.contains(target)) {
-        initiator = a;
-        return false;
-      }
-      return true;
-    }
-  }
 }
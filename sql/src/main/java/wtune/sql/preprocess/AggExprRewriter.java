@@ -35,6 +35,11 @@ public class AggExprRewriter extends SqlNodePreprocess {
   // where e1...eK are expressions
   //
   // COUNT(*) is ignored
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    return features.hasAggregate();
+  }
+
   @Override
   public SqlNode preprocess(SqlNode node) {
     if (node instanceof SqlSelect select) {
@@ -17,6 +17,11 @@ public class AggFilterRewriter extends SqlNodePreprocess {
     return new SqlCase(SqlParserPos.ZERO, null, whenList, thenList, elseExpr);
   }
 
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    return features.has(SqlKind.FILTER);
+  }
+
   @Override
   public SqlNode preprocess(SqlNode node) {
     if (node instanceof SqlSelect select) {
@@ -8,6 +8,11 @@ import wtune.sql.Rewriter;
 
 public class AggGroupRewriter extends RecursiveRewriter {
 
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    return features.hasGroupBy();
+  }
+
   @Override
   public SqlNode handleNode(SqlNode node) {
     // SqlNode -> SQL
@@ -23,6 +23,11 @@ public class AggSelectGroupRewriter extends RecursiveRewriter {
     setAllowsMultipleApplications(true);
   }
 
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    return features.hasGroupBy();
+  }
+
   @Override
   public boolean prepare(SqlNode node) {
     tableAliasIndex = 0;
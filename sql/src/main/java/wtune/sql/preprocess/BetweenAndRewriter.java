@@ -2,11 +2,17 @@ package wtune.sql.preprocess;
 
 import org.apache.calcite.sql.SqlBasicCall;
 import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.sql.parser.SqlParserPos;
 
 public class BetweenAndRewriter extends RecursiveRewriter {
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    return features.has(SqlKind.BETWEEN);
+  }
+
   @Override
   public SqlNode handleNode(SqlNode node) {
     if (node instanceof SqlBasicCall call
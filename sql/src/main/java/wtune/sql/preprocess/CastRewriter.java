@@ -1,5 +1,6 @@
 package wtune.sql.preprocess;
 
+import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.tools.FrameworkConfig;
 import org.apache.calcite.tools.Frameworks;
@@ -7,6 +8,11 @@ import org.apache.calcite.tools.Planner;
 
 public class CastRewriter extends SqlNodePreprocess {
 
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    return features.has(SqlKind.CAST);
+  }
+
   @Override
   public SqlNode preprocess(SqlNode node) {
     // SqlNode -> SQL
@@ -14,7 +20,7 @@ public class CastRewriter extends SqlNodePreprocess {
     if (!sql.contains("CAST")) return node;
     // handle
     try {
-      newSql = CastHandler.handle(sql);
+      newSql = CastHandler.handle(sql, context().schema());
     } catch (Exception e) {
       return node;
     }
@@ -116,6 +116,11 @@ public class CompoundAggRewriter extends SqlNodePreprocess {
     return false;
   }
 
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    return features.hasAggregate();
+  }
+
   @Override
   public SqlNode preprocess(SqlNode node) {
     if (node instanceof SqlSelect select) {
@@ -35,6 +35,11 @@ public class CountArgsRewriter extends SqlNodePreprocess {
     return false;
   }
 
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    return features.has(SqlKind.COUNT);
+  }
+
   @Override
   public SqlNode preprocess(SqlNode node) {
     if (node instanceof SqlSelect select) {
@@ -13,6 +13,11 @@ public class DateConstantRewriter extends RecursiveRewriter {
 
   private static final LocalDate DATE_ORIGIN = LocalDate.of(1993, 1, 1);
 
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    return features.hasDateLiteral();
+  }
+
   @Override
   public SqlNode handleNode(SqlNode node) {
     if (node instanceof SqlDateLiteral dateNode) {
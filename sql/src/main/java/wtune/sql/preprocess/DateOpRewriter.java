@@ -52,6 +52,12 @@ public class DateOpRewriter extends RecursiveRewriter {
     return SqlLiteral.createDate(new DateString(newDateStr), SqlParserPos.ZERO);
   }
 
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    return features.hasFunction("DATE_SUB")
+        || (features.has(SqlKind.PLUS) && features.hasDateLiteral());
+  }
+
   @Override
   public SqlNode handleNode(SqlNode node) {
     if (node instanceof SqlBasicCall call) {
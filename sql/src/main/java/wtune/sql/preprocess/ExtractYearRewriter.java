@@ -9,6 +9,11 @@ import java.util.Collections;
 
 public class ExtractYearRewriter extends RecursiveRewriter {
 
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    return features.has(SqlKind.EXTRACT);
+  }
+
   @Override
   public SqlNode handleNode(SqlNode node) {
     if (node instanceof SqlBasicCall call
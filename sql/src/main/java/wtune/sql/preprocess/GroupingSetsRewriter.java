@@ -164,6 +164,11 @@ public class GroupingSetsRewriter extends SqlNodePreprocess {
             && (groupType(group) != GROUP_GROUPING_SETS || emptyGroupingSetHasAgg(select));
   }
 
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    return features.hasGroupBy();
+  }
+
   @Override
   public SqlNode preprocess(SqlNode node) {
     if (node instanceof SqlSelect select) {
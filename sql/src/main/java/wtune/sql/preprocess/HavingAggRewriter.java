@@ -39,6 +39,11 @@ public class HavingAggRewriter extends RecursiveRewriter {
             || s.contains("SUM");
   }
 
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    return features.hasHaving();
+  }
+
   @Override
   public boolean prepare(SqlNode node) {
     tableAliasIndex = 0;
@@ -9,6 +9,11 @@ import org.apache.calcite.sql.parser.SqlParserPos;
 /** NOT (A = B) -> A <> B */
 public class NEQRewriter extends RecursiveRewriter {
 
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    return features.has(SqlKind.NOT) && features.has(SqlKind.EQUALS);
+  }
+
   @Override
   public SqlNode handleNode(SqlNode node) {
     if (node instanceof SqlBasicCall call
@@ -47,6 +47,12 @@ public class NotNullInferer extends SqlNodePreprocess {
     return where;
   }
 
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    // NOT LIKE is also of kind LIKE
+    return features.has(SqlKind.LIKE);
+  }
+
   @Override
   public SqlNode preprocess(SqlNode node) {
     if (node instanceof SqlSelect select) {
@@ -69,6 +69,15 @@ public class NumericComparisonRewriter extends RecursiveRewriter {
     return node;
   }
 
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    // only literals have a scale
+    return features.hasNumericLiteral()
+        && (features.has(SqlKind.EQUALS)
+        || features.has(SqlKind.LESS_THAN) || features.has(SqlKind.LESS_THAN_OR_EQUAL)
+        || features.has(SqlKind.GREATER_THAN) || features.has(SqlKind.GREATER_THAN_OR_EQUAL));
+  }
+
   @Override
   public SqlNode handleNode(SqlNode node) {
     if (node instanceof SqlBasicCall call) {
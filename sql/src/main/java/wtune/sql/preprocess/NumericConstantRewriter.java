@@ -7,6 +7,11 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 
 public class NumericConstantRewriter extends RecursiveRewriter {
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    return features.hasNumericLiteral();
+  }
+
   @Override
   public SqlNode handleNode(SqlNode node) {
     if (node instanceof SqlBasicCall call) {
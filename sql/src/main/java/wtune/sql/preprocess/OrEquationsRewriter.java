@@ -85,6 +85,11 @@ public class OrEquationsRewriter extends RecursiveRewriter {
     return list;
   }
 
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    return features.has(SqlKind.OR);
+  }
+
   @Override
   public SqlNode handleNode(SqlNode node) {
     if (node instanceof SqlBasicCall call
@@ -27,6 +27,13 @@ public class PredExprRewriter extends SqlNodePreprocess {
   private static final SqlLiteral LITERAL_NULL = SqlLiteral.createNull(SqlParserPos.ZERO);
   private int type;
 
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    return features.has(SqlKind.IN) || features.has(SqlKind.NOT_IN)
+        || features.has(SqlKind.SOME) || features.has(SqlKind.ALL)
+        || features.has(SqlKind.EXISTS);
+  }
+
   @Override
   public SqlNode preprocess(SqlNode node) {
     type = TYPE_OTHER;
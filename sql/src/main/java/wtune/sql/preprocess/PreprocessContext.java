@@ -0,0 +1,30 @@
+package wtune.sql.preprocess;
+
+import wtune.sql.schema.Schema;
+
+/**
+ * State of preprocessing a query, passed from the string handlers (e.g. SemiAntiJoinHandler)
+ * to the SqlNode rewriters. It replaces the static fields that used to carry the schema and the
+ * semi/anti-join flag, so queries of different schemas can be preprocessed concurrently.
+ */
+public class PreprocessContext {
+  private final Schema schema;
+  private boolean semiAntiJoinEnabled;
+
+  public PreprocessContext(Schema schema) {
+    this.schema = schema;
+  }
+
+  public Schema schema() {
+    return schema;
+  }
+
+  /** Whether SEMI_JOIN()/ANTI_JOIN() in join conditions are marks left by SemiAntiJoinHandler. */
+  public boolean isSemiAntiJoinEnabled() {
+    return semiAntiJoinEnabled;
+  }
+
+  void setSemiAntiJoinEnabled(boolean semiAntiJoinEnabled) {
+    this.semiAntiJoinEnabled = semiAntiJoinEnabled;
+  }
+}
@@ -1,6 +1,7 @@
 package wtune.sql.preprocess;
 
 import org.apache.calcite.sql.SqlBasicCall;
+import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.SqlNodeList;
 import org.apache.calcite.sql.SqlSelect;
@@ -23,6 +24,11 @@ public class RollupRewriter extends SqlNodePreprocess {
     return false;
   }
 
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    return features.has(SqlKind.ROLLUP);
+  }
+
   @Override
   public SqlNode preprocess(SqlNode node) {
     if (node instanceof SqlSelect select) {
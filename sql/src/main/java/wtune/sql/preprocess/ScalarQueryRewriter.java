@@ -146,6 +146,12 @@ public class ScalarQueryRewriter extends SqlNodePreprocess {
     return needsHandlePredicate(where, true) || needsHandleJoinConditions(from);
   }
 
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    // a scalar query is a nested SELECT
+    return features.count(SqlKind.SELECT) > 1;
+  }
+
   @Override
   public SqlNode preprocess(SqlNode node) {
     sqlToRewrite = node.toString().toLowerCase();
@@ -164,8 +170,9 @@ public class ScalarQueryRewriter extends SqlNodePreprocess {
       if (!Objects.equals(value = needsHandlePredicateNoFrom(where, true), "")) {
         replaceAndAppendNoFrom(where, true, value);
       } else if (needsHandle(where, from) || needsHandle(having, from)) {
-        Map<SqlSelect, String> aliasMap = new HashMap<>();
-        Map<SqlSelect, String> groupAliasMap = new HashMap<>();
+        // SqlSelect hashes by identity, keep the joins in the order of the subqueries
+        Map<SqlSelect, String> aliasMap = new LinkedHashMap<>();
+        Map<SqlSelect, String> groupAliasMap = new LinkedHashMap<>();
         // update SELECT list before updating FROM tables
         handleSelectStar(select);
         // handle join conditions & WHERE/HAVING predicates
@@ -15,8 +15,6 @@ public class SemiAntiJoinHandler {
   //   it should choose the "left-most" condition
   //  regardless of precedence of ops
 
-  private static String sqlUpper = null;
-
   // the position of the " ON " corresponding to the join at <start>
   private static int findJoinCondition(String sql, int start) {
     int firstLeftParen = sql.indexOf("(", start);
@@ -41,6 +39,7 @@ public class SemiAntiJoinHandler {
   // joinType is semi/anti
   // not support recursive semi/anti joins (e.g. "semi join ( ... semi join ...)")
   private static String handleOfType(String sql, String joinType) {
+    String sqlUpper = sql.toUpperCase();
     StringBuilder sb = new StringBuilder();
     String patternStr = " " + joinType + " JOIN ";
     Pattern pattern = Pattern.compile(patternStr, Pattern.CASE_INSENSITIVE);
@@ -69,23 +68,22 @@ public class SemiAntiJoinHandler {
   }
 
   // sql should be upper case
-  private static boolean initRewriter(String sql) {
-    SemiAntiJoinRewriter.setEnabled(true);
+  private static boolean initRewriter(String sql, PreprocessContext context) {
+    context.setSemiAntiJoinEnabled(true);
     // prevent duplicate function names
     if (sql.contains("SEMI_JOIN()") || sql.contains("ANTI_JOIN()")) {
-      SemiAntiJoinRewriter.setEnabled(false);
+      context.setSemiAntiJoinEnabled(false);
       return false;
     }
     return true;
   }
 
-  public static String handle(String sql) {
-    sqlUpper = sql.toUpperCase();
+  public static String handle(String sql, PreprocessContext context) {
+    String sqlUpper = sql.toUpperCase();
     try {
-      if (!initRewriter(sqlUpper)) return sql;
+      if (!initRewriter(sqlUpper, context)) return sql;
       if (!needsHandle(sqlUpper)) return sql;
       sql = handleOfType(sql, "SEMI");
-      sqlUpper = sql.toUpperCase();
       return handleOfType(sql, "ANTI");
     } catch (Throwable e) {
       return sql;
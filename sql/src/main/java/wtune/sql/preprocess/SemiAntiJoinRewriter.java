@@ -16,12 +16,6 @@ import java.util.Collections;
 public class SemiAntiJoinRewriter extends RecursiveRewriter {
   // not support recursive semi/anti-join
 
-  private static boolean enabled = false;
-
-  public static void setEnabled(boolean enabled) {
-    SemiAntiJoinRewriter.enabled = enabled;
-  }
-
   public SemiAntiJoinRewriter() {
     setAllowsMultipleApplications(true);
   }
@@ -62,6 +56,11 @@ public class SemiAntiJoinRewriter extends RecursiveRewriter {
     return predicate;
   }
 
+  @Override
+  boolean isApplicable(SqlFeatures features) {
+    return features.hasFunction("SEMI_JOIN") || features.hasFunction("ANTI_JOIN");
+  }
+
   @Override
   public SqlNode handleNode(SqlNode node) {
     if (node instanceof SqlSelect select) {
@@ -117,7 +116,7 @@ public class SemiAntiJoinRewriter extends RecursiveRewriter {
 
   @Override
   protected boolean prepare(SqlNode node) {
-    return enabled;
+    return context().isSemiAntiJoinEnabled();
   }
 
 }
@@ -0,0 +1,106 @@
+package wtune.sql.preprocess;
+
+import org.apache.calcite.sql.*;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * What a SqlNode tree contains, collected in one walk:
+ * the kinds of nodes, the names of functions, literal types and clauses.
+ * Rewriters use it to skip the queries they cannot change.
+ * The fingerprint tells whether a rewriter has changed the tree.
+ */
+class SqlFeatures {
+  private static final int NUM_KINDS = SqlKind.values().length;
+
+  private final int[] kindCounts = new int[NUM_KINDS];
+  private final Set<String> functions = new HashSet<>(8);
+  private boolean hasAgg, hasNumeric, hasDate, hasGroupBy, hasHaving;
+  private int fingerprint = 1;
+
+  private SqlFeatures() {}
+
+  static SqlFeatures of(SqlNode node) {
+    final SqlFeatures features = new SqlFeatures();
+    features.collect(node);
+    return features;
+  }
+
+  boolean has(SqlKind kind) {
+    return kindCounts[kind.ordinal()] > 0;
+  }
+
+  int count(SqlKind kind) {
+    return kindCounts[kind.ordinal()];
+  }
+
+  /** Whether a function (including unresolved ones, e.g. DATE_SUB) of `name` is called. */
+  boolean hasFunction(String name) {
+    return functions.contains(name);
+  }
+
+  boolean hasAggregate() {
+    return hasAgg;
+  }
+
+  boolean hasNumericLiteral() {
+    return hasNumeric;
+  }
+
+  boolean hasDateLiteral() {
+    return hasDate;
+  }
+
+  boolean hasGroupBy() {
+    return hasGroupBy;
+  }
+
+  boolean hasHaving() {
+    return hasHaving;
+  }
+
+  int fingerprint() {
+    return fingerprint;
+  }
+
+  private void mix(int h) {
+    fingerprint = fingerprint * 31 + h;
+  }
+
+  private void collect(SqlNode node) {
+    if (node == null) {
+      mix(0);
+      return;
+    }
+
+    final SqlKind kind = node.getKind();
+    ++kindCounts[kind.ordinal()];
+    mix(kind.ordinal() + 1);
+
+    if (node instanceof SqlNodeList list) {
+      mix(list.size());
+      for (SqlNode child : list) collect(child);
+
+    } else if (node instanceof SqlCall call) {
+      final SqlOperator op = call.getOperator();
+      if (op instanceof SqlAggFunction) hasAgg = true;
+      if (op instanceof SqlFunction) functions.add(op.getName());
+      mix(op.getName().hashCode());
+      if (call instanceof SqlSelect select) {
+        if (select.getGroup() != null) hasGroupBy = true;
+        if (select.getHaving() != null) hasHaving = true;
+      }
+      for (SqlNode operand : call.getOperandList()) collect(operand);
+
+    } else if (node instanceof SqlLiteral literal) {
+      if (literal instanceof SqlNumericLiteral) hasNumeric = true;
+      else if (literal instanceof SqlDateLiteral) hasDate = true;
+      mix(Objects.hashCode(literal.getValue()));
+
+    } else if (node instanceof SqlIdentifier id) {
+      mix(id.names.hashCode());
+    }
+  }
+}
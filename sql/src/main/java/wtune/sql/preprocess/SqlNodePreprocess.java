@@ -6,10 +6,10 @@ import org.apache.calcite.sql.validate.SqlConformanceEnum;
 import org.apache.calcite.tools.FrameworkConfig;
 import org.apache.calcite.tools.Frameworks;
 import org.apache.calcite.tools.Planner;
-import wtune.sql.schema.Schema;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -20,10 +20,25 @@ import java.util.regex.Pattern;
  */
 public abstract class SqlNodePreprocess {
 
-  private static FrameworkConfig config;
+  private static final FrameworkConfig config;
 
-  private static List<SqlNodePreprocess> rewriters = null;
-  private static Schema schema;
+  private static final Pattern ROW_PATTERN =
+      Pattern.compile("ROW\\([A-Z0-9]+\\.[A-Z0-9]+(, [A-Z0-9]+\\.[A-Z0-9]+)*\\)");
+  private static final Pattern FETCH_NEXT_PATTERN = Pattern.compile("FETCH NEXT [0-9]+ ROWS ONLY");
+  private static final Pattern OFFSET_ROWS_PATTERN = Pattern.compile("OFFSET [0-9]+ ROWS");
+
+  // Some rewriters keep counters of fresh aliases, so each thread has its own instances.
+  private static final ThreadLocal<List<SqlNodePreprocess>> rewriters =
+      ThreadLocal.withInitial(SqlNodePreprocess::registerPreprocessors);
+  private static final List<String> rewriterNames =
+      registerPreprocessors().stream().map(it -> it.getClass().getSimpleName()).toList();
+  private static final AtomicLongArray numRuns = new AtomicLongArray(rewriterNames.size());
+  private static final AtomicLongArray numSkips = new AtomicLongArray(rewriterNames.size());
+  private static final AtomicLongArray numHits = new AtomicLongArray(rewriterNames.size());
+  private static volatile boolean skipEnabled =
+      !"false".equals(System.getProperty("wetune.preprocess.skip"));
+
+  private PreprocessContext context;
 
   // parser config
   static {
@@ -35,7 +50,8 @@ public abstract class SqlNodePreprocess {
   }
 
   /** HINT: Add new SqlNode preprocessors HERE. */
-  private static void registerPreprocessors() {
+  private static List<SqlNodePreprocess> registerPreprocessors() {
+    final List<SqlNodePreprocess> rewriters = new ArrayList<>(23);
     rewriters.add(new NEQRewriter());
     rewriters.add(new OrEquationsRewriter());
     rewriters.add(new NotNullInferer());
@@ -59,41 +75,47 @@ public abstract class SqlNodePreprocess {
     rewriters.add(new CompoundAggRewriter());
     rewriters.add(new AggExprRewriter());
     rewriters.add(new ConstantRowRewriter());
+    return rewriters;
   }
 
-  public static void setSchema(Schema s) {
-    schema = s;
+  /**
+   * Set whether a rewriter is skipped when {@link #isApplicable(SqlFeatures)} says
+   * it cannot change the query. It is <code>true</code> by default,
+   * and can be turned off by <code>-Dwetune.preprocess.skip=false</code>.
+   */
+  public static void setSkipEnabled(boolean enabled) {
+    skipEnabled = enabled;
   }
 
-  public static Schema getSchema() {
-    return schema;
+  /** Per-rewriter numbers of runs, skips and hits (runs that changed the query). */
+  public static String stringifyStats() {
+    final StringBuilder builder = new StringBuilder("rewriter\truns\tskips\thits");
+    for (int i = 0; i < rewriterNames.size(); i++) {
+      builder.append('\n').append(rewriterNames.get(i))
+          .append('\t').append(numRuns.get(i))
+          .append('\t').append(numSkips.get(i))
+          .append('\t').append(numHits.get(i));
+    }
+    return builder.toString();
   }
 
   /**
    * Apply all the registered preprocessors one by one
    * to preprocess the given query.
    * @param sql the SQL query to be preprocessed
+   * @param context the state of preprocessing the query
    * @return the query after preprocessed by all registered preprocessors
    */
-  public static String preprocessAll(String sql) {
+  public static String preprocessAll(String sql, PreprocessContext context) {
     Planner planner = Frameworks.getPlanner(config);
     try {
       // string -> sqlnode
       sql = sql.replace('\"', '\'').replace(';', ' ');
       SqlNode node = planner.parse(sql);
-      String strOld = node.toString();
       // preprocess sqlnode
-      node = preprocessAll(node); // noexcept
+      node = preprocessAll(node, context); // noexcept
       // sqlnode -> string
-      String strNew = node.toString();
-//      System.out.println( "\n" +sql);
-//      System.out.println(strOld + "\n" + strNew);
-//      if (strNew.equals(strOld)) {
-//        // unchanged
-//        return postProcess(sql);
-//      }
-      strNew = postProcess(strNew);
-      return strNew;
+      return postProcess(node.toString());
     } catch (Exception e) {
       // stay unchanged upon exception
       return sql;
@@ -112,72 +134,88 @@ public abstract class SqlNodePreprocess {
   // "ROW(a, b) IN ..." (invalid) -> "(a, b) IN ..." (valid)
   // remove ROW directly
   private static String removeRow(String str) {
-    Pattern pattern = Pattern.compile("ROW\\([A-Z0-9]+\\.[A-Z0-9]+(, [A-Z0-9]+\\.[A-Z0-9]+)*\\)");
-    Matcher matcher = pattern.matcher(str);
+    Matcher matcher = ROW_PATTERN.matcher(str);
     while (matcher.find()) {
       int pos = matcher.start();
       str = str.substring(0, pos) + str.substring(pos + 3);
-      pattern = Pattern.compile("ROW\\([A-Z0-9]+\\.[A-Z0-9]+(, [A-Z0-9]+\\.[A-Z0-9]+)*\\)");
-      matcher = pattern.matcher(str);
+      matcher = ROW_PATTERN.matcher(str);
     }
     return str;
   }
 
   // "FETCH NEXT n ROWS ONLY" -> "LIMIT n"
   private static String turnFetchNextToLimit(String str) {
-    Pattern pattern = Pattern.compile("FETCH NEXT [0-9]+ ROWS ONLY");
-    Matcher matcher = pattern.matcher(str);
+    Matcher matcher = FETCH_NEXT_PATTERN.matcher(str);
     while (matcher.find()) {
       int start = matcher.start(), end = matcher.end();
       String num = str.substring(start + 11, end - 10);
       String limit = "LIMIT " + num;
       str = str.substring(0, start) + limit + str.substring(end);
-      pattern = Pattern.compile("FETCH NEXT [0-9]+ ROWS ONLY");
-      matcher = pattern.matcher(str);
+      matcher = FETCH_NEXT_PATTERN.matcher(str);
     }
     return str;
   }
 
   private static String removeROWSInOffset(String str) {
-    Pattern pattern = Pattern.compile("OFFSET [0-9]+ ROWS");
-    Matcher matcher = pattern.matcher(str);
+    Matcher matcher = OFFSET_ROWS_PATTERN.matcher(str);
     while (matcher.find()) {
       int start = matcher.start(), end = matcher.end();
       String num = str.substring(start + 11, end - 10);
       String limit = "OFFSET " + num;
       str = str.substring(0, start) + limit + str.substring(end);
-      pattern = Pattern.compile("OFFSET [0-9]+ ROWS");
-      matcher = pattern.matcher(str);
+      matcher = OFFSET_ROWS_PATTERN.matcher(str);
     }
     return str;
   }
 
-  private static synchronized void init() {
-    if (rewriters == null) {
-      rewriters = new ArrayList<>();
-      registerPreprocessors();
-    }
-  }
-
   /**
    * Call all the registered preprocessors one by one
    * to preprocess the given SqlNode.
+   * A preprocessor is skipped if it is not applicable to the current SqlNode.
    * @param node the SqlNode to be preprocessed
+   * @param context the state of preprocessing the query
    * @return the SqlNode after preprocessed by all registered preprocessors
    */
-  public static SqlNode preprocessAll(SqlNode node) {
-    init();
-    for (SqlNodePreprocess rewriter : rewriters) {
+  public static SqlNode preprocessAll(SqlNode node, PreprocessContext context) {
+    final List<SqlNodePreprocess> rewriters = SqlNodePreprocess.rewriters.get();
+    SqlFeatures features = SqlFeatures.of(node);
+    for (int i = 0; i < rewriters.size(); i++) {
+      final SqlNodePreprocess rewriter = rewriters.get(i);
+      if (skipEnabled && !rewriter.isApplicable(features)) {
+        numSkips.incrementAndGet(i);
+        continue;
+      }
+      numRuns.incrementAndGet(i);
+      rewriter.context = context;
       try {
         node = rewriter.preprocess(node);
       } catch (Exception e) {
         // keep the last result upon exception
         e.printStackTrace();
+      } finally {
+        rewriter.context = null;
       }
+      final SqlFeatures newFeatures = SqlFeatures.of(node);
+      if (newFeatures.fingerprint() != features.fingerprint()) numHits.incrementAndGet(i);
+      features = newFeatures;
     }
     return node;
   }
 
+  /**
+   * Whether this preprocessor may change a SqlNode with the given features.
+   * It must not return <code>false</code> unless preprocessing surely leaves the SqlNode unchanged.
+   * The default implementation always returns <code>true</code>.
+   */
+  boolean isApplicable(SqlFeatures features) {
+    return true;
+  }
+
+  /** The state of preprocessing the current query. It is only available during preprocessing. */
+  protected PreprocessContext context() {
+    return context;
+  }
+
   /**
    * A template method which should preprocess a given SqlNode.
    * @param node the SqlNode to be preprocessed
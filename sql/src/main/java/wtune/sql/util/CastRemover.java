@@ -16,6 +16,8 @@ import java.util.List;
 import static wtune.common.tree.TreeContext.NO_SUCH_NODE;
 
 public class CastRemover {
+  private boolean changed; // whether the template of the current expression is changed in place
+
   /** Remove useless CASTs of <code>plan</code> in place. */
   public static void removeUselessCast(PlanContext plan) {
     new CastRemover().removeUselessCast(plan, plan.root());
@@ -60,10 +62,11 @@ public class CastRemover {
   private void removeUselessCast(PlanContext plan, Expression expr) {
     if (expr == null) return;
     // it updates "template" of expr in place
+    changed = false;
     SqlNode node = expr.template();
     SqlNode node0 = removeUselessCast(plan, expr, node);
-    if (node != node0) {
-      expr.setTemplate(node0);
+    if (node != node0 || changed) {
+      plan.setTemplateOf(expr, node0);
     }
   }
 
@@ -73,8 +76,10 @@ public class CastRemover {
     SqlNode value = removeUselessCast(plan, expr, oldValue);
     // detach to prevent exception during setField check
     value.context().setParentOf(value.nodeId(), NO_SUCH_NODE);
-    if (value != oldValue)
+    if (value != oldValue) {
       node.setField(key, value);
+      changed = true;
+    }
   }
 
   private SqlNode removeUselessCast(PlanContext plan, Expression expr, SqlNode node) {
@@ -94,7 +99,11 @@ public class CastRemover {
     } else if (ExprKind.Aggregate.equals(kind)) {
       SqlNodes args = node.field(ExprFields.Aggregate_Args);
       if (args != null) {
-        args.set(0, removeUselessCast(plan, expr, args.get(0)));
+        final SqlNode arg = args.get(0), newArg = removeUselessCast(plan, expr, arg);
+        if (newArg != arg) {
+          args.set(0, newArg);
+          changed = true;
+        }
       }
       return node;
     } else if (ExprKind.Case.equals(kind)) {
@@ -0,0 +1,101 @@
+package wtune.sql.plan;
+
+import org.junit.jupiter.api.Test;
+import wtune.sql.ast.SqlNode;
+import wtune.sql.ast.constants.JoinKind;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static wtune.sql.TestHelper.parseSql;
+import static wtune.sql.plan.PlanSupport.stringifyTree;
+
+class PlanHashTest {
+  private static PlanContext mkPlan(String sql) {
+    final SqlNode ast = parseSql(sql);
+    final PlanContext plan = PlanSupport.assemblePlan(ast, ast.context().schema());
+    assertNotNull(plan);
+    return plan;
+  }
+
+  @Test
+  void testStructural() {
+    final String sql = "Select a.i From a Join b On a.i = b.x Where a.j > 10";
+    final PlanContext plan0 = mkPlan(sql), plan1 = mkPlan(sql);
+    assertEquals(plan0.hashOf(plan0.root()), plan1.hashOf(plan1.root()));
+
+    final PlanContext plan2 = mkPlan("Select a.i From a Join b On a.i = b.x Where a.j > 11");
+    assertNotEquals(plan0.hashOf(plan0.root()), plan2.hashOf(plan2.root()));
+    // the join sub-trees are the same
+    final int join0 = plan0.childOf(plan0.childOf(plan0.root(), 0), 0);
+    final int join2 = plan2.childOf(plan2.childOf(plan2.root(), 0), 0);
+    assertEquals(PlanKind.Join, plan0.kindOf(join0));
+    assertEquals(plan0.hashOf(join0), plan2.hashOf(join2));
+  }
+
+  @Test
+  void testInvalidation() {
+    final PlanContext plan = mkPlan("Select a.i From a Where a.j > 10");
+    final PlanContext copy = plan.copy();
+    final PlanHash before = plan.hashOf(plan.root());
+    assertEquals(before, copy.hashOf(copy.root()));
+
+    // remove the filter in the copy
+    final int proj = copy.root(), filter = copy.childOf(proj, 0), input = copy.childOf(filter, 0);
+    copy.detachNode(input);
+    copy.setChild(proj, 0, input);
+
+    final PlanContext expected = mkPlan("Select a.i From a");
+    assertEquals(stringifyTree(expected, expected.root(), true), stringifyTree(copy, copy.root(), true));
+    assertEquals(expected.hashOf(expected.root()), copy.hashOf(copy.root()));
+    assertEquals(before, plan.hashOf(plan.root()));
+  }
+
+  @Test
+  void testExprInvalidation() {
+    final PlanContext plan = mkPlan("Select a.i From a Where a.j > 10");
+    final PlanContext other = mkPlan("Select a.i From a Where a.j > 11");
+    final int filter = plan.childOf(plan.root(), 0), otherFilter = other.childOf(other.root(), 0);
+    final PlanHash input = plan.hashOf(plan.childOf(filter, 0));
+    assertNotEquals(other.hashOf(other.root()), plan.hashOf(plan.root()));
+
+    final Expression predicate = ((SimpleFilterNode) plan.nodeAt(filter)).predicate();
+    final Expression otherPredicate = ((SimpleFilterNode) other.nodeAt(otherFilter)).predicate();
+    plan.setTemplateOf(predicate, otherPredicate.template());
+    assertEquals(other.hashOf(other.root()), plan.hashOf(plan.root()));
+    // the hash below the changed node is kept
+    assertSame(input, plan.hashOf(plan.childOf(filter, 0)));
+  }
+
+  @Test
+  void testSharedExprInvalidation() {
+    final PlanContext plan = mkPlan("Select a.i From a Where a.j > 10");
+    final PlanContext other = mkPlan("Select a.i From a Where a.j > 11");
+    final PlanContext copy = plan.copy();
+    final PlanHash before = plan.hashOf(plan.root());
+    assertEquals(before, copy.hashOf(copy.root()));
+
+    // the copies share the predicate, edit it through one of them
+    final int filter = copy.childOf(copy.root(), 0), otherFilter = other.childOf(other.root(), 0);
+    final Expression predicate = ((SimpleFilterNode) copy.nodeAt(filter)).predicate();
+    assertSame(predicate, ((SimpleFilterNode) plan.nodeAt(filter)).predicate());
+    final Expression otherPredicate = ((SimpleFilterNode) other.nodeAt(otherFilter)).predicate();
+    copy.setTemplateOf(predicate, otherPredicate.template());
+
+    assertEquals(other.hashOf(other.root()), copy.hashOf(copy.root()));
+    assertEquals(other.hashOf(other.root()), plan.hashOf(plan.root()));
+    assertEquals(other.hashOf(other.root()), plan.copy().hashOf(plan.root()));
+  }
+
+  @Test
+  void testInfoInvalidation() {
+    final PlanContext plan = mkPlan("Select a.i From a Join b On a.i = b.x");
+    final PlanContext expected = mkPlan("Select a.i From a Left Join b On a.i = b.x");
+    final int join = plan.childOf(plan.root(), 0);
+    assertEquals(PlanKind.Join, plan.kindOf(join));
+    assertNotEquals(expected.hashOf(expected.root()), plan.hashOf(plan.root()));
+
+    final PlanContext copy = plan.copy();
+    copy.infoCache().putJoinKindOf(join, JoinKind.LEFT_JOIN);
+    assertEquals(expected.hashOf(expected.root()), copy.hashOf(copy.root()));
+    assertNotEquals(expected.hashOf(expected.root()), plan.hashOf(plan.root()));
+  }
+}
@@ -71,4 +71,23 @@ class UniquenessInferenceTest {
     assertTrue(inference0.isUniqueCoreAt(singletonList(values0.get(0)), aggNode));
     assertFalse(inference0.isUniqueCoreAt(singletonList(values0.get(1)), aggNode));
   }
+
+  @Test
+  void testCachedInvalidation() {
+    final String schemaDef = "Create Table t (i int primary key, j int); ";
+    final Schema schema = SchemaSupport.parseSchema(DbSupport.MySQL, schemaDef);
+
+    final String sql = "Select t.j From t";
+    final SqlNode ast = SqlSupport.parseSql(DbSupport.MySQL, sql);
+    final PlanContext plan = PlanSupport.assemblePlan(ast, schema);
+    final int projNode = plan.root();
+    final Values values = plan.valuesReg().valuesOf(projNode);
+    assertFalse(PlanSupport.isUniqueCoreAt(plan, values, projNode));
+    assertFalse(PlanSupport.isUniqueCoreAt(plan, values, projNode));
+
+    final PlanContext copy = plan.copy();
+    copy.infoCache().putDeduplicatedOf(projNode, true);
+    assertTrue(PlanSupport.isUniqueCoreAt(copy, values, projNode));
+    assertFalse(PlanSupport.isUniqueCoreAt(plan, values, projNode));
+  }
 }
@@ -0,0 +1,97 @@
+package wtune.sql.plan;
+
+import org.junit.jupiter.api.Test;
+import wtune.sql.ast.SqlNode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static wtune.common.tree.TreeContext.NO_SUCH_NODE;
+import static wtune.sql.TestHelper.parseSql;
+
+class ValuesRegistryTest {
+  private static PlanContext mkPlan(String sql) {
+    final SqlNode ast = parseSql(sql);
+    final PlanContext plan = PlanSupport.assemblePlan(ast, ast.context().schema());
+    assertNotNull(plan);
+    return plan;
+  }
+
+  @Test
+  void testInitiator() {
+    final PlanContext plan = mkPlan("Select a.i From a Where a.j > 10");
+    final int proj = plan.root(), filter = plan.childOf(proj, 0), input = plan.childOf(filter, 0);
+    final Value projValue = plan.valuesReg().valuesOf(proj).get(0);
+    final Value inputValue = plan.valuesReg().valuesOf(input).get(1);
+    assertEquals(proj, plan.valuesReg().initiatorOf(projValue));
+    assertEquals(input, plan.valuesReg().initiatorOf(inputValue));
+    assertEquals(input, plan.valuesReg().initiatorOf(plan.valuesReg().valuesOf(filter).get(1)));
+
+    // remove the filter in the copy, the nodes are renumbered by compaction
+    final PlanContext copy = plan.copy();
+    copy.detachNode(input);
+    copy.setChild(proj, 0, input);
+    copy.deleteNode(filter);
+    copy.compact();
+    final int newProj = copy.root(), newInput = copy.childOf(newProj, 0);
+    assertEquals(newProj, copy.valuesReg().initiatorOf(projValue));
+    assertEquals(newInput, copy.valuesReg().initiatorOf(inputValue));
+    assertEquals(proj, plan.valuesReg().initiatorOf(projValue));
+    assertEquals(input, plan.valuesReg().initiatorOf(inputValue));
+
+    final PlanContext copy2 = plan.copy();
+    copy2.detachNode(input);
+    copy2.deleteNode(input);
+    assertEquals(NO_SUCH_NODE, copy2.valuesReg().initiatorOf(inputValue));
+    assertEquals(input, plan.valuesReg().initiatorOf(inputValue));
+  }
+
+  @Test
+  void testCopyIsolation() {
+    final PlanContext plan = mkPlan("Select a.i From a Where a.j > 10");
+    final int proj = plan.root(), filter = plan.childOf(proj, 0), input = plan.childOf(filter, 0);
+    final Value projValue = plan.valuesReg().valuesOf(proj).get(0);
+    final Expression expr = plan.valuesReg().exprOf(projValue);
+    final Values inputValues = plan.valuesReg().valuesOf(input);
+
+    final PlanContext copy = plan.copy();
+    // changes to either side after the copy are not seen by the other
+    plan.valuesReg().bindValues(proj, inputValues);
+    plan.infoCache().putDeduplicatedOf(proj, true);
+    copy.valuesReg().bindExpr(projValue, copy.valuesReg().exprOf(inputValues.get(0)));
+    copy.infoCache().putDeduplicatedOf(proj, false);
+
+    assertEquals(input, copy.valuesReg().initiatorOf(inputValues.get(0)));
+    assertEquals(proj, copy.valuesReg().initiatorOf(projValue));
+    // the node that bound a value first stays its initiator
+    assertEquals(input, plan.valuesReg().initiatorOf(inputValues.get(0)));
+    assertEquals(NO_SUCH_NODE, plan.valuesReg().initiatorOf(projValue));
+    assertSame(expr, plan.valuesReg().exprOf(projValue));
+    assertEquals(Boolean.TRUE, plan.infoCache().getDeduplicatedOf(proj));
+    assertEquals(Boolean.FALSE, copy.infoCache().getDeduplicatedOf(proj));
+    assertEquals(proj, copy.nodeIdOf(copy.nodeAt(proj)));
+  }
+
+  @Test
+  void testSharedExprRefs() {
+    final PlanContext plan = mkPlan("Select b.x From (Select a.i As x From a) As b");
+    final int outer = plan.root(), inner = plan.childOf(outer, 0);
+    final Value outerValue = plan.valuesReg().valuesOf(outer).get(0);
+    final Value innerValue = plan.valuesReg().valuesOf(inner).get(0);
+    final Expression expr = plan.valuesReg().exprOf(innerValue);
+    assertNotNull(plan.valuesReg().valueRefsOf(expr));
+
+    final PlanContext copy = plan.copy();
+    copy.valuesReg().bindExpr(outerValue, expr);
+    copy.detachNode(inner);
+    copy.deleteNode(outer);
+    // still the expression of the inner value
+    assertSame(expr, copy.valuesReg().exprOf(innerValue));
+    assertNotNull(copy.valuesReg().valueRefsOf(expr));
+
+    copy.deleteNode(inner);
+    assertNull(copy.valuesReg().valueRefsOf(expr));
+    assertNotNull(plan.valuesReg().valueRefsOf(expr));
+  }
+}
@@ -0,0 +1,56 @@
+package wtune.sql.preprocess;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SqlNodePreprocessTest {
+  private static final List<String> SQLS =
+      List.of(
+          "SELECT a FROM t WHERE NOT (b = 1)",
+          "SELECT a FROM t WHERE b = 1 OR b = 2",
+          "SELECT a FROM t WHERE b BETWEEN 1 AND 10",
+          "SELECT a FROM t WHERE b > 1.5",
+          "SELECT a FROM t WHERE b NOT LIKE 'x%'",
+          "SELECT a, COUNT(b) FROM t GROUP BY a, c HAVING COUNT(b) > 1",
+          "SELECT a FROM t WHERE b = (SELECT MAX(b) FROM s)",
+          "SELECT SUM(a) + 1 FROM t",
+          "SELECT 1, 2",
+          "SELECT a FROM t WHERE b = 1.5");
+
+  private static String preprocess(String sql) {
+    return SqlNodePreprocess.preprocessAll(sql, new PreprocessContext(null));
+  }
+
+  // Rewriters are per-thread and keep counters of fresh aliases, a new thread starts afresh.
+  private static List<String> preprocessInNewThread() throws Exception {
+    final List<String> results = new ArrayList<>();
+    final Thread thread =
+        new Thread(() -> SQLS.stream().map(SqlNodePreprocessTest::preprocess).forEach(results::add));
+    thread.start();
+    thread.join();
+    return results;
+  }
+
+  @Test
+  void testSkipInapplicable() throws Exception {
+    SqlNodePreprocess.setSkipEnabled(false);
+    try {
+      final List<String> expected = preprocessInNewThread();
+      SqlNodePreprocess.setSkipEnabled(true);
+      assertEquals(expected, preprocessInNewThread());
+    } finally {
+      SqlNodePreprocess.setSkipEnabled(true);
+    }
+  }
+
+  @Test
+  void testRewrite() {
+    assertEquals("SELECT A FROM T WHERE B >= 1 AND B <= 10", preprocess(SQLS.get(2)));
+    assertEquals("SELECT A FROM T WHERE B * 10 > 15", preprocess(SQLS.get(3)));
+    assertEquals("SELECT A FROM T WHERE B * 10 = 15", preprocess(SQLS.get(9)));
+  }
+}
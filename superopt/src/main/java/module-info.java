@@ -11,6 +11,8 @@ module wtune.superopt {
   requires com.google.common;
   requires org.apache.commons.lang3;
   requires java.logging;
+  requires java.management;
+  requires jdk.management;
   requires wtune.common;
   requires wtune.sql;
   requires wtune.stmt;
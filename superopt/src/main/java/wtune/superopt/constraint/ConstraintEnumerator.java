@@ -1,8 +1,8 @@
 package wtune.superopt.constraint;
 
-import wtune.common.utils.PartialOrder;
 import wtune.superopt.fragment.*;
 import wtune.superopt.logic.LogicSupport;
+import wtune.superopt.logic.ProofCache;
 import wtune.superopt.substitution.Substitution;
 import wtune.superopt.uexpr.UExprTranslationResult;
 import wtune.superopt.uexpr.UExprSupport;
@@ -10,13 +10,14 @@ import wtune.superopt.uexpr.UExprSupport;
 import java.util.*;
 
 import static java.lang.System.currentTimeMillis;
-import static wtune.common.utils.IterableSupport.any;
+import static wtune.common.utils.ArraySupport.EMPTY_INT_ARRAY;
 import static wtune.common.utils.IterableSupport.zip;
 import static wtune.common.utils.ListSupport.map;
 import static wtune.superopt.constraint.Constraint.Kind.*;
 import static wtune.superopt.constraint.ConstraintSupport.*;
+import static wtune.superopt.logic.ProofCache.Prover.LIA_STAR;
+import static wtune.superopt.logic.ProofCache.Prover.SPES;
 import static wtune.superopt.uexpr.UExprSupport.translateToUExpr;
-import static wtune.common.utils.PartialOrder.*;
 
 class ConstraintEnumerator {
   /*
@@ -116,47 +117,123 @@ class ConstraintEnumerator {
   private final ConstraintsIndex I;
   private final long timeout;
   private final BitSet enabled;
-  private final List<Generalization> knownEqs, knownNeqs;
+  private final SubsumptionIndex<Generalization> knownEqs, knownNeqs;
+  // all the indexes, including the local ones of PartitionEnumerator, for the metrics
+  private final List<SubsumptionIndex<Generalization>> indexes = new ArrayList<>();
   private final EnumerationStage[] stages;
   private final int tweak;
+  private final int[] fixedAttrsSub;
 
   private SymbolNaming naming;
   private EnumerationMetrics metric;
 
   ConstraintEnumerator(ConstraintsIndex I, long timeout, int tweak) {
+    this(I, timeout, tweak, EMPTY_INT_ARRAY);
+  }
+
+  /**
+   * Creates an enumerator that only explores the AttrsSub choices starting with `fixedAttrsSub`.
+   *
+   * <p>`fixedAttrsSub[i]` is the index of the AttrsSub constraint chosen for the i-th source-side
+   * Attrs symbol that has more than one viable source. See {@link #forkAttrsSub}.
+   */
+  ConstraintEnumerator(ConstraintsIndex I, long timeout, int tweak, int[] fixedAttrsSub) {
     this.I = I;
     this.timeout = timeout < 0 ? Long.MAX_VALUE : timeout;
     this.enabled = new BitSet(I.size());
-    this.knownEqs = new LinkedList<>();
-    this.knownNeqs = new LinkedList<>();
+    this.knownEqs = new SubsumptionIndex<>(I.size());
+    this.knownNeqs = new SubsumptionIndex<>(I.size());
+    this.indexes.add(knownEqs);
+    this.indexes.add(knownNeqs);
     this.tweak = tweak;
+    this.fixedAttrsSub = fixedAttrsSub;
     this.stages = mkStages();
     currentSet(0, I.size() - 1, false);
   }
 
   List<Substitution> enumerate() {
     try (EnumerationMetrics metric = EnumerationMetrics.open()) {
-      try (var ignored = metric.elapsedEnum.timeIt()) {
-        this.metric = metric;
-        if (isVerbose()) {
-          System.out.println("source: " + I.sourceTemplate().stringify(naming));
-          System.out.println("target: " + I.targetTemplate().stringify(naming));
-          System.out.println("C*: size=" + I.size());
-          System.out.println("  " + I.toString(naming));
-          System.out.println();
-        }
+      return enumerate(metric);
+    }
+  }
 
-        stages[0].enumerate();
+  /** Enumerates with `metric` as the sink. Unlike {@link #enumerate()}, it is not published. */
+  List<Substitution> enumerate(EnumerationMetrics metric) {
+    try (var ignored = metric.elapsedEnum.timeIt()) {
+      this.metric = metric;
+      if (isVerbose()) {
+        System.out.println("source: " + I.sourceTemplate().stringify(naming));
+        System.out.println("target: " + I.targetTemplate().stringify(naming));
+        System.out.println("C*: size=" + I.size());
+        System.out.println("  " + I.toString(naming));
+        System.out.println();
+      }
 
-        metric.numTotalConstraintSets.set(I.size());
+      stages[0].enumerate();
 
-        return map(knownEqs, it -> I.mkRule(it.bits.get(0)));
+      metric.numTotalConstraintSets.set(I.size());
+      for (SubsumptionIndex<Generalization> index : indexes) {
+        metric.numCacheLookups.add(index.numLookups());
+        metric.numCacheProbes.add(index.numProbes());
       }
+
+      return map(knownEqs.items(), it -> I.mkRule(it.bits.get(0)));
     }
   }
 
   //// initialization ////
 
+  /**
+   * Splits the enumeration space of `I` by the choices of AttrsSub into at most `maxForks`
+   * disjoint parts. Each returned prefix can be passed to a separate enumerator.
+   *
+   * <p>Constraint sets under different AttrsSub choices are never comparable, so the union of the
+   * results of the forked enumerators equals the result of a single one.
+   */
+  static List<int[]> forkAttrsSub(ConstraintsIndex I, int maxForks) {
+    List<int[]> prefixes = Collections.singletonList(EMPTY_INT_ARRAY);
+    for (int[] choices : attrsSubChoices(I)) {
+      if (prefixes.size() * choices.length > maxForks) break;
+
+      final List<int[]> extended = new ArrayList<>(prefixes.size() * choices.length);
+      for (int[] prefix : prefixes)
+        for (int choice : choices) {
+          final int[] newPrefix = Arrays.copyOf(prefix, prefix.length + 1);
+          newPrefix[prefix.length] = choice;
+          extended.add(newPrefix);
+        }
+      prefixes = extended;
+    }
+    return prefixes;
+  }
+
+  private static List<int[]> attrsSubChoices(ConstraintsIndex I) {
+    final int begin = I.beginIndexOfKind(AttrsSub), end = I.endIndexOfKind(AttrsSub);
+    final List<Symbol> allAttrs = I.sourceSymbols().symbolsOf(Symbol.Kind.ATTRS);
+    final List<int[]> sourceChoices = new ArrayList<>(allAttrs.size());
+
+    for (Symbol attr : allAttrs) {
+      final Collection<Symbol> sources = I.viableSourcesOf(attr);
+      if (sources.size() <= 1) continue;
+
+      final int[] constraintIndices = new int[sources.size()];
+      int i = 0;
+      for (Symbol source : sources) constraintIndices[i++] = indexOfAttrsSub(I, begin, end, attr, source);
+      sourceChoices.add(constraintIndices);
+    }
+
+    return sourceChoices;
+  }
+
+  private static int indexOfAttrsSub(ConstraintsIndex I, int begin, int end, Symbol attrs, Symbol source) {
+    for (int i = begin; i < end; ++i) {
+      final Constraint attrsSub = I.get(i);
+      if (attrsSub.symbols()[0] == attrs && attrsSub.symbols()[1] == source) return i;
+    }
+    assert false;
+    return -1;
+  }
+
   private EnumerationStage[] mkStages() {
     final boolean disable0 = (tweak & ENUM_FLAG_DISABLE_BREAKER_0) == ENUM_FLAG_DISABLE_BREAKER_0;
     final boolean disable1 = (tweak & ENUM_FLAG_DISABLE_BREAKER_1) == ENUM_FLAG_DISABLE_BREAKER_1;
@@ -600,58 +677,30 @@ class ConstraintEnumerator {
 
   //// helper methods ////
 
-  private static PartialOrder compareBitset(BitSet bs0, BitSet bs1) {
-    assert bs0.size() == bs1.size();
-
-    PartialOrder cmp = SAME;
-    for (int i = 0, bound = bs0.size(); i < bound; ++i) {
-      final boolean b0 = bs0.get(i), b1 = bs1.get(i);
-      if (b0 && !b1)
-        if (cmp == LESS_THAN) return INCOMPARABLE;
-        else cmp = GREATER_THAN;
-      else if (!b0 && b1)
-        if (cmp == GREATER_THAN) return INCOMPARABLE;
-        else cmp = LESS_THAN;
-    }
-    return cmp;
-  }
-
-  private static PartialOrder compareVerificationResult(Generalization r0, Generalization r1) {
-    for (BitSet bit0 : r0.bits) {
-      for (BitSet bit1 : r1.bits) {
-        final PartialOrder cmp = compareBitset(bit0, bit1);
-        if (cmp != INCOMPARABLE) return cmp;
-      }
-    }
-    return INCOMPARABLE;
-  }
-
-  private boolean rememberEq(List<Generalization> knownEqs, Generalization eq) {
-    boolean relaxed = knownEqs.removeIf(it -> compareVerificationResult(it, eq).greaterOrSame());
-    knownEqs.add(eq);
+  private static boolean rememberEq(
+      SubsumptionIndex<Generalization> knownEqs, Generalization eq) {
+    // a weaker constraint set that implies EQ supersedes all the stronger ones
+    final boolean relaxed = knownEqs.removeSupersetsOf(eq.masks);
+    knownEqs.add(eq, eq.masks);
     return relaxed;
   }
 
-  private boolean rememberNeq(List<Generalization> knownNeqs, Generalization neq) {
-    boolean enhanced = knownNeqs.removeIf(it -> compareVerificationResult(it, neq).lessOrSame());
-    knownNeqs.add(neq);
+  private static boolean rememberNeq(
+      SubsumptionIndex<Generalization> knownNeqs, Generalization neq) {
+    // a stronger constraint set that implies NEQ supersedes all the weaker ones
+    final boolean enhanced = knownNeqs.removeSubsetsOf(neq.masks);
+    knownNeqs.add(neq, neq.masks);
     return enhanced;
   }
 
-  private static boolean isKnownEq(List<Generalization> knownEqs, Generalization toCheck) {
-    for (Generalization knownEq : knownEqs)
-      if (compareVerificationResult(toCheck, knownEq).greaterOrSame()) {
-        return true;
-      }
-    return false;
+  private static boolean isKnownEq(
+      SubsumptionIndex<Generalization> knownEqs, Generalization toCheck) {
+    return knownEqs.containsSubsetOf(toCheck.masks);
   }
 
-  private static boolean isKnownNeq(List<Generalization> knownNeqs, Generalization toCheck) {
-    for (Generalization knownNeq : knownNeqs)
-      if (compareVerificationResult(toCheck, knownNeq).lessOrSame()) {
-        return true;
-      }
-    return false;
+  private static boolean isKnownNeq(
+      SubsumptionIndex<Generalization> knownNeqs, Generalization toCheck) {
+    return knownNeqs.containsSupersetOf(toCheck.masks);
   }
 
   private Generalization generalize(BitSet bits) {
@@ -659,7 +708,10 @@ class ConstraintEnumerator {
     buffer.add((BitSet) bits.clone());
     generalize0(Symbol.Kind.ATTRS, buffer);
     generalize0(Symbol.Kind.PRED, buffer);
-    return new Generalization(buffer);
+
+    final SubsumptionIndex.Mask[] masks = new SubsumptionIndex.Mask[buffer.size()];
+    for (int i = 0; i < masks.length; ++i) masks[i] = knownEqs.mkMask(buffer.get(i));
+    return new Generalization(buffer, masks);
   }
 
   private void generalize0(Symbol.Kind kind, List<BitSet> buffer) {
@@ -832,32 +884,17 @@ class ConstraintEnumerator {
   // AttrsSub
   private class AttrsSourceEnumerator extends AbstractEnumerationStage {
     private final int begin, end;
-    private final List<Symbol> attrs;
     private final List<int[]> sourceChoices;
     private final int numOptionals;
 
     private AttrsSourceEnumerator() {
       this.begin = I.beginIndexOfKind(AttrsSub);
       this.end = I.endIndexOfKind(AttrsSub);
-
-      final List<Symbol> allAttrs = I.sourceSymbols().symbolsOf(Symbol.Kind.ATTRS);
-      this.attrs = new ArrayList<>(allAttrs.size());
-      this.sourceChoices = new ArrayList<>(allAttrs.size());
+      this.sourceChoices = attrsSubChoices(I);
 
       int numChoices = 0;
-      for (Symbol attr : allAttrs) {
-        final Collection<Symbol> sources = I.viableSourcesOf(attr);
-        numChoices += sources.size();
-        if (sources.size() == 1) continue;
-
-        assert sources.size() > 1;
-        final int[] constraintIndices = new int[sources.size()];
-        int i = 0;
-        for (Symbol source : sources) constraintIndices[i++] = indexOfAttrsSub(attr, source);
-
-        attrs.add(attr);
-        sourceChoices.add(constraintIndices);
-      }
+      for (Symbol attr : I.sourceSymbols().symbolsOf(Symbol.Kind.ATTRS))
+        numChoices += I.viableSourcesOf(attr).size();
 
       this.numOptionals = (end - begin) - numChoices;
     }
@@ -869,10 +906,19 @@ class ConstraintEnumerator {
     }
 
     private int enumerate0(int symIndex) {
-      if (symIndex >= attrs.size()) return enumerateOptional(0);
+      if (symIndex >= sourceChoices.size()) return enumerateOptional(0);
 
       final int[] sources = sourceChoices.get(symIndex);
       for (int source : sources) currentSet(source, false);
+
+      if (symIndex < fixedAttrsSub.length) {
+        final int source = fixedAttrsSub[symIndex];
+        currentSet(source, true);
+        final int answer = enumerate0(symIndex + 1);
+        currentSet(source, false);
+        return answer == TIMEOUT ? TIMEOUT : LogicSupport.EQ;
+      }
+
       for (int source : sources) {
         currentSet(source, true);
         final int answer = enumerate0(symIndex + 1);
@@ -897,15 +943,6 @@ class ConstraintEnumerator {
       return LogicSupport.EQ; // doesn't matter
     }
 
-    private int indexOfAttrsSub(Symbol attrs, Symbol source) {
-      for (int i = begin; i < end; ++i) {
-        final Constraint attrsSub = I.get(i);
-        if (attrsSub.symbols()[0] == attrs && attrsSub.symbols()[1] == source) return i;
-      }
-      assert false;
-      return -1;
-    }
-
     @Override
     public int numResponsibleConstraints() {
       return end - begin;
@@ -962,17 +999,19 @@ class ConstraintEnumerator {
     private final List<Symbol> syms;
     private final Partitioner partitioner;
     private final int beginIndex, endIndex;
-    private final List<Generalization> localKnownNeqs, localKnownEqs;
+    private final SubsumptionIndex<Generalization> localKnownNeqs, localKnownEqs;
     private final boolean dryRun;
 
     private PartitionEnumerator(Symbol.Kind kind, boolean dryRun) {
       this.kind = kind;
       this.syms = I.sourceSymbols().symbolsOf(kind);
-      this.partitioner = new Partitioner((byte) syms.size());
+      this.partitioner = new Partitioner(syms.size());
       this.beginIndex = I.beginIndexOfEq(kind);
       this.endIndex = I.endIndexOfEq(kind);
-      this.localKnownNeqs = new LinkedList<>();
-      this.localKnownEqs = new LinkedList<>();
+      this.localKnownNeqs = new SubsumptionIndex<>(I.size());
+      this.localKnownEqs = new SubsumptionIndex<>(I.size());
+      indexes.add(localKnownNeqs);
+      indexes.add(localKnownEqs);
       this.dryRun = dryRun;
     }
 
@@ -987,14 +1026,15 @@ class ConstraintEnumerator {
       boolean mayEq = false;
 
       do {
-        final byte[][] partitions = partitioner.partition();
-        setupConstraints(partitions);
+        setupConstraints();
 
         // Only AttrsEq may conflict.
         // Guarantee: if a set of AttrsEq (denoted by Eq_a) are not conflict under a set of TableEq
         // (denoted as Eq_t), then under any stronger Eq_t' than Eq_t, Eq_a won't conflict.
-        if (isAttrsEqInfeasible()) {
+        final int infeasiblePrefix = infeasiblePrefixOfAttrsEq();
+        if (infeasiblePrefix > 0) {
           resetConstraints();
+          partitioner.skip(infeasiblePrefix);
           continue;
         }
 
@@ -1018,13 +1058,12 @@ class ConstraintEnumerator {
       return mayEq ? LogicSupport.EQ : alwaysNeq ? LogicSupport.NEQ : LogicSupport.UNKNOWN;
     }
 
-    private void setupConstraints(byte[][] partitions) {
-      for (byte[] partition : partitions) {
-        for (int i = 0, bound = partition.length; i < bound - 1; ++i) {
-          for (int j = i + 1; j < bound; ++j) {
-            final int index = I.indexOfEq(syms.get(partition[i]), syms.get(partition[j]));
-            currentSet(index, true);
-          }
+    private void setupConstraints() {
+      for (int j = 1, bound = syms.size(); j < bound; ++j) {
+        final int block = partitioner.blockOf(j);
+        for (int i = 0; i < j; ++i) {
+          if (partitioner.blockOf(i) != block) continue;
+          currentSet(I.indexOfEq(syms.get(i), syms.get(j)), true);
         }
       }
     }
@@ -1033,15 +1072,31 @@ class ConstraintEnumerator {
       currentSet(beginIndex, endIndex, false);
     }
 
-    private boolean isAttrsEqInfeasible() {
-      if (kind != Symbol.Kind.ATTRS) return false;
-      for (int i = beginIndex, bound = endIndex; i < bound; ++i) {
-        if (!currentIsEnabled(i)) continue;
+    // Returns the length of the shortest prefix of symbols whose blocks already make the current
+    // partition infeasible, or 0 if the partition is feasible. A conflicting AttrsEq depends on
+    // the blocks of its two symbols and, if they come from attrs, of their sources.
+    private int infeasiblePrefixOfAttrsEq() {
+      if (kind != Symbol.Kind.ATTRS) return 0;
+      int prefix = Integer.MAX_VALUE;
+      for (int j = 1, bound = syms.size(); j < bound && j < prefix; ++j) {
+        final int block = partitioner.blockOf(j);
+        for (int i = 0; i < j; ++i) {
+          if (partitioner.blockOf(i) != block) continue;
 
-        final int forced = checkForced(i);
-        if ((forced & MUST_DISABLE) != 0) return true;
+          final int index = I.indexOfEq(syms.get(i), syms.get(j));
+          if ((checkForced(index) & MUST_DISABLE) == 0) continue;
+
+          final Symbol attrs0 = syms.get(i), attrs1 = syms.get(j);
+          final int last = Math.max(j, Math.max(indexOfSource(attrs0), indexOfSource(attrs1)));
+          prefix = Math.min(prefix, last + 1);
+        }
       }
-      return false;
+      return prefix == Integer.MAX_VALUE ? 0 : prefix;
+    }
+
+    private int indexOfSource(Symbol attrs) {
+      final Symbol source = currentSourceOf(attrs);
+      return source.kind() == kind ? syms.indexOf(source) : -1;
     }
 
     @Override
@@ -1316,7 +1371,7 @@ class ConstraintEnumerator {
         metric.numUnknown.increment();
         metric.elapsedUnknown.add(elapsed);
 
-        if (any(knownEqs, it -> compareVerificationResult(it, generalization).greaterOrSame())) {
+        if (knownEqs.containsSupersetOf(generalization.masks)) {
           metric.numUnknown0.increment();
         } else {
           metric.numUnknown1.increment();
@@ -1348,10 +1403,12 @@ class ConstraintEnumerator {
 //        final int answer = LogicSupport.proveEq(uExprs);
 //        assert answer != LogicSupport.FAST_REJECTED; // fast rejection should be checked early.
 //          return answer;
-          return LogicSupport.proveEqByLIAStar(rule);
+          return ProofCache.prove(
+              LIA_STAR, rule::canonicalStringify, () -> LogicSupport.proveEqByLIAStar(rule));
         } else {
           //return LogicSupport.proveEqByLIAStar2(rule);
-          return LogicSupport.proveEqBySpes(rule);
+          return ProofCache.prove(
+              SPES, rule::canonicalStringify, () -> LogicSupport.proveEqBySpes(rule));
         }
       } catch (Exception e) {
         return -1;
@@ -1366,9 +1423,11 @@ class ConstraintEnumerator {
 
   private static class Generalization {
     private final List<BitSet> bits;
+    private final SubsumptionIndex.Mask[] masks;
 
-    private Generalization(List<BitSet> bits) {
+    private Generalization(List<BitSet> bits, SubsumptionIndex.Mask[] masks) {
       this.bits = bits;
+      this.masks = masks;
     }
   }
 }
@@ -8,7 +8,10 @@ import wtune.superopt.substitution.Substitution;
 import wtune.superopt.util.Complexity;
 import wtune.superopt.fragment.Symbol;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static java.util.Collections.emptyList;
 
@@ -72,6 +75,51 @@ public interface ConstraintSupport {
     return rules;
   }
 
+  /**
+   * Same as {@link #enumConstraints(Fragment, Fragment, long, int, SymbolNaming)}, except that the
+   * enumeration of each direction is split into at most `maxForks` parts by AttrsSub choices.
+   * Inside a ForkJoinPool the parts are forked, so that idle workers can steal them.
+   */
+  static List<Substitution> enumConstraintsForked(
+      Fragment f0, Fragment f1, long timeout, int tweaks, int maxForks) {
+    final boolean useSpes = (tweaks & ENUM_FLAG_USE_SPES) == ENUM_FLAG_USE_SPES;
+    if (useSpes && f0.symbolCount(Symbol.Kind.TABLE) != f1.symbolCount(Symbol.Kind.TABLE))
+      return emptyList(); // heuristic for SPES
+
+    int bias = pickSource(f0, f1);
+    if ((tweaks & ENUM_FLAG_SINGLE_DIRECTION) != 0) bias = bias & 1;
+    if (bias == 0) return useSpes ? emptyList() : null;
+
+    final List<ConstraintsIndex> indexes = new ArrayList<>(2);
+    if ((bias & 1) != 0) indexes.add(new ConstraintsIndex(f0, f1));
+    if ((bias & 2) != 0) indexes.add(new ConstraintsIndex(f1, f0));
+
+    final List<ForkedEnumeration> tasks = new ArrayList<>();
+    for (ConstraintsIndex I : indexes) {
+      // The parts of one direction share its time budget, as a single enumerator would.
+      final AtomicLong deadline = new AtomicLong();
+      for (int[] fixedAttrsSub : ConstraintEnumerator.forkAttrsSub(I, maxForks))
+        tasks.add(new ForkedEnumeration(I, timeout, deadline, tweaks, fixedAttrsSub));
+    }
+
+    if (tasks.size() > 1 && ForkJoinTask.inForkJoinPool()) ForkJoinTask.invokeAll(tasks);
+    else for (ForkedEnumeration task : tasks) task.invoke();
+
+    final List<Substitution> rules = new ArrayList<>();
+    for (ForkedEnumeration task : tasks) rules.addAll(task.join());
+
+    // The metrics of the parts are summed up, except for those counted once per direction.
+    final EnumerationMetrics metric = new EnumerationMetrics();
+    for (ForkedEnumeration task : tasks) metric.accumulate(task.metric());
+    metric.numEnumeratorInvocations.set(indexes.size());
+    int numTotalConstraintSets = 0;
+    for (ConstraintsIndex I : indexes) numTotalConstraintSets += I.size();
+    metric.numTotalConstraintSets.set(numTotalConstraintSets);
+    EnumerationMetrics.publish(metric);
+
+    return rules;
+  }
+
   static List<Substitution> enumConstraintsSPES(Fragment f0, Fragment f1, long timeout) {
     return enumConstraints2(f0, f1, timeout, ENUM_FLAG_USE_SPES, null);
   }
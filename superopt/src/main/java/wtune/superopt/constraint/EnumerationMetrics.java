@@ -14,6 +14,8 @@ public class EnumerationMetrics implements Metrics<EnumerationMetrics>, AutoClos
   public final IntMetric numProverInvocations = new IntMetric("#Prover");
   public final IntMetric numCacheHitEq = new IntMetric("#CacheEq");
   public final IntMetric numCacheHitNeq = new IntMetric("#CacheNeq");
+  public final LongMetric numCacheLookups = new LongMetric("#CacheLookup");
+  public final LongMetric numCacheProbes = new LongMetric("#CacheProbe");
   public final IntMetric numEq = new IntMetric("#Eq");
   public final IntMetric numNeq = new IntMetric("#Neq");
   public final IntMetric numUnknown = new IntMetric("#Unknown");
@@ -26,7 +28,7 @@ public class EnumerationMetrics implements Metrics<EnumerationMetrics>, AutoClos
   public final LongMetric elapsedNeq = new LongMetric("Neq(ms)");
   public final LongMetric elapsedUnknown = new LongMetric("Unknown(ms)");
 
-  private final List<Metric> metrics =
+  private final List<Metric<?, ?>> metrics =
       List.of(
           numEnumeratorInvocations,
           numTotalConstraintSets,
@@ -34,6 +36,8 @@ public class EnumerationMetrics implements Metrics<EnumerationMetrics>, AutoClos
           numProverInvocations,
           numCacheHitEq,
           numCacheHitNeq,
+          numCacheLookups,
+          numCacheProbes,
           numEq,
           numNeq,
           numUnknown,
@@ -54,12 +58,19 @@ public class EnumerationMetrics implements Metrics<EnumerationMetrics>, AutoClos
     return EnumerationMetricsContext.instance().local(false);
   }
 
+  /** Adds `other`, which is collected apart from the thread-local metrics, to the global ones. */
+  static void publish(EnumerationMetrics other) {
+    try (EnumerationMetrics local = open()) {
+      local.assign(other);
+    }
+  }
+
   public void close() {
     EnumerationMetricsContext.instance().updateGlobal();
   }
 
   @Override
-  public List<Metric> metrics() {
+  public List<Metric<?, ?>> metrics() {
     return metrics;
   }
 
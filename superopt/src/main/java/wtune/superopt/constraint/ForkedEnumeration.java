@@ -0,0 +1,53 @@
+package wtune.superopt.constraint;
+
+import wtune.superopt.substitution.Substitution;
+
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.System.currentTimeMillis;
+
+/** A part of the enumeration of a template pair. See {@link ConstraintEnumerator#forkAttrsSub}. */
+class ForkedEnumeration extends RecursiveTask<List<Substitution>> {
+  private static final long serialVersionUID = 1L;
+
+  private final ConstraintsIndex I;
+  private final long timeout;
+  private final AtomicLong deadline;
+  private final int tweaks;
+  private final int[] fixedAttrsSub;
+  private final EnumerationMetrics metric;
+
+  /**
+   * `deadline` is shared by all parts of one direction of the pair. It is set to `timeout` after
+   * the first of them starts, so that the direction gets the time a single enumerator would.
+   */
+  ForkedEnumeration(
+      ConstraintsIndex I, long timeout, AtomicLong deadline, int tweaks, int[] fixedAttrsSub) {
+    this.I = I;
+    this.timeout = timeout;
+    this.deadline = deadline;
+    this.tweaks = tweaks;
+    this.fixedAttrsSub = fixedAttrsSub;
+    this.metric = new EnumerationMetrics();
+  }
+
+  /** The metrics of this part, which are not published by itself. */
+  EnumerationMetrics metric() {
+    return metric;
+  }
+
+  @Override
+  protected List<Substitution> compute() {
+    // The enumerator is created here, such that it gets what is left of the direction's time.
+    final long remaining;
+    if (timeout < 0) remaining = -1;
+    else {
+      final long now = currentTimeMillis();
+      deadline.compareAndSet(0, now + timeout);
+      remaining = Math.max(deadline.get() - now, 0);
+    }
+    return new ConstraintEnumerator(I, remaining, tweaks, fixedAttrsSub).enumerate(metric);
+  }
+}
@@ -1,86 +1,72 @@
 package wtune.superopt.constraint;
 
-import java.util.Arrays;
-
+/**
+ * Enumerates the partitions of the set {0, ..., cardinality - 1}.
+ *
+ * <p>A partition is kept as a restricted growth string: `blockOf(i)` is the block of element i,
+ * where blocks are numbered by their smallest element, so `blockOf(0) == 0` and `blockOf(i)` is at
+ * most one more than the blocks of all elements before i. The enumeration starts from the finest
+ * partition (all singletons) and ends with the coarsest one. The blocks of the later elements vary
+ * fastest, each from a new block down to block 0. Thus, all partitions that agree on the blocks of
+ * a prefix of elements are enumerated consecutively, and {@link #skip(int)} jumps over them.
+ *
+ * <p>Nothing is allocated after construction.
+ */
 class Partitioner {
   private final int cardinality;
-  private final byte[][][] partitions;
-  private int index;
+  private final int[] blocks; // blocks[i]: the block of element i
+  private final int[] numBlocks; // numBlocks[i]: the number of blocks among element 0..i
 
-  public Partitioner(byte cardinality) {
+  Partitioner(int cardinality) {
     this.cardinality = cardinality;
-    this.partitions = partitionsOf(cardinality);
+    this.blocks = new int[cardinality];
+    this.numBlocks = new int[cardinality];
+    reset();
   }
 
   public void reset() {
-    index = 0;
-  }
-
-  public byte[][] partition() {
-    return partitions[index];
-  }
-
-  public boolean forward() {
-    if (index >= partitions.length - 1) return false;
-    ++index;
-    return true;
+    fillSingletons(0);
   }
 
   public int cardinality() {
     return cardinality;
   }
 
-  public int numPartitions() {
-    return partitions.length;
+  public int blockOf(int element) {
+    return blocks[element];
   }
 
-  private static final int[] NUM_PARTITIONS = {
-    1, 1, 2, 5, 15, 52, 203, 877, 4140, 21147, 115975, 678570, 4213597
-  };
-
-  private static final byte[][][][] LOOKUP = new byte[13][][][];
-
-  static {
-    LOOKUP[0] = new byte[1][0][0];
-    for (byte i = 0; i < 12; i++) partitionsOf(i);
+  public int numBlocks() {
+    return cardinality == 0 ? 0 : numBlocks[cardinality - 1];
   }
 
-  private static byte[][][] partitionsOf(byte cardinality) {
-    final byte[][][] existing = LOOKUP[cardinality];
-    if (existing != null) return existing;
-
-    final byte[][][] base = partitionsOf((byte) (cardinality - 1));
-    final byte[][][] partitions = LOOKUP[cardinality] = new byte[NUM_PARTITIONS[cardinality]][][];
-
-    final byte element = (byte) (cardinality - 1);
-
-    int idx = 0;
-    for (byte[][] basePartition : base)
-      //      for (int i = 0; i <= basePartition.length; ++i)
-      for (int i = basePartition.length; i >= 0; i--)
-        partitions[idx++] = addElementTo(basePartition, element, i);
-
-    assert idx == NUM_PARTITIONS[cardinality];
-
-    return partitions;
+  /** Moves to the next partition. Returns false if the current one is the last. */
+  public boolean forward() {
+    for (int i = cardinality - 1; i > 0; --i) {
+      if (blocks[i] == 0) continue;
+      --blocks[i]; // an existing block now
+      numBlocks[i] = numBlocks[i - 1];
+      fillSingletons(i + 1);
+      return true;
+    }
+    return false;
   }
 
-  private static byte[][] addElementTo(byte[][] target, byte element, int idx) {
-    final int len = target.length;
-    final int index = Math.min(idx, len);
-    final byte[][] ret = Arrays.copyOf(target, index >= len ? len + 1 : len);
-
-    ret[index] = addElementTo(ret[index], element);
-    return ret;
+  /**
+   * Moves to the last partition that puts the first `prefixLength` elements into the same blocks
+   * as the current one, so that the next {@link #forward()} leaves all of them out.
+   */
+  public void skip(int prefixLength) {
+    for (int i = Math.max(prefixLength, 1); i < cardinality; ++i) {
+      blocks[i] = 0;
+      numBlocks[i] = numBlocks[i - 1];
+    }
   }
 
-  private static byte[] addElementTo(byte[] target, byte element) {
-    if (target == null) return new byte[] {element};
-    else {
-      final int len = target.length;
-      final byte[] newArr = Arrays.copyOf(target, len + 1);
-      newArr[len] = element;
-      return newArr;
+  private void fillSingletons(int from) {
+    for (int i = from; i < cardinality; ++i) {
+      blocks[i] = i == 0 ? 0 : numBlocks[i - 1];
+      numBlocks[i] = blocks[i] + 1;
     }
   }
 }
@@ -0,0 +1,256 @@
+package wtune.superopt.constraint;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Index of constraint sets that answers subset/superset queries.
+ *
+ * <p>Each item owns one or more masks (the equivalent generalizations of a constraint set). Masks
+ * are bucketed by cardinality, so that a subset query only visits buckets not larger than the
+ * query, and vice versa. Inside a bucket, masks are further keyed by their lowest set bit: a subset
+ * of `q` has its lowest bit in `q`, and a superset of `q` has its lowest bit not above that of `q`.
+ * A 64-bit folded signature then rejects most candidates before the word-by-word comparison.
+ */
+class SubsumptionIndex<T> {
+  private final int numBits, numWords;
+  private final List<Bucket<T>> buckets; // indexed by cardinality
+  private final Set<Owner<T>> owners;
+  private long numLookups, numProbes;
+
+  SubsumptionIndex(int numBits) {
+    this.numBits = numBits;
+    this.numWords = wordsOf(numBits);
+    this.buckets = new ArrayList<>(Collections.nCopies(numBits + 1, null));
+    this.owners = new LinkedHashSet<>();
+  }
+
+  Mask mkMask(BitSet bits) {
+    final long[] words = new long[numWords];
+    final long[] raw = bits.toLongArray();
+    System.arraycopy(raw, 0, words, 0, Math.min(raw.length, numWords));
+    return new Mask(words);
+  }
+
+  int size() {
+    return owners.size();
+  }
+
+  long numLookups() {
+    return numLookups;
+  }
+
+  long numProbes() {
+    return numProbes;
+  }
+
+  /** Returns the items in the insertion order. */
+  List<T> items() {
+    final List<T> items = new ArrayList<>(owners.size());
+    for (Owner<T> owner : owners) items.add(owner.item);
+    return items;
+  }
+
+  void add(T item, Mask[] masks) {
+    final Owner<T> owner = new Owner<>(item, masks.length);
+    for (Mask mask : masks) {
+      final Entry<T> entry = new Entry<>(mask, owner);
+      slotOf(mask, true).add(entry);
+      owner.entries.add(entry);
+    }
+    owners.add(owner);
+  }
+
+  /** Checks whether any indexed mask is a subset of (or same as) any of `query`. */
+  boolean containsSubsetOf(Mask[] query) {
+    ++numLookups;
+    for (Mask q : query) if (findSubsetOf(q) != null) return true;
+    return false;
+  }
+
+  /** Checks whether any indexed mask is a superset of (or same as) any of `query`. */
+  boolean containsSupersetOf(Mask[] query) {
+    ++numLookups;
+    for (Mask q : query) if (findSupersetOf(q) != null) return true;
+    return false;
+  }
+
+  /** Removes items owning a mask that is a subset of (or same as) any of `query`. */
+  boolean removeSubsetsOf(Mask[] query) {
+    boolean removed = false;
+    for (Mask q : query) {
+      Entry<T> entry;
+      while ((entry = findSubsetOf(q)) != null) {
+        remove(entry.owner);
+        removed = true;
+      }
+    }
+    return removed;
+  }
+
+  /** Removes items owning a mask that is a superset of (or same as) any of `query`. */
+  boolean removeSupersetsOf(Mask[] query) {
+    boolean removed = false;
+    for (Mask q : query) {
+      Entry<T> entry;
+      while ((entry = findSupersetOf(q)) != null) {
+        remove(entry.owner);
+        removed = true;
+      }
+    }
+    return removed;
+  }
+
+  private Entry<T> findSubsetOf(Mask q) {
+    for (int card = 0; card <= q.cardinality; ++card) {
+      final Bucket<T> bucket = buckets.get(card);
+      if (bucket == null || bucket.size == 0) continue;
+      if (card == 0) {
+        final Entry<T> found = probe(bucket.slots.get(numBits), q, true);
+        if (found != null) return found;
+        continue;
+      }
+      // the lowest bit of a subset is one of the bits of `q`
+      for (int bit = q.nextSetBit(0); bit >= 0; bit = q.nextSetBit(bit + 1)) {
+        final Entry<T> found = probe(bucket.slots.get(bit), q, true);
+        if (found != null) return found;
+      }
+    }
+    return null;
+  }
+
+  private Entry<T> findSupersetOf(Mask q) {
+    // the lowest bit of a superset is not above that of `q`, an empty `q` is covered by any mask
+    final int bound = q.cardinality == 0 ? numBits : q.nextSetBit(0);
+    for (int card = Math.max(q.cardinality, 1); card < buckets.size(); ++card) {
+      final Bucket<T> bucket = buckets.get(card);
+      if (bucket == null || bucket.size == 0) continue;
+      for (int bit = 0; bit <= bound && bit < numBits; ++bit) {
+        final Entry<T> found = probe(bucket.slots.get(bit), q, false);
+        if (found != null) return found;
+      }
+    }
+    if (q.cardinality == 0) {
+      final Bucket<T> empty = buckets.get(0);
+      if (empty != null) return probe(empty.slots.get(numBits), q, false);
+    }
+    return null;
+  }
+
+  private Entry<T> probe(List<Entry<T>> slot, Mask q, boolean subset) {
+    if (slot == null) return null;
+    for (Entry<T> entry : slot) {
+      ++numProbes;
+      if (subset ? entry.mask.isSubsetOf(q) : q.isSubsetOf(entry.mask)) return entry;
+    }
+    return null;
+  }
+
+  private void remove(Owner<T> owner) {
+    for (Entry<T> entry : owner.entries) {
+      final List<Entry<T>> slot = slotOf(entry.mask, false);
+      for (int i = 0, bound = slot.size(); i < bound; ++i)
+        if (slot.get(i) == entry) {
+          // order inside a slot is irrelevant, swap-remove
+          slot.set(i, slot.get(bound - 1));
+          slot.remove(bound - 1);
+          --buckets.get(entry.mask.cardinality).size;
+          break;
+        }
+    }
+    owners.remove(owner);
+  }
+
+  private List<Entry<T>> slotOf(Mask mask, boolean createIfAbsent) {
+    Bucket<T> bucket = buckets.get(mask.cardinality);
+    if (bucket == null) {
+      if (!createIfAbsent) return Collections.emptyList();
+      buckets.set(mask.cardinality, bucket = new Bucket<>(numBits + 1));
+    }
+    // the empty mask goes to the extra slot at the end
+    final int key = mask.cardinality == 0 ? numBits : mask.nextSetBit(0);
+    List<Entry<T>> slot = bucket.slots.get(key);
+    if (slot == null) {
+      if (!createIfAbsent) return Collections.emptyList();
+      bucket.slots.set(key, slot = new ArrayList<>());
+    }
+    if (createIfAbsent) ++bucket.size;
+    return slot;
+  }
+
+  private static int wordsOf(int numBits) {
+    return (numBits + 63) >>> 6;
+  }
+
+  static final class Mask {
+    private final long[] words;
+    private final long signature;
+    private final int cardinality;
+
+    private Mask(long[] words) {
+      long signature = 0;
+      int cardinality = 0;
+      for (long word : words) {
+        signature |= word;
+        cardinality += Long.bitCount(word);
+      }
+      this.words = words;
+      this.signature = signature;
+      this.cardinality = cardinality;
+    }
+
+    /** Returns the first set bit at or after `from`, or -1 if none. */
+    int nextSetBit(int from) {
+      int i = from >>> 6;
+      if (i >= words.length) return -1;
+      long word = words[i] & (-1L << from);
+      while (true) {
+        if (word != 0) return (i << 6) + Long.numberOfTrailingZeros(word);
+        if (++i == words.length) return -1;
+        word = words[i];
+      }
+    }
+
+    boolean isSubsetOf(Mask other) {
+      if (cardinality > other.cardinality) return false;
+      if ((signature & ~other.signature) != 0) return false;
+      final long[] otherWords = other.words;
+      for (int i = 0, bound = words.length; i < bound; ++i)
+        if ((words[i] & ~otherWords[i]) != 0) return false;
+      return true;
+    }
+  }
+
+  private static final class Bucket<T> {
+    private final List<List<Entry<T>>> slots; // indexed by the lowest set bit
+    private int size;
+
+    private Bucket(int numSlots) {
+      this.slots = new ArrayList<>(Collections.nCopies(numSlots, null));
+    }
+  }
+
+  private static final class Entry<T> {
+    private final Mask mask;
+    private final Owner<T> owner;
+
+    private Entry(Mask mask, Owner<T> owner) {
+      this.mask = mask;
+      this.owner = owner;
+    }
+  }
+
+  private static final class Owner<T> {
+    private final T item;
+    private final List<Entry<T>> entries;
+
+    private Owner(T item, int numMasks) {
+      this.item = item;
+      this.entries = new ArrayList<>(numMasks);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package wtune.superopt.daemon;
+
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The pending requests of one application. The queue is bounded: a request that doesn't fit is
+ * shed, so that a burst of one application neither exhausts the memory nor starves the others. At
+ * most `maxWorkers` workers drain the queue at the same time.
+ */
+class AppQueue {
+  private final BlockingQueue<Request> queue;
+  private final AtomicInteger numWorkers;
+  private final int maxWorkers;
+
+  AppQueue(int capacity, int maxWorkers) {
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.numWorkers = new AtomicInteger(0);
+    this.maxWorkers = maxWorkers;
+  }
+
+  boolean offer(Request request) {
+    return queue.offer(request);
+  }
+
+  int drainTo(Collection<Request> sink, int maxElements) {
+    return queue.drainTo(sink, maxElements);
+  }
+
+  boolean isEmpty() {
+    return queue.isEmpty();
+  }
+
+  boolean tryAcquireWorker() {
+    int n;
+    do {
+      n = numWorkers.get();
+      if (n >= maxWorkers) return false;
+    } while (!numWorkers.compareAndSet(n, n + 1));
+    return true;
+  }
+
+  void releaseWorker() {
+    numWorkers.decrementAndGet();
+  }
+}
@@ -15,6 +15,8 @@ public interface DaemonContext {
 
   SqlNode optimize(Statement stmt);
 
+  TemplateCache templateCache();
+
   void run();
 
   void stop();
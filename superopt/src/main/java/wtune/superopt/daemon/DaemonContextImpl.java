@@ -19,33 +19,64 @@ import java.io.IOException;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
 
 import static wtune.sql.plan.PlanSupport.translateAsAst;
 
+/**
+ * Packets are received by {@link UDPServer} and dispatched by {@link #run()} into a bounded queue
+ * per application ({@link AppQueue}), which are drained in batches by a pool of workers. Requests
+ * beyond the capacity of a queue are shed. Requests of an application unknown at startup are
+ * rejected, since the name comes from the packet and would otherwise create a queue. A query whose
+ * template has been handled recently is answered from {@link TemplateCache}; otherwise it is
+ * optimized with a timeout.
+ *
+ * <p>Properties: `bank_path`, `port`, `bind_address`, `max_workers` (default: #cores),
+ * `workers_per_app` (default: half of `max_workers`), `queue_capacity` (per application, default
+ * 256), `optimize_timeout` (ms, default 5000), `template_cache_size` (default 65536).
+ */
 public class DaemonContextImpl implements DaemonContext {
+  private static final int BATCH_SIZE = 64;
+
   private final SubstitutionBank bank;
+  private final Set<String> appNames;
   private final Map<String, App> appMap;
   private final Map<String, Registration> regs;
+  private final Map<String, AppQueue> queues;
+  private final TemplateCache templateCache;
 
   private final Server server;
   private final ExecutorService executor;
+  private final int queueCapacity, workersPerApp;
+  private final long optimizeTimeout;
 
-  private boolean stopped;
+  private volatile boolean stopped;
 
-  private DaemonContextImpl(SubstitutionBank bank, Server server, ExecutorService executor) {
+  private DaemonContextImpl(
+      SubstitutionBank bank, Server server, ExecutorService executor, Properties config) {
+    final int maxWorkers = ((ThreadPoolExecutor) executor).getMaximumPoolSize();
     this.bank = bank;
     this.executor = executor;
-    this.appMap = new HashMap<>();
-    this.regs = new HashMap<>();
+    this.appNames = App.all().stream().map(App::name).collect(Collectors.toUnmodifiableSet());
+    this.appMap = new ConcurrentHashMap<>();
+    this.regs = new ConcurrentHashMap<>();
+    this.queues = new ConcurrentHashMap<>();
     this.server = server;
+    this.queueCapacity = Integer.parseInt(config.getProperty("queue_capacity", "256"));
+    this.workersPerApp =
+        Integer.parseInt(
+            config.getProperty("workers_per_app", String.valueOf(Math.max(1, maxWorkers / 2))));
+    this.optimizeTimeout = Long.parseLong(config.getProperty("optimize_timeout", "5000"));
+    this.templateCache =
+        new TemplateCache(
+            Integer.parseInt(config.getProperty("template_cache_size", "65536")),
+            RegistrationBase.TTL);
   }
 
   public static DaemonContext make(Properties config) throws IOException {
@@ -57,17 +88,20 @@ public class DaemonContextImpl implements DaemonContext {
     final int port = Integer.parseInt(config.getProperty("port", "9876"));
     final String inetAddrStr = config.getProperty("bind_address", "localhost");
     final InetAddress inetAddr = Inet4Address.getByName(inetAddrStr);
-    final UDPServer server = new UDPServer(inetAddr, port, new ArrayBlockingQueue<>(1024));
+    final UDPServer server = new UDPServer(inetAddr, port, new ArrayBlockingQueue<>(4096));
 
     final String maxWorkersStr = config.getProperty("max_workers");
     final int maxWorkers =
         maxWorkersStr == null
             ? Runtime.getRuntime().availableProcessors()
             : Integer.parseInt(maxWorkersStr);
+    // The number of tasks is bounded by #apps * workers_per_app, the queue never rejects.
     final ThreadPoolExecutor executor =
-        new ThreadPoolExecutor(1, maxWorkers, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1024));
+        new ThreadPoolExecutor(
+            maxWorkers, maxWorkers, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    executor.allowCoreThreadTimeOut(true);
 
-    return new DaemonContextImpl(bank, server, executor);
+    return new DaemonContextImpl(bank, server, executor, config);
   }
 
   @Override
@@ -86,12 +120,20 @@ public class DaemonContextImpl implements DaemonContext {
     final Schema schema = stmt.app().schema("base");
     final SqlNode ast = SqlSupport.parseSql(schema.dbType(), stmt.rawSql());
     final PlanContext plan = PlanSupport.assemblePlan(ast, schema);
+    if (plan == null) return null;
     final Optimizer optimizer = Optimizer.mk(bank);
+    optimizer.setTimeout(optimizeTimeout);
     final Set<PlanContext> optimized = optimizer.optimize(plan);
+    if (optimized.isEmpty()) return null;
     final Set<SqlNode> sqls = SetSupport.map(optimized, it -> translateAsAst(it, it.root(), false));
     return Iterables.get(sqls, 0); // TODO
   }
 
+  @Override
+  public TemplateCache templateCache() {
+    return templateCache;
+  }
+
   private static Registration makeRegistration(App app) {
     final String dbType = app.dbType();
     final ConnectionProvider connPool =
@@ -104,10 +146,14 @@ public class DaemonContextImpl implements DaemonContext {
     Runtime.getRuntime().addShutdownHook(new Thread(this::stop));
 
     new Thread(server::run).start();
+    final List<byte[]> packets = new ArrayList<>(BATCH_SIZE);
     while (!stopped) {
       try {
-        final byte[] packet = server.poll();
-        executor.execute(() -> new PacketHandler(this).handle(packet));
+        server.drainTo(packets, BATCH_SIZE);
+        try (final DaemonMetrics metrics = DaemonMetrics.open()) {
+          for (byte[] packet : packets) dispatch(packet, metrics);
+        }
+        packets.clear();
 
       } catch (InterruptedException ex) {
         break;
@@ -115,10 +161,55 @@ public class DaemonContextImpl implements DaemonContext {
     }
   }
 
+  private void dispatch(byte[] packet, DaemonMetrics metrics) {
+    final Request request;
+    try {
+      request = Request.decode(packet, System.nanoTime());
+    } catch (IOException ex) {
+      return; // malformed
+    }
+
+    metrics.numReceived.increment();
+    if (!appNames.contains(request.contextName())) {
+      metrics.numRejected.increment();
+      return;
+    }
+    final AppQueue queue =
+        queues.computeIfAbsent(
+            request.contextName(), ignored -> new AppQueue(queueCapacity, workersPerApp));
+    if (!queue.offer(request)) {
+      metrics.numShed.increment();
+      return;
+    }
+    if (queue.tryAcquireWorker()) executor.execute(() -> drain(queue));
+  }
+
+  private void drain(AppQueue queue) {
+    final PacketHandler handler = new PacketHandler(this);
+    final List<Request> batch = new ArrayList<>(BATCH_SIZE);
+    while (true) {
+      if (queue.drainTo(batch, BATCH_SIZE) == 0) {
+        queue.releaseWorker();
+        // A request may have been queued after the drain but before the release.
+        if (queue.isEmpty() || !queue.tryAcquireWorker()) return;
+        continue;
+      }
+
+      try (final DaemonMetrics metrics = DaemonMetrics.open()) {
+        for (Request request : batch) handler.handle(request, metrics);
+      }
+      batch.clear();
+    }
+  }
+
   @Override
   public void stop() {
+    if (stopped) return;
     server.stop();
     stopped = true;
     executor.shutdown();
+    LOG.log(
+        System.Logger.Level.INFO,
+        "dropped at intake: " + server.numDropped() + "\n" + DaemonMetrics.global());
   }
 }
@@ -0,0 +1,78 @@
+package wtune.superopt.daemon;
+
+import wtune.common.utils.IntHistogramMetric;
+import wtune.common.utils.IntMetric;
+import wtune.common.utils.Metric;
+import wtune.common.utils.Metrics;
+
+import java.util.List;
+
+/**
+ * Counters and per-stage latencies of the daemon. Latencies are in microseconds.
+ *
+ * <p>Each thread records into its own instance and merges it into {@link #global()} on {@link
+ * #close()}, see {@link wtune.common.utils.MetricsContextBase}.
+ */
+public class DaemonMetrics implements Metrics<DaemonMetrics>, AutoCloseable {
+  private static final int LATENCY_STEP = 100; // us
+
+  public final IntMetric numReceived = new IntMetric("#Received");
+  public final IntMetric numShed = new IntMetric("#Shed");
+  public final IntMetric numRejected = new IntMetric("#Rejected");
+  public final IntMetric numCacheHits = new IntMetric("#CacheHit");
+  public final IntMetric numCoalesced = new IntMetric("#Coalesced");
+  public final IntMetric numOptimized = new IntMetric("#Optimized");
+  public final IntMetric numFailed = new IntMetric("#Failed");
+  public final IntHistogramMetric queueLatency =
+      new IntHistogramMetric("Queue(us)", 0, LATENCY_STEP);
+  public final IntHistogramMetric parseLatency =
+      new IntHistogramMetric("Parse(us)", 0, LATENCY_STEP);
+  public final IntHistogramMetric optimizeLatency =
+      new IntHistogramMetric("Optimize(us)", 0, LATENCY_STEP);
+  public final IntHistogramMetric registerLatency =
+      new IntHistogramMetric("Register(us)", 0, LATENCY_STEP);
+  public final IntHistogramMetric totalLatency =
+      new IntHistogramMetric("Total(us)", 0, LATENCY_STEP);
+
+  private final List<Metric<?, ?>> metrics =
+      List.of(
+          numReceived,
+          numShed,
+          numRejected,
+          numCacheHits,
+          numCoalesced,
+          numOptimized,
+          numFailed,
+          queueLatency,
+          parseLatency,
+          optimizeLatency,
+          registerLatency,
+          totalLatency);
+
+  static DaemonMetrics open() {
+    return DaemonMetricsContext.instance().local(true);
+  }
+
+  public static DaemonMetrics global() {
+    return DaemonMetricsContext.instance().global();
+  }
+
+  static void addLatency(IntHistogramMetric metric, long beginNanos) {
+    final long micros = (System.nanoTime() - beginNanos) / 1000;
+    metric.addSample((int) Math.min(micros, Integer.MAX_VALUE));
+  }
+
+  public void close() {
+    DaemonMetricsContext.instance().updateGlobal();
+  }
+
+  @Override
+  public List<Metric<?, ?>> metrics() {
+    return metrics;
+  }
+
+  @Override
+  public String toString() {
+    return stringify(new StringBuilder()).toString();
+  }
+}
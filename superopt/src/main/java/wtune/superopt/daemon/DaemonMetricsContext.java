@@ -0,0 +1,20 @@
+package wtune.superopt.daemon;
+
+import wtune.common.utils.MetricsContextBase;
+
+class DaemonMetricsContext extends MetricsContextBase<DaemonMetrics> {
+  private static final DaemonMetricsContext INSTANCE = new DaemonMetricsContext();
+
+  private DaemonMetricsContext() {
+    super("DaemonMetric");
+  }
+
+  static DaemonMetricsContext instance() {
+    return INSTANCE;
+  }
+
+  @Override
+  protected DaemonMetrics newMetric() {
+    return new DaemonMetrics();
+  }
+}
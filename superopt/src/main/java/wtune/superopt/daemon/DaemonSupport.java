@@ -0,0 +1,133 @@
+package wtune.superopt.daemon;
+
+public interface DaemonSupport {
+  /**
+   * The template of a query: numeric and string literals are replaced by `?`, whitespace outside
+   * quotes is collapsed. Quoted identifiers are kept, so are the keywords and their case. Numbers
+   * in an ORDER BY or GROUP BY list are kept, since ordinals there are not parameters of the query.
+   *
+   * <p>This is a lexical pass over the text, much cheaper than parsing. Queries of the same
+   * template are registered as the same parameterized pattern.
+   */
+  static String templateOf(String sql) {
+    final int length = sql.length();
+    final StringBuilder builder = new StringBuilder(length);
+    boolean pendingSpace = false;
+    String lastWord = null;
+    int depth = 0, byDepth = -1; // the paren depth of the open ORDER/GROUP BY list, -1 for none
+
+    int i = 0;
+    while (i < length) {
+      final char c = sql.charAt(i);
+
+      if (Character.isWhitespace(c)) {
+        pendingSpace = true;
+        ++i;
+        continue;
+      }
+      if (pendingSpace && builder.length() > 0) builder.append(' ');
+      pendingSpace = false;
+
+      final String word = lastWord;
+      lastWord = null;
+
+      if (c == '\'') {
+        i = skipQuoted(sql, i, '\'');
+        builder.append('?');
+
+      } else if (c == '"' || c == '`') {
+        final int end = skipQuoted(sql, i, c);
+        builder.append(sql, i, end);
+        i = end;
+
+      } else if (isDigit(c) && !isPartOfName(builder)) {
+        final int end = skipNumber(sql, i);
+        if (byDepth >= 0) builder.append(sql, i, end);
+        else builder.append('?');
+        i = end;
+
+      } else if (isWordStart(c)) {
+        final int end = skipWord(sql, i);
+        lastWord = sql.substring(i, end);
+        builder.append(lastWord);
+        i = end;
+
+        if (lastWord.equalsIgnoreCase("BY")
+            && ("ORDER".equalsIgnoreCase(word) || "GROUP".equalsIgnoreCase(word))) byDepth = depth;
+        else if (depth == byDepth && endsByList(lastWord)) byDepth = -1;
+
+      } else {
+        if (c == '(') ++depth;
+        else if (c == ')' && --depth < byDepth) byDepth = -1;
+        else if (c == ';') byDepth = -1;
+        builder.append(c);
+        ++i;
+      }
+    }
+
+    return builder.toString();
+  }
+
+  // Returns the index after the closing quote. A doubled quote or a backslash escapes.
+  private static int skipQuoted(String sql, int start, char quote) {
+    int i = start + 1;
+    while (i < sql.length()) {
+      final char c = sql.charAt(i++);
+      if (c == '\\') ++i;
+      else if (c == quote) {
+        if (i < sql.length() && sql.charAt(i) == quote) ++i;
+        else return i;
+      }
+    }
+    return sql.length();
+  }
+
+  private static int skipWord(String sql, int start) {
+    int i = start + 1;
+    while (i < sql.length() && isWordPart(sql.charAt(i))) ++i;
+    return i;
+  }
+
+  private static int skipNumber(String sql, int start) {
+    int i = start;
+    while (i < sql.length()) {
+      final char c = sql.charAt(i);
+      if (isDigit(c) || c == '.') ++i;
+      else if ((c == 'e' || c == 'E') && i + 1 < sql.length()) {
+        final char next = sql.charAt(i + 1);
+        if (isDigit(next)) i += 2;
+        else if ((next == '-' || next == '+') && i + 2 < sql.length() && isDigit(sql.charAt(i + 2)))
+          i += 3;
+        else break;
+      } else break;
+    }
+    return i;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  // Keywords after which the items of an ORDER/GROUP BY list are over.
+  private static boolean endsByList(String word) {
+    return switch (word.toUpperCase()) {
+      case "HAVING", "LIMIT", "OFFSET", "UNION", "EXCEPT", "INTERSECT", "WINDOW", "FOR" -> true;
+      default -> false;
+    };
+  }
+
+  private static boolean isWordStart(char c) {
+    return Character.isLetter(c) || c == '_';
+  }
+
+  private static boolean isWordPart(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+  }
+
+  // `t1`, `col_2`: the digit continues an identifier rather than starting a number.
+  private static boolean isPartOfName(StringBuilder builder) {
+    if (builder.length() == 0) return false;
+    final char last = builder.charAt(builder.length() - 1);
+    return Character.isLetterOrDigit(last) || last == '_' || last == '$';
+  }
+}
@@ -1,12 +1,13 @@
 package wtune.superopt.daemon;
 
+import wtune.sql.ast.SqlNode;
 import wtune.stmt.App;
 import wtune.stmt.Statement;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
 
+import static wtune.superopt.daemon.DaemonMetrics.addLatency;
+
 public class PacketHandler {
   private final DaemonContext ctx;
 
@@ -15,18 +16,58 @@ public class PacketHandler {
   }
 
   public void handle(byte[] packet) {
-    try (final DataInputStream stream = new DataInputStream(new ByteArrayInputStream(packet))) {
-      final String contextName = stream.readUTF();
-      final String sql = stream.readUTF();
+    try (final DaemonMetrics metrics = DaemonMetrics.open()) {
+      handle(Request.decode(packet, System.nanoTime()), metrics);
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  void handle(Request request, DaemonMetrics metrics) {
+    addLatency(metrics.queueLatency, request.receivedAt());
+
+    // A query of a known template needs no parsing, no optimization.
+    final TemplateCache cache = ctx.templateCache();
+    final String key = TemplateCache.mkKey(request.contextName(), request.sql());
+    if (cache.contains(key)) {
+      metrics.numCacheHits.increment();
+      addLatency(metrics.totalLatency, request.receivedAt());
+      return;
+    }
+    if (!cache.claim(key)) {
+      metrics.numCoalesced.increment();
+      return;
+    }
 
-      final App app = ctx.appOf(contextName);
-      final Registration registration = ctx.registrationOf(contextName);
+    try {
+      final App app = ctx.appOf(request.contextName());
+      final Registration registration = ctx.registrationOf(request.contextName());
 
-      final Statement stmt = Statement.mk(app.name(), sql, null);
-      if (!registration.contains(stmt)) registration.register(stmt, ctx.optimize(stmt));
+      long begin = System.nanoTime();
+      final Statement stmt = Statement.mk(app.name(), request.sql(), null);
+      final boolean registered = registration.contains(stmt);
+      addLatency(metrics.parseLatency, begin);
 
-    } catch (IOException ex) {
-      throw new RuntimeException(ex);
+      SqlNode optimized = null;
+      if (!registered) {
+        begin = System.nanoTime();
+        optimized = ctx.optimize(stmt);
+        addLatency(metrics.optimizeLatency, begin);
+        metrics.numOptimized.increment();
+
+        begin = System.nanoTime();
+        registration.register(stmt, optimized);
+        addLatency(metrics.registerLatency, begin);
+      }
+
+      cache.add(key);
+      addLatency(metrics.totalLatency, request.receivedAt());
+
+    } catch (Throwable ex) {
+      metrics.numFailed.increment();
+      DaemonContext.LOG.log(System.Logger.Level.WARNING, "failed to handle " + request.sql(), ex);
+    } finally {
+      cache.release(key);
     }
   }
 }
@@ -9,7 +9,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import static wtune.sql.support.action.NormalizationSupport.installParamMarkers;
 
 public class RegistrationBase implements Registration {
-  private static final long TTL = 50 * 60 * 1000; // 50 min
+  static final long TTL = 50 * 60 * 1000; // 50 min
 
   private final Map<String, Status> registration = new ConcurrentHashMap<>();
 
@@ -36,7 +36,7 @@ public class RegistrationBase implements Registration {
   public boolean contains(Statement stmt) {
     installParamMarkers(stmt.ast());
     final Status status = registration.get(stmt.ast().toString());
-    return status != null && status.expiration <= System.currentTimeMillis();
+    return status != null && status.expiration > System.currentTimeMillis();
   }
 
   protected int install(String dbName, String originalQuery, String optimizedQuery) {
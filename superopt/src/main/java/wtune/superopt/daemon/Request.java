@@ -0,0 +1,16 @@
+package wtune.superopt.daemon;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/** A query reported by an application: the name of its context and the SQL text. */
+record Request(String contextName, String sql, long receivedAt) {
+  static Request decode(byte[] packet, long receivedAt) throws IOException {
+    try (final DataInputStream stream = new DataInputStream(new ByteArrayInputStream(packet))) {
+      final String contextName = stream.readUTF();
+      final String sql = stream.readUTF();
+      return new Request(contextName, sql, receivedAt);
+    }
+  }
+}
@@ -1,9 +1,15 @@
 package wtune.superopt.daemon;
 
+import java.util.Collection;
+
 public interface Server {
   void run();
 
   void stop();
 
-  byte[] poll() throws InterruptedException;
+  /** Waits for a packet, then moves it and up to `maxElements - 1` more into `sink`. */
+  int drainTo(Collection<byte[]> sink, int maxElements) throws InterruptedException;
+
+  /** The number of packets dropped because the intake queue was full. */
+  long numDropped();
 }
@@ -0,0 +1,74 @@
+package wtune.superopt.daemon;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Query templates (see {@link DaemonSupport#templateOf(String)}) handled recently, so that a query
+ * of such a template is not parsed or optimized again. Only the template is kept: the rewrite of a
+ * query binds its literals, and is already kept by the registration.
+ *
+ * <p>An entry expires after the TTL, as a registration does. The cache holds at most `capacity`
+ * entries; when full, expired entries are dropped first, then arbitrary ones.
+ */
+public class TemplateCache {
+  private final Map<String, Long> entries; // to the expiration
+  private final Set<String> inFlight;
+  private final int capacity;
+  private final long ttl;
+
+  public TemplateCache(int capacity, long ttl) {
+    this.entries = new ConcurrentHashMap<>();
+    this.inFlight = ConcurrentHashMap.newKeySet();
+    this.capacity = capacity;
+    this.ttl = ttl;
+  }
+
+  static String mkKey(String contextName, String sql) {
+    return contextName + '\0' + DaemonSupport.templateOf(sql);
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /** Whether the template of `key` has been handled and not expired. */
+  public boolean contains(String key) {
+    final Long expiration = entries.get(key);
+    if (expiration == null) return false;
+    if (expiration > System.currentTimeMillis()) return true;
+    entries.remove(key, expiration);
+    return false;
+  }
+
+  public void add(String key) {
+    if (entries.size() >= capacity) evict();
+    entries.put(key, System.currentTimeMillis() + ttl);
+  }
+
+  /** Marks `key` as being optimized. Returns false if another worker is already on it. */
+  boolean claim(String key) {
+    return inFlight.add(key);
+  }
+
+  void release(String key) {
+    inFlight.remove(key);
+  }
+
+  private synchronized void evict() {
+    if (entries.size() < capacity) return;
+
+    final long now = System.currentTimeMillis();
+    entries.values().removeIf(it -> it <= now);
+
+    // Still full, drop an eighth.
+    int toDrop = entries.size() - capacity + Math.max(1, capacity >> 3);
+    final Iterator<String> iter = entries.keySet().iterator();
+    while (toDrop-- > 0 && iter.hasNext()) {
+      iter.next();
+      iter.remove();
+    }
+  }
+}
@@ -1,22 +1,43 @@
 package wtune.superopt.daemon;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
+import java.io.IOException;
 import java.net.InetAddress;
-import java.net.SocketException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Collection;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Receives datagrams of the form <code>0x19 0x19, int length, payload</code>.
+ *
+ * <p>The channel is non-blocking: on each wake-up all the datagrams ready are received in a batch
+ * into one reused buffer, only the payloads are copied out. A payload that doesn't fit into the
+ * queue is dropped instead of blocking the intake.
+ */
 public class UDPServer implements Server {
-  private final DatagramSocket sock;
+  private static final int MAX_DATAGRAM_SIZE = 1 << 16;
+  private static final int MAX_BATCH_SIZE = 256;
+
+  private final DatagramChannel channel;
+  private final Selector selector;
   private final BlockingQueue<byte[]> queue;
-  private boolean stopped;
+  private final LongAdder numDropped;
+  private volatile boolean stopped;
 
   public UDPServer(InetAddress address, int port, BlockingQueue<byte[]> queue)
-      throws SocketException {
-    this.sock = new DatagramSocket(port, address);
+      throws IOException {
+    this.channel = DatagramChannel.open();
+    this.channel.bind(new InetSocketAddress(address, port));
+    this.channel.configureBlocking(false);
+    this.selector = Selector.open();
+    this.channel.register(selector, SelectionKey.OP_READ);
     this.queue = queue;
+    this.numDropped = new LongAdder();
     this.stopped = false;
   }
 
@@ -24,24 +45,35 @@ public class UDPServer implements Server {
   public void run() {
     if (stopped) throw new IllegalStateException("server has been stopped");
 
-    final byte[] buffer = new byte[1024 << 5]; // 32KB
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
 
     while (!stopped) {
-      final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
       try {
-        sock.receive(packet);
-        final DataInputStream stream = new DataInputStream(new ByteArrayInputStream(buffer));
-        if (stream.readByte() != 0x19 || stream.readByte() != 0x19) continue; // magic number check
+        selector.select();
+        selector.selectedKeys().clear();
+        receiveBatch(buffer);
+
+      } catch (IOException | ClosedSelectorException ex) {
+        if (!stopped) DaemonContext.LOG.log(System.Logger.Level.WARNING, "failed to receive", ex);
+      }
+    }
+  }
 
-        final int length = stream.readInt();
-        final byte[] newBuffer = new byte[length];
-        final int nBytesRead = stream.read(newBuffer);
+  private void receiveBatch(ByteBuffer buffer) throws IOException {
+    for (int i = 0; i < MAX_BATCH_SIZE; ++i) {
+      buffer.clear();
+      if (channel.receive(buffer) == null) return;
+      buffer.flip();
 
-        assert nBytesRead == length;
-        queue.put(newBuffer);
+      if (buffer.remaining() < 6) continue;
+      if (buffer.get() != 0x19 || buffer.get() != 0x19) continue; // magic number check
 
-      } catch (Exception ignored) {
-      }
+      final int length = buffer.getInt();
+      if (length < 0 || length > buffer.remaining()) continue;
+
+      final byte[] payload = new byte[length];
+      buffer.get(payload);
+      if (!queue.offer(payload)) numDropped.increment();
     }
   }
 
@@ -49,11 +81,22 @@ public class UDPServer implements Server {
   public void stop() {
     if (stopped) return;
     stopped = true;
-    sock.close();
+    selector.wakeup();
+    try {
+      channel.close();
+      selector.close();
+    } catch (IOException ignored) {
+    }
+  }
+
+  @Override
+  public int drainTo(Collection<byte[]> sink, int maxElements) throws InterruptedException {
+    sink.add(queue.take());
+    return 1 + queue.drainTo(sink, maxElements - 1);
   }
 
   @Override
-  public byte[] poll() throws InterruptedException {
-    return queue.take();
+  public long numDropped() {
+    return numDropped.sum();
   }
 }
@@ -1,6 +1,7 @@
 package wtune.superopt.liastar;
 
 import com.microsoft.z3.*;
+import wtune.superopt.logic.LiaVars;
 import wtune.superopt.util.PrettyBuilder;
 
 import java.util.*;
@@ -60,12 +61,24 @@ public class LiaFuncImpl extends Liastar{
     return result;
   }
 
+  @Override
+  public void collectVarIds(LiaVars liaVars, BitSet ids) {
+    for (Liastar var : vars) var.collectVarIds(liaVars, ids);
+  }
+
+  @Override
+  public boolean containsFunc(String funcName) {
+    if (this.funcName.equals(funcName)) return true;
+    for (Liastar var : vars) if (var.containsFunc(funcName)) return true;
+    return false;
+  }
+
   @Override
   public Liastar expandStar() throws Exception {
     return this;
   }
 
-  private Expr transFuncToSMT(Context ctx, HashMap<String, IntExpr> varsName) {
+  private Expr transFuncToSMT(Context ctx, LiaVarBinding varsName) {
     // sorts
     final Sort I = ctx.getIntSort();
     Sort[] argSorts = new Sort[vars.size()];
@@ -79,7 +92,7 @@ public class LiaFuncImpl extends Liastar{
   }
 
   @Override
-  public Expr transToSMT(Context ctx, HashMap<String, IntExpr> varsName) {
+  public Expr transToSMT(Context ctx, LiaVarBinding varsName) {
     switch (funcName) {
       case "sqrt": {
         final IntExpr varExpr = (IntExpr) vars.get(0).transToSMT(ctx, varsName);
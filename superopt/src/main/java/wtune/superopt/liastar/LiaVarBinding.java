@@ -0,0 +1,69 @@
+package wtune.superopt.liastar;
+
+import com.microsoft.z3.Context;
+import com.microsoft.z3.IntExpr;
+import wtune.superopt.logic.LiaVars;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/** Z3 constants of Liastar variables, indexed by the id of the variable in the current proof. */
+public final class LiaVarBinding {
+  private final LiaVars liaVars;
+  private final BitSet bound;
+  private IntExpr[] exprs;
+
+  public LiaVarBinding() {
+    this(LiaVars.current());
+  }
+
+  private LiaVarBinding(LiaVars liaVars) {
+    this.liaVars = liaVars;
+    this.bound = new BitSet();
+    this.exprs = new IntExpr[16];
+  }
+
+  /** Binds every variable occurring in `f` to an integer constant of the same name. */
+  static LiaVarBinding declare(Context ctx, Liastar f) {
+    final LiaVarBinding binding = new LiaVarBinding(LiaVars.current());
+    final BitSet ids = new BitSet();
+    f.collectVarIds(binding.liaVars, ids);
+    for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1))
+      binding.put(id, ctx.mkIntConst(binding.liaVars.nameOf(id)));
+    return binding;
+  }
+
+  public IntExpr get(String varName) {
+    return get(liaVars.idOf(varName));
+  }
+
+  IntExpr get(LiavarImpl var) {
+    return get(var.idIn(liaVars));
+  }
+
+  private IntExpr get(int varId) {
+    return varId < exprs.length ? exprs[varId] : null;
+  }
+
+  public boolean contains(String varName) {
+    return get(varName) != null;
+  }
+
+  public void put(String varName, IntExpr expr) {
+    put(liaVars.idOf(varName), expr);
+  }
+
+  private void put(int varId, IntExpr expr) {
+    if (varId >= exprs.length) exprs = Arrays.copyOf(exprs, Math.max(varId + 1, exprs.length << 1));
+    exprs[varId] = expr;
+    bound.set(varId, expr != null);
+  }
+
+  /** The bound constants in the order of variable ids. */
+  public IntExpr[] exprs() {
+    final IntExpr[] result = new IntExpr[bound.cardinality()];
+    int n = 0;
+    for (int id = bound.nextSetBit(0); id >= 0; id = bound.nextSetBit(id + 1)) result[n++] = exprs[id];
+    return result;
+  }
+}
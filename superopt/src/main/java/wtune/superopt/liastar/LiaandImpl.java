@@ -1,6 +1,7 @@
 package wtune.superopt.liastar;
 
 import com.microsoft.z3.*;
+import wtune.superopt.logic.LiaVars;
 import wtune.superopt.util.PrettyBuilder;
 
 import java.util.*;
@@ -39,6 +40,17 @@ public class LiaandImpl extends Liastar {
     return varSet;
   }
 
+  @Override
+  public void collectVarIds(LiaVars liaVars, BitSet ids) {
+    operand1.collectVarIds(liaVars, ids);
+    operand2.collectVarIds(liaVars, ids);
+  }
+
+  @Override
+  public boolean containsFunc(String funcName) {
+    return operand1.containsFunc(funcName) || operand2.containsFunc(funcName);
+  }
+
   @Override
   protected void prettyPrint(PrettyBuilder builder) {
     boolean needsParen1 = (operand1 instanceof LiaorImpl);
@@ -108,7 +120,7 @@ public class LiaandImpl extends Liastar {
   }
 
   @Override
-  public Expr transToSMT(Context ctx, HashMap<String, IntExpr> varsName) {
+  public Expr transToSMT(Context ctx, LiaVarBinding varsName) {
     Expr c1 = operand1.transToSMT(ctx, varsName);
     Expr c2 = operand2.transToSMT(ctx, varsName);
     return ctx.mkAnd((BoolExpr) c1, (BoolExpr) c2);
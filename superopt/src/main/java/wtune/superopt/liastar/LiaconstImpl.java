@@ -1,8 +1,10 @@
 package wtune.superopt.liastar;
 
 import com.microsoft.z3.*;
+import wtune.superopt.logic.LiaVars;
 import wtune.superopt.util.PrettyBuilder;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
@@ -39,6 +41,9 @@ public class LiaconstImpl extends Liastar {
     return new HashSet<>();
   }
 
+  @Override
+  public void collectVarIds(LiaVars liaVars, BitSet ids) {}
+
   @Override
   public Liastar mergeMult(HashMap<LiamultImpl, String> multToVar) {
     return this;
@@ -97,7 +102,7 @@ public class LiaconstImpl extends Liastar {
   }
 
   @Override
-  public Expr transToSMT(Context ctx, HashMap<String, IntExpr> varsName) {
+  public Expr transToSMT(Context ctx, LiaVarBinding varsName) {
     return ctx.mkInt(value);
   }
 
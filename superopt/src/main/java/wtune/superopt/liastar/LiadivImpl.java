@@ -1,8 +1,10 @@
 package wtune.superopt.liastar;
 
 import com.microsoft.z3.*;
+import wtune.superopt.logic.LiaVars;
 import wtune.superopt.util.PrettyBuilder;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
@@ -67,6 +69,17 @@ public class LiadivImpl extends Liastar {
     return varSet;
   }
 
+  @Override
+  public void collectVarIds(LiaVars liaVars, BitSet ids) {
+    operand1.collectVarIds(liaVars, ids);
+    operand2.collectVarIds(liaVars, ids);
+  }
+
+  @Override
+  public boolean containsFunc(String funcName) {
+    return operand1.containsFunc(funcName) || operand2.containsFunc(funcName);
+  }
+
   @Override
   public Liastar multToBin(int n) {
     operand1 = operand1.multToBin(n);
@@ -86,7 +99,7 @@ public class LiadivImpl extends Liastar {
   }
 
   @Override
-  public Expr transToSMT(Context ctx, HashMap<String, IntExpr> varsName) {
+  public Expr transToSMT(Context ctx, LiaVarBinding varsName) {
     Expr one = operand1.transToSMT(ctx, varsName);
     Expr two = operand2.transToSMT(ctx, varsName);
     return ctx.mkDiv((ArithExpr) one, (ArithExpr) two);
@@ -1,8 +1,10 @@
 package wtune.superopt.liastar;
 
 import com.microsoft.z3.*;
+import wtune.superopt.logic.LiaVars;
 import wtune.superopt.util.PrettyBuilder;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Set;
 import java.util.function.Function;
@@ -25,6 +27,17 @@ public class LiaeqImpl extends Liastar {
     return varSet;
   }
 
+  @Override
+  public void collectVarIds(LiaVars liaVars, BitSet ids) {
+    operand1.collectVarIds(liaVars, ids);
+    operand2.collectVarIds(liaVars, ids);
+  }
+
+  @Override
+  public boolean containsFunc(String funcName) {
+    return operand1.containsFunc(funcName) || operand2.containsFunc(funcName);
+  }
+
   @Override
   protected void prettyPrint(PrettyBuilder builder) {
     prettyPrintBinaryOp(builder, operand1, operand2,
@@ -106,7 +119,7 @@ public class LiaeqImpl extends Liastar {
   }
 
   @Override
-  public Expr transToSMT(Context ctx, HashMap<String, IntExpr> varsName) {
+  public Expr transToSMT(Context ctx, LiaVarBinding varsName) {
     Expr c1 = operand1.transToSMT(ctx, varsName);
     Expr c2 = operand2.transToSMT(ctx, varsName);
     return ctx.mkEq(c1, c2);
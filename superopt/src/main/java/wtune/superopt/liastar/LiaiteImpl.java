@@ -1,6 +1,7 @@
 package wtune.superopt.liastar;
 
 import com.microsoft.z3.*;
+import wtune.superopt.logic.LiaVars;
 import wtune.superopt.util.PrettyBuilder;
 
 import java.util.*;
@@ -27,6 +28,20 @@ public class LiaiteImpl extends Liastar {
     return varSet;
   }
 
+  @Override
+  public void collectVarIds(LiaVars liaVars, BitSet ids) {
+    operand1.collectVarIds(liaVars, ids);
+    operand2.collectVarIds(liaVars, ids);
+    cond.collectVarIds(liaVars, ids);
+  }
+
+  @Override
+  public boolean containsFunc(String funcName) {
+    return operand1.containsFunc(funcName)
+        || operand2.containsFunc(funcName)
+        || cond.containsFunc(funcName);
+  }
+
   @Override
   protected void prettyPrint(PrettyBuilder builder) {
     builder.print("ite(").indent(4);
@@ -147,7 +162,7 @@ public class LiaiteImpl extends Liastar {
   }
 
   @Override
-  public Expr transToSMT(Context ctx, HashMap<String, IntExpr> varsName) {
+  public Expr transToSMT(Context ctx, LiaVarBinding varsName) {
     BoolExpr f = (BoolExpr) cond.transToSMT(ctx, varsName);
     Expr one = operand1.transToSMT(ctx, varsName);
     Expr two = operand2.transToSMT(ctx, varsName);
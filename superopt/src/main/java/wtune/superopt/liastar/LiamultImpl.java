@@ -1,8 +1,10 @@
 package wtune.superopt.liastar;
 
 import com.microsoft.z3.*;
+import wtune.superopt.logic.LiaVars;
 import wtune.superopt.util.PrettyBuilder;
 
+import java.util.BitSet;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -166,6 +168,17 @@ public class LiamultImpl extends Liastar {
     return varSet;
   }
 
+  @Override
+  public void collectVarIds(LiaVars liaVars, BitSet ids) {
+    operand1.collectVarIds(liaVars, ids);
+    operand2.collectVarIds(liaVars, ids);
+  }
+
+  @Override
+  public boolean containsFunc(String funcName) {
+    return operand1.containsFunc(funcName) || operand2.containsFunc(funcName);
+  }
+
   @Override
   public Liastar simplifyMult(HashMap<Liastar, String> multToVar) {
     operand1.innerStar = innerStar;
@@ -207,7 +220,7 @@ public class LiamultImpl extends Liastar {
 
 
   @Override
-  public Expr transToSMT(Context ctx, HashMap<String, IntExpr> varsName) {
+  public Expr transToSMT(Context ctx, LiaVarBinding varsName) {
     ArithExpr one = (ArithExpr) operand1.transToSMT(ctx, varsName);
     ArithExpr two = (ArithExpr) operand2.transToSMT(ctx, varsName);
     return ctx.mkMul(one, two);
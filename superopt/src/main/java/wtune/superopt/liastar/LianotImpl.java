@@ -1,8 +1,10 @@
 package wtune.superopt.liastar;
 
 import com.microsoft.z3.*;
+import wtune.superopt.logic.LiaVars;
 import wtune.superopt.util.PrettyBuilder;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
@@ -53,6 +55,16 @@ public class LianotImpl extends Liastar {
     return operand.collectVarSet();
   }
 
+  @Override
+  public void collectVarIds(LiaVars liaVars, BitSet ids) {
+    operand.collectVarIds(liaVars, ids);
+  }
+
+  @Override
+  public boolean containsFunc(String funcName) {
+    return operand.containsFunc(funcName);
+  }
+
   @Override
   public Liastar multToBin(int n) {
     operand = operand.multToBin(n);
@@ -77,7 +89,7 @@ public class LianotImpl extends Liastar {
   }
 
   @Override
-  public Expr transToSMT(Context ctx, HashMap<String, IntExpr> varsName) {
+  public Expr transToSMT(Context ctx, LiaVarBinding varsName) {
     Expr one = operand.transToSMT(ctx, varsName);
     return ctx.mkNot((BoolExpr) one);
   }
@@ -1,6 +1,7 @@
 package wtune.superopt.liastar;
 
 import com.microsoft.z3.*;
+import wtune.superopt.logic.LiaVars;
 import wtune.superopt.util.PrettyBuilder;
 
 import java.util.*;
@@ -65,6 +66,17 @@ public class LiaplusImpl extends Liastar {
     return varSet;
   }
 
+  @Override
+  public void collectVarIds(LiaVars liaVars, BitSet ids) {
+    operand1.collectVarIds(liaVars, ids);
+    operand2.collectVarIds(liaVars, ids);
+  }
+
+  @Override
+  public boolean containsFunc(String funcName) {
+    return operand1.containsFunc(funcName) || operand2.containsFunc(funcName);
+  }
+
   @Override
   public Liastar multToBin(int n) {
     operand1 = operand1.multToBin(n);
@@ -88,7 +100,7 @@ public class LiaplusImpl extends Liastar {
   }
 
   @Override
-  public Expr transToSMT(Context ctx, HashMap<String, IntExpr> varsName) {
+  public Expr transToSMT(Context ctx, LiaVarBinding varsName) {
     Expr one = operand1.transToSMT(ctx, varsName);
     Expr two = operand2.transToSMT(ctx, varsName);
     return ctx.mkAdd((ArithExpr) one, (ArithExpr) two);
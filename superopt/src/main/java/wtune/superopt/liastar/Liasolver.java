@@ -2,15 +2,26 @@ package wtune.superopt.liastar;
 
 import com.microsoft.z3.*;
 import wtune.superopt.logic.LogicSupport;
-import wtune.superopt.logic.SqlSolver;
+import wtune.superopt.logic.ProofContext;
+import wtune.superopt.logic.Z3Pool;
 
 import java.util.*;
+import java.util.concurrent.*;
 import static wtune.superopt.liastar.Liastar.*;
 
 public class Liasolver {
+  private static final ExecutorService PORTFOLIO_POOL =
+      Executors.newCachedThreadPool(
+          r -> {
+            final Thread t = new Thread(r, "lia-portfolio");
+            t.setDaemon(true);
+            return t;
+          });
 
   Liastar liaFormula;
 
+  private volatile Race race; // of the running portfolio, if any
+
   public Liasolver(Liastar f) {
     liaFormula = f;
   }
@@ -20,6 +31,9 @@ public class Liasolver {
   }
 
   public LiaSolverStatus solve() {
+    if (ProofContext.current().isOutOfBudget()) return LiaSolverStatus.UNKNOWN;
+    if (LogicSupport.liaPortfolio) return solvePortfolio();
+
     try {
       String result = checkUnderapp();
       if (result.equals("SAT")) return LiaSolverStatus.SAT;
@@ -46,6 +60,49 @@ public class Liasolver {
 
   }
 
+  /**
+   * Races the underapproximation (which can only prove SAT) against both overapproximations (which
+   * can only prove UNSAT). The first definitive answer wins and interrupts the others. Otherwise,
+   * the result is the same as the sequential one.
+   */
+  private LiaSolverStatus solvePortfolio() {
+    final ProofContext proof = ProofContext.current();
+    final CompletionService<String> service = new ExecutorCompletionService<>(PORTFOLIO_POOL);
+    final List<Callable<String>> tasks =
+        List.of(this::checkUnderapp, () -> checkOverapp(false), () -> checkOverapp(true));
+    final List<Future<String>> futures = new ArrayList<>(tasks.size());
+    final String[] results = new String[tasks.size()]; // null if the task failed
+
+    race = new Race();
+    for (Callable<String> task : tasks) futures.add(service.submit(() -> proof.callIn(task)));
+
+    try {
+      for (int i = 0; i < tasks.size(); ++i) {
+        final Future<String> future = service.take();
+        final int index = futures.indexOf(future);
+        try {
+          results[index] = future.get();
+        } catch (ExecutionException e) {
+          if (LogicSupport.dumpLiaFormulas) e.getCause().printStackTrace();
+        }
+        if (index == 0 && "SAT".equals(results[index])) return LiaSolverStatus.SAT;
+        if (index > 0 && "UNSAT".equals(results[index])) return LiaSolverStatus.UNSAT;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return LiaSolverStatus.UNKNOWN;
+    } finally {
+      // Losers stop at their next checkCancelled(), or their Z3 check is interrupted.
+      for (Future<String> future : futures) future.cancel(true);
+      race.finish();
+      race = null;
+    }
+
+    // sequentially, a failed first overapproximation hides the second one
+    if (results[1] != null && "SAT".equals(results[2])) return LiaSolverStatus.SAT;
+    return LiaSolverStatus.UNKNOWN;
+  }
+
   String checkUnderapp() {
     try {
       Liastar curexp = liaFormula.deepcopy();
@@ -67,60 +124,39 @@ public class Liasolver {
     if (LogicSupport.dumpLiaFormulas)
       System.out.println("init: " + liaFormula);
 
+    final String result = checkOverapp(false);
+    return result.equals("UNSAT") ? result : checkOverapp(true);
+  }
+
+  String checkOverapp(boolean eager) throws Exception {
     Liastar tmpFormula = liaFormula.deepcopy();
     tmpFormula = tmpFormula.pushUpParameter(new HashSet<>());
-    tmpFormula = tmpFormula.removeParameter();
+    if (eager) {
+      tmpFormula = tmpFormula.mergeSameVars();
+      tmpFormula = tmpFormula.removeParameterEager();
+    } else {
+      tmpFormula = tmpFormula.removeParameter();
+    }
     if (LogicSupport.dumpLiaFormulas)
-      System.out.println("remove param: " + tmpFormula);
+      System.out.println((eager ? "eager remove param: " : "remove param: ") + tmpFormula);
+    checkCancelled();
 
     tmpFormula.simplifyMult(new HashMap<>());
     tmpFormula.mergeMult(new HashMap<>());
     if (LogicSupport.dumpLiaFormulas)
       System.out.println("remove multiplication: " + tmpFormula);
+    checkCancelled();
 
-    String result = solveNestedLiastar(tmpFormula);
-
-    if (!result.equals("UNSAT")) {
-      tmpFormula = liaFormula.deepcopy();
-      tmpFormula = tmpFormula.pushUpParameter(new HashSet<>());
-      tmpFormula = tmpFormula.mergeSameVars();
-      tmpFormula = tmpFormula.removeParameterEager();
-      if (LogicSupport.dumpLiaFormulas)
-        System.out.println("eager remove param: " + tmpFormula);
-
-      tmpFormula.simplifyMult(new HashMap<>());
-      tmpFormula.mergeMult(new HashMap<>());
-      if (LogicSupport.dumpLiaFormulas)
-        System.out.println("remove multiplication: " + tmpFormula);
-
-      return solveNestedLiastar(tmpFormula);
-    } else {
-      return "UNSAT";
-    }
+    return solveNestedLiastar(tmpFormula);
   }
 
-  /** forall t1 t2. ((isnull(t1)<>0) /\ (isnull(t2)<>0)) -> t1 = t2 */
-  private BoolExpr ruleNullEquals(Context ctx) {
-    String strVar1 = "t1", strVar2 = "t2", strIsNull = "IsNull";
-    Expr[] vars = new Expr[2];
-    vars[0] = ctx.mkIntConst(strVar1);
-    vars[1] = ctx.mkIntConst(strVar2);
-
-    final Sort I = ctx.getIntSort();
-    final FuncDecl func = ctx.mkFuncDecl(strIsNull, I, I);
-    Expr isNull1 = ctx.mkApp(func, vars[0]);
-    Expr isNull2 = ctx.mkApp(func, vars[1]);
-    BoolExpr notNull1 = ctx.mkNot(ctx.mkEq(isNull1, ctx.mkInt(0)));
-    BoolExpr notNull2 = ctx.mkNot(ctx.mkEq(isNull2, ctx.mkInt(0)));
-    BoolExpr eq = ctx.mkEq(vars[0], vars[1]);
-
-    Expr body = ctx.mkImplies(ctx.mkAnd(notNull1, notNull2), eq);
-    return ctx.mkForall(vars, body, 1, null, null, null, null);
+  private void checkCancelled() {
+    if (isCancelled(race)) throw new CancellationException();
   }
 
-  private BoolExpr appendRules(Context ctx, BoolExpr target) {
-    target = ctx.mkAnd(ruleNullEquals(ctx), target);
-    return target;
+  /** Whether this thread lost a portfolio race. The race is already reset after it is decided. */
+  private static boolean isCancelled(Race race) {
+    return Thread.currentThread().isInterrupted() || (race != null && race.isFinished());
   }
 
   private Set<BoolExpr> getMultipleConditions(Context ctx, Expr expr) {
@@ -151,46 +187,61 @@ public class Liasolver {
   }
 
   String solveLia(Liastar f) {
-    try (final Context ctx = new Context()) {
-      BoolExpr target = ctx.mkTrue();
-
-      Set<String> varsName = f.collectVarSet();
-      HashMap<String, IntExpr> varDef = new HashMap<>();
-      for (String varName : varsName) {
-        IntExpr varExp = ctx.mkIntConst(varName);
-        varDef.put(varName, varExp);
-        target = ctx.mkAnd(target, ctx.mkLe(ctx.mkInt(0), varExp));
+    final Race race = this.race;
+    if (isCancelled(race)) return "UNKNOWN";
+    try (final Z3Pool.Lease z3 = Z3Pool.acquire()) {
+      if (race != null && !race.register(z3)) return "UNKNOWN";
+      try {
+        return solveLia(z3, f);
+      } finally {
+        if (race != null) race.unregister(z3);
       }
+    }
+  }
 
-      BoolExpr coreExpr = (BoolExpr) f.transToSMT(ctx, varDef);
-      coreExpr = appendMultipleConditions(ctx, coreExpr);
-      target = ctx.mkAnd(target, coreExpr);
+  private String solveLia(Z3Pool.Lease z3, Liastar f) {
+    final Context ctx = z3.context();
+    BoolExpr target = ctx.mkTrue();
 
-      // when the formula does not contain stars
-      if (f.isLia()) {
-        // append rules
-        target = appendRules(ctx, target);
-      }
+    LiaVarBinding varDef = LiaVarBinding.declare(ctx, f);
+    for (IntExpr varExp : varDef.exprs()) {
+      target = ctx.mkAnd(target, ctx.mkLe(ctx.mkInt(0), varExp));
+    }
 
-      if (LogicSupport.dumpLiaFormulas) {
-        System.out.println("FOL: " + target.toString());
-      }
+    BoolExpr coreExpr = (BoolExpr) f.transToSMT(ctx, varDef);
+    coreExpr = appendMultipleConditions(ctx, coreExpr);
+    target = ctx.mkAnd(target, coreExpr);
+
+    // when the formula does not contain stars
+    if (f.isLia()) {
+      // append rules
+      target = ctx.mkAnd(z3.ruleNullEquals(), target);
+    }
+
+    if (LogicSupport.dumpLiaFormulas) {
+      System.out.println("FOL: " + target.toString());
+    }
 
-      Solver s = (f.toString().contains("sqrt")) ?
-          ctx.mkSolver() :
-          ctx.mkSolver(ctx.tryFor(ctx.mkTactic("qflia"), SqlSolver.timeout));
+    Solver s = f.containsFunc("sqrt") ?
+        z3.solver() :
+        z3.timedSolver("qflia", ProofContext.current().smtTimeout());
 //       Solver s = ctx.mkSolver();
+    s.push();
+    Status q;
+    try {
       s.add(target);
-      Status q = s.check();
-      if (LogicSupport.dumpLiaFormulas) {
-        System.out.println("smt solver: " + q.toString());
-      }
-      return switch (q) {
-        case UNKNOWN -> "UNKNOWN";
-        case SATISFIABLE -> "SAT";
-        case UNSATISFIABLE -> "UNSAT";
-      };
+      q = s.check();
+    } finally {
+      s.pop();
     }
+    if (LogicSupport.dumpLiaFormulas) {
+      System.out.println("smt solver: " + q.toString());
+    }
+    return switch (q) {
+      case UNKNOWN -> "UNKNOWN";
+      case SATISFIABLE -> "SAT";
+      case UNSATISFIABLE -> "UNSAT";
+    };
   }
 
   String solveNestedLiastar(Liastar f) throws Exception {
@@ -198,6 +249,7 @@ public class Liasolver {
       System.out.println("liastar: " + f.toString());
     f.expandStar();
     f = f.simplifyIte();
+    checkCancelled();
 
     if (LogicSupport.dumpLiaFormulas) {
       System.out.println("lia: " + f.toString());
@@ -223,15 +275,56 @@ public class Liasolver {
   }
 
   Status solveWithK(Liastar e) {
-    Set<String> vars = e.collectVarSet();
-    Context ctx = new Context();
-    Solver sol = ctx.mkSolver();
-    for (String var : vars) {
-      sol.add(ctx.mkGe(ctx.mkIntConst(var), ctx.mkInt(0)));
+    final Race race = this.race;
+    if (isCancelled(race)) return Status.UNKNOWN;
+    try (final Z3Pool.Lease z3 = Z3Pool.acquire()) {
+      if (race != null && !race.register(z3)) return Status.UNKNOWN;
+      try {
+        return solveWithK(z3, e);
+      } finally {
+        if (race != null) race.unregister(z3);
+      }
     }
-    Expr expr = e.expandStarWithK(ctx, sol, "");
-    Status status = sol.check(expr);
-    return status;
   }
 
+  private Status solveWithK(Z3Pool.Lease z3, Liastar e) {
+    final Context ctx = z3.context();
+    final Solver sol = z3.solver();
+    sol.push();
+    try {
+      Set<String> vars = e.collectVarSet();
+      for (String var : vars) {
+        sol.add(ctx.mkGe(ctx.mkIntConst(var), ctx.mkInt(0)));
+      }
+      Expr expr = e.expandStarWithK(ctx, sol, "");
+      return sol.check(expr);
+    } finally {
+      sol.pop();
+    }
+  }
+
+  /** Z3 contexts of a portfolio run, interrupted as soon as the race is decided. */
+  private static class Race {
+    private final List<Z3Pool.Lease> live = new ArrayList<>(3);
+    private boolean finished;
+
+    synchronized boolean register(Z3Pool.Lease z3) {
+      if (finished) return false;
+      live.add(z3);
+      return true;
+    }
+
+    synchronized void unregister(Z3Pool.Lease z3) {
+      live.remove(z3);
+    }
+
+    synchronized boolean isFinished() {
+      return finished;
+    }
+
+    synchronized void finish() {
+      finished = true;
+      for (Z3Pool.Lease z3 : live) z3.interrupt();
+    }
+  }
 }
@@ -1,6 +1,8 @@
 package wtune.superopt.liastar;
 
 import com.microsoft.z3.*;
+import wtune.superopt.logic.LiaVars;
+import wtune.superopt.logic.ProofContext;
 import wtune.superopt.util.PrettyBuilder;
 
 import java.util.*;
@@ -13,28 +15,16 @@ public abstract class Liastar {
 
   public boolean innerStar = false;
 
-  private static ThreadLocal<Integer> freshVarId = new ThreadLocal<Integer>() {
-    public Integer initialValue() {
-      return 0;
-    }
-  };
-
   private static final Integer dnfTimeout = 2000000;
-  private static ThreadLocal<Integer> dnfStartTime  = new ThreadLocal<Integer>() {
-    public Integer initialValue() {
-      return 0;
-    }
-  };
 
   public static void setDnfStartTime() {
-    dnfStartTime.set(0);
+    ProofContext.current().resetDnfSteps();
   }
 
   public Liastar mergeSameVars() {return this;}
 
   public static boolean isDnfTimeout() {
-    dnfStartTime.set(dnfStartTime.get() + 1);
-    return (dnfStartTime.get() > dnfTimeout);
+    return ProofContext.current().nextDnfStep() > dnfTimeout;
   }
 
   public abstract boolean isLia();
@@ -53,13 +43,12 @@ public abstract class Liastar {
   public abstract int embeddingLayers();
 
   public static String newId() {
-    freshVarId.set(freshVarId.get() + 1);
-    return String.valueOf(freshVarId.get());
+    return String.valueOf(ProofContext.current().nextVarId());
   }
 
   public static String resetId() {
-    freshVarId.set(0);
-    return String.valueOf(freshVarId.get());
+    ProofContext.current().resetVarId();
+    return "0";
   }
 
   public static String newVarName() {
@@ -68,6 +57,14 @@ public abstract class Liastar {
 
   public abstract Set<String> collectVarSet();
 
+  /** Adds the ids of the variables in this formula, as interned by `liaVars`, to `ids`. */
+  public abstract void collectVarIds(LiaVars liaVars, BitSet ids);
+
+  /** Whether a function named `funcName` is applied somewhere in this formula. */
+  public boolean containsFunc(String funcName) {
+    return false;
+  }
+
   public abstract Liastar expandStar() throws Exception;
 
   public Liastar liaAndConcat(Liastar[] array) {
@@ -85,7 +82,7 @@ public abstract class Liastar {
     return res;
   }
 
-  public abstract Expr transToSMT(Context ctx, HashMap<String, IntExpr> varsName);
+  public abstract Expr transToSMT(Context ctx, LiaVarBinding varsName);
 
   final class EstimateResult {
     final Set<String> vars;
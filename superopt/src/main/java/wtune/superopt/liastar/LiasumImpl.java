@@ -1,8 +1,10 @@
 package wtune.superopt.liastar;
 
 import com.microsoft.z3.*;
+import wtune.superopt.logic.LiaVars;
 import wtune.superopt.logic.LogicSupport;
-import wtune.superopt.logic.SqlSolver;
+import wtune.superopt.logic.ProofContext;
+import wtune.superopt.logic.Z3Pool;
 import wtune.superopt.util.PrettyBuilder;
 
 import java.util.*;
@@ -117,6 +119,16 @@ public class LiasumImpl extends Liastar {
   public Set<String> collectVarSet() {
     return new HashSet<>(outerVector);
   }
+
+  @Override
+  public void collectVarIds(LiaVars liaVars, BitSet ids) {
+    for (String v : outerVector) ids.set(liaVars.idOf(v));
+  }
+
+  @Override
+  public boolean containsFunc(String funcName) {
+    return constraints.containsFunc(funcName);
+  }
   
   @Override
   public Liastar multToBin(int n) {
@@ -276,7 +288,7 @@ public class LiasumImpl extends Liastar {
 //  }
 
   @Override
-  public Expr transToSMT(Context ctx, HashMap<String, IntExpr> varsName) {
+  public Expr transToSMT(Context ctx, LiaVarBinding varsName) {
     System.err.println("there should not be star");
     assert false;
     return null;
@@ -1064,24 +1076,26 @@ public class LiasumImpl extends Liastar {
   }
 
   boolean isInnerVarEq(String v1, String v2) {
-    try (final Context ctx = new Context()) {
+    try (final Z3Pool.Lease z3 = Z3Pool.acquire()) {
+      final Context ctx = z3.context();
       BoolExpr target = null;
-      Set<String> varNames = constraints.collectVarSet();
-      HashMap<String, IntExpr> varDef = new HashMap<>();
-      for (String varName : varNames) {
-        IntExpr varExp = ctx.mkIntConst(varName);
-        varDef.put(varName, varExp);
-      }
-      if(!varDef.containsKey(v1) || !varDef.containsKey(v2)) {
+      LiaVarBinding varDef = LiaVarBinding.declare(ctx, constraints);
+      if(!varDef.contains(v1) || !varDef.contains(v2)) {
         return false;
       }
 
       BoolExpr formulaF = (BoolExpr) constraints.transToSMT(ctx, varDef);
       BoolExpr v1Eqv2 = ctx.mkEq( varDef.get(v1), varDef.get(v2) );
       target = ctx.mkAnd(formulaF, ctx.mkNot(v1Eqv2));
-      Solver s = ctx.mkSolver(ctx.tryFor(ctx.mkTactic("qflia"), SqlSolver.timeout));
-      s.add(target);
-      Status q = s.check();
+      Solver s = z3.timedSolver("qflia", ProofContext.current().smtTimeout());
+      Status q;
+      s.push();
+      try {
+        s.add(target);
+        q = s.check();
+      } finally {
+        s.pop();
+      }
       switch(q) {
         case UNSATISFIABLE -> {
           return true;
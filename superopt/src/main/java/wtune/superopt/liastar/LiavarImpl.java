@@ -2,10 +2,11 @@ package wtune.superopt.liastar;
 
 import com.microsoft.z3.Context;
 import com.microsoft.z3.Expr;
-import com.microsoft.z3.IntExpr;
 import com.microsoft.z3.Solver;
+import wtune.superopt.logic.LiaVars;
 import wtune.superopt.util.PrettyBuilder;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -14,7 +15,12 @@ import java.util.function.Function;
 
 public class LiavarImpl extends Liastar {
 
-  public String varName;
+  public final String varName;
+  // The id in the table last asked for. Resolved on first use rather than on construction, which
+  // keeps copying a formula free of table lookups; copies share the resolved id.
+  private Interned interned;
+
+  private record Interned(LiaVars liaVars, int varId) {}
 
   @Override
   public int embeddingLayers() {
@@ -28,6 +34,11 @@ public class LiavarImpl extends Liastar {
     return varSet;
   }
 
+  @Override
+  public void collectVarIds(LiaVars liaVars, BitSet ids) {
+    ids.set(idIn(liaVars));
+  }
+
   @Override
   public Liastar mergeMult(HashMap<LiamultImpl, String> multToVar) {
     return this;
@@ -35,13 +46,28 @@ public class LiavarImpl extends Liastar {
 
 
   public LiavarImpl() {
-    varName = "";
+    this("");
   }
 
   public LiavarImpl(String s) {
     varName = s;
   }
 
+  private LiavarImpl(LiavarImpl other) {
+    varName = other.varName;
+    interned = other.interned;
+    innerStar = other.innerStar;
+  }
+
+  /** The id of this variable in `liaVars`. */
+  int idIn(LiaVars liaVars) {
+    final Interned interned = this.interned;
+    if (interned != null && interned.liaVars == liaVars) return interned.varId;
+    final int varId = liaVars.idOf(varName);
+    this.interned = new Interned(liaVars, varId);
+    return varId;
+  }
+
   String getValue() {
     return varName;
   }
@@ -75,7 +101,7 @@ public class LiavarImpl extends Liastar {
 
   @Override
   public Liastar deepcopy() {
-    return mkVar(innerStar, varName);
+    return new LiavarImpl(this);
   }
 
   @Override
@@ -111,8 +137,8 @@ public class LiavarImpl extends Liastar {
   }
 
   @Override
-  public Expr transToSMT(Context ctx, HashMap<String, IntExpr> varsName) {
-    return varsName.get(varName);
+  public Expr transToSMT(Context ctx, LiaVarBinding varsName) {
+    return varsName.get(this);
   }
 
   @Override
@@ -132,6 +158,6 @@ public class LiavarImpl extends Liastar {
 
   @Override
   public Liastar transformPostOrder(Function<Liastar, Liastar> transformer) {
-    return transformer.apply(mkVar(innerStar, varName));
+    return transformer.apply(new LiavarImpl(this));
   }
 }
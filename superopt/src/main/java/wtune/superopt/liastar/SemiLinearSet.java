@@ -2,7 +2,8 @@ package wtune.superopt.liastar;
 
 import com.microsoft.z3.*;
 import wtune.superopt.logic.LogicSupport;
-import wtune.superopt.logic.SqlSolver;
+import wtune.superopt.logic.ProofContext;
+import wtune.superopt.logic.Z3Pool;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -11,24 +12,17 @@ public class SemiLinearSet {
 
   ArrayList<LinearSet> sls;
 
-  static private ThreadLocal<Integer> slsId = new ThreadLocal<>() {
-    public Integer initialValue() {
-      return 0;
-    }
-  };
-
   SemiLinearSet() {
     sls = new ArrayList<>();
   }
 
   static int newSlsId() {
-    slsId.set(slsId.get() + 1);
-    return slsId.get();
+    return ProofContext.current().nextSlsId();
   }
 
   public static int resetSlsId() {
-    slsId.set(0);
-    return slsId.get();
+    ProofContext.current().resetSlsId();
+    return 0;
   }
 
   SemiLinearSet(LinearSet ls) {
@@ -81,7 +75,7 @@ public class SemiLinearSet {
     return result;
   }
 
-  public BoolExpr transToSMT(Context ctx, ArrayList<String> innerVector, HashMap<String, IntExpr> varsName, int outerVarNum) {
+  public BoolExpr transToSMT(Context ctx, ArrayList<String> innerVector, LiaVarBinding varsName, int outerVarNum) {
     if(sls.size() == 0) {
       BoolExpr result = ctx.mkEq(varsName.get(innerVector.get(0)), ctx.mkInt(0));
       for(int i = 1; i < innerVector.size(); ++ i) {
@@ -150,9 +144,10 @@ public class SemiLinearSet {
   }
 
   public LinearSet getGapLS(ArrayList<String> innerVector, Liastar constr, int outerVarNum, int limit) throws Exception {
-    try (final Context ctx = new Context()) {
+    try (final Z3Pool.Lease z3 = Z3Pool.acquire()) {
+      final Context ctx = z3.context();
       BoolExpr target = null;
-      HashMap<String, IntExpr> varDef = new HashMap<>();
+      LiaVarBinding varDef = new LiaVarBinding();
       for (int i = 0; i < innerVector.size(); ++i) {
         String varName = innerVector.get(i);
         IntExpr varExp = ctx.mkIntConst(varName);
@@ -167,24 +162,29 @@ public class SemiLinearSet {
       BoolExpr formulaF = (BoolExpr) constr.transToSMT(ctx, varDef);
       BoolExpr formulaSLS = transToSMT(ctx, innerVector, varDef, outerVarNum);
       target = ctx.mkAnd(target, ctx.mkAnd(formulaF, formulaSLS));
-      Solver s = ctx.mkSolver(ctx.tryFor(ctx.mkTactic("lia"), SqlSolver.timeout));
-      s.add(target);
-      Status q = s.check();
-      if (q == Status.UNSATISFIABLE)
-        return null;
-      else if (q == Status.UNKNOWN) {
-        if (LogicSupport.dumpLiaFormulas) {
-          System.out.println(target);
-        }
-        throw new Exception("sls fail");
-      } else {
-        ArrayList<Long> gapVector = new ArrayList<>();
-        for (int i = 0; i < outerVarNum; ++i) {
-          Long value = Long.parseLong(s.getModel().getConstInterp(varDef.get(innerVector.get(i))).toString());
-          gapVector.add(value);
+      Solver s = z3.timedSolver("lia", ProofContext.current().smtTimeout());
+      s.push();
+      try {
+        s.add(target);
+        Status q = s.check();
+        if (q == Status.UNSATISFIABLE)
+          return null;
+        else if (q == Status.UNKNOWN) {
+          if (LogicSupport.dumpLiaFormulas) {
+            System.out.println(target);
+          }
+          throw new Exception("sls fail");
+        } else {
+          ArrayList<Long> gapVector = new ArrayList<>();
+          for (int i = 0; i < outerVarNum; ++i) {
+            Long value = Long.parseLong(s.getModel().getConstInterp(varDef.get(innerVector.get(i))).toString());
+            gapVector.add(value);
+          }
+          LinearSet ls = new LinearSet(gapVector, new ArrayList<>());
+          return ls;
         }
-        LinearSet ls = new LinearSet(gapVector, new ArrayList<>());
-        return ls;
+      } finally {
+        s.pop();
       }
     }
   }
@@ -1,7 +1,6 @@
 package wtune.superopt.logic;
 
 import wtune.sql.plan.*;
-import wtune.sql.schema.Schema;
 import wtune.sql.util.CastRemover;
 
 
@@ -9,17 +8,11 @@ public class CASTSupport {
 
   private final PlanContext plan0, plan1;
 
-  public static Schema schema;
-
   CASTSupport(PlanContext p0, PlanContext p1) {
     plan0 = p0;
     plan1 = p1;
   }
 
-  public static void setSchema(Schema s) {
-    schema = s;
-  }
-
   public static boolean castHandler(PlanContext p0, PlanContext p1) {
     CASTSupport castSupprt = new CASTSupport(p0, p1);
     return castSupprt.handler();
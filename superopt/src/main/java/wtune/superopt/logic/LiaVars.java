@@ -0,0 +1,48 @@
+package wtune.superopt.logic;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns the names of {@link wtune.superopt.liastar.Liastar} variables as dense integer ids.
+ *
+ * <p>Each {@link ProofContext} owns a table, so the ids of a proof stay small and the table is
+ * dropped with the proof. The workers of a portfolio share the table of their proof, so interning
+ * is thread-safe and {@link #nameOf(int)} does not lock. A variable remembers the table it was
+ * interned in, and is interned again by name when it meets the table of another context.
+ */
+public final class LiaVars {
+  private final Map<String, Integer> ids;
+  private volatile String[] names; // published after the new name, before its id
+  private int numNames; // guarded by `this`
+
+  public LiaVars() {
+    this.ids = new ConcurrentHashMap<>();
+    this.names = new String[16];
+  }
+
+  /** The table of the current proof. */
+  public static LiaVars current() {
+    return ProofContext.current().liaVars();
+  }
+
+  public int idOf(String name) {
+    final Integer id = ids.get(name);
+    if (id != null) return id;
+    synchronized (this) {
+      final Integer raced = ids.get(name);
+      if (raced != null) return raced;
+
+      String[] names = this.names;
+      if (numNames == names.length) this.names = names = Arrays.copyOf(names, numNames << 1);
+      names[numNames] = name;
+      ids.put(name, numNames);
+      return numNames++;
+    }
+  }
+
+  public String nameOf(int id) {
+    return names[id];
+  }
+}
@@ -25,6 +25,7 @@ import static wtune.superopt.logic.LogicSupport.UNKNOWN;
 class LogicProver {
   private final Substitution rule;
   private final UExprTranslationResult uExprs;
+  private final Z3Pool.Lease lease;
   private final Context z3;
   private final List<BoolExpr> constraints;
   private final Cache cache;
@@ -33,21 +34,15 @@ class LogicProver {
 
   private int callCount;
 
-  private static ThreadLocal<Integer> tupleId = new ThreadLocal<Integer>() {
-    public Integer initialValue() {
-      return 0;
-    }
-  };
-
   Integer newTupleId() {
-    tupleId.set(tupleId.get() + 1);
-    return tupleId.get();
+    return ProofContext.current().nextTupleId();
   }
 
-  LogicProver(UExprTranslationResult uExprs, Context z3, int tweaks) {
+  LogicProver(UExprTranslationResult uExprs, Z3Pool.Lease lease, int tweaks) {
     this.rule = uExprs.rule();
     this.uExprs = uExprs;
-    this.z3 = z3;
+    this.lease = lease;
+    this.z3 = lease.context();
     this.constraints = new ArrayList<>();
     this.cache = new Cache();
     this.disableIntegrityConstraintsTheorem =
@@ -373,18 +368,33 @@ class LogicProver {
     UTerm newExp2 = exp2; //makeBoundVarUnique(exp2.copy(), tupleNames);
     ArithExpr arithExp1 = myTrUtermNotNeedLia(newExp1);
     ArithExpr arithExp2 = myTrUtermNotNeedLia(newExp2);
-    final Solver solver = z3.mkSolver();
-    solver.add(constraints.toArray(BoolExpr[]::new));
-    return trResult(check(solver, z3.mkNot(z3.mkEq(arithExp1, arithExp2))));
+    final Solver solver = lease.solver();
+    solver.push();
+    try {
+      solver.add(constraints.toArray(BoolExpr[]::new));
+      return trResult(check(solver, z3.mkNot(z3.mkEq(arithExp1, arithExp2))));
+    } finally {
+      solver.pop();
+    }
   }
 
   private int proveEq0(UTerm masterTerm, UTerm slaveTerm) {
+    // the pooled solver of the lease, everything added in this proof is popped at the end
+    final Solver solver = lease.solver();
+    solver.push();
+    try {
+      solver.add(constraints.toArray(BoolExpr[]::new));
+      return proveEq0(solver, masterTerm, slaveTerm);
+    } finally {
+      solver.pop();
+    }
+  }
+
+  private int proveEq0(Solver solver, UTerm masterTerm, UTerm slaveTerm) {
     final UTerm masterBody = LogicSupport.getBody(masterTerm);
     final UTerm slaveBody = LogicSupport.getBody(slaveTerm);
     final Set<UVar> masterVars = LogicSupport.getBoundedVars(masterTerm);
     final Set<UVar> slaveVars = LogicSupport.getBoundedVars(slaveTerm);
-    final Solver solver = z3.mkSolver();
-    solver.add(constraints.toArray(BoolExpr[]::new));
 
     // simple case: E = E' or Sum{x}(E) = Sum{x}(E') ==> tr(E) = tr(E')
     if (masterVars.size() == slaveVars.size()) {
@@ -691,18 +701,21 @@ class LogicProver {
   private Status check(Solver solver, BoolExpr... exprs) {
     LogicSupport.incrementNumInvocations();
     solver.push();
-    solver.add(exprs);
-    final Status res = solver.check();
-    if (LogicSupport.dumpFormulas) {
-      System.out.println("==== Begin of Snippet-" + (++callCount) + " ====");
-      System.out.println(solver);
-      System.out.println("(check-sat)");
-      System.out.println("==== End of Snippet-" + callCount + " ====");
-      System.out.println("==> Result: " + res);
+    try {
+      solver.add(exprs);
+      final Status res = solver.check();
+      if (LogicSupport.dumpFormulas) {
+        System.out.println("==== Begin of Snippet-" + (++callCount) + " ====");
+        System.out.println(solver);
+        System.out.println("(check-sat)");
+        System.out.println("==== End of Snippet-" + callCount + " ====");
+        System.out.println("==> Result: " + res);
+      }
       return res;
+    } finally {
+      // the solver is shared by the later proofs of the lease
+      solver.pop();
     }
-    solver.pop();
-    return res;
     // return solver.check(exprs);
   }
 
@@ -1,6 +1,5 @@
 package wtune.superopt.logic;
 
-import com.microsoft.z3.Context;
 import com.microsoft.z3.Global;
 import wtune.sql.plan.PlanContext;
 import wtune.sql.plan.PlanKind;
@@ -28,7 +27,7 @@ public abstract class LogicSupport {
     Global.setParameter("smt.qi.quick_checker", "2");
     Global.setParameter("smt.qi.max_multi_patterns", "1024");
     Global.setParameter("smt.mbqi.max_iterations", "3");
-    Global.setParameter("timeout", SqlSolver.timeout.toString());
+    Global.setParameter("timeout", String.valueOf(LogicSupport.DEFAULT_SMT_TIMEOUT));
     Global.setParameter("combined_solver.solver2_unknown", "0");
     Global.setParameter("pp.max_depth", "100");
   }
@@ -37,6 +36,12 @@ public abstract class LogicSupport {
   private static final AtomicInteger NUM_INVOCATIONS = new AtomicInteger(0);
   public static boolean dumpFormulas;
   public static boolean dumpLiaFormulas;
+  public static boolean liaPortfolio;
+  public static long liaBudget; // ms per proof, non-positive for no budget
+  public static long spesBudget; // ms per proof, non-positive for no budget
+  public static ProofCache proofCache;
+
+  public static final int DEFAULT_SMT_TIMEOUT = 2000; // ms
 
   public static final int PROVER_DISABLE_INTEGRITY_CONSTRAINTS_THEOREM = 1;
 
@@ -55,6 +60,22 @@ public abstract class LogicSupport {
     LogicSupport.dumpLiaFormulas = dumpLiaFormulas;
   }
 
+  public static void setLiaPortfolio(boolean liaPortfolio) {
+    LogicSupport.liaPortfolio = liaPortfolio;
+  }
+
+  public static void setLiaBudget(long liaBudget) {
+    LogicSupport.liaBudget = liaBudget;
+  }
+
+  public static void setSpesBudget(long spesBudget) {
+    LogicSupport.spesBudget = spesBudget;
+  }
+
+  public static void setProofCache(ProofCache proofCache) {
+    LogicSupport.proofCache = proofCache;
+  }
+
   public static String stringifyResult(int result) {
     return switch (result) {
       case EQ -> "EQ";
@@ -70,19 +91,19 @@ public abstract class LogicSupport {
   }
 
   public static int proveEq(UExprTranslationResult uExprs) {
-    try (final Context z3 = new Context()) {
+    try (final Z3Pool.Lease z3 = Z3Pool.acquire()) {
       return new LogicProver(uExprs, z3, 0).proveEq();
     }
   }
 
   public static int proveEqNotNeedLia(UExprTranslationResult uExprs) {
-    try (final Context z3 = new Context()) {
+    try (final Z3Pool.Lease z3 = Z3Pool.acquire()) {
       return new LogicProver(uExprs, z3, 0).proveEqNotNeedLia();
     }
   }
 
   public static int proveEq(UExprTranslationResult uExprs, int tweaks) {
-    try (final Context z3 = new Context()) {
+    try (final Z3Pool.Lease z3 = Z3Pool.acquire()) {
       return new LogicProver(uExprs, z3, tweaks).proveEq();
     }
   }
@@ -90,8 +111,7 @@ public abstract class LogicSupport {
   public static int proveEqBySpes(Substitution rule) {
     try {
       var planPair = SubstitutionSupport.translateAsPlan2(rule);
-      boolean eq = SPESSupport.prove(planPair.getLeft(), planPair.getRight());
-      return eq ? EQ : NEQ;
+      return SPESSupport.proveEq(planPair.getLeft(), planPair.getRight());
     } catch (Exception e) {
       return NEQ;
     }
@@ -99,7 +119,7 @@ public abstract class LogicSupport {
 
   public static int proveEqByLIAStar(UExprTranslationResult uExprs) {
     try {
-      return new SqlSolver(uExprs).proveEq();
+      return ProofContext.prove(null, () -> new SqlSolver(uExprs).proveEq());
     } catch (Exception e) {
       e.printStackTrace();
       return UNKNOWN;
@@ -108,7 +128,7 @@ public abstract class LogicSupport {
 
   public static int proveEqByLIAStar(UExprConcreteTranslationResult uExprs) {
     try {
-      return new SqlSolver(uExprs).proveEq();
+      return ProofContext.prove(uExprs.schema(), () -> new SqlSolver(uExprs).proveEq());
     } catch (Exception e) {
       e.printStackTrace();
       return UNKNOWN;
@@ -124,18 +144,23 @@ public abstract class LogicSupport {
       SubstitutionTranslatorResult extraInfo,
       boolean isConcretePlan) {
     try {
-      int flag = UExprSupport.UEXPR_FLAG_INTEGRITY_CONSTRAINT_REWRITE;
-      if (isConcretePlan) flag |= UExprSupport.UEXPR_FLAG_VERIFY_CONCRETE_PLAN;
-
-      final UExprTranslationResult uExprs = UExprSupport.translateToUExpr(rule, flag, extraInfo);
-      if (uExprs == null) return UNKNOWN;
-      return new SqlSolver(uExprs).proveEq();
+      return ProofContext.prove(null, () -> proveEqByLIAStar0(rule, extraInfo, isConcretePlan));
     } catch (Exception e) {
       e.printStackTrace();
       return UNKNOWN;
     }
   }
 
+  private static int proveEqByLIAStar0(
+      Substitution rule, SubstitutionTranslatorResult extraInfo, boolean isConcretePlan) {
+    int flag = UExprSupport.UEXPR_FLAG_INTEGRITY_CONSTRAINT_REWRITE;
+    if (isConcretePlan) flag |= UExprSupport.UEXPR_FLAG_VERIFY_CONCRETE_PLAN;
+
+    final UExprTranslationResult uExprs = UExprSupport.translateToUExpr(rule, flag, extraInfo);
+    if (uExprs == null) return UNKNOWN;
+    return new SqlSolver(uExprs).proveEq();
+  }
+
   public static int proveEqByLIAStar2(Substitution rule) {
     return proveEqByLIAStar2(rule, null, false);
   }
@@ -147,40 +172,45 @@ public abstract class LogicSupport {
     if (isConcretePlan) assert extraInfo != null;
 
     try {
-      final List<Symbol> srcFuncSymbols = rule._0().symbols().symbolsOf(Symbol.Kind.FUNC);
-      final List<Symbol> tgtFuncSymbols = rule._1().symbols().symbolsOf(Symbol.Kind.FUNC);
-      // Rules without Agg nodes
-      if (srcFuncSymbols.isEmpty() && tgtFuncSymbols.isEmpty())
-        return proveEqByLIAStar(rule, extraInfo, isConcretePlan);
-      // Concrete queries with deterministic Agg functions, no need to enum all cases
-      if (all(srcFuncSymbols, f -> ((Agg) rule._0().symbols().ownerOf(f)).aggFuncKind() != AggFuncKind.UNKNOWN) &&
-          all(tgtFuncSymbols, f -> ((Agg) rule._1().symbols().ownerOf(f)).aggFuncKind() != AggFuncKind.UNKNOWN))
-        return proveEqByLIAStar(rule, extraInfo, isConcretePlan);
-
-      // For UNKNOWN type Agg function: enumerate all cases of agg functions on each Agg node
-      final Set<Symbol> visitedFuncSymbols = new HashSet<>();
-      final Map<Set<Symbol>, List<AggFuncKind>> feasibleFuncMap = new HashMap<>();
-      for (Symbol fSym : srcFuncSymbols) {
-        if (visitedFuncSymbols.contains(fSym)) continue;
-        final Set<Symbol> eqFuncSyms = new HashSet<>(rule.constraints().eqClassOf(fSym));
-        for (Symbol tgtFuncSym : tgtFuncSymbols) {
-          if (any(eqFuncSyms, s -> rule.constraints().instantiationOf(tgtFuncSym) == s))
-            eqFuncSyms.add(tgtFuncSym);
-        }
-        if (any(eqFuncSyms, s -> ((Agg) s.ctx().ownerOf(s)).deduplicated()))
-          feasibleFuncMap.put(eqFuncSyms, AggFuncKind.dedupAggFuncKinds);
-        else feasibleFuncMap.put(eqFuncSyms, AggFuncKind.commonAggFuncKinds);
-        visitedFuncSymbols.addAll(eqFuncSyms);
-      }
-
-      final List<Set<Symbol>> eqFuncSymList = feasibleFuncMap.keySet().stream().toList();
-      return enumAggFunc(rule, extraInfo, isConcretePlan, eqFuncSymList, feasibleFuncMap, 0);
+      return ProofContext.prove(null, () -> proveEqByLIAStar20(rule, extraInfo, isConcretePlan));
     } catch (Exception e) {
       e.printStackTrace();
       return UNKNOWN;
     }
   }
 
+  private static int proveEqByLIAStar20(
+      Substitution rule, SubstitutionTranslatorResult extraInfo, boolean isConcretePlan) {
+    final List<Symbol> srcFuncSymbols = rule._0().symbols().symbolsOf(Symbol.Kind.FUNC);
+    final List<Symbol> tgtFuncSymbols = rule._1().symbols().symbolsOf(Symbol.Kind.FUNC);
+    // Rules without Agg nodes
+    if (srcFuncSymbols.isEmpty() && tgtFuncSymbols.isEmpty())
+      return proveEqByLIAStar(rule, extraInfo, isConcretePlan);
+    // Concrete queries with deterministic Agg functions, no need to enum all cases
+    if (all(srcFuncSymbols, f -> ((Agg) rule._0().symbols().ownerOf(f)).aggFuncKind() != AggFuncKind.UNKNOWN) &&
+        all(tgtFuncSymbols, f -> ((Agg) rule._1().symbols().ownerOf(f)).aggFuncKind() != AggFuncKind.UNKNOWN))
+      return proveEqByLIAStar(rule, extraInfo, isConcretePlan);
+
+    // For UNKNOWN type Agg function: enumerate all cases of agg functions on each Agg node
+    final Set<Symbol> visitedFuncSymbols = new HashSet<>();
+    final Map<Set<Symbol>, List<AggFuncKind>> feasibleFuncMap = new HashMap<>();
+    for (Symbol fSym : srcFuncSymbols) {
+      if (visitedFuncSymbols.contains(fSym)) continue;
+      final Set<Symbol> eqFuncSyms = new HashSet<>(rule.constraints().eqClassOf(fSym));
+      for (Symbol tgtFuncSym : tgtFuncSymbols) {
+        if (any(eqFuncSyms, s -> rule.constraints().instantiationOf(tgtFuncSym) == s))
+          eqFuncSyms.add(tgtFuncSym);
+      }
+      if (any(eqFuncSyms, s -> ((Agg) s.ctx().ownerOf(s)).deduplicated()))
+        feasibleFuncMap.put(eqFuncSyms, AggFuncKind.dedupAggFuncKinds);
+      else feasibleFuncMap.put(eqFuncSyms, AggFuncKind.commonAggFuncKinds);
+      visitedFuncSymbols.addAll(eqFuncSyms);
+    }
+
+    final List<Set<Symbol>> eqFuncSymList = feasibleFuncMap.keySet().stream().toList();
+    return enumAggFunc(rule, extraInfo, isConcretePlan, eqFuncSymList, feasibleFuncMap, 0);
+  }
+
   private static int enumAggFunc(
       Substitution rule,
       SubstitutionTranslatorResult extraInfo,
@@ -206,6 +236,10 @@ public abstract class LogicSupport {
   }
 
   public static int proveEqByLIAStarSymbolic(PlanContext p0, PlanContext p1) {
+    return ProofContext.prove(p0.schema(), () -> proveEqByLIAStarSymbolic0(p0, p1));
+  }
+
+  private static int proveEqByLIAStarSymbolic0(PlanContext p0, PlanContext p1) {
     if (!CASTSupport.castHandler(p0, p1)) {
       return NEQ;
     }
@@ -279,6 +313,10 @@ public abstract class LogicSupport {
   }
 
   public static int proveEqByLIAStarConcrete(PlanContext p0, PlanContext p1) {
+    return ProofContext.prove(p0.schema(), () -> proveEqByLIAStarConcrete0(p0, p1));
+  }
+
+  private static int proveEqByLIAStarConcrete0(PlanContext p0, PlanContext p1) {
 //    System.out.println("Proving\n" + p0 + "\n" + p1);
     if (!CASTSupport.castHandler(p0, p1)) {
       return NEQ;
@@ -294,7 +332,7 @@ public abstract class LogicSupport {
     }
 
     for (SubstitutionTranslatorResult res : results) {
-      int verifyResult = proveEqByLIAStarConcrete(res.src, res.tgt);
+      int verifyResult = proveEqByLIAStarConcrete0(res.src, res.tgt);
       if (verifyResult != EQ) return verifyResult;
     }
     return LogicSupport.EQ;
@@ -0,0 +1,231 @@
+package wtune.superopt.logic;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.*;
+import static wtune.superopt.logic.LogicSupport.*;
+
+/**
+ * On-disk cache of proof results, shared across runs.
+ *
+ * <p>Each result (EQ/NEQ/UNKNOWN, elapsed time, prover) is appended to a log file as a record:
+ * <code>int length, payload, int crc32(payload)</code>. On open, the log is replayed into an
+ * in-memory index, where a later record of the same key wins.
+ *
+ * <p>EQ and NEQ are final. UNKNOWN means the prover gave up, usually on its budget. It is reused
+ * only while the budget of the prover is finite and not larger than the time already spent by the
+ * recorded attempt, otherwise the proof is run again and the new result replaces it.
+ *
+ * <p>Appends take an exclusive file lock. Before writing, the records appended by other processes
+ * are read into the index. A record torn by a crash is truncated by the next writer. Within a JVM
+ * there is one instance per file, see {@link #open(Path)}.
+ */
+public class ProofCache implements Closeable {
+  public enum Prover {
+    LIA_STAR,
+    LIA_STAR2,
+    LIA_STAR_CONCRETE,
+    SPES
+  }
+
+  public record Entry(int result, long elapsed, Prover prover) {}
+
+  private static final Map<Path, ProofCache> INSTANCES = new ConcurrentHashMap<>();
+  private static final int MAX_RECORD_SIZE = 1 << 24;
+  private static final int REPLAY_BUFFER_SIZE = 1 << 16;
+
+  private final Path path;
+  private final FileChannel channel;
+  private final Map<String, Entry> index;
+  private volatile long readOffset;
+
+  private ProofCache(Path path) throws IOException {
+    this.path = path;
+    this.channel = FileChannel.open(path, CREATE, READ, WRITE);
+    this.index = new ConcurrentHashMap<>();
+    replay();
+  }
+
+  public static ProofCache open(Path path) throws IOException {
+    try {
+      return INSTANCES.computeIfAbsent(
+          path.toAbsolutePath().normalize(),
+          p -> {
+            try {
+              return new ProofCache(p);
+            } catch (IOException ex) {
+              throw new UncheckedIOException(ex);
+            }
+          });
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  public int size() {
+    return index.size();
+  }
+
+  public Entry lookup(Prover prover, String key) {
+    final Entry entry = index.get(mkIndexKey(prover, key));
+    if (entry != null) return entry;
+
+    try {
+      // Another process may have appended it.
+      if (channel.size() == readOffset) return null;
+      synchronized (this) {
+        replay();
+      }
+      return index.get(mkIndexKey(prover, key));
+    } catch (IOException ex) {
+      return null;
+    }
+  }
+
+  public synchronized void record(Prover prover, String key, int result, long elapsed)
+      throws IOException {
+    final ByteBuffer record = encode(prover, key, result, elapsed);
+    try (final FileLock lock = channel.lock()) {
+      assert lock.isValid();
+      replay();
+      final long size = channel.size();
+      if (readOffset < size) channel.truncate(readOffset); // torn by a crashed writer
+
+      long position = readOffset;
+      while (record.hasRemaining()) position += channel.write(record, position);
+      readOffset = position;
+      channel.force(false);
+    }
+    index.put(mkIndexKey(prover, key), new Entry(result, elapsed, prover));
+  }
+
+  /** Returns the cached result of `key`, or runs `proof` and records its result. */
+  public int prove(Prover prover, String key, IntSupplier proof) {
+    final Entry entry = lookup(prover, key);
+    if (entry != null && isReusable(entry)) return entry.result();
+
+    final long start = System.currentTimeMillis();
+    final int result = proof.getAsInt();
+    final long elapsed = System.currentTimeMillis() - start;
+    if (result == EQ || result == NEQ || result == UNKNOWN) {
+      try {
+        record(prover, key, result, elapsed);
+      } catch (IOException ex) {
+        System.err.println("failed to record proof to " + path + ": " + ex);
+      }
+    }
+    return result;
+  }
+
+  /** Proves by `proof`, via the cache set by {@link LogicSupport#setProofCache} if any. */
+  public static int prove(Prover prover, Supplier<String> key, IntSupplier proof) {
+    final ProofCache cache = LogicSupport.proofCache;
+    if (cache == null) return proof.getAsInt();
+    return cache.prove(prover, key.get(), proof);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    INSTANCES.remove(path, this);
+    channel.close();
+  }
+
+  private static boolean isReusable(Entry entry) {
+    if (entry.result() != UNKNOWN) return true;
+    // A larger budget, or none at all, may settle it.
+    final long budget = entry.prover() == Prover.SPES ? spesBudget : liaBudget;
+    return budget > 0 && budget <= entry.elapsed();
+  }
+
+  private static String mkIndexKey(Prover prover, String key) {
+    return prover.ordinal() + ":" + key;
+  }
+
+  private static ByteBuffer encode(Prover prover, String key, int result, long elapsed)
+      throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(key.length() + 32);
+    final DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0); // length placeholder
+    out.writeUTF(prover.name());
+    out.writeInt(result);
+    out.writeLong(elapsed);
+    final byte[] keyBytes = key.getBytes(UTF_8);
+    out.writeInt(keyBytes.length);
+    out.write(keyBytes);
+    out.writeInt(0); // crc placeholder
+
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+    final int payloadLength = buffer.capacity() - 8;
+    final CRC32 crc = new CRC32();
+    crc.update(buffer.array(), 4, payloadLength);
+    buffer.putInt(0, payloadLength);
+    buffer.putInt(4 + payloadLength, (int) crc.getValue());
+    return buffer;
+  }
+
+  // Reads the complete records after `readOffset`, stops at the first incomplete or corrupt one.
+  // The log is read through a buffer of REPLAY_BUFFER_SIZE, grown only for a larger record.
+  private void replay() throws IOException {
+    long size = channel.size();
+    if (size <= readOffset) return;
+
+    ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size - readOffset, REPLAY_BUFFER_SIZE));
+    long position = readOffset;
+    final CRC32 crc = new CRC32();
+    while (true) {
+      while (buffer.hasRemaining() && position < size) {
+        final int n = channel.read(buffer, position);
+        if (n < 0) size = position; // truncated meanwhile
+        else position += n;
+      }
+      buffer.flip();
+
+      while (buffer.remaining() >= 8) {
+        final int start = buffer.position();
+        final int length = buffer.getInt(start);
+        if (length <= 0 || length > MAX_RECORD_SIZE) return;
+        if (buffer.remaining() < length + 8) break;
+
+        crc.reset();
+        crc.update(buffer.array(), start + 4, length);
+        if (buffer.getInt(start + 4 + length) != (int) crc.getValue()) return;
+
+        try (final DataInputStream in =
+            new DataInputStream(new ByteArrayInputStream(buffer.array(), start + 4, length))) {
+          final Prover prover = Prover.valueOf(in.readUTF());
+          final int result = in.readInt();
+          final long elapsed = in.readLong();
+          final byte[] key = new byte[in.readInt()];
+          in.readFully(key);
+          index.put(mkIndexKey(prover, new String(key, UTF_8)), new Entry(result, elapsed, prover));
+        } catch (IllegalArgumentException ex) {
+          // written by a newer version with an unknown prover, skip it
+        }
+
+        buffer.position(start + 8 + length);
+        readOffset += 8 + length;
+      }
+
+      if (position >= size) return; // the rest is an incomplete record
+
+      final int pending = buffer.remaining();
+      if (pending >= 4 && buffer.getInt(buffer.position()) + 8 > buffer.capacity()) {
+        final ByteBuffer larger = ByteBuffer.allocate(buffer.getInt(buffer.position()) + 8);
+        larger.put(buffer);
+        buffer = larger;
+      } else {
+        buffer.compact();
+      }
+    }
+  }
+}
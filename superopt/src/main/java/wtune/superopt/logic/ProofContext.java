@@ -0,0 +1,180 @@
+package wtune.superopt.logic;
+
+import wtune.sql.schema.Schema;
+import wtune.superopt.uexpr.UTerm;
+
+import java.util.concurrent.Callable;
+import java.util.function.IntSupplier;
+
+/**
+ * Mutable state of a single LIA* proof.
+ *
+ * <p>The state used to live in static fields, which made concurrent proofs interfere with each
+ * other. A context is bound to the proving thread by {@link #open()}. Opening is re-entrant: a
+ * nested open (e.g. proveEqByLIAStarConcrete -> proveEqByLIAStar) shares the outer context, and
+ * only the outermost close unbinds it.
+ *
+ * <p>Code running outside any opened proof sees a thread-local ambient context, which keeps the
+ * behavior of the former thread-local counters.
+ */
+public class ProofContext implements AutoCloseable {
+  private static final ThreadLocal<ProofContext> CURRENT =
+      ThreadLocal.withInitial(() -> new ProofContext(null, null));
+
+  private final ProofContext outer;
+  private Schema schema;
+  private final long deadline;
+  private int depth;
+
+  private boolean weakEquals;
+  private UTerm globalExpr;
+  private int selectedIC = -1;
+  private boolean hasIC = true;
+
+  private int freshVarId, slsId, tupleId, dnfSteps;
+  private LiaVars liaVars;
+
+  private ProofContext(ProofContext outer, Schema schema) {
+    this.outer = outer;
+    this.schema = schema;
+    this.deadline =
+        outer == null || LogicSupport.liaBudget <= 0
+            ? Long.MAX_VALUE
+            : System.currentTimeMillis() + LogicSupport.liaBudget;
+  }
+
+  public static ProofContext current() {
+    return CURRENT.get();
+  }
+
+  public static ProofContext open() {
+    return open(null);
+  }
+
+  /**
+   * Opens a proof over the tables of `schema`, which is null for symbolic rules. A nested open
+   * shares the outer context, and supplies the schema if the outer one has none.
+   */
+  public static ProofContext open(Schema schema) {
+    final ProofContext ctx = CURRENT.get();
+    if (ctx.depth > 0) {
+      ++ctx.depth;
+      if (ctx.schema == null) ctx.schema = schema;
+      return ctx;
+    }
+
+    final ProofContext fresh = new ProofContext(ctx, schema);
+    fresh.depth = 1;
+    CURRENT.set(fresh);
+    return fresh;
+  }
+
+  /** Runs `proof` in a context opened by {@link #open(Schema)}, and closes the context after it. */
+  public static int prove(Schema schema, IntSupplier proof) {
+    final ProofContext ctx = open(schema);
+    try {
+      return proof.getAsInt();
+    } finally {
+      ctx.close();
+    }
+  }
+
+  /** Runs `task` on the current thread as part of this proof, e.g. a portfolio worker. */
+  public <T> T callIn(Callable<T> task) throws Exception {
+    final ProofContext prev = CURRENT.get();
+    CURRENT.set(this);
+    try {
+      return task.call();
+    } finally {
+      CURRENT.set(prev);
+    }
+  }
+
+  @Override
+  public void close() {
+    assert CURRENT.get() == this && depth > 0;
+    if (--depth == 0) CURRENT.set(outer);
+  }
+
+  /** Timeout of a single SMT check, bounded by what is left of the proof's budget. */
+  public int smtTimeout() {
+    if (deadline == Long.MAX_VALUE) return LogicSupport.DEFAULT_SMT_TIMEOUT;
+    final long remaining = deadline - System.currentTimeMillis();
+    return (int) Math.max(1, Math.min(remaining, Integer.MAX_VALUE));
+  }
+
+  public boolean isOutOfBudget() {
+    return System.currentTimeMillis() >= deadline;
+  }
+
+  /** The schema of the concrete queries under proof, or null. */
+  public Schema schema() {
+    return schema;
+  }
+
+  public boolean weakEquals() {
+    return weakEquals;
+  }
+
+  public void setWeakEquals(boolean weakEquals) {
+    this.weakEquals = weakEquals;
+  }
+
+  public UTerm globalExpr() {
+    return globalExpr;
+  }
+
+  public void setGlobalExpr(UTerm globalExpr) {
+    this.globalExpr = globalExpr;
+  }
+
+  public int selectedIC() {
+    return selectedIC;
+  }
+
+  public void selectIC(int selectedIC) {
+    this.selectedIC = selectedIC;
+  }
+
+  public boolean hasIC() {
+    return hasIC;
+  }
+
+  public void setHasIC(boolean hasIC) {
+    this.hasIC = hasIC;
+  }
+
+  /** The names of the Liastar variables built in this proof, interned as ids. */
+  public synchronized LiaVars liaVars() {
+    if (liaVars == null) liaVars = new LiaVars();
+    return liaVars;
+  }
+
+  public synchronized int nextVarId() {
+    return ++freshVarId;
+  }
+
+  public synchronized int nextSlsId() {
+    return ++slsId;
+  }
+
+  public synchronized int nextTupleId() {
+    return ++tupleId;
+  }
+
+  public synchronized int nextDnfStep() {
+    return ++dnfSteps;
+  }
+
+  public synchronized void resetDnfSteps() {
+    dnfSteps = 0;
+  }
+
+  public synchronized void resetVarId() {
+    freshVarId = 0;
+  }
+
+  public synchronized void resetSlsId() {
+    slsId = 0;
+  }
+}
@@ -10,7 +10,6 @@ import java.util.*;
 
 import static wtune.common.utils.IterableSupport.any;
 import static wtune.common.utils.ListSupport.filter;
-import static wtune.superopt.logic.CASTSupport.schema;
 import static wtune.superopt.logic.SqlSolverSupport.hasFreeTuple;
 import static wtune.superopt.logic.SqlSolverSupport.overlap;
 import static wtune.superopt.uexpr.UExprSupport.isPredOfVarArg;
@@ -21,7 +20,6 @@ import static wtune.superopt.uexpr.UName.NAME_IS_NULL;
 
 public class SqlSolver {
 
-  public static final Integer timeout = 2000; // ms
   private UExprTranslationResult uExprsResult;
   private UTerm query1;
   private UTerm query2;
@@ -60,12 +58,13 @@ public class SqlSolver {
       query2.prettyPrint();
       System.out.println();
     }
-    UMulImpl.useWeakEquals = true;
-    if (query1.equals(query2)) {
-      UMulImpl.useWeakEquals = false;
-      return LogicSupport.EQ;
+    final ProofContext ctx = ProofContext.current();
+    ctx.setWeakEquals(true);
+    try {
+      if (query1.equals(query2)) return LogicSupport.EQ;
+    } finally {
+      ctx.setWeakEquals(false);
     }
-    UMulImpl.useWeakEquals = false;
 //    if(!needLia(query1, query2)) {
 //      uExprsResult.setSrcExpr(query1.copy());
 //      uExprsResult.setTgtExpr(query2.copy());
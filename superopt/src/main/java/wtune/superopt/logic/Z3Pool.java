@@ -0,0 +1,193 @@
+package wtune.superopt.logic;
+
+import com.microsoft.z3.*;
+
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of Z3 contexts.
+ *
+ * <p>Creating and closing a native context costs more than many of the short checks during
+ * enumeration. A context is leased to one thread by {@link #acquire()} and returned to the pool
+ * by {@link Lease#close()}. Each thread keeps the context it released last and gets it back on
+ * its next lease, so that the solvers and symbols in it stay on one thread. Other idle contexts
+ * overflow to a shared LIFO deque. The context kept by a thread that has ended is closed on the
+ * next miss. A lease also carries symbols shared by the provers ({@link Lease#isNullFunc()},
+ * {@link Lease#ruleNullEquals()}) and solvers that are reused across leases; checks on a shared
+ * solver must be wrapped in push/pop.
+ *
+ * <p>A context is closed instead of returned if it was interrupted, or after
+ * `wetune.z3.max_uses` leases, which bounds the symbols accumulated in it.
+ */
+public class Z3Pool {
+  private static final int MAX_USES = Integer.getInteger("wetune.z3.max_uses", 1000);
+  private static final int MAX_IDLE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+  private static final ThreadLocal<Lease> LOCAL = new ThreadLocal<>();
+  private static final Set<Lease> KEPT = ConcurrentHashMap.newKeySet();
+  private static final Deque<Lease> IDLE = new ConcurrentLinkedDeque<>();
+  private static final AtomicInteger NUM_IDLE = new AtomicInteger();
+  private static final AtomicLong NUM_CREATED = new AtomicLong();
+  private static final AtomicLong NUM_LEASES = new AtomicLong();
+  private static final AtomicLong NATIVE_NANOS = new AtomicLong();
+
+  private Z3Pool() {}
+
+  public static Lease acquire() {
+    NUM_LEASES.incrementAndGet();
+    Lease lease = LOCAL.get();
+    if (lease != null) {
+      LOCAL.remove();
+      KEPT.remove(lease);
+    } else {
+      lease = IDLE.pollFirst();
+      if (lease == null) {
+        closeAbandoned();
+        return new Lease();
+      }
+      NUM_IDLE.decrementAndGet();
+    }
+
+    ++lease.uses;
+    return lease;
+  }
+
+  public static long numCreated() {
+    return NUM_CREATED.get();
+  }
+
+  public static long numLeases() {
+    return NUM_LEASES.get();
+  }
+
+  /** Time spent in creating and closing contexts. */
+  public static long nativeMillis() {
+    return NATIVE_NANOS.get() / 1_000_000;
+  }
+
+  public static String stringifyMetrics() {
+    return "#Z3Ctx=%d\n#Z3Lease=%d\nZ3Native(ms)=%d"
+        .formatted(numCreated(), numLeases(), nativeMillis());
+  }
+
+  private static void release(Lease lease) {
+    if (!lease.interrupted && lease.uses < MAX_USES) {
+      if (LOCAL.get() == null) {
+        lease.keeper = Thread.currentThread();
+        KEPT.add(lease);
+        LOCAL.set(lease);
+        return;
+      }
+      if (NUM_IDLE.incrementAndGet() <= MAX_IDLE) {
+        IDLE.addFirst(lease);
+        return;
+      }
+      NUM_IDLE.decrementAndGet();
+    }
+
+    closeContext(lease);
+  }
+
+  // The contexts kept by ended threads are unreachable through their thread locals.
+  private static void closeAbandoned() {
+    for (Lease lease : KEPT)
+      if (!lease.keeper.isAlive() && KEPT.remove(lease)) closeContext(lease);
+  }
+
+  private static void closeContext(Lease lease) {
+    final long start = System.nanoTime();
+    lease.ctx.close();
+    NATIVE_NANOS.addAndGet(System.nanoTime() - start);
+  }
+
+  public static class Lease implements AutoCloseable {
+    private final Context ctx;
+    private final Map<String, Solver> solvers;
+    private FuncDecl isNullFunc;
+    private BoolExpr ruleNullEquals;
+    private int uses;
+    private Thread keeper;
+    private volatile boolean interrupted;
+
+    private Lease() {
+      final long start = System.nanoTime();
+      this.ctx = new Context();
+      NATIVE_NANOS.addAndGet(System.nanoTime() - start);
+      NUM_CREATED.incrementAndGet();
+      this.solvers = new HashMap<>(4);
+      this.uses = 1;
+    }
+
+    public Context context() {
+      return ctx;
+    }
+
+    /** IsNull: Int -> Int */
+    public FuncDecl isNullFunc() {
+      if (isNullFunc == null) {
+        final Sort I = ctx.getIntSort();
+        isNullFunc = ctx.mkFuncDecl("IsNull", I, I);
+      }
+      return isNullFunc;
+    }
+
+    /** forall t1 t2. ((isnull(t1)<>0) /\ (isnull(t2)<>0)) -> t1 = t2 */
+    public BoolExpr ruleNullEquals() {
+      if (ruleNullEquals == null) {
+        final Expr[] vars = {ctx.mkIntConst("t1"), ctx.mkIntConst("t2")};
+        final FuncDecl func = isNullFunc();
+        final BoolExpr notNull1 = ctx.mkNot(ctx.mkEq(ctx.mkApp(func, vars[0]), ctx.mkInt(0)));
+        final BoolExpr notNull2 = ctx.mkNot(ctx.mkEq(ctx.mkApp(func, vars[1]), ctx.mkInt(0)));
+        final BoolExpr eq = ctx.mkEq(vars[0], vars[1]);
+        final BoolExpr body = ctx.mkImplies(ctx.mkAnd(notNull1, notNull2), eq);
+        ruleNullEquals = ctx.mkForall(vars, body, 1, null, null, null, null);
+      }
+      return ruleNullEquals;
+    }
+
+    /** The default solver of this context. Wrap the checks in push/pop. */
+    public Solver solver() {
+      return solvers.computeIfAbsent("", ignored -> ctx.mkSolver());
+    }
+
+    /**
+     * A plain solver reserved for `owner`, who may change its parameters. Wrap the checks in
+     * push/pop.
+     */
+    public Solver solver(String owner) {
+      return solvers.computeIfAbsent(owner, ignored -> ctx.mkSolver());
+    }
+
+    /** A solver of `tactic` that gives up after `timeout` ms. Wrap the checks in push/pop. */
+    public Solver timedSolver(String tactic, int timeout) {
+      return solvers.computeIfAbsent(
+          tactic + '@' + timeout,
+          ignored -> ctx.mkSolver(ctx.tryFor(ctx.mkTactic(tactic), timeout)));
+    }
+
+    /** Interrupts the running check. The context is discarded on close. */
+    public void interrupt() {
+      interrupted = true;
+      ctx.interrupt();
+    }
+
+    @Override
+    public void close() {
+      // budgeted proofs produce varying timeouts, don't let them pile up
+      if (solvers.size() > 8) solvers.clear();
+      if (!interrupted)
+        for (Solver solver : solvers.values()) {
+          final int numScopes = solver.getNumScopes();
+          if (numScopes > 0) solver.pop(numScopes);
+        }
+      release(this);
+    }
+  }
+}
@@ -3,23 +3,42 @@ package wtune.superopt.nodetrans;
 import com.microsoft.z3.Context;
 import wtune.spes.AlgeNode.AlgeNode;
 import wtune.spes.AlgeRule.AlgeRule;
+import wtune.spes.Z3Helper.SolverSession;
+import wtune.spes.Z3Helper.SolverTimeoutException;
 import wtune.sql.plan.PlanContext;
+import wtune.superopt.logic.LogicSupport;
+import wtune.superopt.logic.Z3Pool;
+
+import static wtune.superopt.logic.LogicSupport.*;
 
 public class SPESSupport {
-  public static boolean prove(PlanContext plan1, PlanContext plan2) {
-    try (final Context ctx = new Context()) {
-      final AlgeNode algeNode0 = AlgeRule.normalize(plan2AlgeNode(plan1, ctx));
-      final AlgeNode algeNode1 = AlgeRule.normalize(plan2AlgeNode(plan2, ctx));
+  /**
+   * Returns EQ, NEQ or UNKNOWN. All checks of the proof share one incremental solver, and the
+   * proof gives up as UNKNOWN after {@link LogicSupport#spesBudget}.
+   */
+  public static int proveEq(PlanContext plan1, PlanContext plan2) {
+    try (final Z3Pool.Lease z3 = Z3Pool.acquire();
+        final SolverSession session =
+            SolverSession.open(z3.context(), z3.solver("spes"), LogicSupport.spesBudget)) {
+      final AlgeNode algeNode0 = AlgeRule.normalize(plan2AlgeNode(plan1, z3.context()));
+      final AlgeNode algeNode1 = AlgeRule.normalize(plan2AlgeNode(plan2, z3.context()));
 
-      if (algeNode0 == null || algeNode1 == null) return false;
+      if (algeNode0 == null || algeNode1 == null) return NEQ;
+      if (algeNode0.isEq(algeNode1)) return EQ;
 
-      return algeNode0.isEq(algeNode1);
+      return session.isIncomplete() ? UNKNOWN : NEQ;
+    } catch (SolverTimeoutException e) {
+      return UNKNOWN;
     } catch (Exception e) {
       // e.printStackTrace();
-      return false;
+      return NEQ;
     }
   }
 
+  public static boolean prove(PlanContext plan1, PlanContext plan2) {
+    return proveEq(plan1, plan2) == EQ;
+  }
+
   public static AlgeNode plan2AlgeNode(PlanContext planCtx, Context z3Context) {
     final TransformCtx transCtx = TransformCtx.mk(planCtx, z3Context);
     return transCtx.transform();
@@ -8,7 +8,6 @@ import wtune.sql.plan.PlanNode;
 import wtune.sql.plan.PlanSupport;
 import wtune.superopt.substitution.Substitution;
 import wtune.superopt.substitution.SubstitutionBank;
-import wtune.superopt.util.Fingerprint;
 
 import java.util.*;
 
@@ -309,8 +308,7 @@ class BottomUpOptimizer implements Optimizer {
   }
 
   private Iterable<Substitution> fastMatchRules(SubPlan subPlan) {
-    final Set<Fingerprint> fingerprints = Fingerprint.mk(subPlan.plan(), subPlan.nodeId());
-    return ListSupport.flatMap(fingerprints, rules::ruleOfFingerprint);
+    return rules.matchRules(subPlan.plan(), subPlan.nodeId());
   }
 
   private List<OptimizationStep> collectTrace(PlanContext plan) {
@@ -332,7 +330,7 @@ class BottomUpOptimizer implements Optimizer {
       if (replaced.plan().childOf(replaced.nodeId(), childIdx) == replacement.nodeId())
         return replaced;
     }
-    if (replaced.child(childIdx).toString().equals(replacement.toString())) {
+    if (replaced.child(childIdx).hash().equals(replacement.hash())) {
       return replaced;
     }
 
@@ -3,11 +3,20 @@ package wtune.superopt.optimizer;
 import wtune.common.utils.BaseCongruence;
 import wtune.common.utils.BaseCongruentClass;
 import wtune.sql.plan.PlanContext;
+import wtune.sql.plan.PlanHash;
 import wtune.sql.plan.PlanKind;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import static wtune.sql.plan.PlanSupport.stringifyNode;
 
-class Memo extends BaseCongruence<String, SubPlan> {
+class Memo extends BaseCongruence<PlanHash, SubPlan> {
+  // Set -Dwetune.memo.check_collision=true to verify the hash keys against the string keys.
+  private static final boolean CHECK_COLLISION = Boolean.getBoolean("wetune.memo.check_collision");
+
+  private final Map<PlanHash, String> keyStrings = CHECK_COLLISION ? new HashMap<>() : null;
+
   boolean isRegistered(SubPlan node) {
     return classes.containsKey(extractKey(node));
   }
@@ -17,9 +26,24 @@ class Memo extends BaseCongruence<String, SubPlan> {
   }
 
   @Override
-  protected String extractKey(SubPlan subPlan) {
-    if (subPlan.rootKind() != PlanKind.Input) return subPlan.toString();
-    else return stringifyNode(subPlan.plan(), subPlan.nodeId());
+  protected PlanHash extractKey(SubPlan subPlan) {
+    // An Input is keyed by its node id as well, just like the non-compact `stringifyNode`.
+    final PlanHash key;
+    if (subPlan.rootKind() != PlanKind.Input) key = subPlan.hash();
+    else key = subPlan.hash().mix(subPlan.nodeId());
+
+    if (CHECK_COLLISION) checkCollision(key, subPlan);
+    return key;
+  }
+
+  private void checkCollision(PlanHash key, SubPlan subPlan) {
+    final String str;
+    if (subPlan.rootKind() != PlanKind.Input) str = subPlan.toString();
+    else str = stringifyNode(subPlan.plan(), subPlan.nodeId());
+
+    final String existing = keyStrings.putIfAbsent(key, str);
+    if (existing != null && !existing.equals(str))
+      throw new IllegalStateException("plan hash collision: " + key + "\n" + existing + "\n" + str);
   }
 
   @Override
@@ -1,12 +1,13 @@
 package wtune.superopt.optimizer;
 
+import wtune.sql.plan.PlanHash;
 import wtune.superopt.util.Complexity;
 
 import java.util.*;
 
 class MinCostSet implements Set<SubPlan> {
-  private final Map<String, SubPlan> subPlans;
-  private final Set<String> evicted;
+  private final Map<PlanHash, SubPlan> subPlans;
+  private final Set<PlanHash> evicted;
   private Complexity minCost;
 
   MinCostSet() {
@@ -14,7 +15,7 @@ class MinCostSet implements Set<SubPlan> {
     this.evicted = new HashSet<>();
   }
 
-  public Set<String> evicted() {
+  public Set<PlanHash> evicted() {
     return evicted;
   }
 
@@ -24,7 +25,7 @@ class MinCostSet implements Set<SubPlan> {
     final int cmp = minCost == null ? -1 : cost.compareTo(minCost);
     // the new plan is more costly, abandon it
     if (cmp > 0) {
-      evicted.add(subPlan.toString());
+      evicted.add(subPlan.hash());
       return false;
     }
     // the new plan is cheaper, abandon existing ones
@@ -34,13 +35,13 @@ class MinCostSet implements Set<SubPlan> {
       minCost = cost;
     }
 
-    return subPlans.putIfAbsent(subPlan.toString(), subPlan) == null;
+    return subPlans.putIfAbsent(subPlan.hash(), subPlan) == null;
   }
 
   @Override
   public boolean remove(Object o) {
     if (!(o instanceof SubPlan)) return false;
-    return subPlans.remove(o.toString()) != null;
+    return subPlans.remove(((SubPlan) o).hash()) != null;
   }
 
   @Override
@@ -76,7 +77,7 @@ class MinCostSet implements Set<SubPlan> {
   @Override
   public boolean contains(Object o) {
     if (!(o instanceof SubPlan)) return false;
-    return subPlans.containsKey(o.toString());
+    return subPlans.containsKey(((SubPlan) o).hash());
   }
 
   @Override
@@ -1,6 +1,7 @@
 package wtune.superopt.optimizer;
 
 import wtune.common.utils.BaseCongruentClass;
+import wtune.sql.plan.PlanHash;
 
 import java.util.Collection;
 import java.util.Set;
@@ -17,12 +18,12 @@ class OptGroup extends BaseCongruentClass<SubPlan> {
     ((MinCostSet) elements).evicted().addAll(((OptGroup) other).evicted());
 
     final Memo memo = (Memo) this.congruence;
-    for (String key : ((OptGroup) other).evicted()) {
+    for (PlanHash key : ((OptGroup) other).evicted()) {
       ((OptGroup) memo.eqClassAt(key)).elements = elements;
     }
   }
 
-  private Set<String> evicted() {
+  private Set<PlanHash> evicted() {
     return ((MinCostSet) elements).evicted();
   }
 
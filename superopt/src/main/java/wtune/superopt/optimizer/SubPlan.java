@@ -2,6 +2,7 @@ package wtune.superopt.optimizer;
 
 import wtune.common.utils.Lazy;
 import wtune.sql.plan.PlanContext;
+import wtune.sql.plan.PlanHash;
 import wtune.sql.plan.PlanKind;
 
 import static wtune.sql.plan.PlanSupport.stringifyTree;
@@ -11,6 +12,7 @@ final class SubPlan {
   private final int nodeId;
 
   private final Lazy<String> stringCache;
+  private PlanHash hash;
 
   SubPlan(PlanContext plan, int nodeId) {
     this.plan = plan;
@@ -26,6 +28,12 @@ final class SubPlan {
     return nodeId;
   }
 
+  /** Structural key of the sub-plan. Same as comparing `toString()`, much cheaper. */
+  PlanHash hash() {
+    if (hash == null) hash = plan.hashOf(nodeId);
+    return hash;
+  }
+
   PlanKind rootKind() {
     return plan.kindOf(nodeId);
   }
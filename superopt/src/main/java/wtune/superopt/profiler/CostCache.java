@@ -0,0 +1,135 @@
+package wtune.superopt.profiler;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Costs of queries, keyed by database and normalized SQL text (see {@link
+ * ProfilerSupport#normalizeSql}). The database is identified by a hash of its JDBC URL, which may
+ * carry credentials and must not end up in the file.
+ *
+ * <p>{@link #memory()} lives as long as the JVM and is shared by all profilers. A cache opened on a
+ * file additionally appends every new cost as a line <code>key \t cost</code>, and loads the lines
+ * of earlier runs on open.
+ *
+ * <p>At most `wetune.cost_cache.max_size` costs are kept, the least recently used one is evicted
+ * first. An evicted cost is appended again when it is recorded again, and the last line of a key
+ * wins on load.
+ */
+public class CostCache {
+  private static final int MAX_SIZE = Integer.getInteger("wetune.cost_cache.max_size", 1 << 16);
+  private static final CostCache MEMORY = new CostCache(null, MAX_SIZE);
+  private static final Map<Path, CostCache> INSTANCES = new ConcurrentHashMap<>();
+
+  private final Map<String, Double> costs; // guarded by itself, in access order
+  private final Path path;
+  private BufferedWriter writer;
+
+  private CostCache(Path path, int maxSize) {
+    this.costs =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Double> eldest) {
+            return size() > maxSize;
+          }
+        };
+    this.path = path;
+  }
+
+  public static CostCache memory() {
+    return MEMORY;
+  }
+
+  public static CostCache open(Path path) throws IOException {
+    try {
+      return INSTANCES.computeIfAbsent(
+          path.toAbsolutePath().normalize(),
+          p -> {
+            try {
+              final CostCache cache = new CostCache(p, MAX_SIZE);
+              cache.load();
+              return cache;
+            } catch (IOException ex) {
+              throw new UncheckedIOException(ex);
+            }
+          });
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  static String mkKey(String dbType, String jdbcUrl, String sql) {
+    return dbType + '|' + hashOf(jdbcUrl) + '|' + ProfilerSupport.normalizeSql(sql);
+  }
+
+  private static String hashOf(String jdbcUrl) {
+    try {
+      final byte[] digest =
+          MessageDigest.getInstance("SHA-256").digest(String.valueOf(jdbcUrl).getBytes(UTF_8));
+      return HexFormat.of().formatHex(digest, 0, 16);
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex); // every JVM provides SHA-256
+    }
+  }
+
+  public int size() {
+    synchronized (costs) {
+      return costs.size();
+    }
+  }
+
+  /** Returns the cached cost, or NaN if absent. */
+  public double lookup(String key) {
+    final Double cost;
+    synchronized (costs) {
+      cost = costs.get(key);
+    }
+    return cost == null ? Double.NaN : cost;
+  }
+
+  public void record(String key, double cost) {
+    final Double oldCost;
+    synchronized (costs) {
+      oldCost = costs.put(key, cost);
+    }
+    if (oldCost != null || path == null) return;
+    if (key.indexOf('\n') >= 0) return; // a quoted literal spans lines, keep it in memory only
+
+    synchronized (this) {
+      try {
+        if (writer == null) writer = Files.newBufferedWriter(path, UTF_8, CREATE, APPEND);
+        writer.append(key).append('\t').append(Double.toString(cost)).append('\n');
+        writer.flush();
+      } catch (IOException ex) {
+        System.err.println("failed to record cost to " + path + ": " + ex);
+      }
+    }
+  }
+
+  private void load() throws IOException {
+    if (!Files.exists(path)) return;
+    for (String line : Files.readAllLines(path, UTF_8)) {
+      final int split = line.lastIndexOf('\t');
+      if (split <= 0) continue; // torn by a crashed writer
+      try {
+        final double cost = Double.parseDouble(line.substring(split + 1));
+        synchronized (costs) {
+          costs.put(line.substring(0, split), cost);
+        }
+      } catch (NumberFormatException ignored) {
+      }
+    }
+  }
+}
@@ -6,11 +6,16 @@ import javax.sql.DataSource;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Semaphore;
 
 public class DataSourceFactory {
   private static final DataSourceFactory INSTANCE = new DataSourceFactory();
 
+  // Hikari keeps 10 connections by default.
+  private static final int DEFAULT_PARALLELISM = 8;
+
   private final Map<String, DataSource> dataSources = new HashMap<>();
+  private final Map<String, Semaphore> permits = new HashMap<>();
 
   private DataSourceFactory() {}
 
@@ -22,4 +27,18 @@ public class DataSourceFactory {
     return dataSources.computeIfAbsent(
         props.getProperty("jdbcUrl"), ignored -> DbSupport.makeDataSource(props));
   }
+
+  /**
+   * Bounds the number of concurrent queries against one database. The bound is the property
+   * `profileParallelism` of the first request.
+   */
+  public synchronized Semaphore permits(Properties props) {
+    return permits.computeIfAbsent(
+        props.getProperty("jdbcUrl"),
+        ignored ->
+            new Semaphore(
+                Integer.parseInt(
+                    props.getProperty(
+                        "profileParallelism", String.valueOf(DEFAULT_PARALLELISM)))));
+  }
 }
@@ -0,0 +1,111 @@
+package wtune.superopt.profiler;
+
+import wtune.sql.plan.PlanContext;
+import wtune.sql.plan.PlanKind;
+
+import static wtune.sql.plan.PlanSupport.isDedup;
+import static wtune.sql.plan.PlanSupport.joinKindOf;
+
+/**
+ * A stand-in for the optimizer of a database, so that plans can be profiled offline.
+ *
+ * <p>Every table is assumed to have the same cardinality and every predicate the same selectivity.
+ * Joins are hash joins, deduplication and sorting take <code>n log n</code>. The absolute numbers
+ * are meaningless, only the order of costs of plans over the same tables is.
+ */
+class LocalCostModel {
+  private static final double TABLE_ROWS = 10000;
+  private static final double FILTER_SELECTIVITY = 0.3;
+  private static final double JOIN_SELECTIVITY = 1 / TABLE_ROWS;
+  private static final double AGG_REDUCTION = 0.1;
+  private static final double LIMIT_ROWS = 100;
+
+  private double rows;
+
+  static double costOf(PlanContext plan) {
+    return new LocalCostModel().cost(plan, plan.root());
+  }
+
+  private double cost(PlanContext plan, int nodeId) {
+    final PlanKind kind = plan.kindOf(nodeId);
+    switch (kind) {
+      case Input:
+        rows = TABLE_ROWS;
+        return rows;
+
+      case Filter:
+        {
+          final double cost = cost(plan, plan.childOf(nodeId, 0));
+          final double inRows = rows;
+          rows = Math.max(1, inRows * FILTER_SELECTIVITY);
+          return cost + inRows;
+        }
+
+      case InSub:
+      case Exists:
+        {
+          final double lhsCost = cost(plan, plan.childOf(nodeId, 0));
+          final double lhsRows = rows;
+          final double rhsCost = cost(plan, plan.childOf(nodeId, 1));
+          final double rhsRows = rows;
+          rows = Math.max(1, lhsRows * FILTER_SELECTIVITY);
+          return lhsCost + rhsCost + lhsRows + rhsRows;
+        }
+
+      case Join:
+        {
+          final double lhsCost = cost(plan, plan.childOf(nodeId, 0));
+          final double lhsRows = rows;
+          final double rhsCost = cost(plan, plan.childOf(nodeId, 1));
+          final double rhsRows = rows;
+          final double matched = Math.max(1, lhsRows * rhsRows * JOIN_SELECTIVITY);
+          rows = joinKindOf(plan, nodeId).isInner() ? matched : Math.max(lhsRows, matched);
+          return lhsCost + rhsCost + lhsRows + rhsRows + rows;
+        }
+
+      case Proj:
+        {
+          final double cost = cost(plan, plan.childOf(nodeId, 0)) + rows;
+          return isDedup(plan, nodeId) ? cost + sortCost(rows) : cost;
+        }
+
+      case Agg:
+        {
+          final double cost = cost(plan, plan.childOf(nodeId, 0));
+          final double inRows = rows;
+          rows = Math.max(1, inRows * AGG_REDUCTION);
+          return cost + sortCost(inRows);
+        }
+
+      case Sort:
+        {
+          final double cost = cost(plan, plan.childOf(nodeId, 0));
+          return cost + sortCost(rows);
+        }
+
+      case Limit:
+        {
+          final double cost = cost(plan, plan.childOf(nodeId, 0));
+          rows = Math.min(rows, LIMIT_ROWS);
+          return cost;
+        }
+
+      case SetOp:
+        {
+          final double lhsCost = cost(plan, plan.childOf(nodeId, 0));
+          final double lhsRows = rows;
+          final double rhsCost = cost(plan, plan.childOf(nodeId, 1));
+          rows += lhsRows;
+          final double cost = lhsCost + rhsCost + rows;
+          return isDedup(plan, nodeId) ? cost + sortCost(rows) : cost;
+        }
+
+      default:
+        throw new IllegalArgumentException("unknown plan kind " + kind);
+    }
+  }
+
+  private static double sortCost(double rows) {
+    return rows * Math.max(1, Math.log(rows) / Math.log(2));
+  }
+}
@@ -6,7 +6,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 
 public class MySQLCostQuery extends CostQueryBase {
-  private static final String LABEL = "\"query_cost\": \"";
+  private static final String LABEL = "query_cost";
 
   public MySQLCostQuery(ConnectionProvider provider, String query) {
     super(provider, query);
@@ -14,24 +14,11 @@ public class MySQLCostQuery extends CostQueryBase {
 
   @Override
   protected double doQuery() throws SQLException {
-    try (final Connection conn = provider.get()) {
-      final Statement stmt = conn.createStatement();
-      final ResultSet rs = stmt.executeQuery("EXPLAIN FORMAT=JSON (" + query + ");");
-
+    try (final Connection conn = provider.get();
+        final Statement stmt = conn.createStatement();
+        final ResultSet rs = stmt.executeQuery("EXPLAIN FORMAT=JSON (" + query + ");")) {
       if (!rs.next()) return Double.MAX_VALUE;
-
-      final String json = rs.getString(1);
-      double cost = 0.0;
-      int idx, start, end = 0;
-
-      while ((idx = json.indexOf(LABEL, end)) != -1) {
-        start = idx + LABEL.length();
-        end = json.indexOf("\"", start);
-        if (end == -1) continue;
-        cost += Double.parseDouble(json.substring(start, end));
-      }
-
-      return end == 0 ? Double.MAX_VALUE : cost;
+      return ProfilerSupport.sumJsonNumbers(rs.getString(1), LABEL, false);
     }
   }
 }
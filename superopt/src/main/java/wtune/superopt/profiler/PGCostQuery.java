@@ -6,32 +6,20 @@ import java.sql.SQLException;
 import java.sql.Statement;
 
 public class PGCostQuery extends CostQueryBase {
-  private static final String LABEL_0 = "cost";
-  private static final String LABEL_1 = "..";
+  private static final String LABEL = "Total Cost";
 
   public PGCostQuery(ConnectionProvider provider, String query) {
     super(provider, query);
   }
 
+  @Override
   protected double doQuery() throws SQLException {
-    try (final Connection conn = provider.get()) {
-
-      final Statement stmt = conn.createStatement();
-      final ResultSet rs = stmt.executeQuery("EXPLAIN (" + query + ");");
-
-      if (rs.next()) {
-        final String result = rs.getString(1);
-
-        int idx = result.indexOf(LABEL_0);
-        if (idx == -1) return Double.MAX_VALUE;
-        idx = result.indexOf(LABEL_1);
-        if (idx == -1) return Double.MAX_VALUE;
-
-        final int start = idx + LABEL_1.length();
-        final int end = result.indexOf(" ", start);
-        return end == -1 ? Double.MAX_VALUE : Double.parseDouble(result.substring(start, end));
-
-      } else return Double.MAX_VALUE;
+    try (final Connection conn = provider.get();
+        final Statement stmt = conn.createStatement();
+        final ResultSet rs = stmt.executeQuery("EXPLAIN (FORMAT JSON) (" + query + ");")) {
+      if (!rs.next()) return Double.MAX_VALUE;
+      // The outermost plan node comes first, its total cost covers the whole query.
+      return ProfilerSupport.sumJsonNumbers(rs.getString(1), LABEL, true);
     }
   }
 }
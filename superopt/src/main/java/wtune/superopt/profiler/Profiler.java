@@ -7,6 +7,7 @@ import java.util.Properties;
 public interface Profiler {
   void setBaseline(PlanContext baseline);
 
+  /** Queries the cost of `plan` in background. {@link #getCost(int)} waits for the result. */
   void profile(PlanContext plan);
 
   PlanContext getPlan(int index);
@@ -1,55 +1,86 @@
 package wtune.superopt.profiler;
 
-import gnu.trove.list.TDoubleList;
-import gnu.trove.list.array.TDoubleArrayList;
 import wtune.sql.ast.SqlNode;
 import wtune.sql.plan.PlanContext;
 import wtune.sql.util.ParamInterpolator;
 import wtune.superopt.util.Complexity;
 
 import javax.sql.DataSource;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Properties;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
 
 import static wtune.common.datasource.DbSupport.MySQL;
 import static wtune.common.datasource.DbSupport.SQLServer;
 import static wtune.sql.plan.PlanSupport.translateAsAst;
 
+/**
+ * Costs are queried asynchronously: {@link #profile(PlanContext)} translates the plan on the
+ * calling thread and hands the EXPLAIN over to a worker. At most `profileParallelism` EXPLAINs are
+ * in flight per database, `profile` blocks when the bound is reached. Identical SQL is queried once,
+ * see {@link CostCache}.
+ *
+ * <p>Properties besides those of the data source:
+ *
+ * <ul>
+ *   <li>`costModel`: `local` to estimate by {@link LocalCostModel} without any database.
+ *   <li>`costCache`: a file that keeps the costs across runs.
+ *   <li>`profileParallelism`: see {@link DataSourceFactory#permits(Properties)}.
+ * </ul>
+ */
 class ProfilerImpl implements Profiler {
+  private static final ExecutorService EXPLAIN_POOL =
+      Executors.newCachedThreadPool(
+          r -> {
+            final Thread t = new Thread(r, "profiler-explain");
+            t.setDaemon(true);
+            return t;
+          });
+
   private final Properties dbProps;
+  private final String dbType;
+  private final boolean localCost;
+  private final CostCache cache;
+  private final Map<String, CompletableFuture<Double>> pending;
   private PlanContext baseline;
-  private double baseCost;
+  private CompletableFuture<Double> baseCost;
   private final List<PlanContext> plans;
-  private final TDoubleList costs;
+  private final List<CompletableFuture<Double>> costs;
 
   ProfilerImpl(Properties dbProps) {
     this.dbProps = dbProps;
+    this.dbType = dbProps.getProperty("dbType");
+    this.localCost = "local".equals(dbProps.getProperty("costModel"));
+    this.cache = openCache(dbProps.getProperty("costCache"));
+    this.pending = new HashMap<>();
     this.plans = new ArrayList<>();
-    this.costs = new TDoubleArrayList();
+    this.costs = new ArrayList<>();
   }
 
   @Override
   public void setBaseline(PlanContext baseline) {
     plans.clear();
     costs.clear();
+    pending.clear();
     this.baseline = baseline;
-    this.baseCost = queryCost(translateAsAst(baseline, baseline.root(), false));
+    this.baseCost = queryCost(baseline);
   }
 
   @Override
   public void profile(PlanContext plan) {
     if (plan == null) {
       plans.add(null);
-      costs.add(Double.MAX_VALUE);
+      costs.add(CompletableFuture.completedFuture(Double.MAX_VALUE));
       return;
     }
 
-    final SqlNode ast = translateAsAst(plan, plan.root(), false);
-    final double cost = queryCost(ast);
-
     plans.add(plan);
-    costs.add(cost);
+    costs.add(queryCost(plan));
   }
 
   @Override
@@ -59,23 +90,24 @@ class ProfilerImpl implements Profiler {
 
   @Override
   public double getCost(int index) {
-    return costs.get(index);
+    return costs.get(index).join();
   }
 
   @Override
   public int minCostIndex() {
-    double minCost = baseCost;
+    double minCost = baseCost.join();
     int minCostIndex = -1;
     for (int i = 0, bound = costs.size(); i < bound; ++i) {
-      if (costs.get(i) < minCost) {
-        minCost = costs.get(i);
+      final double cost = getCost(i);
+      if (cost < minCost) {
+        minCost = cost;
         minCostIndex = i;
       }
     }
 
     // MySQL doesn't correctly estimate some simplification (e.g. remove JOIN),
     // so let's do it ourself.
-    if (minCostIndex == -1 && MySQL.equals(dbProps.getProperty("dbType"))) {
+    if (minCostIndex == -1 && MySQL.equals(dbType)) {
       Complexity minComplexity = Complexity.mk(baseline, baseline.root());
       for (int i = 0, bound = plans.size(); i < bound; i++) {
         final PlanContext plan = plans.get(i);
@@ -91,53 +123,113 @@ class ProfilerImpl implements Profiler {
     return minCostIndex;
   }
 
-  private double queryCost(SqlNode ast) {
+  private CompletableFuture<Double> queryCost(PlanContext plan) {
+    if (localCost) return CompletableFuture.completedFuture(LocalCostModel.costOf(plan));
+
+    final String query = toSql(translateAsAst(plan, plan.root(), false));
+    final String key = CostCache.mkKey(dbType, dbProps.getProperty("jdbcUrl"), query);
+
+    final CompletableFuture<Double> inFlight = pending.get(key);
+    if (inFlight != null) return inFlight;
+
+    final double cached = cache.lookup(key);
+    if (!Double.isNaN(cached)) return CompletableFuture.completedFuture(cached);
+
+    final DataSourceFactory factory = DataSourceFactory.instance();
+    final DataSource dataSource = factory.mk(dbProps);
+    final Semaphore permits = factory.permits(dbProps);
+    permits.acquireUninterruptibly();
+
+    final CompletableFuture<Double> future;
+    try {
+      future =
+          CompletableFuture.supplyAsync(
+              () -> {
+                try {
+                  final double cost = CostQuery.mk(dbType, dataSource::getConnection, query).getCost();
+                  if (cost != Double.MAX_VALUE) cache.record(key, cost);
+                  return cost;
+                } finally {
+                  permits.release();
+                }
+              },
+              EXPLAIN_POOL);
+    } catch (RuntimeException ex) {
+      permits.release();
+      throw ex;
+    }
+
+    pending.put(key, future);
+    return future;
+  }
+
+  private String toSql(SqlNode ast) {
     final ParamInterpolator interpolator = new ParamInterpolator(ast);
     interpolator.go();
 
-    String query = ast.toString();
+    final String query = ast.toString();
 
     interpolator.undo();
 
-    final String dbType = dbProps.getProperty("dbType");
-    if (SQLServer.equals(dbType)) query = adaptToSqlserver(query);
+    return SQLServer.equals(dbType) ? adaptToSqlserver(query) : query;
+  }
 
-    final DataSource dataSource = DataSourceFactory.instance().mk(dbProps);
-    return CostQuery.mk(dbType, dataSource::getConnection, query).getCost();
+  private static CostCache openCache(String path) {
+    if (path == null) return CostCache.memory();
+    try {
+      return CostCache.open(Path.of(path));
+    } catch (IOException ex) {
+      System.err.println("failed to open cost cache " + path + ": " + ex);
+      return CostCache.memory();
+    }
   }
 
-  private static String adaptToSqlserver(String sql) {
-    sql = sql.replaceAll("`([A-Za-z0-9_$]+)`", "\\[$1\\]");
-    sql = sql.replaceAll("\"([A-Za-z0-9_$]+)\"", "\\[$1\\]");
-
-    sql = sql.replaceAll("TRUE", "1");
-    sql = sql.replaceAll("FALSE", "0");
-
-    sql =
-        sql.replaceAll(
-            "(\\(SELECT (DISTINCT)*)(.+)(ORDER BY ([^ ])+( ASC| DESC)*\\))", "$1 TOP 100 PERCENT $3 $4");
-
-    sql =
-        sql.replaceAll(
-            "(ORDER BY [^()]+) LIMIT ([0-9]+) OFFSET ([0-9]+)",
-            "$1 OFFSET $3 ROWS FETCH NEXT $2 ROWS ONLY");
-    sql = sql.replaceAll("LIMIT ([0-9]+) OFFSET ([0-9]+)", "LIMIT $1");
-
-    sql =
-        sql.replaceAll(
-            "\\(SELECT DISTINCT (.+) LIMIT ([0-9]+)\\)", "\\(SELECT DISTINCT TOP $2 $1\\)");
-    sql = sql.replaceAll("\\(SELECT (.+) LIMIT ([0-9]+)\\)", "\\(SELECT TOP $2 $1\\)");
-    sql = sql.replaceFirst("SELECT DISTINCT (.+)LIMIT ([0-9]+)", "SELECT DISTINCT TOP $2 $1");
-    sql = sql.replaceFirst("SELECT (.+)LIMIT ([0-9]+)", "SELECT TOP $2 $1");
-
-    sql = sql.replaceAll("MATCH ([^ ]+) AGAINST \\('([^\\[]+)' IN BOOLEAN MODE\\)", "$1 LIKE '%$2%'");
-    sql = sql.replaceAll("'FALSE'", "0");
-    sql = sql.replaceAll("'TRUE'", "1");
-    sql = sql.replaceAll("USE INDEX \\([^ ]*\\)", "");
-    sql = sql.replaceAll("CROSS JOIN", "JOIN");
-    sql = sql.replaceAll("(\\[[A-Za-z0-9]+] \\* \\[[A-Za-z0-9]+])", "\\($1\\) AS total");
-    sql = sql.replaceAll("ORDER BY [^ ]+ IS NULL,", "ORDER BY");
+  private record Rewrite(Pattern pattern, String replacement, boolean firstOnly) {
+    private static Rewrite all(String regex, String replacement) {
+      return new Rewrite(Pattern.compile(regex), replacement, false);
+    }
+
+    private static Rewrite first(String regex, String replacement) {
+      return new Rewrite(Pattern.compile(regex), replacement, true);
+    }
+
+    private String apply(String sql) {
+      return firstOnly
+          ? pattern.matcher(sql).replaceFirst(replacement)
+          : pattern.matcher(sql).replaceAll(replacement);
+    }
+  }
 
+  // Compiled once, the rewrites are applied to every candidate.
+  private static final List<Rewrite> SQLSERVER_REWRITES =
+      List.of(
+          Rewrite.all("`([A-Za-z0-9_$]+)`", "\\[$1\\]"),
+          Rewrite.all("\"([A-Za-z0-9_$]+)\"", "\\[$1\\]"),
+          Rewrite.all("TRUE", "1"),
+          Rewrite.all("FALSE", "0"),
+          Rewrite.all(
+              "(\\(SELECT (DISTINCT)*)(.+)(ORDER BY ([^ ])+( ASC| DESC)*\\))",
+              "$1 TOP 100 PERCENT $3 $4"),
+          Rewrite.all(
+              "(ORDER BY [^()]+) LIMIT ([0-9]+) OFFSET ([0-9]+)",
+              "$1 OFFSET $3 ROWS FETCH NEXT $2 ROWS ONLY"),
+          Rewrite.all("LIMIT ([0-9]+) OFFSET ([0-9]+)", "LIMIT $1"),
+          Rewrite.all(
+              "\\(SELECT DISTINCT (.+) LIMIT ([0-9]+)\\)", "\\(SELECT DISTINCT TOP $2 $1\\)"),
+          Rewrite.all("\\(SELECT (.+) LIMIT ([0-9]+)\\)", "\\(SELECT TOP $2 $1\\)"),
+          Rewrite.first("SELECT DISTINCT (.+)LIMIT ([0-9]+)", "SELECT DISTINCT TOP $2 $1"),
+          Rewrite.first("SELECT (.+)LIMIT ([0-9]+)", "SELECT TOP $2 $1"),
+          Rewrite.all(
+              "MATCH ([^ ]+) AGAINST \\('([^\\[]+)' IN BOOLEAN MODE\\)", "$1 LIKE '%$2%'"),
+          Rewrite.all("'FALSE'", "0"),
+          Rewrite.all("'TRUE'", "1"),
+          Rewrite.all("USE INDEX \\([^ ]*\\)", ""),
+          Rewrite.all("CROSS JOIN", "JOIN"),
+          Rewrite.all("(\\[[A-Za-z0-9]+] \\* \\[[A-Za-z0-9]+])", "\\($1\\) AS total"),
+          Rewrite.all("ORDER BY [^ ]+ IS NULL,", "ORDER BY"));
+
+  private static String adaptToSqlserver(String sql) {
+    for (Rewrite rewrite : SQLSERVER_REWRITES) sql = rewrite.apply(sql);
     return sql;
   }
 }
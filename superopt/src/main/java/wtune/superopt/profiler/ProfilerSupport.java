@@ -1,4 +1,111 @@
 package wtune.superopt.profiler;
 
 public interface ProfilerSupport {
+  /**
+   * Sums the numeric values of every `key` in a JSON document, or returns the first one if
+   * `firstOnly`. Values may be bare or quoted numbers. Returns {@link Double#MAX_VALUE} if no such
+   * key exists.
+   *
+   * <p>The document is scanned once, without materializing any intermediate string.
+   */
+  static double sumJsonNumbers(String json, String key, boolean firstOnly) {
+    final int length = json.length();
+    double sum = 0.0;
+    boolean found = false;
+
+    int i = 0;
+    while (i < length) {
+      final char c = json.charAt(i);
+      if (c != '"') {
+        ++i;
+        continue;
+      }
+
+      final int start = i + 1;
+      final int end = skipString(json, start);
+      if (end < 0) break;
+      i = end + 1;
+
+      if (end - start != key.length() || !json.regionMatches(start, key, 0, key.length())) continue;
+
+      int j = skipSpaces(json, i);
+      if (j >= length || json.charAt(j) != ':') continue; // a value, not a key
+      j = skipSpaces(json, j + 1);
+      if (j < length && json.charAt(j) == '"') ++j;
+
+      final double value = parseNumber(json, j);
+      if (Double.isNaN(value)) continue;
+      if (firstOnly) return value;
+      sum += value;
+      found = true;
+    }
+
+    return found ? sum : Double.MAX_VALUE;
+  }
+
+  /**
+   * Parses the plain decimal number (optionally signed, with fraction and exponent) at `start`.
+   * Returns NaN if there is none.
+   */
+  static double parseNumber(CharSequence s, int start) {
+    final int length = s.length();
+    int i = start;
+    if (i < length && (s.charAt(i) == '-' || s.charAt(i) == '+')) ++i;
+
+    int digits = 0;
+    boolean inFraction = false;
+    for (; i < length; ++i) {
+      final char c = s.charAt(i);
+      if (c >= '0' && c <= '9') ++digits;
+      else if (c == '.' && !inFraction) inFraction = true;
+      else break;
+    }
+    if (digits == 0) return Double.NaN;
+
+    if (i < length && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+      int j = i + 1;
+      if (j < length && (s.charAt(j) == '-' || s.charAt(j) == '+')) ++j;
+      final int expStart = j;
+      while (j < length && s.charAt(j) >= '0' && s.charAt(j) <= '9') ++j;
+      if (j > expStart) i = j;
+    }
+
+    // correctly rounded, unlike accumulating the digits by hand
+    return Double.parseDouble(s.subSequence(start, i).toString());
+  }
+
+  /** Collapses whitespace outside of quotes, so that cosmetic differences hit the same entry. */
+  static String normalizeSql(String sql) {
+    final StringBuilder builder = new StringBuilder(sql.length());
+    char quote = 0;
+    boolean pendingSpace = false;
+    for (int i = 0, bound = sql.length(); i < bound; ++i) {
+      final char c = sql.charAt(i);
+      if (quote == 0 && Character.isWhitespace(c)) {
+        pendingSpace = true;
+        continue;
+      }
+      if (pendingSpace && builder.length() > 0) builder.append(' ');
+      pendingSpace = false;
+      builder.append(c);
+      if (quote == 0 && (c == '\'' || c == '"' || c == '`')) quote = c;
+      else if (c == quote) quote = 0;
+    }
+    return builder.toString();
+  }
+
+  private static int skipString(String json, int start) {
+    for (int i = start, bound = json.length(); i < bound; ++i) {
+      final char c = json.charAt(i);
+      if (c == '\\') ++i;
+      else if (c == '"') return i;
+    }
+    return -1;
+  }
+
+  private static int skipSpaces(String json, int start) {
+    int i = start;
+    while (i < json.length() && Character.isWhitespace(json.charAt(i))) ++i;
+    return i;
+  }
 }
@@ -17,16 +17,16 @@ public class SQLServerCostQuery extends CostQueryBase {
 
   @Override
   protected double doQuery() throws SQLException {
-    try (final Connection conn = provider.get()) {
-      final Statement configStmt = conn.createStatement();
+    try (final Connection conn = provider.get();
+        final Statement configStmt = conn.createStatement()) {
       configStmt.execute(SHOW_PLAN_ON_CMD);
-
-      final Statement stmt = conn.createStatement();
-      final ResultSet rs = stmt.executeQuery(query);
-      double cost = rs.next() ? Double.parseDouble(rs.getString(LABEL)) : Double.MAX_VALUE;
-
-      configStmt.execute(SHOW_PLAN_OFF_CMD);
-      return cost;
+      // The connection goes back to the pool, SHOWPLAN must not stay on.
+      try (final Statement stmt = conn.createStatement();
+          final ResultSet rs = stmt.executeQuery(query)) {
+        return rs.next() ? Double.parseDouble(rs.getString(LABEL)) : Double.MAX_VALUE;
+      } finally {
+        configStmt.execute(SHOW_PLAN_OFF_CMD);
+      }
     }
   }
 }
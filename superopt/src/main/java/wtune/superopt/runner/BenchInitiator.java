@@ -0,0 +1,133 @@
+package wtune.superopt.runner;
+
+import wtune.common.utils.Args;
+import wtune.common.utils.IOSupport;
+import wtune.sql.ast.SqlNode;
+import wtune.sql.plan.*;
+import wtune.sql.schema.Schema;
+import wtune.stmt.Statement;
+import wtune.superopt.optimizer.Optimizer;
+import wtune.superopt.substitution.SubstitutionBank;
+import wtune.superopt.substitution.SubstitutionSupport;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static wtune.common.tree.TreeContext.NO_SUCH_NODE;
+import static wtune.sql.support.action.NormalizationSupport.normalizeAst;
+
+/**
+ * Measures ValuesRegistry::initiatorOf on the join-heavy plans of the statements, against a
+ * linear scan over the nodes, which is how the initiator used to be found. With -R, also measures
+ * the optimization of these plans, where the matchers look up initiators repeatedly.
+ */
+public class BenchInitiator implements Runner {
+  private final List<PlanContext> plans = new ArrayList<>();
+  private int minJoins, rounds;
+  private SubstitutionBank rules;
+  private long sink; // keeps the lookups from being optimized away
+
+  @Override
+  public void prepare(String[] argStrings) throws Exception {
+    final Args args = Args.parse(argStrings, 1);
+    minJoins = args.getOptional("joins", int.class, 3);
+    rounds = args.getOptional("rounds", int.class, 5);
+
+    final String ruleFileName = args.getOptional("R", "rules", String.class, null);
+    if (ruleFileName != null) {
+      final Path ruleFile = RunnerSupport.dataDir().resolve(ruleFileName);
+      IOSupport.checkFileExists(ruleFile);
+      rules = SubstitutionSupport.loadBank(ruleFile);
+    }
+
+    for (Statement stmt : Statement.findAll()) {
+      final PlanContext plan = parsePlan(stmt);
+      if (plan != null && countJoins(plan) >= minJoins) plans.add(plan);
+    }
+  }
+
+  @Override
+  public void run() throws Exception {
+    System.out.printf("%d plans with >= %d joins\n", plans.size(), minJoins);
+
+    int numMismatches = 0;
+    for (PlanContext plan : plans)
+      for (int node = 1; node <= plan.maxNodeId(); ++node)
+        if (plan.isPresent(node))
+          for (Value value : plan.valuesReg().valuesOf(node))
+            if (plan.valuesReg().initiatorOf(value) != scanInitiator(plan, value)) ++numMismatches;
+    System.out.printf("%d lookups differ from the scan\n", numMismatches);
+
+    for (int i = 0; i < rounds; ++i) {
+      final long indexStart = System.nanoTime();
+      final long numLookups = lookupAll(false);
+      final long indexTime = System.nanoTime() - indexStart;
+
+      final long scanStart = System.nanoTime();
+      lookupAll(true);
+      final long scanTime = System.nanoTime() - scanStart;
+
+      System.out.printf(
+          "Round %d: %d lookups, index %.1f ns/lookup, scan %.1f ns/lookup",
+          i, numLookups, indexTime / (double) numLookups, scanTime / (double) numLookups);
+
+      if (rules != null) {
+        final long optStart = System.nanoTime();
+        for (PlanContext plan : plans) {
+          final Optimizer optimizer = Optimizer.mk(rules);
+          optimizer.setTimeout(5000);
+          optimizer.optimize(plan);
+        }
+        System.out.printf(", optimization %d ms", (System.nanoTime() - optStart) / 1000000);
+      }
+      System.out.println();
+    }
+  }
+
+  private long lookupAll(boolean scan) {
+    long numLookups = 0;
+    for (PlanContext plan : plans) {
+      final ValuesRegistry valuesReg = plan.valuesReg();
+      for (int node = 1; node <= plan.maxNodeId(); ++node) {
+        if (!plan.isPresent(node)) continue;
+        for (Value value : valuesReg.valuesOf(node)) {
+          sink += scan ? scanInitiator(plan, value) : valuesReg.initiatorOf(value);
+          ++numLookups;
+        }
+      }
+    }
+    return numLookups;
+  }
+
+  // Only Input, Proj and Agg nodes introduce values, the others pass on the values of children.
+  private static int scanInitiator(PlanContext plan, Value value) {
+    for (int node = 1; node <= plan.maxNodeId(); ++node) {
+      if (!plan.isPresent(node)) continue;
+      final PlanKind kind = plan.kindOf(node);
+      if (kind != PlanKind.Input && kind != PlanKind.Proj && kind != PlanKind.Agg) continue;
+      for (Value v : plan.valuesReg().valuesOf(node)) if (v == value) return node;
+    }
+    return NO_SUCH_NODE;
+  }
+
+  private static int countJoins(PlanContext plan) {
+    int numJoins = 0;
+    for (int node = 1; node <= plan.maxNodeId(); ++node)
+      if (plan.isPresent(node) && plan.kindOf(node) == PlanKind.Join) ++numJoins;
+    return numJoins;
+  }
+
+  private static PlanContext parsePlan(Statement stmt) {
+    try {
+      final SqlNode ast = stmt.ast();
+      if (ast == null || !PlanSupport.isSupported(ast)) return null;
+      final Schema schema = stmt.app().schema("base", true);
+      ast.context().setSchema(schema);
+      normalizeAst(ast);
+      return PlanSupport.assemblePlan(ast, schema);
+    } catch (Throwable ex) {
+      return null;
+    }
+  }
+}
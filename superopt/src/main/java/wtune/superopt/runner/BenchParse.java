@@ -0,0 +1,90 @@
+package wtune.superopt.runner;
+
+import wtune.common.utils.Args;
+import wtune.sql.ast.SqlNode;
+import wtune.stmt.App;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static wtune.sql.SqlSupport.*;
+import static wtune.superopt.runner.RunnerSupport.dataDir;
+
+/**
+ * Measures the parsing throughput over the statements in wtune_data/schemas, with two-stage
+ * (SLL, then LL) and with LL-only parsing. The first round checks that both produce the same ASTs.
+ */
+public class BenchParse implements Runner {
+  private final List<String> dbTypes = new ArrayList<>();
+  private final List<String> statements = new ArrayList<>();
+  private int rounds;
+
+  @Override
+  public void prepare(String[] argStrings) throws Exception {
+    final Args args = Args.parse(argStrings, 1);
+    final Path dir = dataDir().resolve(args.getOptional("i", "input", String.class, "schemas"));
+    rounds = args.getOptional("rounds", int.class, 5);
+
+    final List<Path> files;
+    try (final Stream<Path> stream = Files.list(dir)) {
+      files = stream.filter(it -> it.toString().endsWith(".schema.sql")).sorted().toList();
+    }
+    for (Path file : files) {
+      final String fileName = file.getFileName().toString();
+      final String dbType = App.of(fileName.substring(0, fileName.indexOf('.'))).dbType();
+      for (String stmt : splitSql(Files.readString(file))) {
+        dbTypes.add(dbType);
+        statements.add(stmt);
+      }
+    }
+  }
+
+  @Override
+  public void run() throws Exception {
+    muteParsingError();
+    System.out.printf("%d statements\n", statements.size());
+    for (int i = 0; i < rounds; ++i) {
+      setSllParsingEnabled(false);
+      final long llStart = System.nanoTime();
+      final List<String> llAsts = parseAll();
+      final long llTime = System.nanoTime() - llStart;
+
+      setSllParsingEnabled(true);
+      final long numLl = numLlParses();
+      final long twoStageStart = System.nanoTime();
+      final List<String> twoStageAsts = parseAll();
+      final long twoStageTime = System.nanoTime() - twoStageStart;
+      final long numFallbacks = numLlParses() - numLl;
+
+      System.out.printf(
+          "Round %d: LL %.0f stmt/s, two-stage %.0f stmt/s, %d fallbacks to LL\n",
+          i, throughput(llTime), throughput(twoStageTime), numFallbacks);
+
+      if (i == 0) {
+        int numDiffs = 0;
+        for (int j = 0; j < statements.size(); ++j)
+          if (!Objects.equals(llAsts.get(j), twoStageAsts.get(j))) {
+            if (++numDiffs <= 10) System.out.println("AST differs: " + statements.get(j));
+          }
+        System.out.printf("%d ASTs differ\n", numDiffs);
+      }
+    }
+  }
+
+  private List<String> parseAll() {
+    final List<String> asts = new ArrayList<>(statements.size());
+    for (int i = 0; i < statements.size(); ++i) {
+      final SqlNode ast = parseSql(dbTypes.get(i), statements.get(i));
+      asts.add(ast == null ? null : ast.toString());
+    }
+    return asts;
+  }
+
+  private double throughput(long nanos) {
+    return statements.size() / (nanos / 1e9);
+  }
+}
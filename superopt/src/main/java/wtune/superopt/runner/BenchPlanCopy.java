@@ -0,0 +1,111 @@
+package wtune.superopt.runner;
+
+import wtune.common.utils.Args;
+import wtune.sql.SqlSupport;
+import wtune.sql.ast.SqlNode;
+import wtune.sql.plan.*;
+import wtune.sql.schema.Schema;
+import wtune.stmt.App;
+import wtune.stmt.Statement;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static wtune.sql.support.action.NormalizationSupport.normalizeAst;
+
+/**
+ * Measures the allocation and the time of PlanContext::copy followed by a few edits, like the
+ * copies the optimizer makes per candidate rewrite, on the plans of the statements of given apps.
+ * With -i, the statements of a single app are read from a file instead, one per line.
+ */
+public class BenchPlanCopy implements Runner {
+  private final List<PlanContext> plans = new ArrayList<>();
+  private int rounds, copies;
+
+  @Override
+  public void prepare(String[] argStrings) throws Exception {
+    final Args args = Args.parse(argStrings, 1);
+    final String apps = args.getOptional("A", "apps", String.class, "tpch,job");
+    rounds = args.getOptional("rounds", int.class, 5);
+    copies = args.getOptional("copies", int.class, 1000);
+
+    final String inputFile = args.getOptional("i", "input", String.class, null);
+    if (inputFile != null) {
+      // the statements of a single app, one per line, when the statement DB is unavailable
+      final Schema schema = App.of(apps).schema("base");
+      SqlSupport.muteParsingError();
+      for (String sql : Files.readAllLines(Path.of(inputFile))) {
+        final SqlNode ast = SqlSupport.parseSql(App.of(apps).dbType(), sql);
+        addPlan(ast == null ? null : parsePlan(ast, schema));
+      }
+      return;
+    }
+
+    final Set<String> appNames = Set.of(apps.split(","));
+    for (Statement stmt : Statement.findAll()) {
+      if (!appNames.contains(stmt.appName())) continue;
+      addPlan(parsePlan(stmt.ast(), stmt.app().schema("base", true)));
+    }
+  }
+
+  private void addPlan(PlanContext plan) {
+    if (plan == null) return;
+    // derive the values of all nodes ahead, as the optimizer does before rewriting
+    for (int node = 1; node <= plan.maxNodeId(); ++node)
+      if (plan.isPresent(node)) plan.valuesReg().valuesOf(node);
+    plans.add(plan);
+  }
+
+  @Override
+  public void run() throws Exception {
+    final int numNodes = plans.stream().mapToInt(BenchPlanCopy::countNodes).sum();
+    System.out.printf("%d plans, %d nodes in total\n", plans.size(), numNodes);
+
+    final com.sun.management.ThreadMXBean bean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    final long threadId = Thread.currentThread().getId();
+    final long numCopies = (long) plans.size() * copies;
+    for (int i = 0; i < rounds; ++i) {
+      final long bytesBefore = bean.getThreadAllocatedBytes(threadId);
+      final long start = System.nanoTime();
+      for (PlanContext plan : plans) for (int j = 0; j < copies; ++j) copyAndEdit(plan);
+      final long nanos = System.nanoTime() - start;
+      final long bytes = bean.getThreadAllocatedBytes(threadId) - bytesBefore;
+      System.out.printf(
+          "Round %d: %d bytes/copy, %.2f us/copy\n",
+          i, bytes / numCopies, nanos / 1e3 / numCopies);
+    }
+  }
+
+  // Edits the root like a rewrite does: rebinds the node, its values and its info.
+  private static void copyAndEdit(PlanContext plan) {
+    final PlanContext copy = plan.copy();
+    final ValuesRegistry valuesReg = copy.valuesReg();
+    final int root = copy.root();
+    final Values values = valuesReg.valuesOf(root);
+    if (!values.isEmpty()) valuesReg.bindExpr(values.get(0), valuesReg.exprOf(values.get(0)));
+    valuesReg.bindValues(copy.bindNode(copy.nodeAt(root)), values);
+    copy.infoCache().putDeduplicatedOf(root, true);
+  }
+
+  private static int countNodes(PlanContext plan) {
+    int numNodes = 0;
+    for (int node = 1; node <= plan.maxNodeId(); ++node) if (plan.isPresent(node)) ++numNodes;
+    return numNodes;
+  }
+
+  private static PlanContext parsePlan(SqlNode ast, Schema schema) {
+    try {
+      if (ast == null || !PlanSupport.isSupported(ast)) return null;
+      ast.context().setSchema(schema);
+      normalizeAst(ast);
+      return PlanSupport.assemblePlan(ast, schema);
+    } catch (Throwable ex) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package wtune.superopt.runner;
+
+import wtune.common.utils.Args;
+import wtune.common.utils.IOSupport;
+import wtune.sql.SqlSupport;
+import wtune.sql.ast.SqlNode;
+import wtune.sql.plan.*;
+import wtune.sql.schema.Schema;
+import wtune.stmt.App;
+import wtune.superopt.optimizer.Optimizer;
+import wtune.superopt.substitution.SubstitutionBank;
+import wtune.superopt.substitution.SubstitutionSupport;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static wtune.common.datasource.DbSupport.MySQL;
+import static wtune.sql.support.action.NormalizationSupport.normalizeAst;
+
+/**
+ * Measures PlanContext::hashOf after the edits of a rewrite, on the plans of the calcite cases.
+ * Each edit copies a plan, rebinds the value refs of one node, as ValueRefReBinder does, and then
+ * looks up the hashes of all the sub-plans, as the memo does for a new candidate. With -R, also
+ * measures the optimization of these plans.
+ */
+public class BenchPlanHash implements Runner {
+  private final List<PlanContext> plans = new ArrayList<>();
+  private int rounds;
+  private SubstitutionBank rules;
+  private long sink; // keeps the lookups from being optimized away
+
+  @Override
+  public void prepare(String[] argStrings) throws Exception {
+    final Args args = Args.parse(argStrings, 1);
+    final Path cases =
+        Path.of(args.getOptional("i", "cases", String.class, "wtune_data/calcite/calcite_tests"));
+    final String appName = args.getOptional("A", "app", String.class, "calcite_test");
+    rounds = args.getOptional("rounds", int.class, 5);
+    IOSupport.checkFileExists(cases);
+
+    final String ruleFileName = args.getOptional("R", "rules", String.class, null);
+    if (ruleFileName != null) {
+      final Path ruleFile = RunnerSupport.dataDir().resolve(ruleFileName);
+      IOSupport.checkFileExists(ruleFile);
+      rules = SubstitutionSupport.loadBank(ruleFile);
+    }
+
+    final Schema schema = App.of(appName).schema("base");
+    SqlSupport.muteParsingError();
+    for (String sql : Files.readAllLines(cases)) {
+      final PlanContext plan = parsePlan(sql, schema);
+      if (plan != null) plans.add(plan);
+    }
+  }
+
+  @Override
+  public void run() throws Exception {
+    int numNodes = 0;
+    for (PlanContext plan : plans) numNodes += countNodes(plan);
+    System.out.printf("%d plans, %d nodes in total\n", plans.size(), numNodes);
+
+    for (int i = 0; i < rounds; ++i) {
+      final long start = System.nanoTime();
+      long numEdits = 0;
+      for (PlanContext plan : plans) numEdits += editAll(plan);
+      final long nanos = System.nanoTime() - start;
+      System.out.printf("Round %d: %d edits, %.2f us/edit", i, numEdits, nanos / 1e3 / numEdits);
+
+      if (rules != null) {
+        final long optStart = System.nanoTime();
+        for (PlanContext plan : plans) {
+          final Optimizer optimizer = Optimizer.mk(rules);
+          optimizer.setTimeout(5000);
+          optimizer.optimize(plan);
+        }
+        System.out.printf(", optimization %d ms", (System.nanoTime() - optStart) / 1000000);
+      }
+      System.out.println();
+    }
+  }
+
+  // Edits each node of a copy in turn, and hashes all the sub-plans after each edit.
+  private int editAll(PlanContext plan) {
+    final PlanContext copy = plan.copy();
+    final ValuesRegistry valuesReg = copy.valuesReg();
+    int numEdits = 0;
+    for (int node = 1; node <= copy.maxNodeId(); ++node) {
+      if (!copy.isPresent(node)) continue;
+      final Expression expr = exprOf(copy.nodeAt(node));
+      if (expr == null || valuesReg.valueRefsOf(expr) == null) continue;
+
+      valuesReg.bindValueRefs(expr, valuesReg.valueRefsOf(expr));
+      for (int sub = 1; sub <= copy.maxNodeId(); ++sub)
+        if (copy.isPresent(sub)) sink += copy.hashOf(sub).hashCode();
+      ++numEdits;
+    }
+    return numEdits;
+  }
+
+  private static Expression exprOf(PlanNode node) {
+    if (node instanceof SimpleFilterNode) return ((SimpleFilterNode) node).predicate();
+    if (node instanceof JoinNode) return ((JoinNode) node).joinCond();
+    if (node instanceof InSubNode) return ((InSubNode) node).expr();
+    if (node instanceof Exporter) {
+      final List<Expression> exprs = ((Exporter) node).attrExprs();
+      return exprs.isEmpty() ? null : exprs.get(0);
+    }
+    return null;
+  }
+
+  private static int countNodes(PlanContext plan) {
+    int numNodes = 0;
+    for (int node = 1; node <= plan.maxNodeId(); ++node) if (plan.isPresent(node)) ++numNodes;
+    return numNodes;
+  }
+
+  private static PlanContext parsePlan(String sql, Schema schema) {
+    try {
+      final SqlNode ast = SqlSupport.parseSql(MySQL, sql);
+      if (ast == null || !PlanSupport.isSupported(ast)) return null;
+      ast.context().setSchema(schema);
+      normalizeAst(ast);
+      return PlanSupport.assemblePlan(ast, schema);
+    } catch (Throwable ex) {
+      return null;
+    }
+  }
+}
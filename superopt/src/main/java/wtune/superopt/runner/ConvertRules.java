@@ -0,0 +1,90 @@
+package wtune.superopt.runner;
+
+import wtune.common.utils.Args;
+import wtune.common.utils.IOSupport;
+import wtune.stmt.Statement;
+import wtune.superopt.daemon.DaemonContext;
+import wtune.superopt.daemon.DaemonContextImpl;
+import wtune.superopt.substitution.SubstitutionBank;
+import wtune.superopt.substitution.SubstitutionSupport;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static wtune.superopt.runner.RunnerSupport.dataDir;
+
+/**
+ * Converts a text rule file into the binary bank format. The binary file can be passed wherever a
+ * rule file is expected (e.g. RewriteQuery -R, the daemon's bank_path).
+ *
+ * <p>With -bench N, the startup of the daemon from both files is measured over N rounds afterwards:
+ * DaemonContextImpl.make, which loads the bank, and then the optimization of a first query (-sql,
+ * of app -A), which parses the rules it matches.
+ */
+public class ConvertRules implements Runner {
+  private Path inFile;
+  private Path outFile;
+  private int benchRounds;
+  private String app, sql;
+
+  @Override
+  public void prepare(String[] argStrings) throws Exception {
+    final Args args = Args.parse(argStrings, 1);
+    final Path dataDir = dataDir();
+    final String inFileName = args.getOptional("R", "rules", String.class, "rules/rules.txt");
+    final String outFileName = args.getOptional("o", "output", String.class, inFileName + ".bin");
+    benchRounds = args.getOptional("bench", int.class, 0);
+    app = args.getOptional("A", "app", String.class, "tpch");
+    sql =
+        args.getOptional(
+            "sql",
+            String.class,
+            "SELECT DISTINCT o_orderkey FROM orders WHERE o_orderkey IN (SELECT l_orderkey FROM lineitem)");
+
+    inFile = dataDir.resolve(inFileName);
+    outFile = dataDir.resolve(outFileName);
+    IOSupport.checkFileExists(inFile);
+  }
+
+  @Override
+  public void run() throws Exception {
+    final SubstitutionBank bank = SubstitutionSupport.loadBank(inFile);
+    SubstitutionSupport.dumpBinaryBank(bank, outFile);
+    System.out.printf(
+        "%d rules: %s (%d bytes) -> %s (%d bytes)\n",
+        bank.size(), inFile, Files.size(inFile), outFile, Files.size(outFile));
+
+    if (benchRounds <= 0) return;
+    for (int i = 0; i < benchRounds; ++i) {
+      final long[] textTimes = timeStartup(inFile);
+      final long[] binaryTimes = timeStartup(outFile);
+      System.out.printf(
+          "Round %d: text %.2f + %.2f ms, binary %.2f + %.2f ms (make + first query)\n",
+          i, textTimes[0] / 1e6, textTimes[1] / 1e6, binaryTimes[0] / 1e6, binaryTimes[1] / 1e6);
+    }
+  }
+
+  private long[] timeStartup(Path bankPath) {
+    final Properties config = new Properties();
+    config.setProperty("bank_path", bankPath.toString());
+    config.setProperty("port", "0");
+
+    final long start = System.nanoTime();
+    final DaemonContext ctx;
+    try {
+      ctx = DaemonContextImpl.make(config);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    final long made = System.nanoTime();
+    try {
+      ctx.optimize(Statement.mk(app, sql, null));
+      return new long[] {made - start, System.nanoTime() - made};
+    } finally {
+      ctx.stop();
+    }
+  }
+}
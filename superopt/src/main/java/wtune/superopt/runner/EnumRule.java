@@ -8,8 +8,11 @@ import wtune.superopt.constraint.ConstraintSupport;
 import wtune.superopt.constraint.EnumerationMetrics;
 import wtune.superopt.fragment.Fragment;
 import wtune.superopt.fragment.FragmentSupport;
-import wtune.superopt.fragment.FragmentSupportSPES;
+import wtune.superopt.fragment.Symbol;
 import wtune.superopt.fragment.SymbolNaming;
+import wtune.superopt.logic.LogicSupport;
+import wtune.superopt.logic.ProofCache;
+import wtune.superopt.logic.Z3Pool;
 import wtune.superopt.substitution.Substitution;
 
 import java.io.IOException;
@@ -17,11 +20,12 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -34,6 +38,8 @@ import static wtune.superopt.fragment.FragmentSupport.enumFragments;
 import static wtune.superopt.fragment.FragmentSupportSPES.enumFragmentsSPES;
 
 public class EnumRule implements Runner {
+  private static final String CHECKPOINT_FINISHED = "finished";
+
   private final Lock outLock = new ReentrantLock();
   private final Lock errLock = new ReentrantLock();
 
@@ -43,19 +49,24 @@ public class EnumRule implements Runner {
   private int verbosity;
   private long timeout;
   private int parallelism;
+  private int forkThreshold;
   private int iBegin, jBegin;
   private int numWorker, workerIndex;
-  private ExecutorService threadPool;
+  private ForkJoinPool threadPool;
   private Pair<Fragment, Fragment> target;
   private ProgressBar progressBar;
   private CountDownLatch latch;
-  private int iEnd, jEnd;
 
   private final AtomicInteger numSkipped = new AtomicInteger(0);
 
   @Override
   public void prepare(String[] argStrings) throws Exception {
     final Args args = Args.parse(argStrings, 1);
+    // Proofs recorded by earlier runs are reused.
+    final String proofCache = args.getOptional("proofCache", String.class, null);
+    if (proofCache != null)
+      LogicSupport.setProofCache(ProofCache.open(RunnerSupport.dataDir().resolve(proofCache)));
+
     final String target = args.getOptional("target", String.class, null);
     if (target != null) {
       try {
@@ -75,7 +86,11 @@ public class EnumRule implements Runner {
     verbosity = args.getOptional("v", "verbose", int.class, 0);
     timeout = args.getOptional("timeout", long.class, 240000L);
     parallelism = args.getOptional("parallelism", int.class, 1);
+    // Pairs with >= 21 symbols in total are a third of all pairs, but take >90% of the enumerated
+    // constraint sets (sampled by dry runs). Forking the smaller ones only adds overhead.
+    forkThreshold = args.getOptional("forkThreshold", int.class, 21);
     useSpes = args.getOptional("useSpes", boolean.class, false);
+    LogicSupport.setSpesBudget(args.getOptional("spesBudget", long.class, 0L));
 
     if (timeout <= 0) throw new IllegalArgumentException("invalid timeout: " + timeout);
     if (parallelism <= 0) throw new IllegalArgumentException("invalid parallelism: " + parallelism);
@@ -140,13 +155,15 @@ public class EnumRule implements Runner {
     System.out.println(", " + metric.elapsedUnknown.value() + "ms");
     System.out.println("# of EQ from cache: " + metric.numCacheHitEq.value());
     System.out.println("# of NEQ from cache: " + metric.numCacheHitNeq.value());
+    System.out.print("# of Z3 contexts created: " + Z3Pool.numCreated());
+    System.out.print(" for " + Z3Pool.numLeases() + " uses");
+    System.out.println(", " + Z3Pool.nativeMillis() + "ms");
     System.out.println();
   }
 
   private void fromEnumeration() throws IOException, InterruptedException {
     final List<Fragment> templates = useSpes ? enumFragmentsSPES() : enumFragments();
     final int numTemplates = templates.size();
-    setLastOwnedPair(numTemplates);
 
     int[] completed = null;
     if (prevCheckpoint != null) {
@@ -156,69 +173,74 @@ public class EnumRule implements Runner {
       completed = new int[lines.size()];
       int i = 0;
       for (String line : lines) {
+        if (line.equals(CHECKPOINT_FINISHED)) continue;
         final String[] fields = line.split(",");
         final int x = Integer.parseInt(fields[0]);
         final int y = Integer.parseInt(fields[1]);
         completed[i++] = ordinal(numTemplates, x, y);
       }
+      completed = Arrays.copyOf(completed, i);
       Arrays.sort(completed);
       Files.copy(prevCheckpoint, checkpoint);
     }
 
-    final int totalPairs = (numTemplates * (numTemplates + 1)) >> 1;
-    final int myPairs = totalPairs / numWorker + (totalPairs % numWorker > workerIndex ? 1 : 0);
+    final TemplateCost[] costs = new TemplateCost[numTemplates];
+    for (int i = 0; i < numTemplates; ++i) costs[i] = TemplateCost.of(templates.get(i));
+
+    final List<PairTask> tasks = new ArrayList<>();
+    int numDone = 0;
+    for (int i = 0; i < numTemplates; ++i) {
+      for (int j = i; j < numTemplates; ++j) {
+        final int ordinal = ordinal(numTemplates, i, j);
+        if (isCompleted(completed, ordinal)) {
+          ++numDone;
+          continue;
+        }
+        if (!isOwned(ordinal)) continue;
+        if (i < iBegin || (i == iBegin && j < jBegin)) {
+          ++numDone;
+          continue;
+        }
+        tasks.add(new PairTask(i, j, costs[i].estimatePair(costs[j])));
+      }
+    }
+    // Longest first, so that the expensive pairs do not straggle at the end of the run.
+    tasks.sort(Comparator.comparingLong(PairTask::cost).reversed());
 
-    latch = new CountDownLatch(myPairs);
-    threadPool = Executors.newFixedThreadPool(parallelism);
+    latch = new CountDownLatch(tasks.size());
+    threadPool = new ForkJoinPool(parallelism);
 
-    try (final ProgressBar pb = new ProgressBar("Candidates", myPairs)) {
+    try (final ProgressBar pb = new ProgressBar("Candidates", tasks.size() + numDone)) {
       progressBar = pb;
+      pb.stepBy(numDone);
+
+      for (PairTask task : tasks) {
+        final int x = task.i(), y = task.j();
+        final Fragment f0 = templates.get(x), f1 = templates.get(y);
 
-      for (int i = 0; i < numTemplates; ++i) {
-        for (int j = i; j < numTemplates; ++j) {
-          final int ordinal = ordinal(numTemplates, i, j);
-          if (isCompleted(completed, ordinal)) {
-            if (progressBar != null) progressBar.step();
-            if (latch != null) latch.countDown();
-            continue;
-          }
-          if (!isOwned(ordinal)) continue;
-          if (i < iBegin || (i == iBegin && j < jBegin)) {
-            if (progressBar != null) progressBar.step();
-            if (latch != null) latch.countDown();
-            continue;
-          }
-
-          final Fragment f0 = templates.get(i), f1 = templates.get(j);
-
-          if (verbosity >= 4) {
-            System.out.printf("%d,%d\n", i, j);
-            System.out.println(f0);
-            System.out.println(f1);
-          }
-
-//          if ( (!hasAggUnion(f0) && !hasAggUnion(f1)) ||
-//               (f0.equals(f1)) ) {
-//            if (progressBar != null) progressBar.step();
-//            if (latch != null) latch.countDown();
-//            continue;
-//          }
-
-          final int x = i, y = j;
-          threadPool.submit(() -> enumerate(f0, f1, x, y));
+        if (verbosity >= 4) {
+          System.out.printf("%d,%d\n", x, y);
+          System.out.println(f0);
+          System.out.println(f1);
         }
+
+        final int maxForks = costs[x].numSyms + costs[y].numSyms >= forkThreshold ? parallelism : 1;
+        threadPool.execute(() -> enumerate(f0, f1, x, y, maxForks));
       }
 
       latch.await();
       threadPool.shutdown();
     }
+
+    // Written only when every owned pair is done, since the pairs complete out of order.
+    IOSupport.appendTo(checkpoint, out -> out.println(CHECKPOINT_FINISHED));
   }
 
   private void fromFailures() throws IOException, InterruptedException {
     final List<String> failures = Files.readAllLines(prevFailure);
 
     latch = new CountDownLatch(failures.size());
-    threadPool = Executors.newFixedThreadPool(parallelism);
+    threadPool = new ForkJoinPool(parallelism);
 
     try (final ProgressBar pb = new ProgressBar("Candidates", failures.size())) {
       progressBar = pb;
@@ -227,7 +249,7 @@ public class EnumRule implements Runner {
         final String[] fields = failure.split("\\|");
         final Fragment f0 = Fragment.parse(fields[0], null);
         final Fragment f1 = Fragment.parse(fields[1], null);
-        threadPool.submit(() -> enumerate(f0, f1, -1, -1));
+        threadPool.execute(() -> enumerate(f0, f1, -1, -1, parallelism));
       }
 
       latch.await();
@@ -257,6 +279,7 @@ public class EnumRule implements Runner {
       for (Substitution rule : rules) System.out.println(rule);
       System.out.println("Metrics: ");
       System.out.println(ConstraintSupport.getEnumerationMetric());
+      System.out.println(Z3Pool.stringifyMetrics());
 
     } catch (Throwable ex) {
       System.out.println("==> Exception!");
@@ -277,29 +300,13 @@ public class EnumRule implements Runner {
     return ordinal % numWorker == workerIndex;
   }
 
-  private void setLastOwnedPair(int total) {
-    for (int i = total - 1; i >= 0; --i) {
-      for (int j = total - 1; j >= i; --j) {
-        if (isOwned(ordinal(total, i, j))) {
-          iEnd = i; jEnd = j;
-          return;
-        }
-      }
-    }
-    assert false;
-  }
-
-  private boolean isLastPair(int i, int j) {
-    return i == iEnd && j == jEnd;
-  }
-
-  private void enumerate(Fragment f0_, Fragment f1_, int i, int j) {
-    enumerate0(f0_, f1_, i, j);
+  private void enumerate(Fragment f0_, Fragment f1_, int i, int j, int maxForks) {
+    enumerate0(f0_, f1_, i, j, maxForks);
     if (progressBar != null) progressBar.step();
     if (latch != null) latch.countDown();
   }
 
-  private void enumerate0(Fragment f0_, Fragment f1_, int i, int j) {
+  private void enumerate0(Fragment f0_, Fragment f1_, int i, int j, int maxForks) {
     boolean outLocked = false, errLocked = false;
     final Fragment f0 = f0_;
     final Fragment f1;
@@ -310,7 +317,8 @@ public class EnumRule implements Runner {
     }
 
     try {
-      final List<Substitution> rules = !useSpes ? enumConstraints(f0, f1, timeout) : enumConstraintsSPES(f0, f1, timeout);
+      final int tweaks = useSpes ? ENUM_FLAG_USE_SPES : 0;
+      final List<Substitution> rules = enumConstraintsForked(f0, f1, timeout, tweaks, maxForks);
       if (rules == null) {
         numSkipped.incrementAndGet();
         return;
@@ -324,6 +332,7 @@ public class EnumRule implements Runner {
       if (verbosity >= 4) {
         System.out.println("Current Metrics ==>");
         System.out.println(ConstraintSupport.getEnumerationMetric());
+        System.out.println(Z3Pool.stringifyMetrics());
         System.out.println("<==");
       }
 
@@ -353,10 +362,34 @@ public class EnumRule implements Runner {
           });
 
     } finally {
-      if (i >= 0 && j >= 0 && isLastPair(i, j))
-        IOSupport.appendTo(checkpoint, out -> out.printf("finished\n"));
       if (outLocked) outLock.unlock();
       if (errLocked) errLock.unlock();
     }
   }
+
+  private record PairTask(int i, int j, long cost) {}
+
+  private static class TemplateCost {
+    private final int numOps, numSyms;
+    private final boolean hasAggUnion;
+
+    private TemplateCost(int numOps, int numSyms, boolean hasAggUnion) {
+      this.numOps = numOps;
+      this.numSyms = numSyms;
+      this.hasAggUnion = hasAggUnion;
+    }
+
+    private static TemplateCost of(Fragment f) {
+      int numSyms = 0;
+      for (Symbol.Kind kind : Symbol.Kind.values()) numSyms += f.symbolCount(kind);
+      return new TemplateCost(FragmentSupport.countOps(f.root()), numSyms, hasAggUnion(f));
+    }
+
+    private long estimatePair(TemplateCost other) {
+      // The number of constraint sets grows exponentially with the number of symbols.
+      final int numSyms = Math.min(this.numSyms + other.numSyms, 40);
+      final long cost = (1L << numSyms) * (this.numOps + other.numOps + 1);
+      return this.hasAggUnion || other.hasAggUnion ? cost << 2 : cost;
+    }
+  }
 }
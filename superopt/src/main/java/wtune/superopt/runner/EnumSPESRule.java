@@ -8,6 +8,7 @@ import wtune.common.utils.IOSupport;
 import wtune.superopt.constraint.ConstraintSupport;
 import wtune.superopt.fragment.Fragment;
 import wtune.superopt.fragment.FragmentSupportSPES;
+import wtune.superopt.logic.LogicSupport;
 import wtune.superopt.substitution.Substitution;
 
 import java.io.IOException;
@@ -47,6 +48,7 @@ public class EnumSPESRule implements Runner {
     echo = args.getOptional("echo", boolean.class, false);
     timeout = args.getOptional("timeout", long.class, 20000L);
     parallelism = args.getOptional("parallelism", int.class, 1);
+    LogicSupport.setSpesBudget(args.getOptional("spesBudget", long.class, 0L));
     numWorker = args.getPositional(0, int.class);
     workerIndex = args.getPositional(1, int.class);
 
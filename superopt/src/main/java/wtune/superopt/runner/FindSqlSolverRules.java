@@ -14,6 +14,7 @@ import wtune.sql.schema.Schema;
 import wtune.sql.support.action.NormalizationSupport;
 import wtune.stmt.App;
 import wtune.superopt.logic.LogicSupport;
+import wtune.superopt.logic.ProofCache;
 import wtune.superopt.logic.SqlSolver;
 import wtune.superopt.substitution.Substitution;
 import wtune.superopt.substitution.SubstitutionBank;
@@ -34,6 +35,7 @@ import static wtune.common.datasource.DbSupport.MySQL;
 import static wtune.sql.SqlSupport.parseSql;
 import static wtune.sql.plan.PlanSupport.*;
 import static wtune.superopt.logic.LogicSupport.*;
+import static wtune.superopt.logic.ProofCache.Prover.*;
 
 public class FindSqlSolverRules implements Runner {
   private static final String CALCITE_APP_NAME = "calcite_test";
@@ -43,9 +45,11 @@ public class FindSqlSolverRules implements Runner {
   private static List<Integer> blackList = List.of(127, 203, 229, 255, 281, 353, 395, 463);
 
   @Override
-  public void prepare(String[] argStrings) {
+  public void prepare(String[] argStrings) throws IOException {
     final Args args = Args.parse(argStrings, 1);
     final Path dataDir = RunnerSupport.dataDir();
+    final String proofCache = args.getOptional("proofCache", String.class, null);
+    if (proofCache != null) LogicSupport.setProofCache(ProofCache.open(dataDir.resolve(proofCache)));
 
     // ruleFilePath = Path.of(args.getOptional("i", "cases", String.class, "wtune_data/calcite/calcite_tests"));
     ruleFilePath = dataDir.resolve("prepared").resolve("rules.sqlsolver.txt");
@@ -61,7 +65,9 @@ public class FindSqlSolverRules implements Runner {
     for (Substitution rule : rules.rules()) {
         final UExprTranslationResult uExprs =
           UExprSupport.translateToUExpr(rule, UExprSupport.UEXPR_FLAG_INTEGRITY_CONSTRAINT_REWRITE);
-        final int result = LogicSupport.proveEqByLIAStar2(rule);
+        final int result =
+            ProofCache.prove(
+                LIA_STAR2, rule::canonicalStringify, () -> LogicSupport.proveEqByLIAStar2(rule));
         System.out.println("Rule id: " + rule.id() + " is " + LogicSupport.stringifyResult(result));
     }
   }
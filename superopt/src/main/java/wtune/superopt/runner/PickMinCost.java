@@ -38,6 +38,8 @@ public class PickMinCost implements Runner {
   private int stmtId;
   private int verbosity;
   private boolean useSqlServer;
+  private String costModel, costCache;
+  private int parallelism;
   private final Map<String, Properties> dbProps = new ConcurrentHashMap<>();
 
   @Override
@@ -80,6 +82,14 @@ public class PickMinCost implements Runner {
 
     // Default datasource is Sql Server
     useSqlServer = args.getOptional("sqlserver", boolean.class, true);
+
+    // `-costModel=local` profiles without any database.
+    costModel = args.getOptional("costModel", String.class, null);
+    // Costs recorded by earlier runs are reused.
+    final String costCacheFile = args.getOptional("costCache", String.class, null);
+    if (costCacheFile != null) costCache = dataDir.resolve(costCacheFile).toString();
+    parallelism = args.getOptional("parallelism", int.class, 8);
+    if (parallelism <= 0) throw new IllegalArgumentException("invalid parallelism: " + parallelism);
   }
 
   @Override
@@ -159,6 +169,9 @@ public class PickMinCost implements Runner {
     final String dbName = appName + "_base";
     final String dbType = useSqlServer ? SQLServer : App.of(appName).dbType();
     final Properties props = DbSupport.dbProps(dbType, dbName);
+    if (costModel != null) props.setProperty("costModel", costModel);
+    if (costCache != null) props.setProperty("costCache", costCache);
+    props.setProperty("profileParallelism", String.valueOf(parallelism));
     dbProps.put(appName, props);
     return props;
   }
@@ -19,6 +19,8 @@ public class ReduceRules implements Runner {
   private Path inFile;
   private Path outFile;
   private Path additionalFile;
+  private int parallelism;
+  private int verbosity;
 
   @Override
   public void prepare(String[] argStrings) throws IOException {
@@ -27,6 +29,9 @@ public class ReduceRules implements Runner {
     final String inFileName = args.getOptional("R", "rules", String.class, "rules/rules.raw.txt");
     final String outFileName = args.getOptional("o", "output", String.class, "rules/rules.txt");
     final String addFileName = args.getOptional("a", String.class, "rules/rules.test.txt");
+    final int numCores = Runtime.getRuntime().availableProcessors();
+    parallelism = args.getOptional("parallelism", int.class, numCores);
+    verbosity = args.getOptional("v", "verbose", int.class, 0);
 
     inFile = dataDir.resolve(inFileName);
     outFile = dataDir.resolve(outFileName);
@@ -50,17 +55,9 @@ public class ReduceRules implements Runner {
       for (Substitution rule : rules.rules()) bank.add(rule);
     }
 
-    SubstitutionBank reducedBank = bank;
-
-    int pass = 1;
-    while (true) {
-      final int oldSize = reducedBank.size();
-      reducedBank = SubstitutionSupport.reduceBank(reducedBank);
-      final int minSize = reducedBank.size();
-
-      System.out.printf("Pass %d: %d -> %d\n", pass++, oldSize, minSize);
-      if (minSize == oldSize) break;
-    }
+    // Passes are repeated inside until no rule is removed.
+    final SubstitutionBank reducedBank =
+        SubstitutionSupport.reduceBank(bank, parallelism, verbosity >= 1);
 
     try (final PrintWriter out = IOSupport.newPrintWriter(outFile)) {
       for (Substitution rule : reducedBank.rules()) out.println(rule.canonicalStringify());
@@ -8,13 +8,14 @@ import wtune.sql.preprocess.SqlNodePreprocess;
 import wtune.sql.schema.Schema;
 import wtune.sql.support.action.NormalizationSupport;
 import wtune.stmt.App;
-import wtune.superopt.logic.CASTSupport;
 import wtune.superopt.logic.LogicSupport;
+import wtune.superopt.logic.ProofCache;
 import wtune.superopt.logic.SqlSolver;
 import wtune.superopt.uexpr.UExprConcreteTranslationResult;
 import wtune.superopt.uexpr.UExprSupport;
 import wtune.superopt.uexpr.normalizer.QueryUExprICRewriter;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
@@ -23,6 +24,7 @@ import static wtune.common.datasource.DbSupport.MySQL;
 import static wtune.sql.SqlSupport.*;
 import static wtune.sql.plan.PlanSupport.*;
 import static wtune.superopt.logic.LogicSupport.*;
+import static wtune.superopt.logic.ProofCache.Prover.LIA_STAR_CONCRETE;
 
 public class RunCalciteCasesLia implements Runner {
   private static final String CALCITE_APP_NAME = "calcite_test";
@@ -40,7 +42,7 @@ public class RunCalciteCasesLia implements Runner {
   private long thisTime; // last case time
 
   @Override
-  public void prepare(String[] argStrings) {
+  public void prepare(String[] argStrings) throws IOException {
     final Args args = Args.parse(argStrings, 1);
     final Path dataDir = RunnerSupport.dataDir();
     time = args.getOptional("time", boolean.class, false);
@@ -66,6 +68,10 @@ public class RunCalciteCasesLia implements Runner {
     if (rounds <= 0) {
       throw new IllegalArgumentException("rounds should be positive");
     }
+    LogicSupport.setLiaPortfolio(args.getOptional("portfolio", boolean.class, false));
+    LogicSupport.setLiaBudget(args.getOptional("budget", Long.class, 0L));
+    final String proofCache = args.getOptional("proofCache", String.class, null);
+    if (proofCache != null) LogicSupport.setProofCache(ProofCache.open(dataDir.resolve(proofCache)));
   }
 
   // 1=pass, 0=fail, -1=silent_fail
@@ -204,6 +210,7 @@ public class RunCalciteCasesLia implements Runner {
       }
     }*/
     System.out.println("Passed " + eqCount + " cases.");
+    if (time) System.out.println(SqlNodePreprocess.stringifyStats());
   }
 
   private static class QueryPair {
@@ -244,15 +251,13 @@ public class RunCalciteCasesLia implements Runner {
 
   private List<QueryPair> readPairs(List<String> lines) {
     final Schema schema = app.schema("base");
-    SqlNodePreprocess.setSchema(schema);
-    CASTSupport.setSchema(schema);
     SqlSupport.muteParsingError();
 
     final List<QueryPair> pairs = new ArrayList<>(lines.size() >> 1);
     for (int i = 0, bound = lines.size(); i < bound; i += 2) {
       String sql0 = lines.get(i), sql1 = lines.get(i + 1);
-      sql0 = parsePreprocess(sql0);
-      sql1 = parsePreprocess(sql1);
+      sql0 = parsePreprocess(sql0, schema);
+      sql1 = parsePreprocess(sql1, schema);
       String[] pair = parseCoPreprocess(sql0, sql1);
       sql0 = pair[0];
       sql1 = pair[1];
@@ -299,13 +304,21 @@ public class RunCalciteCasesLia implements Runner {
             = UExprSupport.translateQueryWithVALUESToUExpr(pair.sql0, pair.sql1, pair.schema, 0);
         if (uExprs == null) return LogicSupport.stringifyResult(NEQ);
         long millis_before = System.currentTimeMillis();
-        final int result = LogicSupport.proveEqByLIAStar(uExprs);
+        final int result =
+            ProofCache.prove(
+                LIA_STAR_CONCRETE,
+                () -> proofKeyOf(pair),
+                () -> LogicSupport.proveEqByLIAStar(uExprs));
         long millis_after = System.currentTimeMillis();
         thisTime += millis_after - millis_before;
         return LogicSupport.stringifyResult(result);
       }
       long millis_before = System.currentTimeMillis();
-      final int result = LogicSupport.proveEqByLIAStarConcrete(pair.p0, pair.p1);
+      final int result =
+          ProofCache.prove(
+              LIA_STAR_CONCRETE,
+              () -> proofKeyOf(pair),
+              () -> LogicSupport.proveEqByLIAStarConcrete(pair.p0, pair.p1));
       long millis_after = System.currentTimeMillis();
       thisTime += millis_after - millis_before;
       return LogicSupport.stringifyResult(result);
@@ -318,6 +331,10 @@ public class RunCalciteCasesLia implements Runner {
     }
   }
 
+  private String proofKeyOf(QueryPair pair) {
+    return app.name() + "\n" + pair.sql0 + "\n" + pair.sql1;
+  }
+
   private String getCalciteVerifyResultSymbolic(QueryPair pair, boolean verbose) {
     int res0, res1;
     try {
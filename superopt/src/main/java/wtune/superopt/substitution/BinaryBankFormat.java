@@ -0,0 +1,147 @@
+package wtune.superopt.substitution;
+
+import wtune.superopt.util.Fingerprint;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Binary form of a rule bank.
+ *
+ * <pre>
+ * header:  int magic, int version, int flags (bit 0: extended), int #strings, int #rules
+ * strings: int[#strings + 1] offsets into the blob
+ * rules:   #rules * (int id, int fragment0, int fragment1, int constraints, int fingerprint)
+ * blob:    UTF-8 bytes of the strings
+ * </pre>
+ *
+ * Each string (fragments, constraints, fingerprints) is stored once. The fingerprint index is
+ * rebuilt from the stored fingerprints, so loading parses no rule and decodes only the
+ * fingerprints. The other strings are decoded from the mapped file when a rule is first accessed
+ * (see {@link LazySubstitution}).
+ */
+class BinaryBankFormat {
+  static final int MAGIC = 0x57545242; // "WTRB"
+  static final int VERSION = 1;
+
+  private static final int FLAG_EXTENDED = 1;
+  private static final int HEADER_SIZE = 20, RULE_SIZE = 20;
+
+  static boolean isBinary(Path path) throws IOException {
+    try (final DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+      return in.readInt() == MAGIC;
+    } catch (EOFException ex) {
+      return false;
+    }
+  }
+
+  static void write(SubstitutionBank bank, Path path) throws IOException {
+    final Map<String, Integer> stringIds = new HashMap<>();
+    final List<String> strings = new ArrayList<>();
+    final int[] records = new int[bank.size() * 5];
+
+    int i = 0;
+    for (Substitution rule : bank.rules()) {
+      final String[] fields = rule.canonicalStringify().split("\\|", -1);
+      if (fields.length != 3)
+        throw new IllegalArgumentException("invalid serialized substitution: " + rule);
+
+      records[i++] = rule.id();
+      for (String field : fields) records[i++] = intern(field, stringIds, strings);
+      records[i++] = intern(Fingerprint.mk(rule._0()).toString(), stringIds, strings);
+    }
+
+    final byte[][] bytes = new byte[strings.size()][];
+    for (int j = 0; j < bytes.length; ++j) bytes[j] = strings.get(j).getBytes(UTF_8);
+
+    try (final DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(bank.isExtended() ? FLAG_EXTENDED : 0);
+      out.writeInt(strings.size());
+      out.writeInt(bank.size());
+
+      int offset = 0;
+      out.writeInt(offset);
+      for (byte[] str : bytes) out.writeInt(offset += str.length);
+      for (int record : records) out.writeInt(record);
+      for (byte[] str : bytes) out.write(str);
+    }
+  }
+
+  static SubstitutionBank read(Path path) throws IOException {
+    final ByteBuffer buffer;
+    try (final FileChannel channel = FileChannel.open(path, READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+      throw new IOException("not a binary rule bank: " + path);
+    final int version = buffer.getInt(4);
+    if (version != VERSION)
+      throw new IOException("unsupported rule bank version %d: %s".formatted(version, path));
+
+    final int numStrings = buffer.getInt(12), numRules = buffer.getInt(16);
+    final int rulesBase = HEADER_SIZE + (numStrings + 1) * 4;
+    final int blobBase = rulesBase + numRules * RULE_SIZE;
+
+    final Strings strings = new Strings(buffer, numStrings, blobBase);
+    final SubstitutionBankImpl bank = new SubstitutionBankImpl();
+    bank.setExtended((buffer.getInt(8) & FLAG_EXTENDED) != 0);
+    for (int i = 0; i < numRules; ++i) {
+      final int base = rulesBase + i * RULE_SIZE;
+      final int id = buffer.getInt(base);
+      final int fragment0 = buffer.getInt(base + 4), fragment1 = buffer.getInt(base + 8);
+      final int constraints = buffer.getInt(base + 12);
+      final String fingerprint = strings.get(buffer.getInt(base + 16));
+      bank.addPending(
+          new LazySubstitution(strings, fragment0, fragment1, constraints, id), fingerprint);
+    }
+    return bank;
+  }
+
+  /** The string table of a mapped bank. Each string is decoded on first use. */
+  static class Strings {
+    private final ByteBuffer buffer;
+    private final int blobBase;
+    private final String[] decoded;
+
+    private Strings(ByteBuffer buffer, int numStrings, int blobBase) {
+      this.buffer = buffer;
+      this.blobBase = blobBase;
+      this.decoded = new String[numStrings];
+    }
+
+    // Racing decoders produce equal strings, and a String is safe to publish without a lock.
+    String get(int i) {
+      String str = decoded[i];
+      if (str != null) return str;
+
+      final int begin = buffer.getInt(HEADER_SIZE + i * 4);
+      final int end = buffer.getInt(HEADER_SIZE + (i + 1) * 4);
+      final byte[] bytes = new byte[end - begin];
+      buffer.get(blobBase + begin, bytes); // absolute, leaves the buffer's position alone
+      return decoded[i] = new String(bytes, UTF_8);
+    }
+  }
+
+  private static int intern(String str, Map<String, Integer> ids, List<String> strings) {
+    return ids.computeIfAbsent(
+        str,
+        s -> {
+          strings.add(s);
+          return strings.size() - 1;
+        });
+  }
+}
@@ -0,0 +1,178 @@
+package wtune.superopt.substitution;
+
+import wtune.sql.ast.constants.JoinKind;
+import wtune.sql.plan.PlanContext;
+import wtune.sql.plan.PlanKind;
+import wtune.superopt.fragment.OpKind;
+import wtune.superopt.util.Fingerprint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static java.lang.Integer.min;
+import static wtune.sql.plan.PlanSupport.joinKindOf;
+import static wtune.superopt.util.Fingerprint.getOpIdentifier;
+
+/**
+ * Index of rules keyed by the operator labels along the leftmost path of their source fragment.
+ *
+ * <p>Matching walks the plan once and descends the tree along the way. It enumerates the same
+ * label sequences as {@link Fingerprint#mk(PlanContext, int)}, but prunes a branch as soon as no
+ * rule shares its prefix and allocates no string.
+ */
+class DiscriminationTree {
+  private static final int MAX_DEPTH = 4;
+  private static final char FILTER = getOpIdentifier(OpKind.SIMPLE_FILTER, false);
+  private static final char SUBQUERY = getOpIdentifier(OpKind.IN_SUB_FILTER, false);
+  private static final char INNER_JOIN = getOpIdentifier(OpKind.INNER_JOIN, false);
+  private static final char LEFT_JOIN = getOpIdentifier(OpKind.LEFT_JOIN, false);
+
+  private final TreeNode root = new TreeNode();
+
+  void add(String fingerprint, Substitution rule) {
+    TreeNode node = root;
+    for (int i = 0; i < fingerprint.length(); ++i) node = node.childOrCreate(fingerprint.charAt(i));
+    node.rules.add(rule);
+  }
+
+  void remove(String fingerprint, Substitution rule) {
+    final TreeNode node = lookup(fingerprint);
+    if (node != null) node.rules.remove(rule);
+  }
+
+  List<Substitution> rulesOf(String fingerprint) {
+    final TreeNode node = lookup(fingerprint);
+    return node == null ? List.of() : Collections.unmodifiableList(node.rules);
+  }
+
+  List<Substitution> match(PlanContext plan, int nodeId) {
+    final Matcher matcher = new Matcher(plan);
+    matcher.walk(nodeId, root, MAX_DEPTH);
+
+    final List<TreeNode> reached = matcher.reached;
+    if (reached.isEmpty()) return List.of();
+    if (reached.size() == 1) return Collections.unmodifiableList(reached.get(0).rules);
+
+    int count = 0;
+    for (TreeNode node : reached) count += node.rules.size();
+    final List<Substitution> rules = new ArrayList<>(count);
+    for (TreeNode node : reached) rules.addAll(node.rules);
+    return rules;
+  }
+
+  private TreeNode lookup(String fingerprint) {
+    TreeNode node = root;
+    for (int i = 0; i < fingerprint.length() && node != null; ++i)
+      node = node.child(fingerprint.charAt(i));
+    return node;
+  }
+
+  private static class TreeNode {
+    private char[] labels = new char[0];
+    private TreeNode[] children = new TreeNode[0];
+    private final List<Substitution> rules = new ArrayList<>(4);
+
+    private TreeNode child(char label) {
+      final char[] labels = this.labels;
+      for (int i = 0; i < labels.length; ++i) if (labels[i] == label) return children[i];
+      return null;
+    }
+
+    private TreeNode childOrCreate(char label) {
+      final TreeNode existing = child(label);
+      if (existing != null) return existing;
+
+      final int n = labels.length;
+      labels = Arrays.copyOf(labels, n + 1);
+      children = Arrays.copyOf(children, n + 1);
+      labels[n] = label;
+      return children[n] = new TreeNode();
+    }
+
+    private TreeNode descend(char label, int count) {
+      TreeNode node = this;
+      for (int i = 0; i < count && node != null; ++i) node = node.child(label);
+      return node;
+    }
+  }
+
+  private class Matcher {
+    private final PlanContext plan;
+    private final List<TreeNode> reached;
+
+    private Matcher(PlanContext plan) {
+      this.plan = plan;
+      this.reached = new ArrayList<>(8);
+    }
+
+    // Every non-empty prefix met by the walk is a fingerprint of some depth limit.
+    // An empty prefix counts only at Input (i.e., the whole plan is an Input).
+    private void walk(int nodeId, TreeNode prefix, int budget) {
+      final PlanKind kind = plan.kindOf(nodeId);
+      if (prefix != root || kind == PlanKind.Input) reach(prefix);
+      if (budget <= 0 || kind == PlanKind.Input) return;
+
+      if (kind.isFilter()) {
+        int chainChild = nodeId, total = 0, subqueries = 0;
+        while (plan.kindOf(chainChild).isFilter()) {
+          ++total;
+          if (plan.kindOf(chainChild).isSubqueryFilter()) ++subqueries;
+          chainChild = plan.childOf(chainChild, 0);
+        }
+
+        for (int cnt = 1, limit = min(total, budget); cnt <= limit; ++cnt) {
+          for (int subCnt = 0, subBudget = min(cnt, subqueries); subCnt <= subBudget; ++subCnt) {
+            final TreeNode filters = prefix.descend(FILTER, cnt - subCnt);
+            final TreeNode next = filters == null ? null : filters.descend(SUBQUERY, subCnt);
+            if (next == null) continue;
+            // Suppose we have P,S,S,S,J. We should not make out PSSJ.
+            if (cnt == subCnt && subCnt < subqueries) reach(next);
+            else walk(chainChild, next, budget - cnt);
+          }
+        }
+
+      } else if (kind == PlanKind.Join) {
+        int treeChild = nodeId, total = 0, leftJoins = 0;
+        while (plan.kindOf(treeChild) == PlanKind.Join) {
+          ++total;
+          if (joinKindOf(plan, treeChild) == JoinKind.LEFT_JOIN) ++leftJoins;
+          treeChild = plan.childOf(treeChild, 0);
+        }
+        walkJoin(total, leftJoins, budget, treeChild, prefix);
+
+      } else if (kind == PlanKind.Proj || kind == PlanKind.SetOp) {
+        final TreeNode next = prefix.child(getOpIdentifier(plan, nodeId));
+        if (next != null) walk(plan.childOf(nodeId, 0), next, budget - 1);
+
+      } else if (kind == PlanKind.Agg) {
+        final TreeNode next = prefix.child(getOpIdentifier(plan, nodeId));
+        if (next != null) walk(plan.childOf(plan.childOf(nodeId, 0), 0), next, budget - 1);
+      }
+    }
+
+    private void walkJoin(int joins, int leftJoins, int budget, int treeChild, TreeNode prefix) {
+      if (budget == 0 || joins == 0) {
+        walk(treeChild, prefix, budget);
+        return;
+      }
+
+      if (prefix != root) reach(prefix);
+
+      if (leftJoins > 0) {
+        final TreeNode next = prefix.child(LEFT_JOIN);
+        if (next != null) walkJoin(joins - 1, leftJoins - 1, budget - 1, treeChild, next);
+      }
+
+      final TreeNode next = prefix.child(INNER_JOIN);
+      if (next != null) walkJoin(joins - 1, leftJoins, budget - 1, treeChild, next);
+    }
+
+    private void reach(TreeNode node) {
+      if (node.rules.isEmpty()) return;
+      for (TreeNode existing : reached) if (existing == node) return;
+      reached.add(node);
+    }
+  }
+}
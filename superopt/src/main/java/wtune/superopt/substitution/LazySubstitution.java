@@ -0,0 +1,104 @@
+package wtune.superopt.substitution;
+
+import wtune.superopt.constraint.Constraints;
+import wtune.superopt.fragment.Fragment;
+import wtune.superopt.fragment.SymbolNaming;
+
+/**
+ * A rule loaded from a binary bank. Its text is decoded on first use, and it is parsed on first
+ * access to its content.
+ */
+class LazySubstitution implements Substitution {
+  private final BinaryBankFormat.Strings strings;
+  private final int fragment0, fragment1, constraints;
+  private volatile String serialized;
+  private volatile Substitution rule;
+  private int id;
+
+  LazySubstitution(
+      BinaryBankFormat.Strings strings, int fragment0, int fragment1, int constraints, int id) {
+    this.strings = strings;
+    this.fragment0 = fragment0;
+    this.fragment1 = fragment1;
+    this.constraints = constraints;
+    this.id = id;
+  }
+
+  private String serialized() {
+    String serialized = this.serialized;
+    if (serialized == null)
+      this.serialized = serialized =
+          strings.get(fragment0) + '|' + strings.get(fragment1) + '|' + strings.get(constraints);
+    return serialized;
+  }
+
+  private Substitution rule() {
+    Substitution rule = this.rule;
+    if (rule != null) return rule;
+
+    synchronized (this) {
+      if ((rule = this.rule) == null) {
+        rule = Substitution.parse(serialized());
+        rule.setId(id);
+        this.rule = rule;
+      }
+      return rule;
+    }
+  }
+
+  boolean isDecoded() {
+    return rule != null;
+  }
+
+  @Override
+  public int id() {
+    return id;
+  }
+
+  @Override
+  public synchronized void setId(int id) {
+    this.id = id;
+    if (rule != null) rule.setId(id);
+  }
+
+  @Override
+  public Fragment _0() {
+    return rule()._0();
+  }
+
+  @Override
+  public Fragment _1() {
+    return rule()._1();
+  }
+
+  @Override
+  public Constraints constraints() {
+    return rule().constraints();
+  }
+
+  @Override
+  public SymbolNaming naming() {
+    return rule().naming();
+  }
+
+  @Override
+  public void resetNaming() {
+    rule().resetNaming();
+  }
+
+  @Override
+  public String canonicalStringify() {
+    return serialized();
+  }
+
+  @Override
+  public boolean isExtended() {
+    final String serialized = serialized();
+    return serialized.contains("Agg") || serialized.contains("Union");
+  }
+
+  @Override
+  public String toString() {
+    return rule().toString();
+  }
+}
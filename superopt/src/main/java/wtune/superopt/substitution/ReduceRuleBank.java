@@ -1,5 +1,6 @@
 package wtune.superopt.substitution;
 
+import com.google.common.collect.Iterables;
 import me.tongfei.progressbar.ProgressBar;
 import wtune.common.utils.ListSupport;
 import wtune.common.utils.SetSupport;
@@ -7,12 +8,17 @@ import wtune.superopt.constraint.Constraints;
 import wtune.superopt.optimizer.Optimizer;
 import wtune.sql.plan.*;
 import wtune.superopt.fragment.*;
+import wtune.superopt.util.Fingerprint;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static wtune.common.utils.IterableSupport.zip;
@@ -20,10 +26,26 @@ import static wtune.sql.plan.PlanSupport.stringifyTree;
 import static wtune.superopt.optimizer.OptimizerSupport.*;
 
 class ReduceRuleBank {
+  private static final byte KEPT = 0, IMPLIED = 1, FAILED = 2;
+
   private final SubstitutionBank bank;
+  private final int parallelism;
+  private final boolean verbose;
+  private final Map<Substitution, Probe> probes;
+  // All rules removed by implication so far, in order. A Run is valid against the current bank iff
+  // none of the rules removed since it was computed was touched by it.
+  private final List<Substitution> removedLog;
 
   ReduceRuleBank(SubstitutionBank bank) {
+    this(bank, 1, false);
+  }
+
+  ReduceRuleBank(SubstitutionBank bank, int parallelism, boolean verbose) {
     this.bank = bank;
+    this.parallelism = parallelism;
+    this.verbose = verbose;
+    this.probes = new ConcurrentHashMap<>();
+    this.removedLog = new ArrayList<>();
   }
 
   SubstitutionBank reduce() {
@@ -35,28 +57,83 @@ class ReduceRuleBank {
     bank.removeIf(ReduceRuleBank::isJoinFlipRule);
     if (bank.isExtended()) bank.removeIf(ReduceRuleBank::isWrongDueToBug);
 
-    try (final ProgressBar pb = new ProgressBar("Reduce", bank.size())) {
-      final List<Substitution> rules = new ArrayList<>(bank.rules());
-      for (int i = 0, bound = rules.size(); i < bound; i++) {
-        pb.step();
-
-        final Substitution rule = rules.get(i);
-        try {
-          if (isImpliedRule(rule)) bank.remove(rule);
-          else bank.add(rule);
-
-        } catch (Throwable ex) {
-          System.err.println(i + " " + rule);
-          //          ex.printStackTrace();
-          bank.remove(rule);
-          //          throw ex;
-        }
+    final ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      List<Substitution> candidates = new ArrayList<>(bank.rules());
+      for (int pass = 1; !candidates.isEmpty(); ++pass) {
+        final int oldSize = bank.size();
+        reducePass(candidates, pool);
+        if (verbose) System.out.printf("Pass %d: %d -> %d\n", pass, oldSize, bank.size());
+
+        // A rule's verdict can only change if a removed rule was touched by its optimizer runs.
+        candidates = ListSupport.filter(bank.rules(), it -> !isUpToDate(it));
       }
+    } finally {
+      pool.shutdown();
     }
 
     return bank;
   }
 
+  /**
+   * Checks `candidates` against a snapshot of the bank in parallel, then removes the implied ones
+   * in order. Once a rule is removed, an implied verdict is only trusted if the runs behind it did
+   * not touch any rule removed since; otherwise it is checked again against the current bank.
+   * Thus two rules that imply each other are never both removed.
+   */
+  private void reducePass(List<Substitution> candidates, ForkJoinPool pool) {
+    final byte[] verdicts = new byte[candidates.size()];
+    try (final ProgressBar pb = new ProgressBar("Reduce", candidates.size())) {
+      final Callable<Void> task =
+          () -> {
+            IntStream.range(0, candidates.size())
+                .parallel()
+                .forEach(
+                    i -> {
+                      verdicts[i] = check(i, candidates.get(i));
+                      pb.step();
+                    });
+            return null;
+          };
+      pool.submit(task).get();
+    } catch (InterruptedException | ExecutionException ex) {
+      throw new RuntimeException(ex);
+    }
+
+    for (int i = 0, bound = candidates.size(); i < bound; ++i) {
+      if (verdicts[i] == KEPT) continue;
+
+      final Substitution rule = candidates.get(i);
+      // A failed re-check removes the rule, as a failed first check does.
+      if (verdicts[i] == IMPLIED && !isUpToDate(rule) && check(i, rule) == KEPT) continue;
+
+      bank.remove(rule);
+      removedLog.add(rule);
+    }
+  }
+
+  private byte check(int i, Substitution rule) {
+    try {
+      return isImpliedRule(rule) ? IMPLIED : KEPT;
+    } catch (Throwable ex) {
+      System.err.println(i + " " + rule);
+      //          ex.printStackTrace();
+      return FAILED;
+    }
+  }
+
+  private boolean isUpToDate(Substitution rule) {
+    final Probe probe = probes.get(rule);
+    return probe != null && isValid(probe.withRule) && isValid(probe.withoutRule);
+  }
+
+  private boolean isValid(Run run) {
+    if (run == null) return false;
+    for (int i = run.numRemoved, bound = removedLog.size(); i < bound; ++i)
+      if (run.touched.contains(removedLog.get(i))) return false;
+    return true;
+  }
+
   private static boolean isUselessHeuristic1(Substitution rule) {
     // All LHS attrs symbols are required equal.
     final Constraints constraints = rule.constraints();
@@ -94,21 +171,30 @@ class ReduceRuleBank {
   }
 
   private boolean isImpliedRule(Substitution rule) {
-    final PlanContext plan = mkProbingPlan(rule);
-    if (plan == null) return true;
+    final Probe probe = probes.computeIfAbsent(rule, Probe::new);
+    if (probe.plan == null) return true;
 
-    final boolean isCappedByProj = completePlan(plan);
+    // Memoized runs are reused as long as no rule they touched has been removed since.
+    if (!isValid(probe.withRule)) probe.withRule = optimize(probe, null);
+    if (!isValid(probe.withoutRule)) probe.withoutRule = optimize(probe, rule);
 
-    final String str = stringifyTree(plan, plan.root());
-    final Set<String> optimized0 = optimizeAsString(plan, bank, isCappedByProj);
-    bank.remove(rule);
-    final Set<String> optimized1 = optimizeAsString(plan, bank, isCappedByProj);
-    optimized0.remove(str);
-    optimized1.remove(str);
+    final Set<String> optimized0 = new HashSet<>(probe.withRule.optimized);
+    final Set<String> optimized1 = new HashSet<>(probe.withoutRule.optimized);
+    optimized0.remove(probe.str);
+    optimized1.remove(probe.str);
 
     return !optimized1.isEmpty() && optimized1.containsAll(optimized0);
   }
 
+  private Run optimize(Probe probe, Substitution excluded) {
+    // Phase 1 of a pass never removes, phase 2 runs on the calling thread only. So the bank
+    // reflects exactly the first `numRemoved` removals.
+    final int numRemoved = removedLog.size();
+    final ExcludingBank rules = new ExcludingBank(bank, excluded);
+    final Set<String> optimized = optimizeAsString(probe.plan, rules, probe.isCappedByProj);
+    return new Run(optimized, rules.touched, numRemoved);
+  }
+
   private static Set<String> optimizeAsString(
       PlanContext plan, SubstitutionBank rules, boolean isCappedByProj) {
     final Optimizer optimizer = Optimizer.mk(rules);
@@ -155,6 +241,104 @@ class ReduceRuleBank {
     return collectJoin.joins;
   }
 
+  /**
+   * The probing plan of a rule, built once, and the memoized optimizer runs over it with and
+   * without the rule.
+   */
+  private static class Probe {
+    private final PlanContext plan;
+    private final boolean isCappedByProj;
+    private final String str;
+    private Run withRule, withoutRule;
+
+    private Probe(Substitution rule) {
+      plan = mkProbingPlan(rule);
+      isCappedByProj = plan != null && completePlan(plan);
+      str = plan == null ? null : stringifyTree(plan, plan.root());
+    }
+  }
+
+  /**
+   * The result of optimizing a probing plan. `touched` are all the rules the optimizer was offered
+   * by matchRules, i.e., the only rules whose removal could change the result.
+   */
+  private static class Run {
+    private final Set<String> optimized;
+    private final Set<Substitution> touched;
+    private final int numRemoved;
+
+    private Run(Set<String> optimized, Set<Substitution> touched, int numRemoved) {
+      this.optimized = optimized;
+      this.touched = touched;
+      this.numRemoved = numRemoved;
+    }
+  }
+
+  /**
+   * Read-only view of a bank without one rule (if non-null). Records the rules handed out by
+   * matchRules.
+   */
+  private static class ExcludingBank implements SubstitutionBank {
+    private final SubstitutionBank bank;
+    private final Substitution excluded;
+    private final Set<Substitution> touched;
+
+    private ExcludingBank(SubstitutionBank bank, Substitution excluded) {
+      this.bank = bank;
+      this.excluded = excluded;
+      this.touched = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    @Override
+    public int size() {
+      return excluded == null ? bank.size() : bank.size() - 1;
+    }
+
+    @Override
+    public boolean add(Substitution substitution) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean contains(Substitution rule) {
+      return rule != excluded && bank.contains(rule);
+    }
+
+    @Override
+    public boolean isExtended() {
+      return bank.isExtended();
+    }
+
+    @Override
+    public void remove(Substitution substitution) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void removeIf(Predicate<Substitution> check) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<Substitution> rules() {
+      return ListSupport.filter(bank.rules(), it -> it != excluded);
+    }
+
+    @Override
+    public Iterable<Substitution> ruleOfFingerprint(Fingerprint fingerprint) {
+      return Iterables.filter(bank.ruleOfFingerprint(fingerprint), it -> it != excluded);
+    }
+
+    @Override
+    public Iterable<Substitution> matchRules(PlanContext plan, int nodeId) {
+      final List<Substitution> matched = new ArrayList<>();
+      for (Substitution rule : bank.matchRules(plan, nodeId))
+        if (rule != excluded) matched.add(rule);
+      touched.addAll(matched);
+      return matched;
+    }
+  }
+
   private static class CollectJoin implements OpVisitor {
     private final List<Join> joins = new ArrayList<>();
 
@@ -1,5 +1,6 @@
 package wtune.superopt.substitution;
 
+import wtune.sql.plan.PlanContext;
 import wtune.superopt.util.Fingerprint;
 
 import java.util.Collection;
@@ -22,6 +23,9 @@ public interface SubstitutionBank {
 
   Iterable<Substitution> ruleOfFingerprint(Fingerprint fingerprint);
 
+  /** Rules whose fingerprint is among {@link Fingerprint#mk(PlanContext, int)} of the node. */
+  Iterable<Substitution> matchRules(PlanContext plan, int nodeId);
+
   static SubstitutionBank mk() {
     return new SubstitutionBankImpl();
   }
@@ -1,23 +1,25 @@
 package wtune.superopt.substitution;
 
-import com.google.common.collect.Multimap;
-import com.google.common.collect.MultimapBuilder;
-import wtune.common.utils.ListSupport;
+import wtune.sql.plan.PlanContext;
 import wtune.superopt.util.Fingerprint;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Predicate;
 
 class SubstitutionBankImpl implements SubstitutionBank {
   private final Map<String, Substitution> rules;
-  private final Multimap<String, String> fingerprintIndex;
+  // distinct rules not keyed yet, which precede those in `rules`, see addPending
+  private volatile List<Substitution> pending;
+  private final DiscriminationTree fingerprintIndex;
   private boolean isExtended;
 
   SubstitutionBankImpl() {
     this.rules = new LinkedHashMap<>(2048);
-    this.fingerprintIndex = MultimapBuilder.hashKeys(2048).arrayListValues(32).build();
+    this.fingerprintIndex = new DiscriminationTree();
     this.isExtended = false;
   }
 
@@ -26,55 +28,88 @@ class SubstitutionBankImpl implements SubstitutionBank {
     return isExtended;
   }
 
+  void setExtended(boolean isExtended) {
+    this.isExtended = isExtended;
+  }
+
   @Override
   public int size() {
-    assert rules.size() == fingerprintIndex.size();
-    return rules.size();
+    final List<Substitution> pending = this.pending;
+    return pending == null ? rules.size() : pending.size();
   }
 
   @Override
   public Collection<Substitution> rules() {
-    return rules.values();
+    return keyed().values();
   }
 
   @Override
   public boolean add(Substitution rule) {
     final String identity = rule.canonicalStringify();
+    keyed();
     if (rules.containsKey(identity)) return false;
     rule.setId(rules.size() + 1);
+    add0(identity, Fingerprint.mk(rule._0()).toString(), rule);
+    return true;
+  }
+
+  /**
+   * Adds a rule that is assumed to be distinct, before any other. It keeps its id, and is keyed by
+   * its identity only when the bank is first accessed by identity, so matching does not need it.
+   * The extended flag is not updated, see {@link #setExtended(boolean)}.
+   */
+  void addPending(Substitution rule, String fingerprint) {
+    assert rules.isEmpty();
+    if (pending == null) pending = new ArrayList<>();
+    pending.add(rule);
+    fingerprintIndex.add(fingerprint, rule);
+  }
+
+  private synchronized Map<String, Substitution> keyed() {
+    if (pending != null) {
+      for (Substitution rule : pending) rules.put(rule.canonicalStringify(), rule);
+      pending = null;
+    }
+    return rules;
+  }
+
+  private void add0(String identity, String fingerprint, Substitution rule) {
     rules.put(identity, rule);
-    fingerprintIndex.put(Fingerprint.mk(rule._0()).toString(), identity);
+    fingerprintIndex.add(fingerprint, rule);
     if (!isExtended) isExtended = identity.contains("Union") || identity.contains("Agg");
-    return true;
   }
 
   @Override
   public void remove(Substitution o) {
     final String identity = o.canonicalStringify();
-    final Substitution removed = rules.remove(identity);
-    if (removed != null) fingerprintIndex.remove(Fingerprint.mk(o._0()).toString(), identity);
+    final Substitution removed = keyed().remove(identity);
+    if (removed != null) fingerprintIndex.remove(Fingerprint.mk(removed._0()).toString(), removed);
   }
 
   @Override
   public void removeIf(Predicate<Substitution> check) {
-    final var iter = rules.entrySet().iterator();
+    final var iter = keyed().entrySet().iterator();
     while (iter.hasNext()) {
       final Substitution rule = iter.next().getValue();
-      final String identity = rule.canonicalStringify();
       if (check.test(rule)) {
         iter.remove();
-        fingerprintIndex.remove(Fingerprint.mk(rule._0()).toString(), identity);
+        fingerprintIndex.remove(Fingerprint.mk(rule._0()).toString(), rule);
       }
     }
   }
 
   @Override
   public boolean contains(Substitution rule) {
-    return rules.containsKey(rule.canonicalStringify());
+    return keyed().containsKey(rule.canonicalStringify());
   }
 
   @Override
   public Iterable<Substitution> ruleOfFingerprint(Fingerprint fingerprint) {
-    return ListSupport.map(fingerprintIndex.get(fingerprint.fingerprint()), rules::get);
+    return fingerprintIndex.rulesOf(fingerprint.fingerprint());
+  }
+
+  @Override
+  public Iterable<Substitution> matchRules(PlanContext plan, int nodeId) {
+    return fingerprintIndex.match(plan, nodeId);
   }
 }
@@ -10,6 +10,8 @@ import java.util.List;
 
 public class SubstitutionSupport {
   public static SubstitutionBank loadBank(Path path) throws IOException {
+    if (BinaryBankFormat.isBinary(path)) return BinaryBankFormat.read(path);
+
     final SubstitutionBank bank = new SubstitutionBankImpl();
     final List<String> lines = Files.readAllLines(path);
 
@@ -33,10 +35,24 @@ public class SubstitutionSupport {
     return bank;
   }
 
+  public static void dumpBinaryBank(SubstitutionBank bank, Path path) throws IOException {
+    BinaryBankFormat.write(bank, path);
+  }
+
   public static SubstitutionBank reduceBank(SubstitutionBank bank) {
     return new ReduceRuleBank(bank).reduce();
   }
 
+  public static SubstitutionBank reduceBank(SubstitutionBank bank, int parallelism) {
+    return reduceBank(bank, parallelism, false);
+  }
+
+  /** With `verbose`, the size of the bank after each pass is printed. */
+  public static SubstitutionBank reduceBank(
+      SubstitutionBank bank, int parallelism, boolean verbose) {
+    return new ReduceRuleBank(bank, parallelism, verbose).reduce();
+  }
+
   public static Pair<PlanContext, PlanContext> translateAsPlan(Substitution rule) {
     return new PlanTranslator(rule).translate();
   }
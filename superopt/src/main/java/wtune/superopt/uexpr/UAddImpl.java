@@ -9,6 +9,7 @@ import java.util.*;
 import static wtune.common.utils.Commons.joining;
 import static wtune.common.utils.IterableSupport.any;
 import static wtune.superopt.uexpr.UExprSupport.transformTerms;
+import static wtune.superopt.uexpr.UExprSupport.unorderedHash;
 
 final class UAddImpl implements UAdd {
   private final List<UTerm> factors;
@@ -190,8 +191,14 @@ final class UAddImpl implements UAdd {
     return true;
   }
 
+  @Override
+  public int structuralHash() {
+    // `equals` only checks one side contains the other, so nothing more than the size is shared
+    return kind().ordinal() * 31 + factors.size();
+  }
+
   @Override
   public int hashCode() {
-    return new HashSet<>(factors).hashCode();
+    return unorderedHash(factors, UTerm::hashCode);
   }
 }
@@ -100,6 +100,11 @@ final class UConstImpl implements UConst {
     return that.value() == this.value;
   }
 
+  @Override
+  public int structuralHash() {
+    return Integer.hashCode(value);
+  }
+
   @Override
   public int hashCode() {
     return Integer.hashCode(value);
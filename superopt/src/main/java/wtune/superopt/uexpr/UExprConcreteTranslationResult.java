@@ -3,6 +3,7 @@ package wtune.superopt.uexpr;
 import wtune.sql.plan.PlanContext;
 import wtune.sql.plan.Value;
 import wtune.sql.schema.Column;
+import wtune.sql.schema.Schema;
 
 import java.util.HashMap;
 import java.util.List;
@@ -14,18 +15,25 @@ import static wtune.superopt.uexpr.UExprConcreteTranslator.getFullName;
 
 public class UExprConcreteTranslationResult {
   final PlanContext p0, p1;
+  final Schema schema;
   UTerm srcExpr, tgtExpr;
   UVar srcOutVar, tgtOutVar;
   final Map<UVar, List<Value>> srcTupleVarSchemas;
   final Map<UVar, List<Value>> tgtTupleVarSchemas;
 
-  public UExprConcreteTranslationResult(PlanContext p0, PlanContext p1) {
+  public UExprConcreteTranslationResult(PlanContext p0, PlanContext p1, Schema schema) {
     this.p0 = p0;
     this.p1 = p1;
+    this.schema = schema;
     this.srcTupleVarSchemas = new HashMap<>();
     this.tgtTupleVarSchemas = new HashMap<>();
   }
 
+  /** The schema of the base tables queried by the two sides. */
+  public Schema schema() {
+    return schema;
+  }
+
   public UTerm sourceExpr() {
     return srcExpr;
   }
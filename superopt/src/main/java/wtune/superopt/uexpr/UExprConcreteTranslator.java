@@ -9,6 +9,7 @@ import wtune.sql.ast.constants.*;
 import wtune.sql.plan.*;
 import wtune.sql.schema.Column;
 import wtune.sql.schema.Schema;
+import wtune.superopt.logic.ProofContext;
 import wtune.superopt.uexpr.normalizer.QueryUExprICRewriter;
 import wtune.superopt.uexpr.normalizer.QueryUExprNormalizer;
 
@@ -51,7 +52,7 @@ public class UExprConcreteTranslator {
     this.schema = p0.schema();
 
     this.VALUESTablesReg = HashBiMap.create();
-    this.result = new UExprConcreteTranslationResult(p0, p1);
+    this.result = new UExprConcreteTranslationResult(p0, p1, schema);
     this.enableIntegrityConstraintRewrite = (tweak & UEXPR_FLAG_INTEGRITY_CONSTRAINT_REWRITE) != 0;
     this.explainsPredicates = (tweak & UEXPR_FLAG_NO_EXPLAIN_PREDICATES) == 0;
   }
@@ -62,7 +63,7 @@ public class UExprConcreteTranslator {
     final VALUESTableParser parser = new VALUESTableParser(sql0, sql1, baseSchema);
     parser.parse();
 
-    this.result = new UExprConcreteTranslationResult(p0, p1);
+    this.result = new UExprConcreteTranslationResult(p0, p1, baseSchema);
     this.enableIntegrityConstraintRewrite = (tweak & UEXPR_FLAG_INTEGRITY_CONSTRAINT_REWRITE) != 0;
     this.explainsPredicates = (tweak & UEXPR_FLAG_NO_EXPLAIN_PREDICATES) == 0;
   }
@@ -156,8 +157,6 @@ public class UExprConcreteTranslator {
 
     private final String fraction_func_prefix = "FracFunc_";
 
-    public static UTerm globalExpr;
-
     public final List<UVar> visibleVars; // visible vars in current scope.
 
     public final List<UVar> icFreshVars;
@@ -187,16 +186,16 @@ public class UExprConcreteTranslator {
       // record the freshVars generated by normalizeWithIntegrityConstraints
 
       UTerm expr = tr(startNode);
-      globalExpr = expr;
+      ProofContext.current().setGlobalExpr(expr);
       if (expr == null) return false;
       expr = handleMultipleOutVar(expr);
 
-      globalExpr = expr;
+      ProofContext.current().setGlobalExpr(expr);
       expr = UExprSupport.preprocessExpr(expr);
       expr = UExprSupport.normalizeExpr(expr);
-      globalExpr = expr;
+      ProofContext.current().setGlobalExpr(expr);
       expr = normalizeRegroup(expr, boundVarSet);
-      globalExpr = expr;
+      ProofContext.current().setGlobalExpr(expr);
       if (enableIntegrityConstraintRewrite) {
         expr = normalizeWithIntegrityConstraints(expr);
       }
@@ -860,7 +859,7 @@ public class UExprConcreteTranslator {
           final List<ComposedUTerm> thenExprs = new ArrayList<>(whens.size());
           for (SqlNode when : whens) {
             final UTerm whenCond = mkPredicate(exprCtx, when.$(ExprFields.When_Cond), baseVar);
-            if (whenCond instanceof UPred && ((UPred)whenCond).isTruePred(globalExpr) == 0) continue;
+            if (whenCond instanceof UPred && ((UPred)whenCond).isTruePred(ProofContext.current().globalExpr()) == 0) continue;
             final ComposedUTerm thenExpr = mkValue(exprCtx, when.$(ExprFields.When_Expr), baseVar);
             if (whenCond == null || thenExpr == null) return null;
             whenConds.add(whenCond);
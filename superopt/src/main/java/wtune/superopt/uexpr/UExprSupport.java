@@ -14,8 +14,11 @@ import wtune.superopt.uexpr.normalizer.UNormalization;
 import wtune.superopt.uexpr.normalizer.UNormalizationEnhance;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
 import static wtune.common.utils.Commons.coalesce;
 import static wtune.common.utils.IterableSupport.all;
@@ -559,6 +562,36 @@ public abstract class UExprSupport {
     return coalesce(copies, terms);
   }
 
+  /**
+   * Combines the hashes of `terms` regardless of their order and multiplicity, like the hash of a
+   * set of them, but without building the set.
+   */
+  static int unorderedHash(List<UTerm> terms, ToIntFunction<UTerm> hashFunc) {
+    return unorderedHash(terms, null, hashFunc);
+  }
+
+  /** Same as {@link #unorderedHash(List, ToIntFunction)}, only over the terms not `skipped`. */
+  static int unorderedHash(
+      List<UTerm> terms, Predicate<UTerm> skipped, ToIntFunction<UTerm> hashFunc) {
+    final int size = terms.size();
+    if (size == 0) return 0;
+
+    final int[] hashes = new int[size];
+    int numHashes = 0;
+    for (UTerm term : terms)
+      if (skipped == null || !skipped.test(term)) hashes[numHashes++] = hashFunc.applyAsInt(term);
+    if (numHashes == 0) return 0;
+
+    Arrays.sort(hashes, 0, numHashes);
+    int hash = hashes[0];
+    for (int i = 1; i < numHashes; i++) if (hashes[i] != hashes[i - 1]) hash += hashes[i];
+    return hash;
+  }
+
+  static boolean isEqPred(UTerm term) {
+    return term.kind() == PRED && ((UPred) term).predKind() == UPred.PredKind.EQ;
+  }
+
   static UTerm remakeTerm(UTerm template, List<UTerm> subTerms) {
     if (subTerms == template.subTerms()) return template;
 
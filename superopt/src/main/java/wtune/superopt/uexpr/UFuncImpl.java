@@ -7,6 +7,7 @@ import java.util.*;
 
 import static wtune.common.utils.IterableSupport.any;
 import static wtune.superopt.uexpr.UExprSupport.transformTerms;
+import static wtune.superopt.uexpr.UExprSupport.unorderedHash;
 
 public class UFuncImpl implements UFunc {
   private FuncKind funcKind;
@@ -202,8 +203,15 @@ public class UFuncImpl implements UFunc {
     return arguments.equals(that.args());
   }
 
+  @Override
+  public int structuralHash() {
+    int hash = funcName.hashCode();
+    for (UTerm argument : arguments) hash = hash * 31 + argument.structuralHash();
+    return hash;
+  }
+
   @Override
   public int hashCode() {
-    return funcKind.hashCode() * 31 * 31 + funcName.hashCode() * 31 + new HashSet<>(arguments).hashCode();
+    return funcKind.hashCode() * 31 * 31 + funcName.hashCode() * 31 + unorderedHash(arguments, UTerm::hashCode);
   }
 }
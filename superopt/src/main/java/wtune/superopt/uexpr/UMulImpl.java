@@ -1,18 +1,19 @@
 package wtune.superopt.uexpr;
 
+import wtune.superopt.logic.ProofContext;
 import wtune.superopt.util.AbstractPrettyPrinter;
 
 import java.util.*;
 
 import static wtune.common.utils.IterableSupport.any;
 import static wtune.superopt.uexpr.UExprSupport.transformTerms;
+import static wtune.superopt.uexpr.UExprSupport.unorderedHash;
 import wtune.common.utils.UnionFind;
 import wtune.superopt.util.CommAssocUexpUtils;
 import wtune.superopt.util.SetMatching;
 
 final public class UMulImpl implements UMul {
   private final List<UTerm> factors;
-  public static boolean useWeakEquals = false;
 
   UMulImpl(List<UTerm> factors) {
     this.factors = factors;
@@ -297,7 +298,7 @@ final public class UMulImpl implements UMul {
   }
   @Override
   public boolean equals(Object obj) {
-    if (useWeakEquals){
+    if (ProofContext.current().weakEquals()) {
       return weakEquals(obj);
     }
 
@@ -390,8 +391,16 @@ final public class UMulImpl implements UMul {
     return eq;
   }
 
+  // EQ predicates are left out, since weakEquals ignores the ones implied by the other side. Thus
+  // the hashes agree with both the strict and the weak equality.
+  @Override
+  public int structuralHash() {
+    return kind().ordinal() * 31
+        + unorderedHash(factors, UExprSupport::isEqPred, UTerm::structuralHash);
+  }
+
   @Override
   public int hashCode() {
-    return new HashSet<>(factors).hashCode();
+    return unorderedHash(factors, UExprSupport::isEqPred, UTerm::hashCode);
   }
 }
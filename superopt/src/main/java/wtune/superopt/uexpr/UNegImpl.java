@@ -106,6 +106,11 @@ record UNegImpl(UTerm body) implements UNeg {
     return this.body.equals(that.body());
   }
 
+  @Override
+  public int structuralHash() {
+    return kind().ordinal() * 31 + body.structuralHash();
+  }
+
   @Override
   public int hashCode() {
     return body.hashCode();
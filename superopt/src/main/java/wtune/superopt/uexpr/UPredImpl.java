@@ -3,7 +3,9 @@ package wtune.superopt.uexpr;
 import wtune.sql.ast.constants.ConstraintKind;
 import wtune.sql.schema.Column;
 import wtune.sql.schema.Constraint;
+import wtune.sql.schema.Schema;
 import wtune.sql.schema.Table;
+import wtune.superopt.logic.ProofContext;
 import wtune.superopt.util.AbstractPrettyPrinter;
 import wtune.superopt.util.SetMatching;
 
@@ -13,7 +15,7 @@ import java.util.regex.Pattern;
 
 import static wtune.common.utils.IterableSupport.any;
 import static wtune.superopt.uexpr.UExprSupport.transformTerms;
-import static wtune.superopt.logic.CASTSupport.schema;
+import static wtune.superopt.uexpr.UExprSupport.unorderedHash;
 
 final class UPredImpl implements UPred {
   private PredKind predKind;
@@ -271,7 +273,7 @@ final class UPredImpl implements UPred {
 
   @Override
   public int hashCode() {
-    return predKind.hashCode() * 31 * 31 + predName.hashCode() * 31 + new HashSet<>(arguments).hashCode();
+    return predKind.hashCode() * 31 * 31 + predName.hashCode() * 31 + unorderedHash(arguments, UTerm::hashCode);
   }
 
   // 1 true 0 false -1 unknown
@@ -294,6 +296,8 @@ final class UPredImpl implements UPred {
           UTerm v1 = arguments.get(0);
           if(v1.kind() != UKind.VAR)
             return -1;
+          final Schema schema = ProofContext.current().schema();
+          if (schema == null) return -1;
           final List<Constraint> notNulls = new ArrayList<>();
           for (Table table : schema.tables()) {
             table.constraints(ConstraintKind.NOT_NULL).forEach(notNulls::add);
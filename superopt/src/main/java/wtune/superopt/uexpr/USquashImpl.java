@@ -106,6 +106,11 @@ record USquashImpl(UTerm body) implements USquash {
     return this.body.equals(that.body());
   }
 
+  @Override
+  public int structuralHash() {
+    return kind().ordinal() * 31 + body.structuralHash();
+  }
+
   @Override
   public int hashCode() {
     return body.hashCode();
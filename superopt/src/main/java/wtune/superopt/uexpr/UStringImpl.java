@@ -96,6 +96,11 @@ public class UStringImpl implements UString {
     return Objects.equals(that.value(), this.value);
   }
 
+  @Override
+  public int structuralHash() {
+    return value.hashCode();
+  }
+
   @Override
   public int hashCode() {
         return value.hashCode();
@@ -304,6 +304,8 @@ public record USumImpl(Set<UVar> boundedVars, UTerm body) implements USum {
     HashSet<UVar> thatBoundVars = new HashSet<>(that.boundedVars());
 
     if (boundedVars.size() != thatBoundVars.size()) return false;
+    // the structure is necessarily the same, also under weak equals (see UMulImpl.structuralHash)
+    if (structuralHash() != that.structuralHash()) return false;
 
     if (boundedVars.size() > 4) return fastEquals(this, that);
 
@@ -313,8 +315,14 @@ public record USumImpl(Set<UVar> boundedVars, UTerm body) implements USum {
     return checkSameSum(0, new ArrayList<>(boundedVars), body.copy(), thatBoundVars, thatBody);
   }
 
+  @Override
+  public int structuralHash() {
+    return (kind().ordinal() * 31 + boundedVars.size()) * 31 + body.structuralHash();
+  }
+
+  // Invariant under renaming of the bounded variables, as `equals` is.
   @Override
   public int hashCode() {
-    return boundedVars.size() * 31 + body.subTerms().size();
+    return structuralHash();
   }
 }
@@ -128,6 +128,11 @@ final class UTableImpl implements UTable {
     return this.tableName.equals(that.tableName()) && this.var.equals(that.var());
   }
 
+  @Override
+  public int structuralHash() {
+    return tableName.hashCode();
+  }
+
   @Override
   public int hashCode() {
     return tableName.hashCode() * 31 + var.hashCode();
@@ -67,6 +67,15 @@ public interface UTerm extends Copyable<UTerm> {
     return hashForSort(new HashMap<>());
   }
 
+  /**
+   * Hash of the structure ignoring variables and the order of comm and assoc items. Terms that
+   * are equal after renaming variables have the same hash, and renaming variables in-place keeps
+   * the hash unchanged.
+   */
+  default int structuralHash() {
+    return kind().ordinal();
+  }
+
   void sortCommAssocItems();
 
   /**
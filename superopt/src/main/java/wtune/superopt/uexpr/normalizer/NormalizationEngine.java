@@ -0,0 +1,160 @@
+package wtune.superopt.uexpr.normalizer;
+
+import wtune.superopt.uexpr.UKind;
+import wtune.superopt.uexpr.UTerm;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Drives the rewrite rules of a {@link UNormalization}.
+ *
+ * <p>Every rule is a whole-tree pass that only rewrites nodes of some kinds (its root kinds). The
+ * engine keeps the set of kinds present in the current expression and skips a rule if none of its
+ * root kinds occurs. Each detected change bumps a version of the expression; a rule that already
+ * ran without effect on the current version is skipped as well. The routine flattening
+ * (`flatSingletonAddAndMul` and `flatAddAndMul`) is only re-run after something has changed.
+ *
+ * <p>A change is detected if the rule sets `isModified` or returns another root term. Rules that
+ * rewrite a sub-term out-of-place always produce a new root (see {@code transformSubTerms}).
+ */
+public class NormalizationEngine {
+  private static final Map<String, RuleStat> STATS = new ConcurrentHashMap<>();
+
+  private final UNormalization normalizer;
+  private UTerm lastExpr;
+  private int version;
+  private EnumSet<UKind> kinds; // kinds in `lastExpr`, null if stale
+  private boolean flatPending;
+
+  NormalizationEngine(UNormalization normalizer) {
+    this.normalizer = normalizer;
+    this.flatPending = true;
+  }
+
+  static Rule rule(String name, Function<UTerm, UTerm> transformation, UKind... rootKinds) {
+    final EnumSet<UKind> kinds = rootKinds.length == 0 ? null : EnumSet.of(rootKinds[0], rootKinds);
+    return new Rule(name, transformation, kinds);
+  }
+
+  /** Forgets which rules have been idle, e.g. after some state the rules read has changed. */
+  void invalidate() {
+    ++version;
+  }
+
+  UTerm apply(Rule rule) {
+    UTerm expr = normalizer.expr;
+    if (expr != lastExpr) touch(expr);
+
+    final boolean wasModified = normalizer.isModified;
+    boolean changed = false;
+
+    if (rule.idleVersion == version || !rule.mayApply(kinds())) {
+      rule.stat.skips.increment();
+    } else {
+      normalizer.isModified = false;
+      final long start = System.nanoTime();
+      expr = rule.transformation.apply(expr);
+      rule.stat.nanos.add(System.nanoTime() - start);
+      changed = normalizer.isModified || expr != lastExpr;
+      if (changed) rule.stat.fires.increment();
+      normalizer.isModified |= wasModified;
+    }
+
+    if (changed || flatPending) {
+      final boolean ruleModified = normalizer.isModified;
+      normalizer.isModified = false;
+      final UTerm beforeFlat = expr;
+      expr = normalizer.flatSingletonAddAndMul(expr);
+      expr = normalizer.flatAddAndMul(expr);
+      flatPending = normalizer.isModified || expr != beforeFlat;
+      changed |= flatPending;
+      normalizer.isModified |= ruleModified;
+    }
+
+    if (changed) touch(expr);
+    else rule.idleVersion = version;
+
+    return normalizer.expr = expr;
+  }
+
+  private void touch(UTerm expr) {
+    lastExpr = expr;
+    kinds = null;
+    ++version;
+  }
+
+  private EnumSet<UKind> kinds() {
+    if (kinds == null) {
+      kinds = EnumSet.noneOf(UKind.class);
+      collectKinds(lastExpr, kinds);
+    }
+    return kinds;
+  }
+
+  private static void collectKinds(UTerm expr, EnumSet<UKind> kinds) {
+    kinds.add(expr.kind());
+    for (UTerm subTerm : expr.subTerms()) collectKinds(subTerm, kinds);
+  }
+
+  /** Per-rule counters accumulated over all normalizations, keyed by rule name. */
+  public static Map<String, RuleStat> stats() {
+    return new TreeMap<>(STATS);
+  }
+
+  public static void resetStats() {
+    STATS.clear();
+  }
+
+  static class Rule {
+    private final Function<UTerm, UTerm> transformation;
+    private final EnumSet<UKind> rootKinds; // null: may apply to any expression
+    private final RuleStat stat;
+    private EnumSet<UKind> requiredKinds; // all of them must occur, null if none
+    private int idleVersion = -1;
+
+    private Rule(String name, Function<UTerm, UTerm> transformation, EnumSet<UKind> rootKinds) {
+      this.transformation = transformation;
+      this.rootKinds = rootKinds;
+      this.stat = STATS.computeIfAbsent(name, ignored -> new RuleStat());
+    }
+
+    /** The rule cannot fire unless all of `kinds` occur in the expression. */
+    Rule requiring(UKind... kinds) {
+      requiredKinds = EnumSet.of(kinds[0], kinds);
+      return this;
+    }
+
+    private boolean mayApply(EnumSet<UKind> kinds) {
+      if (requiredKinds != null && !kinds.containsAll(requiredKinds)) return false;
+      if (rootKinds == null) return true;
+      for (UKind kind : rootKinds) if (kinds.contains(kind)) return true;
+      return false;
+    }
+  }
+
+  public static class RuleStat {
+    private final LongAdder fires = new LongAdder();
+    private final LongAdder skips = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    public long fires() {
+      return fires.sum();
+    }
+
+    public long skips() {
+      return skips.sum();
+    }
+
+    public long nanos() {
+      return nanos.sum();
+    }
+
+    @Override
+    public String toString() {
+      return "fires=" + fires() + " skips=" + skips() + " time=" + nanos() / 1000000 + "ms";
+    }
+  }
+}
@@ -8,6 +8,7 @@ import wtune.sql.schema.Column;
 import wtune.sql.schema.Constraint;
 import wtune.sql.schema.Schema;
 import wtune.sql.schema.Table;
+import wtune.superopt.logic.ProofContext;
 import wtune.superopt.uexpr.*;
 
 import java.util.*;
@@ -16,7 +17,6 @@ import java.util.function.Function;
 import static wtune.common.utils.IterableSupport.*;
 import static wtune.common.utils.ListSupport.filter;
 import static wtune.common.utils.ListSupport.map;
-import static wtune.superopt.uexpr.UExprConcreteTranslator.QueryTranslator.globalExpr;
 import static wtune.superopt.uexpr.normalizer.QueryUExprNormalizer.buildNaturalCongruence;
 import static wtune.superopt.uexpr.UExprSupport.*;
 import static wtune.superopt.uexpr.UKind.*;
@@ -37,23 +37,20 @@ public class QueryUExprICRewriter extends UNormalization {
 
   private final NameSequence tupleVarSeq;
 
-  private static int selectedIC = -1;
-  private static boolean hasIC = true;
-
   public static void selectIC(int index) {
-    selectedIC = index;
+    ProofContext.current().selectIC(index);
   }
 
   public static int selectedIC() {
-    return selectedIC;
+    return ProofContext.current().selectedIC();
   }
 
   public static void setHasIC(boolean val) {
-    hasIC = val;
+    ProofContext.current().setHasIC(val);
   }
 
   public static boolean hasIC() {
-    return hasIC;
+    return ProofContext.current().hasIC();
   }
 
   public UVar mkFreshICRewriterBaseVar() {
@@ -79,7 +76,7 @@ public class QueryUExprICRewriter extends UNormalization {
   public UTerm normalizeTerm() {
     do {
       expr = new QueryUExprNormalizer(expr, schema, translator).normalizeTerm();
-      globalExpr = expr;
+      ProofContext.current().setGlobalExpr(expr);
       isModified = false;
       expr = performNormalizeRule(this::applyReference);
       expr = performNormalizeRule(this::applyPrimary);
@@ -116,7 +113,7 @@ public class QueryUExprICRewriter extends UNormalization {
    */
   private UTerm applyPrimary(UTerm expr) {
     final List<Constraint> uniques = new ArrayList<>();
-    if (selectedIC < 0) {
+    if (selectedIC() < 0) {
       for (Table table : schema.tables()) {
         table.constraints(ConstraintKind.PRIMARY).forEach(uniques::add);
       }
@@ -125,14 +122,14 @@ public class QueryUExprICRewriter extends UNormalization {
       int nonemptyICIndex = 0;
       for (Table table : schema.tables()) {
         table.constraints(ConstraintKind.PRIMARY).forEach(uniques::add);
-        if (!uniques.isEmpty() && nonemptyICIndex < selectedIC) {
+        if (!uniques.isEmpty() && nonemptyICIndex < selectedIC()) {
           uniques.clear();
           nonemptyICIndex = nonemptyICIndex + 1;
         } else if (!uniques.isEmpty()) {
           break;
         }
       }
-      hasIC = !uniques.isEmpty();
+      setHasIC(!uniques.isEmpty());
     }
     Collections.reverse(uniques);
     // TODO: multiple columns on Unique constraint?
@@ -161,7 +158,7 @@ public class QueryUExprICRewriter extends UNormalization {
   // place the rule here since it needs to be applied based on previous results
   private UTerm applyPrimary1(UTerm expr) {
     final List<Constraint> uniques = new ArrayList<>();
-    if(selectedIC < 0) {
+    if(selectedIC() < 0) {
       for (Table table : schema.tables()) {
         table.constraints(ConstraintKind.PRIMARY).forEach(uniques::add);
       }
@@ -170,14 +167,14 @@ public class QueryUExprICRewriter extends UNormalization {
       int nonemptyICIndex = 0;
       for (Table table : schema.tables()) {
         table.constraints(ConstraintKind.PRIMARY).forEach(uniques::add);
-        if (!uniques.isEmpty() && nonemptyICIndex < selectedIC) {
+        if (!uniques.isEmpty() && nonemptyICIndex < selectedIC()) {
           uniques.clear();
           nonemptyICIndex = nonemptyICIndex + 1;
         } else if (!uniques.isEmpty()) {
           break;
         }
       }
-      hasIC = !uniques.isEmpty();
+      setHasIC(!uniques.isEmpty());
     }
     Collections.reverse(uniques);
     expr = applyUniqueRemoveOneRecordSum(expr, uniques);
@@ -983,7 +980,7 @@ public class QueryUExprICRewriter extends UNormalization {
   private UTerm rewritePrimary(UTerm expr) {
     final List<Constraint> primaries = new ArrayList<>();
     this.boundedStackVars.clear();
-    if(selectedIC < 0) {
+    if(selectedIC() < 0) {
       for (Table table : schema.tables()) {
         table.constraints(ConstraintKind.PRIMARY).forEach(primaries::add);
       }
@@ -992,14 +989,14 @@ public class QueryUExprICRewriter extends UNormalization {
       int nonemptyICIndex = 0;
       for (Table table : schema.tables()) {
         table.constraints(ConstraintKind.PRIMARY).forEach(primaries::add);
-        if (!primaries.isEmpty() && nonemptyICIndex < selectedIC) {
+        if (!primaries.isEmpty() && nonemptyICIndex < selectedIC()) {
           primaries.clear();
           nonemptyICIndex = nonemptyICIndex + 1;
         } else if (!primaries.isEmpty()) {
           break;
         }
       }
-      hasIC = !primaries.isEmpty();
+      setHasIC(!primaries.isEmpty());
     }
     addUnboundedVar(expr);
     expr = removeUselessUnboundedPrimaryVar(expr, primaries, expr);
@@ -1136,7 +1133,7 @@ public class QueryUExprICRewriter extends UNormalization {
     }
 
     if (isNullPred(pred)) {
-      if (pred.isTruePred(globalExpr) == 0) {
+      if (pred.isTruePred(ProofContext.current().globalExpr()) == 0) {
         isModified = true;
         return (expr.kind() == NEGATION) ? UConst.one() : UConst.zero();
       }
@@ -1145,7 +1142,7 @@ public class QueryUExprICRewriter extends UNormalization {
         ArrayList<UTerm> args = new ArrayList<>();
         args.add(t);
         UPred tmpPred = UPred.mk(UPred.PredKind.FUNC, UName.NAME_IS_NULL, args);
-        return tmpPred.isTruePred(globalExpr) == 0;
+        return tmpPred.isTruePred(ProofContext.current().globalExpr()) == 0;
       })) {
         isModified = true;
         return (expr.kind() == NEGATION) ? UConst.one() : UConst.zero();
@@ -5,8 +5,9 @@ import wtune.sql.plan.Value;
 import wtune.sql.schema.Schema;
 import wtune.sql.schema.Table;
 import wtune.superopt.liastar.Liastar;
-import wtune.superopt.logic.CASTSupport;
+import wtune.superopt.logic.ProofContext;
 import wtune.superopt.uexpr.*;
+import wtune.superopt.uexpr.normalizer.NormalizationEngine.Rule;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -16,8 +17,8 @@ import static wtune.common.utils.ListSupport.*;
 import static wtune.superopt.uexpr.UExprSupport.*;
 import static wtune.superopt.uexpr.UKind.*;
 import static wtune.superopt.uexpr.UKind.VAR;
-import static wtune.superopt.uexpr.UExprConcreteTranslator.QueryTranslator.globalExpr;
 import static wtune.superopt.uexpr.UPred.PredKind.*;
+import static wtune.superopt.uexpr.normalizer.NormalizationEngine.rule;
 
 public class QueryUExprNormalizer extends UNormalization {
   private Schema schema;
@@ -40,19 +41,42 @@ public class QueryUExprNormalizer extends UNormalization {
     this.icFreshVars = icFreshVars;
   }
 
-  static String preUexpr = null;
-  static boolean preIsMod = false;
 
+  private final List<Rule> commonRules =
+      List.of(
+          rule("removeUselessAttrSym", this::removeUselessAttrSym, SUMMATION),
+          rule("extractorPreprocess", this::extractorPreprocess, MULTIPLY),
+          rule("extractUnrelatedSumTerms", this::extractUnrelatedSumTerms, SQUASH, NEGATION, PRED),
+          rule("removeUselessNegSumWithSameFilter", this::removeUselessNegSumWithSameFilter, MULTIPLY),
+          rule("simplifySummations", this::simplifySummations, SQUASH, NEGATION),
+          rule("transformSumUnrelatedTermsEQPred", this::transformSumUnrelatedTermsEQPred, SUMMATION),
+          rule("removeNullMultiplication", this::removeNullMultiplication, MULTIPLY)
+          // rule("extractUnrelatedSumSubTerms", this::extractUnrelatedSumSubTerms, SUMMATION)
+          );
+
+  private final List<Rule> queryRules =
+      List.of(
+          rule("removeUselessBoundedVar", this::removeUselessBoundedVar, SUMMATION),
+          rule("removeUselessBoundedVarsNestedly", this::removeUselessBoundedVarsNestedly, SUMMATION),
+          rule("propagateNullBoundedVar", this::propagateNullBoundedVar, SUMMATION),
+          rule("removeUselessInferenceBoundedVar", this::removeUselessInferenceBoundedVar, SUMMATION),
+          rule("removeIsNullPredOnValue", this::removeIsNullPredOnValue, PRED),
+          rule("inferIsNullPredResult", this::inferIsNullPredResult, MULTIPLY),
+          rule("removeUselessAggBoundedVar", this::removeUselessAggBoundedVar, SUMMATION),
+          rule("removeUselessSquashSumFromSumBody", this::removeUselessSquashSumFromSumBody, SUMMATION)
+              .requiring(SQUASH),
+          rule("removeUselessSumWithNegation", this::removeUselessSumWithNegation, SUMMATION),
+          rule("removeUselessNegSumWithSameFilter", this::removeUselessNegSumWithSameFilter, MULTIPLY),
+          rule("removeUselessSquashNegDupSum", this::removeUselessSquashNegDupSum, NEGATION, SQUASH),
+          rule("simplifyUniqueMaxMin", this::simplifyUniqueMaxMin, SUMMATION),
+          rule("replaceUselessNegSumWithNumber", this::replaceUselessNegSumWithNumber, NEGATION),
+          rule("removeDupSubTerm", this::removeDupSubTerm, MULTIPLY).requiring(SUMMATION),
+          rule("removeSumEqPred", this::removeSumEqPred, PRED),
+          rule("autoTypeConversion", this::autoTypeConversion, PRED),
+          rule("eqNullConversion", this::eqNullConversion, PRED));
 
   public UTerm commonNormalizeTerm() {
-    expr = performNormalizeRule(this::removeUselessAttrSym);
-    expr = performNormalizeRule(this::extractorPreprocess);
-    expr = performNormalizeRule(this::extractUnrelatedSumTerms);
-    expr = performNormalizeRule(this::removeUselessNegSumWithSameFilter);
-    expr = performNormalizeRule(this::simplifySummations);
-    expr = performNormalizeRule(this::transformSumUnrelatedTermsEQPred);
-    expr = performNormalizeRule(this::removeNullMultiplication);
-//    expr = performNormalizeRule(this::extractUnrelatedSumSubTerms);
+    for (Rule rule : commonRules) expr = performNormalizeRule(rule);
     return expr;
   }
 
@@ -64,25 +88,11 @@ public class QueryUExprNormalizer extends UNormalization {
     detectNotNullTuples(expr);
     do {
       expr = super.normalizeTerm();
-      UExprConcreteTranslator.QueryTranslator.globalExpr = expr;
+      // Some rules consult the global expression, so idle rules must re-run once it is replaced.
+      if (ProofContext.current().globalExpr() != expr) engine.invalidate();
+      ProofContext.current().setGlobalExpr(expr);
       isModified = false;
-      expr = performNormalizeRule(this::removeUselessBoundedVar);
-      expr = performNormalizeRule(this::removeUselessBoundedVarsNestedly);
-      expr = performNormalizeRule(this::propagateNullBoundedVar);
-      expr = performNormalizeRule(this::removeUselessInferenceBoundedVar);
-      expr = performNormalizeRule(this::removeIsNullPredOnValue);
-      expr = performNormalizeRule(this::inferIsNullPredResult);
-      expr = performNormalizeRule(this::removeUselessAggBoundedVar);
-      expr = performNormalizeRule(this::removeUselessSquashSumFromSumBody);
-      expr = performNormalizeRule(this::removeUselessSumWithNegation);
-      expr = performNormalizeRule(this::removeUselessNegSumWithSameFilter);
-      expr = performNormalizeRule(this::removeUselessSquashNegDupSum);
-      expr = performNormalizeRule(this::simplifyUniqueMaxMin);
-      expr = performNormalizeRule(this::replaceUselessNegSumWithNumber);
-      expr = performNormalizeRule(this::removeDupSubTerm);
-      expr = performNormalizeRule(this::removeSumEqPred);
-      expr = performNormalizeRule(this::autoTypeConversion);
-      expr = performNormalizeRule(this::eqNullConversion);
+      for (Rule rule : queryRules) expr = performNormalizeRule(rule);
     } while (isModified);
     return expr;
   }
@@ -240,7 +250,7 @@ public class QueryUExprNormalizer extends UNormalization {
           continue;
         if (smallTerm.kind() == PRED) {
           UPred pred = (UPred) smallTerm;
-          if (pred.isTruePred(globalExpr) == 1) continue;
+          if (pred.isTruePred(ProofContext.current().globalExpr()) == 1) continue;
           if (pred.isPredKind(EQ)) {
             UTerm op0 = pred.args().get(0);
             UTerm op1 = pred.args().get(1);
@@ -252,7 +262,7 @@ public class QueryUExprNormalizer extends UNormalization {
           if (smallTerm.subTerms().get(0).kind() == PRED) {
             UPred pred = (UPred) smallTerm.subTerms().get(0);
             if (isNullPred(pred)) {
-              if (pred.isTruePred(globalExpr) == 0) continue;
+              if (pred.isTruePred(ProofContext.current().globalExpr()) == 0) continue;
               NaturalCongruence<UTerm> cong = buildNaturalCongruence(bigBody.subTerms());
               Set<UTerm> eqTerms = cong.eqClassOf(pred.args().get(0));
               if (any(eqTerms,
@@ -469,6 +479,8 @@ public class QueryUExprNormalizer extends UNormalization {
       }
     }
 
+    if (replacedTerms.isEmpty()) return expr;
+
     ArrayList<UTerm> newMulTerms = new ArrayList<>();
     for (UTerm t : subTerms) {
       if (replacedTerms.containsKey(t))
@@ -535,6 +547,12 @@ public class QueryUExprNormalizer extends UNormalization {
   }
 
 
+  private static boolean isUnchangedSum(USum sum, Set<UVar> finalVars, List<UTerm> finalBody) {
+    return !finalVars.isEmpty()
+        && finalVars.size() == sum.boundedVars().size()
+        && isSameTermList(finalBody, sum.body().subTerms());
+  }
+
   private UTerm removeUselessSubSumUnderDedup(USum sum) {
     UTerm sumBody = sum.body();
     if (!(sumBody instanceof UMul))
@@ -594,6 +612,7 @@ public class QueryUExprNormalizer extends UNormalization {
       }
     }
 
+    if (isUnchangedSum(sum, finalVars, finalBody)) return sum;
     if (finalVars.isEmpty())
       return (finalBody.size() == 1) ? finalBody.get(0) : UMul.mk(finalBody);
     else
@@ -648,6 +667,7 @@ public class QueryUExprNormalizer extends UNormalization {
       }
     }
 
+    if (isUnchangedSum(sum, finalVars, finalBody)) return sum;
     if (finalVars.isEmpty())
       return (finalBody.size() == 1) ? finalBody.get(0) : UMul.mk(finalBody);
     else
@@ -728,6 +748,7 @@ public class QueryUExprNormalizer extends UNormalization {
       }
     }
 
+    if (isUnchangedSum(sum, finalVars, finalBody)) return sum;
     if (finalVars.isEmpty())
       return (finalBody.size() == 1) ? finalBody.get(0) : UMul.mk(finalBody);
     else
@@ -759,12 +780,13 @@ public class QueryUExprNormalizer extends UNormalization {
           else
             newSubTerms.add(subTerm);
         }
-        newBody = UMul.mk(newSubTerms);
+        newBody = isSameTermList(newSubTerms, body.subTerms()) ? body : UMul.mk(newSubTerms);
         break;
       }
       default: newBody = body;
     }
 
+    if (newBody == body) return term;
     return UNeg.mk(newBody);
   }
 
@@ -860,6 +882,12 @@ public class QueryUExprNormalizer extends UNormalization {
     return term;
   }
 
+  private static boolean isSameTermList(List<UTerm> xs, List<UTerm> ys) {
+    if (xs.size() != ys.size()) return false;
+    for (int i = 0, bound = xs.size(); i < bound; ++i) if (xs.get(i) != ys.get(i)) return false;
+    return true;
+  }
+
   private UTerm removeUselessSquashNegDupSum(UTerm term) {
     term = transformSubTerms(term, this::removeUselessSquashNegDupSum);
     UKind kind = term.kind();
@@ -880,12 +908,13 @@ public class QueryUExprNormalizer extends UNormalization {
           else
             newSubTerms.add(subTerm);
         }
-        newBody = UAdd.mk(newSubTerms);
+        newBody = isSameTermList(newSubTerms, body.subTerms()) ? body : UAdd.mk(newSubTerms);
         break;
       }
       default: newBody = body;
     }
 
+    if (newBody == body) return term;
     return (kind == NEGATION) ? UNeg.mk(newBody) : USquash.mk(newBody);
   }
 
@@ -1215,6 +1244,8 @@ public class QueryUExprNormalizer extends UNormalization {
       }
     }
 
+    if (removedSubTerm.isEmpty()) return expr;
+
     ArrayList<UTerm> newSubTerms = new ArrayList<>(subTerms);
     for (int i = 0; i < newSubTerms.size(); ++i) {
       UTerm term = newSubTerms.get(i);
@@ -1284,6 +1315,8 @@ public class QueryUExprNormalizer extends UNormalization {
       }
     }
 
+    if (removedSubTerm.isEmpty()) return expr;
+
     ArrayList<UTerm> newSubTerms = new ArrayList<>(subTerms);
     newSubTerms.removeAll(removedSubTerm);
 
@@ -1766,7 +1799,7 @@ public class QueryUExprNormalizer extends UNormalization {
         UTerm newSubTerm = subTerm;
         for (UVar var : mapping.keySet())
           newSubTerm = newSubTerm.replaceVar(var, mapping.get(var), false);
-        if (newSubTerm.kind() == PRED && ((UPred) newSubTerm).isTruePred(globalExpr) == 1) {
+        if (newSubTerm.kind() == PRED && ((UPred) newSubTerm).isTruePred(ProofContext.current().globalExpr()) == 1) {
           continue;
         }
         newSubTerms.add(newSubTerm);
@@ -2105,7 +2138,8 @@ public class QueryUExprNormalizer extends UNormalization {
   }
 
   private boolean useTableVar(UTerm expr, UVar var) {
-    Schema schema = CASTSupport.schema;
+    Schema schema = ProofContext.current().schema();
+    if (schema == null) return false;
     for (Table table : schema.tables()) {
       String tableName = table.name();
       if (usesTableVar(expr, tableName, var))
@@ -2,6 +2,7 @@ package wtune.superopt.uexpr.normalizer;
 
 import wtune.common.utils.NaturalCongruence;
 import wtune.superopt.uexpr.*;
+import wtune.superopt.uexpr.normalizer.NormalizationEngine.Rule;
 
 import java.util.*;
 import java.util.function.Function;
@@ -9,11 +10,40 @@ import java.util.function.Function;
 import static wtune.common.utils.IterableSupport.any;
 import static wtune.superopt.uexpr.UExprSupport.transformSubTerms;
 import static wtune.superopt.uexpr.UKind.*;
+import static wtune.superopt.uexpr.normalizer.NormalizationEngine.rule;
 
 public class UNormalization {
   public boolean isModified;
   public UTerm expr;
 
+  protected final NormalizationEngine engine = new NormalizationEngine(this);
+
+  private final List<Rule> rules =
+      List.of(
+          rule("eliminateSquash", this::eliminateSquash, SQUASH),
+          rule("eliminateNegation", this::eliminateNegation, NEGATION),
+          rule("promoteSummation", this::promoteSummation, MULTIPLY).requiring(SUMMATION),
+          rule("mergeSummation", this::mergeSummation, SUMMATION),
+          // rule("removeSummationSquash", this::removeSummationSquash, MULTIPLY),
+          rule("combineSquash", this::combineSquash, MULTIPLY).requiring(SQUASH),
+          // rule("combineNegation", this::combineNegation, MULTIPLY),
+          rule("distributeAddToMul", this::distributeAddToMul, MULTIPLY).requiring(ADD),
+          rule("distributeAddToSummation", this::distributeAddToSummation, SUMMATION)
+              .requiring(ADD),
+          rule(
+              "removeConstants",
+              this::removeConstants,
+              ADD, MULTIPLY, PRED, SQUASH, NEGATION, SUMMATION),
+          rule("constantFolding", this::constantFolding, ADD, MULTIPLY).requiring(CONST),
+          rule("removeSquashClassify", this::removeSquashClassify, SQUASH).requiring(ADD, STRING),
+          rule("expandSquashString", this::expandSquashString, SUMMATION)
+              .requiring(SQUASH, STRING),
+          rule("applyReduceFunc", this::applyReduceFunc, FUNC),
+          rule("applyFuncString", this::applyFuncString, FUNC),
+          rule("removeRedundantString", this::removeRedundantString, MULTIPLY).requiring(STRING)
+          // rule("removeNullMultiplication", this::removeNullMultiplication, MULTIPLY)
+          );
+
   public UNormalization(UTerm expr) {
     this.isModified = false;
     this.expr = expr;
@@ -74,23 +104,7 @@ public class UNormalization {
     do {
       isModified = false;
       // A round of normalizations
-      expr = performNormalizeRule(this::eliminateSquash);
-      expr = performNormalizeRule(this::eliminateNegation);
-      expr = performNormalizeRule(this::promoteSummation);
-      expr = performNormalizeRule(this::mergeSummation);
-//      expr = performNormalizeRule(this::removeSummationSquash);
-      expr = performNormalizeRule(this::combineSquash);
-      // expr = performNormalizeRule(expr, this::combineNegation);
-      expr = performNormalizeRule(this::distributeAddToMul);
-      expr = performNormalizeRule(this::distributeAddToSummation);
-      expr = performNormalizeRule(this::removeConstants);
-      expr = performNormalizeRule(this::constantFolding);
-      expr = performNormalizeRule(this::removeSquashClassify);
-      expr = performNormalizeRule(this::expandSquashString);
-      expr = performNormalizeRule(this::applyReduceFunc);
-      expr = performNormalizeRule(this::applyFuncString);
-      expr = performNormalizeRule(this::removeRedundantString);
-//      expr = performNormalizeRule(this::removeNullMultiplication);
+      for (Rule rule : rules) expr = performNormalizeRule(rule);
     } while (isModified);
 
     return expr;
@@ -104,6 +118,14 @@ public class UNormalization {
     return expr;
   }
 
+  /**
+   * Same as {@link #performNormalizeRule(Function)}, but the rule and the routine normalizations
+   * are skipped if they cannot change the expression. See {@link NormalizationEngine}.
+   */
+  protected UTerm performNormalizeRule(Rule rule) {
+    return engine.apply(rule);
+  }
+
   /** ADD/MUL[ E1, .., ADD/MUL[Ei, .., Ej], .., En ] -> ADD/MUL[E1, .., Ei, .., Ej, .., En] * */
   UTerm flatAddAndMul(UTerm expr) {
     expr = transformSubTerms(expr, this::flatAddAndMul);
@@ -2,6 +2,7 @@ package wtune.superopt.uexpr.normalizer;
 
 import wtune.common.utils.NaturalCongruence;
 import wtune.superopt.uexpr.*;
+import wtune.superopt.uexpr.normalizer.NormalizationEngine.Rule;
 
 import java.util.List;
 import java.util.ListIterator;
@@ -10,8 +11,15 @@ import static wtune.common.utils.IterableSupport.all;
 import static wtune.superopt.uexpr.UExprSupport.isPredOfVarArg;
 import static wtune.superopt.uexpr.UExprSupport.transformSubTerms;
 import static wtune.superopt.uexpr.UKind.*;
+import static wtune.superopt.uexpr.normalizer.NormalizationEngine.rule;
 
 public class UNormalizationEnhance extends UNormalization{
+  private final List<Rule> enhanceRules =
+      List.of(
+          // rule("removeRedundantBoundedVar", this::removeRedundantBoundedVar, SUMMATION),
+          rule("removeNestedProjOnProjVar", this::removeNestedProjOnProjVar, TABLE, VAR),
+          rule("removeRedundantProjOnBaseVar", this::removeRedundantProjOnBaseVar),
+          rule("replaceBaseVars", this::replaceBaseVars, MULTIPLY, SUMMATION));
 
   public UNormalizationEnhance(UTerm expr) {
     super(expr);
@@ -25,10 +33,7 @@ public class UNormalizationEnhance extends UNormalization{
       expr = super.normalizeTerm();
 
       // Some additional rewrites
-      // expr = performNormalizeRule(this::removeRedundantBoundedVar);
-      expr = performNormalizeRule(this::removeNestedProjOnProjVar);
-      expr = performNormalizeRule(this::removeRedundantProjOnBaseVar);
-      expr = performNormalizeRule(this::replaceBaseVars);
+      for (Rule rule : enhanceRules) expr = performNormalizeRule(rule);
     } while (isModified);
 
     return expr;
@@ -37,7 +37,7 @@ public class Fingerprint {
     return fingerprints;
   }
 
-  private static char getOpIdentifier(OpKind kind, boolean dedup) {
+  public static char getOpIdentifier(OpKind kind, boolean dedup) {
     switch (kind) {
       case PROJ:
         return dedup ? 'q' : 'p';
@@ -58,6 +58,21 @@ public class Fingerprint {
     }
   }
 
+  public static char getOpIdentifier(PlanContext plan, int node) {
+    final PlanKind kind = plan.kindOf(node);
+    if (kind == PlanKind.Proj) return getOpIdentifier(OpKind.PROJ, isDedup(plan, node));
+    else if (kind == PlanKind.SetOp) return getOpIdentifier(OpKind.UNION, isDedup(plan, node));
+    else if (kind == PlanKind.Agg) return getOpIdentifier(OpKind.AGG, false);
+    else if (kind == PlanKind.Filter) return getOpIdentifier(OpKind.SIMPLE_FILTER, false);
+    else if (kind == PlanKind.InSub) return getOpIdentifier(OpKind.IN_SUB_FILTER, false);
+    else if (kind == PlanKind.Join)
+      return joinKindOf(plan, node) == JoinKind.INNER_JOIN
+          ? getOpIdentifier(OpKind.INNER_JOIN, false)
+          : getOpIdentifier(OpKind.LEFT_JOIN, false);
+    else assert false : kind;
+    return '?';
+  }
+
   private static void repeatChar(StringBuilder builder, char c, int count) {
     for (int i = 0; i < count; ++i) builder.append(c);
   }
@@ -149,11 +164,11 @@ public class Fingerprint {
         mkFingerprintForJoin(total, leftJoins, budget, treeChild);
 
       } else if (nodeKind == PlanKind.Proj || nodeKind == PlanKind.SetOp) {
-        builder.append(identifierOf(node));
+        builder.append(getOpIdentifier(plan, node));
         build(plan.childOf(node, 0), budget - 1);
         popChars(builder, 1);
       } else if (nodeKind == PlanKind.Agg) {
-        builder.append(identifierOf(node));
+        builder.append(getOpIdentifier(plan, node));
         build(plan.childOf(plan.childOf(node, 0), 0), budget - 1);
         popChars(builder, 1);
       }
@@ -161,21 +176,6 @@ public class Fingerprint {
       return fingerprints;
     }
 
-    private char identifierOf(int node) {
-      final PlanKind kind = plan.kindOf(node);
-      if (kind == PlanKind.Proj) return getOpIdentifier(OpKind.PROJ, isDedup(plan, node));
-      else if (kind == PlanKind.SetOp) return getOpIdentifier(OpKind.UNION, isDedup(plan, node));
-      else if (kind == PlanKind.Agg) return getOpIdentifier(OpKind.AGG, false);
-      else if (kind == PlanKind.Filter) return getOpIdentifier(OpKind.SIMPLE_FILTER, false);
-      else if (kind == PlanKind.InSub) return getOpIdentifier(OpKind.IN_SUB_FILTER, false);
-      else if (kind == PlanKind.Join)
-        return joinKindOf(plan, node) == JoinKind.INNER_JOIN
-            ? getOpIdentifier(OpKind.INNER_JOIN, false)
-            : getOpIdentifier(OpKind.LEFT_JOIN, false);
-      else assert false : kind;
-      return '?';
-    }
-
     private int locateFilterChainChild(int node) {
       while (plan.kindOf(node).isFilter()) node = plan.childOf(node, 0);
       return node;
@@ -10,9 +10,13 @@ import wtune.superopt.substitution.Substitution;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static wtune.superopt.constraint.ConstraintSupport.enumConstraints;
+import static wtune.superopt.constraint.ConstraintSupport.*;
 
 @Tag("enumeration")
 class ConstraintEnumeratorTest {
@@ -202,6 +206,55 @@ class ConstraintEnumeratorTest {
         "AttrsSub(a0,t0);Unique(t0,a0);TableEq(t1,t0);AttrsEq(a1,a0);SchemaEq(s1,s0)");
   }
 
+  @Test
+  @Tag("fast")
+  void testForkedEnumeration() {
+    final Fragment f0 = Fragment.parse("Proj(Filter(InnerJoin(Input,Input)))", null);
+    final Fragment f1 = Fragment.parse("Proj(Filter(Input))", null);
+
+    final List<String> serial = sorted(enumConstraints(f0, f1, 900000, 0, null));
+    final List<String> forked = sorted(enumForked(f0, f1, 900000, 0));
+
+    assertFalse(serial.isEmpty());
+    assertEquals(serial, forked);
+  }
+
+  @Test
+  @Tag("fast")
+  void testForkedEnumerationMetrics() {
+    final Fragment f0 = Fragment.parse("Proj(Filter(InnerJoin(Input,Input)))", null);
+    final Fragment f1 = Fragment.parse("Proj(Filter(Input))", null);
+
+    final int sets0 = getEnumerationMetric().numEnumeratedConstraintSets.value();
+    final int pairs0 = getEnumerationMetric().numEnumeratorInvocations.value();
+    enumConstraints(f0, f1, -1, ENUM_FLAG_DRY_RUN, null);
+    final int sets1 = getEnumerationMetric().numEnumeratedConstraintSets.value();
+    final int pairs1 = getEnumerationMetric().numEnumeratorInvocations.value();
+    enumForked(f0, f1, -1, ENUM_FLAG_DRY_RUN);
+    final int sets2 = getEnumerationMetric().numEnumeratedConstraintSets.value();
+    final int pairs2 = getEnumerationMetric().numEnumeratorInvocations.value();
+
+    assertTrue(sets1 > sets0);
+    assertEquals(sets1 - sets0, sets2 - sets1);
+    assertEquals(pairs1 - pairs0, pairs2 - pairs1);
+  }
+
+  private static List<Substitution> enumForked(Fragment f0, Fragment f1, long timeout, int tweaks) {
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      return pool.invoke(ForkJoinTask.adapt(() -> enumConstraintsForked(f0, f1, timeout, tweaks, 8)));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private static List<String> sorted(List<Substitution> rules) {
+    final List<String> strings = new ArrayList<>(rules.size());
+    for (Substitution rule : rules) strings.add(rule.toString());
+    strings.sort(null);
+    return strings;
+  }
+
   //  @Test
   //  @Tag("slow")
   void testFlattenJoinSubquery() {
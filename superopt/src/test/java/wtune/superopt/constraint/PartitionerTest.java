@@ -0,0 +1,76 @@
+package wtune.superopt.constraint;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("enumeration")
+@Tag("fast")
+class PartitionerTest {
+  private static final int[] BELL = {1, 1, 2, 5, 15, 52, 203, 877, 4140, 21147, 115975};
+
+  private static String stringify(Partitioner partitioner) {
+    final StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < partitioner.cardinality(); ++i) builder.append(partitioner.blockOf(i));
+    return builder.toString();
+  }
+
+  @Test
+  void testCount() {
+    for (int n = 0; n < BELL.length; ++n) {
+      final Partitioner partitioner = new Partitioner(n);
+      final Set<String> seen = new HashSet<>();
+      do {
+        assertTrue(seen.add(stringify(partitioner)));
+      } while (partitioner.forward());
+      assertEquals(BELL[n], seen.size());
+    }
+  }
+
+  @Test
+  void testOrder() {
+    final Partitioner partitioner = new Partitioner(3);
+    assertEquals("012", stringify(partitioner));
+    assertEquals(3, partitioner.numBlocks());
+    final String[] expected = {"011", "010", "001", "000"};
+    for (String partition : expected) {
+      assertTrue(partitioner.forward());
+      assertEquals(partition, stringify(partitioner));
+    }
+    assertFalse(partitioner.forward());
+    assertEquals(1, partitioner.numBlocks());
+
+    partitioner.reset();
+    assertEquals("012", stringify(partitioner));
+  }
+
+  @Test
+  void testSkip() {
+    final Partitioner partitioner = new Partitioner(7);
+    int numVisited = 0, numExpected = 0;
+    do {
+      if (partitioner.blockOf(1) == partitioner.blockOf(3)) partitioner.skip(4);
+      else ++numVisited;
+    } while (partitioner.forward());
+
+    partitioner.reset();
+    do {
+      if (partitioner.blockOf(1) != partitioner.blockOf(3)) ++numExpected;
+    } while (partitioner.forward());
+
+    assertEquals(numExpected, numVisited);
+  }
+
+  @Test
+  void testLarge() {
+    final Partitioner partitioner = new Partitioner(40);
+    assertEquals(40, partitioner.numBlocks());
+    partitioner.skip(1);
+    assertEquals(1, partitioner.numBlocks());
+    assertFalse(partitioner.forward());
+  }
+}
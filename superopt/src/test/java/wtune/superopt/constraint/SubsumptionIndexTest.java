@@ -0,0 +1,93 @@
+package wtune.superopt.constraint;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("enumeration")
+@Tag("fast")
+class SubsumptionIndexTest {
+  private static SubsumptionIndex.Mask[] masks(SubsumptionIndex<?> index, int[]... bitss) {
+    final SubsumptionIndex.Mask[] masks = new SubsumptionIndex.Mask[bitss.length];
+    for (int i = 0; i < bitss.length; ++i) {
+      final BitSet bs = new BitSet();
+      for (int bit : bitss[i]) bs.set(bit);
+      masks[i] = index.mkMask(bs);
+    }
+    return masks;
+  }
+
+  @Test
+  void testSubsetAndSuperset() {
+    final SubsumptionIndex<String> index = new SubsumptionIndex<>(130);
+    index.add("a", masks(index, new int[] {1, 65, 129}));
+
+    assertTrue(index.containsSubsetOf(masks(index, new int[] {1, 2, 65, 129})));
+    assertTrue(index.containsSubsetOf(masks(index, new int[] {1, 65, 129})));
+    assertFalse(index.containsSubsetOf(masks(index, new int[] {1, 65})));
+    assertTrue(index.containsSupersetOf(masks(index, new int[] {65})));
+    assertFalse(index.containsSupersetOf(masks(index, new int[] {0, 65})));
+    // any of the query masks is enough
+    assertTrue(index.containsSupersetOf(masks(index, new int[] {0}, new int[] {129})));
+    assertEquals(6, index.numLookups());
+  }
+
+  @Test
+  void testRemove() {
+    final SubsumptionIndex<String> index = new SubsumptionIndex<>(70);
+    index.add("a", masks(index, new int[] {1, 2, 3}));
+    index.add("b", masks(index, new int[] {4}, new int[] {64, 65}));
+    index.add("c", masks(index, new int[] {1, 2}));
+
+    assertTrue(index.removeSupersetsOf(masks(index, new int[] {1, 2})));
+    assertEquals(List.of("b"), index.items());
+
+    assertFalse(index.removeSubsetsOf(masks(index, new int[] {64})));
+    assertTrue(index.removeSubsetsOf(masks(index, new int[] {64, 65, 66})));
+    assertEquals(0, index.size());
+    assertFalse(index.containsSupersetOf(masks(index, new int[] {4})));
+  }
+
+  @Test
+  void testAgainstScan() {
+    final Random random = new Random(42);
+    final int numBits = 100;
+    final SubsumptionIndex<Integer> index = new SubsumptionIndex<>(numBits);
+    final List<BitSet> added = new ArrayList<>();
+    for (int i = 0; i < 200; ++i) {
+      final BitSet bits = randomBits(random, numBits, 1 + i % 7);
+      index.add(i, new SubsumptionIndex.Mask[] {index.mkMask(bits)});
+      added.add(bits);
+    }
+
+    for (int i = 0; i < 500; ++i) {
+      final BitSet query = randomBits(random, numBits, random.nextInt(12));
+      boolean hasSubset = false, hasSuperset = false;
+      for (BitSet bits : added) {
+        final BitSet tmp = (BitSet) bits.clone();
+        tmp.andNot(query);
+        hasSubset |= tmp.isEmpty();
+        final BitSet tmp1 = (BitSet) query.clone();
+        tmp1.andNot(bits);
+        hasSuperset |= tmp1.isEmpty();
+      }
+      final SubsumptionIndex.Mask[] q = {index.mkMask(query)};
+      assertEquals(hasSubset, index.containsSubsetOf(q), query::toString);
+      assertEquals(hasSuperset, index.containsSupersetOf(q), query::toString);
+    }
+    // keying by the lowest bit skips most of the entries
+    assertTrue(index.numProbes() < index.numLookups() * added.size() / 4);
+  }
+
+  private static BitSet randomBits(Random random, int numBits, int cardinality) {
+    final BitSet bits = new BitSet(numBits);
+    while (bits.cardinality() < cardinality) bits.set(random.nextInt(numBits));
+    return bits;
+  }
+}
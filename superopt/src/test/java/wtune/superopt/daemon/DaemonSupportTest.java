@@ -0,0 +1,59 @@
+package wtune.superopt.daemon;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("daemon")
+@Tag("fast")
+class DaemonSupportTest {
+  @Test
+  void testTemplate() {
+    final String t0 =
+        DaemonSupport.templateOf(
+            "SELECT t1.c2 FROM `t1`  WHERE a = 12 AND b = 'it''s' AND c IN (1.5e3, -2) LIMIT 10");
+    final String t1 =
+        DaemonSupport.templateOf(
+            "SELECT t1.c2 FROM `t1` WHERE a = 7\n AND b = 'x' AND c IN (3, -4) LIMIT 20");
+    assertEquals("SELECT t1.c2 FROM `t1` WHERE a = ? AND b = ? AND c IN (?, -?) LIMIT ?", t0);
+    assertEquals(t0, t1);
+    assertEquals("SELECT \"c 1\" FROM t", DaemonSupport.templateOf("SELECT \"c 1\"  FROM t"));
+  }
+
+  @Test
+  void testTemplateKeepsOrdinals() {
+    assertEquals(
+        "SELECT a, b FROM t WHERE c = ? GROUP BY 1, 2 order by 2 DESC LIMIT ?",
+        DaemonSupport.templateOf(
+            "SELECT a, b FROM t WHERE c = 3 GROUP BY 1, 2 order by 2 DESC LIMIT 5"));
+    assertNotEquals(
+        DaemonSupport.templateOf("SELECT a, b FROM t ORDER BY 1"),
+        DaemonSupport.templateOf("SELECT a, b FROM t ORDER BY 2"));
+    // the list of a subquery ends with it
+    assertEquals(
+        "SELECT a FROM t WHERE a IN (SELECT b FROM s GROUP BY 1) AND c = ?",
+        DaemonSupport.templateOf(
+            "SELECT a FROM t WHERE a IN (SELECT b FROM s GROUP BY 1) AND c = 4"));
+    assertEquals(
+        "SELECT a FROM t GROUP BY 1 HAVING COUNT(*) > ?",
+        DaemonSupport.templateOf("SELECT a FROM t GROUP BY 1 HAVING COUNT(*) > 2"));
+  }
+
+  @Test
+  void testTemplateCache() {
+    final TemplateCache cache = new TemplateCache(8, 60000);
+    final String key = TemplateCache.mkKey("app", "SELECT a FROM t WHERE b = 1");
+    assertFalse(cache.contains(key));
+    assertTrue(cache.claim(key));
+    assertFalse(cache.claim(key));
+    cache.add(key);
+    cache.release(key);
+
+    assertTrue(cache.contains(TemplateCache.mkKey("app", "SELECT a FROM t WHERE b = 2")));
+    assertFalse(cache.contains(TemplateCache.mkKey("other", "SELECT a FROM t WHERE b = 2")));
+
+    for (int i = 0; i < 100; ++i) cache.add("k" + i);
+    assertTrue(cache.size() <= 8);
+  }
+}
@@ -0,0 +1,112 @@
+package wtune.superopt.lia;
+
+import org.junit.jupiter.api.Test;
+import wtune.sql.SqlSupport;
+import wtune.sql.ast.SqlNode;
+import wtune.sql.plan.PlanContext;
+import wtune.sql.plan.normalize.PlanNormalization;
+import wtune.sql.schema.Schema;
+import wtune.sql.support.action.NormalizationSupport;
+import wtune.stmt.App;
+import wtune.superopt.logic.LogicSupport;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static wtune.common.datasource.DbSupport.MySQL;
+import static wtune.sql.SqlSupport.*;
+import static wtune.sql.plan.PlanSupport.assemblePlan;
+import static wtune.superopt.TestHelper.dataDir;
+
+public class LiaConcurrencyTest {
+  @Test
+  void testParallelCalciteCases() throws Exception {
+    final List<String> lines = Files.readAllLines(dataDir().resolve("calcite").resolve("calcite_tests"));
+    final Schema schema = App.of("calcite_test").schema("base");
+    SqlSupport.muteParsingError();
+
+    // provers rewrite the plans in place, so each run gets its own copy
+    final List<PlanContext[]> seqPairs = readPairs(lines, schema);
+    final List<PlanContext[]> parPairs = readPairs(lines, schema);
+
+    final List<Integer> expected = new ArrayList<>(seqPairs.size());
+    for (PlanContext[] pair : seqPairs) expected.add(prove(pair));
+
+    final ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    try {
+      final List<Future<Integer>> futures = new ArrayList<>(parPairs.size());
+      for (PlanContext[] pair : parPairs) futures.add(pool.submit(() -> prove(pair)));
+      for (int i = 0; i < futures.size(); ++i)
+        assertEquals(expected.get(i), futures.get(i).get(), "pair " + i);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  void testPortfolio() throws Exception {
+    final List<String> lines = Files.readAllLines(dataDir().resolve("calcite").resolve("calcite_tests"));
+    final Schema schema = App.of("calcite_test").schema("base");
+    SqlSupport.muteParsingError();
+
+    final List<PlanContext[]> seqPairs = readPairs(lines, schema);
+    final List<PlanContext[]> portfolioPairs = readPairs(lines, schema);
+
+    final List<Integer> expected = new ArrayList<>(seqPairs.size());
+    for (PlanContext[] pair : seqPairs) expected.add(prove(pair));
+
+    LogicSupport.setLiaPortfolio(true);
+    try {
+      for (int i = 0; i < portfolioPairs.size(); ++i)
+        assertEquals(expected.get(i), prove(portfolioPairs.get(i)), "pair " + i);
+    } finally {
+      LogicSupport.setLiaPortfolio(false);
+    }
+  }
+
+  private static int prove(PlanContext[] pair) {
+    // an exception from a prover fails the test rather than passing as UNKNOWN
+    if (pair == null) return LogicSupport.UNKNOWN;
+    return LogicSupport.proveEqByLIAStarConcrete(pair[0], pair[1]);
+  }
+
+  private static List<PlanContext[]> readPairs(List<String> lines, Schema schema) {
+    final List<PlanContext[]> pairs = new ArrayList<>(lines.size() >> 1);
+    for (int i = 0, bound = lines.size(); i + 1 < bound; i += 2) {
+      final String[] sqls =
+          parseCoPreprocess(
+              parsePreprocess(lines.get(i), schema), parsePreprocess(lines.get(i + 1), schema));
+      // VALUES queries go through a different translation path
+      if (sqls[0].contains("VALUES") || sqls[1].contains("VALUES")) {
+        pairs.add(null);
+        continue;
+      }
+      pairs.add(mkPlans(sqls[0], sqls[1], schema));
+    }
+    return pairs;
+  }
+
+  private static PlanContext[] mkPlans(String sql0, String sql1, Schema schema) {
+    try {
+      final SqlNode q0 = parseSql(MySQL, sql0), q1 = parseSql(MySQL, sql1);
+      if (q0 == null || q1 == null) return null;
+      q0.context().setSchema(schema);
+      q1.context().setSchema(schema);
+      NormalizationSupport.normalizeAst(q0);
+      NormalizationSupport.normalizeAst(q1);
+
+      final PlanContext p0 = assemblePlan(q0, schema), p1 = assemblePlan(q1, schema);
+      if (p0 == null || p1 == null) return null;
+      PlanNormalization.normalizePlan(p0);
+      PlanNormalization.normalizePlan(p1);
+      return new PlanContext[] {p0, p1};
+    } catch (Exception ex) {
+      return null;
+    }
+  }
+}
@@ -1,11 +1,14 @@
 package wtune.superopt.lia;
 
+import com.microsoft.z3.BoolExpr;
 import com.microsoft.z3.Context;
 import com.microsoft.z3.Expr;
 import com.microsoft.z3.Solver;
 import com.microsoft.z3.Status;
 import org.junit.jupiter.api.Test;
+import wtune.superopt.liastar.LiaVarBinding;
 import wtune.superopt.liastar.Liastar;
+import wtune.superopt.logic.ProofContext;
 import wtune.superopt.logic.SqlSolver;
 import wtune.superopt.logic.SqlSolverSupport;
 import wtune.superopt.substitution.Substitution;
@@ -16,6 +19,7 @@ import wtune.superopt.uexpr.*;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -162,6 +166,48 @@ class LiaFunctionalityTest {
     assert(solveWithK(e3) == Status.UNSATISFIABLE);
   }
 
+  @Test
+  void testInternedVars() {
+    // u1 = sqrt(u2) /\ u1 + 1 = u2
+    final Liastar e = Liastar.mkAnd(false,
+            Liastar.mkEq(false,
+                    Liastar.mkVar(false, "u1"),
+                    Liastar.mkFunc(false, "sqrt", Liastar.mkVar(false, "u2"))
+            ),
+            Liastar.mkEq(false,
+                    Liastar.mkPlus(false, Liastar.mkVar(false, "u1"), Liastar.mkConst(false, 1)),
+                    Liastar.mkVar(false, "u2")
+            )
+    );
+    assert(Liastar.mkVar(false, "u1").equals(Liastar.mkVar(true, "u1")));
+    assert(!Liastar.mkVar(false, "u1").equals(Liastar.mkVar(false, "u2")));
+    assert(e.containsFunc("sqrt"));
+    assert(!e.containsFunc("minus"));
+
+    final BitSet ids = new BitSet();
+    e.collectVarIds(ProofContext.current().liaVars(), ids);
+    assert(ids.cardinality() == e.collectVarSet().size());
+
+    // `e` was interned in the ambient context, a proof has a table of its own
+    final Liastar u2 = Liastar.mkVar(false, "u2");
+    try (final ProofContext proof = ProofContext.open()) {
+      assert(u2.equals(Liastar.mkVar(false, "u2")));
+      assert(!u2.equals(Liastar.mkVar(false, "u1")));
+      final BitSet proofIds = new BitSet();
+      e.collectVarIds(proof.liaVars(), proofIds);
+      assert(proofIds.cardinality() == 2);
+
+      final Context ctx = new Context();
+      final LiaVarBinding binding = new LiaVarBinding();
+      for (String var : e.collectVarSet()) binding.put(var, ctx.mkIntConst(var));
+      assert(binding.exprs().length == 2);
+      final Solver sol = ctx.mkSolver();
+      sol.add((BoolExpr) e.transToSMT(ctx, binding));
+      sol.add(ctx.mkEq(binding.get("u1"), ctx.mkInt(3)));
+      assert(sol.check() == Status.UNSATISFIABLE);
+    }
+  }
+
 //  @Test
 //  void testDNF() throws IOException {
 //    final Path ruleFilePath = dataDir().resolve("prepared").resolve("rules.example.txt");
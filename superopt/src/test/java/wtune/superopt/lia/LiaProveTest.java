@@ -8,12 +8,11 @@ import wtune.sql.ast.SqlNode;
 import wtune.sql.ast.constants.JoinKind;
 import wtune.sql.plan.*;
 import wtune.sql.plan.normalize.PlanNormalization;
-import wtune.sql.preprocess.SqlNodePreprocess;
 import wtune.sql.schema.Schema;
 import wtune.sql.support.action.NormalizationSupport;
 import wtune.stmt.App;
-import wtune.superopt.logic.CASTSupport;
 import wtune.superopt.logic.LogicSupport;
+import wtune.superopt.logic.ProofContext;
 import wtune.superopt.logic.SqlSolver;
 import wtune.superopt.substitution.Substitution;
 import wtune.superopt.substitution.SubstitutionBank;
@@ -21,6 +20,7 @@ import wtune.superopt.substitution.SubstitutionSupport;
 import wtune.superopt.uexpr.UExprConcreteTranslationResult;
 import wtune.superopt.uexpr.UExprSupport;
 import wtune.superopt.uexpr.UExprTranslationResult;
+import wtune.superopt.uexpr.normalizer.NormalizationEngine;
 import wtune.superopt.uexpr.normalizer.QueryUExprICRewriter;
 
 import java.io.FileWriter;
@@ -287,6 +287,38 @@ public class LiaProveTest {
     return str.contains(subStr.toLowerCase()) || str.contains(subStr.toUpperCase());
   }
 
+  @Test
+  void statisticsOfCalciteNormalization() throws IOException {
+    final Path testCasesPath = dataDir().resolve("calcite").resolve("calcite_tests");
+    final List<QueryPair> queryPairs = readPairs(Files.readAllLines(testCasesPath), "calcite_test");
+    // the translations tried by proveEqByLIAStarConcrete, each normalizes both queries
+    final int icRewrite = UExprSupport.UEXPR_FLAG_INTEGRITY_CONSTRAINT_REWRITE;
+    final int[] tweaks = {icRewrite | UExprSupport.UEXPR_FLAG_NO_EXPLAIN_PREDICATES, icRewrite, 0};
+
+    NormalizationEngine.resetStats();
+    final Map<Integer, Long> elapsed = new HashMap<>();
+    for (QueryPair pair : queryPairs) {
+      if (pair.p0 == null || pair.p1 == null) continue;
+      final long start = System.nanoTime();
+      ProofContext.prove(pair.schema, () -> {
+        for (int tweak : tweaks) UExprSupport.translateQueryToUExpr(pair.p0, pair.p1, tweak);
+        return 0;
+      });
+      elapsed.put(pair.lineNum, System.nanoTime() - start);
+    }
+
+    final long total = elapsed.values().stream().mapToLong(Long::longValue).sum();
+    System.out.printf("%d pairs translated in %d ms, slowest:\n", elapsed.size(), total / 1000000);
+    elapsed.entrySet().stream()
+        .sorted(Map.Entry.<Integer, Long>comparingByValue().reversed())
+        .limit(10)
+        .forEach(e -> System.out.printf("  line %d: %d ms\n", e.getKey(), e.getValue() / 1000000));
+    System.out.println("normalization rules, by time:");
+    NormalizationEngine.stats().entrySet().stream()
+        .sorted(Comparator.comparingLong(e -> -e.getValue().nanos()))
+        .forEach(e -> System.out.printf("  %s: %s\n", e.getKey(), e.getValue()));
+  }
+
   @Test
   void testLiaOnSpiderRules() throws IOException {
     String[] appNames = new String[]{
@@ -1451,16 +1483,14 @@ public class LiaProveTest {
   private List<QueryPair> readPairs(List<String> lines, String appName) {
     final App app = App.of(appName);
     final Schema schema = app.schema("base");
-    SqlNodePreprocess.setSchema(schema);
-    CASTSupport.setSchema(schema);
     SqlSupport.muteParsingError();
 
     final List<QueryPair> pairs = new ArrayList<>(lines.size() >> 1);
     for (int i = 0, bound = lines.size(); i < bound; i += 2) {
       String sql0 = lines.get(i), sql1 = lines.get(i + 1);
       String originSql0 = sql0.substring(0), originSql1 = sql1.substring(0);
-      sql0 = parsePreprocess(sql0);
-      sql1 = parsePreprocess(sql1);
+      sql0 = parsePreprocess(sql0, schema);
+      sql1 = parsePreprocess(sql1, schema);
       String[] pair = parseCoPreprocess(sql0, sql1);
       sql0 = pair[0];
       sql1 = pair[1];
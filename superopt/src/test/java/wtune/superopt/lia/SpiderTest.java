@@ -4,11 +4,9 @@ import org.junit.jupiter.api.Test;
 import wtune.sql.SqlSupport;
 import wtune.sql.ast.SqlNode;
 import wtune.sql.plan.*;
-import wtune.sql.preprocess.SqlNodePreprocess;
 import wtune.sql.schema.Schema;
 import wtune.sql.support.action.NormalizationSupport;
 import wtune.stmt.App;
-import wtune.superopt.logic.CASTSupport;
 import wtune.superopt.logic.LogicSupport;
 import wtune.superopt.logic.SqlSolver;
 import wtune.superopt.uexpr.UExprConcreteTranslationResult;
@@ -74,12 +72,10 @@ public class SpiderTest {
     private QueryPair readPair(String sql0, String sql1, String appName) {
         final App app = App.of(appName);
         final Schema schema = app.schema("base");
-        SqlNodePreprocess.setSchema(schema);
-        CASTSupport.setSchema(schema);
         SqlSupport.muteParsingError();
 
-        sql0 = parsePreprocess(sql0);
-        sql1 = parsePreprocess(sql1);
+        sql0 = parsePreprocess(sql0, schema);
+        sql1 = parsePreprocess(sql1, schema);
         String[] pair = parseCoPreprocess(sql0, sql1);
         sql0 = pair[0];
         sql1 = pair[1];
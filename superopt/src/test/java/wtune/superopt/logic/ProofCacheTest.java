@@ -0,0 +1,130 @@
+package wtune.superopt.logic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static wtune.superopt.logic.LogicSupport.*;
+import static wtune.superopt.logic.ProofCache.Prover.LIA_STAR;
+import static wtune.superopt.logic.ProofCache.Prover.SPES;
+
+class ProofCacheTest {
+  @Test
+  void testPersistence(@TempDir Path dir) throws IOException {
+    final Path file = dir.resolve("proofs");
+    final AtomicInteger numProofs = new AtomicInteger();
+    try (final ProofCache cache = ProofCache.open(file)) {
+      assertEquals(EQ, cache.prove(LIA_STAR, "r0", () -> counted(numProofs, EQ)));
+      assertEquals(NEQ, cache.prove(SPES, "r0", () -> counted(numProofs, NEQ)));
+      assertEquals(EQ, cache.prove(LIA_STAR, "r0", () -> counted(numProofs, NEQ)));
+      assertEquals(2, numProofs.get());
+      // not a proof result, not recorded
+      assertEquals(FAST_REJECTED, cache.prove(LIA_STAR, "r1", () -> FAST_REJECTED));
+    }
+
+    try (final ProofCache cache = ProofCache.open(file)) {
+      assertEquals(2, cache.size());
+      assertEquals(EQ, cache.lookup(LIA_STAR, "r0").result());
+      assertEquals(NEQ, cache.lookup(SPES, "r0").result());
+      assertNull(cache.lookup(LIA_STAR, "r1"));
+    }
+  }
+
+  private static int counted(AtomicInteger counter, int result) {
+    counter.incrementAndGet();
+    return result;
+  }
+
+  @Test
+  void testTornRecord(@TempDir Path dir) throws IOException {
+    final Path file = dir.resolve("proofs");
+    try (final ProofCache cache = ProofCache.open(file)) {
+      cache.record(LIA_STAR, "r0", EQ, 10);
+    }
+    // a writer crashed in the middle of a record
+    Files.write(file, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+    try (final ProofCache cache = ProofCache.open(file)) {
+      assertEquals(1, cache.size());
+      cache.record(LIA_STAR, "r1", UNKNOWN, 20);
+    }
+    try (final ProofCache cache = ProofCache.open(file)) {
+      assertEquals(2, cache.size());
+      assertEquals(UNKNOWN, cache.lookup(LIA_STAR, "r1").result());
+      assertEquals(20, cache.lookup(LIA_STAR, "r1").elapsed());
+    }
+  }
+
+  @Test
+  void testReplayInChunks(@TempDir Path dir) throws IOException {
+    final Path file = dir.resolve("proofs");
+    // far beyond one replay buffer, with records across its boundaries and one larger than it
+    final String bigKey = "x".repeat(100_000);
+    try (final ProofCache cache = ProofCache.open(file)) {
+      for (int i = 0; i < 5000; ++i) cache.record(LIA_STAR, "r" + i + "-" + "y".repeat(i % 97), EQ, i);
+      cache.record(SPES, bigKey, NEQ, 1);
+      cache.record(SPES, "last", EQ, 2);
+    }
+
+    try (final ProofCache cache = ProofCache.open(file)) {
+      assertEquals(5002, cache.size());
+      assertEquals(4999, cache.lookup(LIA_STAR, "r4999-" + "y".repeat(4999 % 97)).elapsed());
+      assertEquals(NEQ, cache.lookup(SPES, bigKey).result());
+      assertEquals(EQ, cache.lookup(SPES, "last").result());
+    }
+  }
+
+  @Test
+  void testUnknownBudget(@TempDir Path dir) throws IOException {
+    final Path file = dir.resolve("proofs");
+    final long oldBudget = liaBudget;
+    final AtomicInteger numProofs = new AtomicInteger();
+    try (final ProofCache cache = ProofCache.open(file)) {
+      cache.record(LIA_STAR, "r0", UNKNOWN, 150);
+
+      // no more time than the recorded attempt, still UNKNOWN
+      setLiaBudget(100);
+      assertEquals(UNKNOWN, cache.prove(LIA_STAR, "r0", () -> counted(numProofs, EQ)));
+      assertEquals(0, numProofs.get());
+
+      setLiaBudget(1000);
+      assertEquals(EQ, cache.prove(LIA_STAR, "r0", () -> counted(numProofs, EQ)));
+      assertEquals(1, numProofs.get());
+
+      setLiaBudget(0);
+      assertEquals(EQ, cache.prove(LIA_STAR, "r0", () -> counted(numProofs, NEQ)));
+      assertEquals(1, numProofs.get());
+      assertEquals(UNKNOWN, cache.prove(LIA_STAR, "r1", () -> counted(numProofs, UNKNOWN)));
+      assertEquals(UNKNOWN, cache.prove(LIA_STAR, "r1", () -> counted(numProofs, UNKNOWN)));
+      assertEquals(3, numProofs.get());
+    } finally {
+      setLiaBudget(oldBudget);
+    }
+  }
+
+  @Test
+  void testConcurrentWriters(@TempDir Path dir) throws IOException {
+    final Path file = dir.resolve("proofs");
+    try (final ProofCache cache = ProofCache.open(file)) {
+      IntStream.range(0, 1000)
+          .parallel()
+          .forEach(i -> cache.prove(LIA_STAR, "r" + i, () -> i % 2 == 0 ? EQ : NEQ));
+    }
+
+    try (final ProofCache cache = ProofCache.open(file)) {
+      assertEquals(1000, cache.size());
+      final List<Integer> results = new ArrayList<>();
+      for (int i = 0; i < 1000; ++i) results.add(cache.lookup(LIA_STAR, "r" + i).result());
+      for (int i = 0; i < 1000; ++i) assertEquals(i % 2 == 0 ? EQ : NEQ, results.get(i));
+    }
+  }
+}
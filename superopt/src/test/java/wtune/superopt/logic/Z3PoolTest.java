@@ -0,0 +1,78 @@
+package wtune.superopt.logic;
+
+import com.microsoft.z3.Context;
+import com.microsoft.z3.Solver;
+import com.microsoft.z3.Status;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Z3PoolTest {
+  @Test
+  void testReuse() {
+    final Context ctx;
+    final Solver solver;
+    try (final Z3Pool.Lease z3 = Z3Pool.acquire()) {
+      ctx = z3.context();
+      solver = z3.solver();
+      solver.push();
+      solver.add(ctx.mkFalse());
+      assertEquals(Status.UNSATISFIABLE, solver.check());
+      // left pushed on purpose, popped on close
+    }
+
+    final long numCreated = Z3Pool.numCreated();
+    try (final Z3Pool.Lease z3 = Z3Pool.acquire()) {
+      assertSame(ctx, z3.context());
+      assertSame(solver, z3.solver());
+      assertEquals(0, solver.getNumScopes());
+      assertEquals(Status.SATISFIABLE, solver.check());
+      assertSame(z3.ruleNullEquals(), z3.ruleNullEquals());
+
+      // nested leases get their own context
+      try (final Z3Pool.Lease nested = Z3Pool.acquire()) {
+        assertNotSame(ctx, nested.context());
+      }
+    }
+    assertTrue(Z3Pool.numCreated() <= numCreated + 1);
+  }
+
+  @Test
+  void testInterrupted() {
+    final Context ctx;
+    try (final Z3Pool.Lease z3 = Z3Pool.acquire()) {
+      ctx = z3.context();
+      z3.interrupt();
+    }
+    try (final Z3Pool.Lease z3 = Z3Pool.acquire()) {
+      assertNotSame(ctx, z3.context());
+    }
+  }
+
+  @Test
+  void testThreadAffinity() throws InterruptedException {
+    final Context ctx;
+    try (final Z3Pool.Lease z3 = Z3Pool.acquire()) {
+      ctx = z3.context();
+    }
+
+    final AtomicReference<Context> other = new AtomicReference<>();
+    final Thread thread =
+        new Thread(
+            () -> {
+              try (final Z3Pool.Lease z3 = Z3Pool.acquire()) {
+                other.set(z3.context());
+              }
+            });
+    thread.start();
+    thread.join();
+    // the context kept by this thread is not handed to another one
+    assertNotSame(ctx, other.get());
+
+    try (final Z3Pool.Lease z3 = Z3Pool.acquire()) {
+      assertSame(ctx, z3.context());
+    }
+  }
+}
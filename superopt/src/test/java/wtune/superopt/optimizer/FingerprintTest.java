@@ -6,12 +6,19 @@ import org.junit.jupiter.api.Test;
 import wtune.common.utils.SetSupport;
 import wtune.sql.plan.PlanContext;
 import wtune.superopt.fragment.Fragment;
+import wtune.superopt.substitution.Substitution;
+import wtune.superopt.substitution.SubstitutionBank;
+import wtune.superopt.substitution.SubstitutionSupport;
 import wtune.superopt.util.Fingerprint;
 import wtune.superopt.TestHelper;
 
+import java.io.IOException;
+import java.util.HashSet;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static wtune.superopt.TestHelper.dataDir;
 
 @Tag("optimizer")
 @Tag("fast")
@@ -77,4 +84,36 @@ public class FingerprintTest {
         Set.of("p", "pflj", "pfjj", "pfj", "pf", "pfl", "pfjl"),
         SetSupport.map(fingerprints, Fingerprint::toString));
   }
+
+  @Test
+  void testMatchRules() throws IOException {
+    final SubstitutionBank bank =
+        SubstitutionSupport.loadBank(dataDir().resolve("prepared").resolve("rules.txt"));
+    final String[] sqls = {
+      "Select a.* From a Where a.i = 0 And a.i In (Select a.i From a Where a.j > 10) "
+          + "And a.i < 1 And a.i In (Select b.x From b Where b.y > 20) And a.i < 2",
+      "Select Distinct a.i From a Join b On a.i = b.x Join c On a.i = c.u "
+          + "Left Join d On a.i = d.p Where a.j = 1 And a.i In (Select c.u From c)",
+      "Select a.i, Count(a.j) From a Join b On a.i = b.x Where a.k > 0 Group By a.i",
+      "Select a.i From a Where a.j = 1 Union Select b.x From b Left Join c On b.x = c.u",
+    };
+
+    for (String sql : sqls) {
+      final PlanContext plan = TestHelper.parsePlan(sql);
+      checkMatch(bank, plan, plan.root());
+    }
+  }
+
+  private static void checkMatch(SubstitutionBank bank, PlanContext plan, int node) {
+    final Set<Substitution> expected = new HashSet<>();
+    for (Fingerprint fingerprint : Fingerprint.mk(plan, node))
+      for (Substitution rule : bank.ruleOfFingerprint(fingerprint)) expected.add(rule);
+
+    final Set<Substitution> actual = new HashSet<>();
+    for (Substitution rule : bank.matchRules(plan, node)) assertTrue(actual.add(rule));
+
+    assertEquals(expected, actual);
+    for (int i = 0, bound = plan.kindOf(node).numChildren(); i < bound; ++i)
+      checkMatch(bank, plan, plan.childOf(node, i));
+  }
 }
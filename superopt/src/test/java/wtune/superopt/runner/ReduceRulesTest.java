@@ -2,6 +2,7 @@ package wtune.superopt.runner;
 
 import org.junit.jupiter.api.Test;
 import wtune.common.utils.IOSupport;
+import wtune.common.utils.SetSupport;
 import wtune.superopt.substitution.Substitution;
 import wtune.superopt.substitution.SubstitutionBank;
 import wtune.superopt.substitution.SubstitutionSupport;
@@ -29,4 +30,19 @@ class ReduceRulesTest {
       if (minSize == oldSize) break;
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  void testParallel() throws IOException {
+    final var inFile = dataDir().resolve("prepared/rules.example.txt");
+    final SubstitutionBank bank0 = SubstitutionSupport.loadBank(inFile);
+    final SubstitutionBank bank1 = SubstitutionSupport.loadBank(inFile);
+    final int size = bank0.size();
+
+    final SubstitutionBank reduced0 = SubstitutionSupport.reduceBank(bank0, 1);
+    final SubstitutionBank reduced1 = SubstitutionSupport.reduceBank(bank1, 4);
+    assertTrue(reduced0.size() < size);
+    assertEquals(
+        SetSupport.map(reduced0.rules(), Substitution::canonicalStringify),
+        SetSupport.map(reduced1.rules(), Substitution::canonicalStringify));
+  }
+}
@@ -0,0 +1,89 @@
+package wtune.superopt.spes;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import wtune.spes.AlgeNode.AlgeNode;
+import wtune.spes.AlgeRule.AlgeRule;
+import wtune.sql.plan.PlanContext;
+import wtune.superopt.logic.Z3Pool;
+import wtune.superopt.substitution.Substitution;
+import wtune.superopt.substitution.SubstitutionBank;
+import wtune.superopt.substitution.SubstitutionSupport;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static wtune.superopt.TestHelper.dataDir;
+import static wtune.superopt.nodetrans.SPESSupport.plan2AlgeNode;
+
+@Tag("slow")
+class SPESNormalizationTest {
+  private static final int ROUNDS = 5;
+
+  private static List<PlanContext> loadPlans(Path bankFile) throws IOException {
+    final SubstitutionBank bank = SubstitutionSupport.loadBank(bankFile);
+    final List<PlanContext> plans = new ArrayList<>(bank.size() << 1);
+    for (Substitution rule : bank.rules()) {
+      try {
+        final Pair<PlanContext, PlanContext> pair = SubstitutionSupport.translateAsPlan2(rule);
+        plans.add(pair.getLeft());
+        plans.add(pair.getRight());
+      } catch (Throwable ignored) {
+        // not expressible in SPES, it wouldn't be normalized in practice either
+      }
+    }
+    return plans;
+  }
+
+  @Test
+  void testNormalizationThroughput() throws IOException {
+    final List<Path> bankFiles = new ArrayList<>();
+    try (DirectoryStream<Path> files =
+        Files.newDirectoryStream(dataDir().resolve("prepared"), "rules.spes.*")) {
+      files.forEach(bankFiles::add);
+    }
+
+    for (Path bankFile : bankFiles) {
+      final List<PlanContext> plans = loadPlans(bankFile);
+      long translateNanos = 0, normalizeNanos = 0;
+      int numNormalized = 0;
+
+      // The first round warms up the JIT and is not counted.
+      for (int round = 0; round <= ROUNDS; ++round) {
+        try (final Z3Pool.Lease z3 = Z3Pool.acquire()) {
+          for (PlanContext plan : plans) {
+            final long start = System.nanoTime();
+            final AlgeNode node;
+            try {
+              node = plan2AlgeNode(plan, z3.context());
+            } catch (Throwable ignored) {
+              continue;
+            }
+            final long translated = System.nanoTime();
+            assertNotNull(AlgeRule.normalize(node));
+            final long normalized = System.nanoTime();
+
+            if (round == 0) continue;
+            translateNanos += translated - start;
+            normalizeNanos += normalized - translated;
+            ++numNormalized;
+          }
+        }
+      }
+
+      System.out.printf(
+          "%s: %d plans, translate %.1f us/plan, normalize %.1f us/plan (%.0f plans/s)\n",
+          bankFile.getFileName(),
+          numNormalized / ROUNDS,
+          translateNanos / 1000.0 / Math.max(1, numNormalized),
+          normalizeNanos / 1000.0 / Math.max(1, numNormalized),
+          numNormalized * 1e9 / Math.max(1, normalizeNanos));
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package wtune.superopt.spes;
+
+import com.microsoft.z3.BoolExpr;
+import com.microsoft.z3.Context;
+import com.microsoft.z3.IntExpr;
+import com.microsoft.z3.Solver;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import wtune.spes.Z3Helper.SolverSession;
+import wtune.spes.Z3Helper.SolverTimeoutException;
+import wtune.spes.Z3Helper.z3Utility;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("fast")
+class SolverSessionTest {
+  @Test
+  void testSharedEnv() {
+    final Context ctx = new Context();
+    final Solver solver = ctx.mkSolver();
+    final IntExpr x = ctx.mkIntConst("x"), y = ctx.mkIntConst("y");
+    final BoolExpr env = ctx.mkEq(x, y);
+
+    try (final SolverSession session = SolverSession.open(ctx, solver, 0)) {
+      assertTrue(session.isUnsat(List.of(env), ctx.mkGt(x, y)));
+      // the goal of the previous check must not leak into this one
+      assertFalse(session.isUnsat(List.of(env), ctx.mkLt(x, ctx.mkInt(0))));
+      // nor the environment into a check without it
+      assertFalse(session.isUnsat(List.of(), ctx.mkGt(x, y)));
+      // routed through the session by z3Utility
+      assertTrue(z3Utility.isConditionEq(List.of(env), ctx.mkGt(x, y), ctx.mkGt(y, x), ctx));
+      assertEquals(4, session.numChecks());
+      assertFalse(session.isIncomplete());
+    }
+    assertEquals(0, solver.getNumScopes());
+    ctx.close();
+  }
+
+  @Test
+  void testBudget() throws InterruptedException {
+    final Context ctx = new Context();
+    try (final SolverSession session = SolverSession.open(ctx, 1)) {
+      Thread.sleep(5);
+      assertThrows(SolverTimeoutException.class, () -> z3Utility.isUnsat(ctx.mkFalse(), ctx));
+      // rejected before reaching the solver
+      assertEquals(0, session.numChecks());
+    }
+    ctx.close();
+  }
+}
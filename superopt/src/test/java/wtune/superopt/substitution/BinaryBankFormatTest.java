@@ -0,0 +1,88 @@
+package wtune.superopt.substitution;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import wtune.sql.plan.PlanContext;
+import wtune.superopt.TestHelper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static wtune.superopt.TestHelper.dataDir;
+
+@Tag("substitution")
+@Tag("fast")
+class BinaryBankFormatTest {
+  @Test
+  void testRoundTrip(@TempDir Path dir) throws IOException {
+    final Path textFile = dataDir().resolve("prepared").resolve("rules.txt");
+    final SubstitutionBank text = SubstitutionSupport.loadBank(textFile);
+    final Path binFile = dir.resolve("rules.bin");
+    SubstitutionSupport.dumpBinaryBank(text, binFile);
+
+    final SubstitutionBank binary = SubstitutionSupport.loadBank(binFile);
+    assertEquals(text.size(), binary.size());
+    assertEquals(text.isExtended(), binary.isExtended());
+
+    final List<Substitution> rules0 = new ArrayList<>(text.rules());
+    final List<Substitution> rules1 = new ArrayList<>(binary.rules());
+    for (int i = 0; i < rules0.size(); ++i) {
+      assertEquals(rules0.get(i).id(), rules1.get(i).id());
+      assertEquals(rules0.get(i).canonicalStringify(), rules1.get(i).canonicalStringify());
+      assertTrue(binary.contains(rules0.get(i)));
+    }
+    for (Substitution rule : rules1) assertFalse(((LazySubstitution) rule).isDecoded());
+
+    final PlanContext plan =
+        TestHelper.parsePlan(
+            "Select Distinct a.i From a Join b On a.i = b.x Where a.i In (Select c.u From c)");
+    final Set<Integer> matched0 = new HashSet<>(), matched1 = new HashSet<>();
+    for (Substitution rule : text.matchRules(plan, plan.root())) matched0.add(rule.id());
+    for (Substitution rule : binary.matchRules(plan, plan.root())) matched1.add(rule.id());
+    assertFalse(matched0.isEmpty());
+    assertEquals(matched0, matched1);
+
+    final Substitution rule = binary.matchRules(plan, plan.root()).iterator().next();
+    final String serialized = rule.canonicalStringify();
+    assertEquals(serialized, Substitution.parse(serialized).canonicalStringify());
+    assertNotNull(rule._0());
+    assertTrue(((LazySubstitution) rule).isDecoded());
+    assertEquals(rule.toString(), rules0.get(rules1.indexOf(rule)).toString());
+  }
+
+  @Test
+  void testExtendedFlag(@TempDir Path dir) throws IOException {
+    final Substitution plain =
+        Substitution.parse("Filter<p0 a0>(Input<t0>)|Input<t1>|AttrsSub(a0,t0);TableEq(t1,t0)");
+    final Substitution extended =
+        Substitution.parse(
+            "Agg_max<a0 a1 a2 f0 s0 p0>(Union*(Input<t0>,Input<t1>))|"
+                + "Agg_max<a3 a4 a5 f1 s1 p1>(Input<t2>)|"
+                + "TableEq(t0,t1);AttrsSub(a0,t0);AttrsSub(a1,t0);AttrsSub(a2,s0);TableEq(t2,t0);"
+                + "AttrsEq(a3,a0);AttrsEq(a4,a1);AttrsEq(a5,a2);PredicateEq(p1,p0);SchemaEq(s1,s0)");
+
+    final SubstitutionBank bank = SubstitutionBank.mk();
+    bank.add(plain);
+    bank.add(extended);
+    bank.remove(extended);
+    // once extended, a bank stays so, also without any extended rule left
+    assertTrue(bank.isExtended());
+
+    final Path binFile = dir.resolve("rules.bin");
+    SubstitutionSupport.dumpBinaryBank(bank, binFile);
+    final SubstitutionBank binary = SubstitutionSupport.loadBank(binFile);
+    assertTrue(binary.isExtended());
+    assertEquals(1, binary.size());
+
+    final SubstitutionBank plainBank = SubstitutionBank.mk();
+    plainBank.add(plain);
+    SubstitutionSupport.dumpBinaryBank(plainBank, binFile);
+    assertFalse(SubstitutionSupport.loadBank(binFile).isExtended());
+  }
+}
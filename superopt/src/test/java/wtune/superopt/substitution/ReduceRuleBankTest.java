@@ -0,0 +1,36 @@
+package wtune.superopt.substitution;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Tag("substitution")
+@Tag("fast")
+class ReduceRuleBankTest {
+  // Both merge two identical filters. The second one only states a redundant AttrsSub, thus the
+  // two are distinct rules that imply each other.
+  private static final String MERGE_FILTER_0 =
+      "Filter<p0 b0>(Filter<p1 b1>(Input<t0>))|Filter<p2 b2>(Input<t1>)|"
+          + "AttrsSub(b0,t0);AttrsSub(b1,t0);AttrsEq(b0,b1);PredicateEq(p0,p1);"
+          + "TableEq(t1,t0);AttrsEq(b2,b1);PredicateEq(p2,p0);";
+  private static final String MERGE_FILTER_1 =
+      "Filter<p0 b0>(Filter<p1 b1>(Input<t0>))|Filter<p2 b2>(Input<t1>)|"
+          + "AttrsSub(b0,t0);AttrsSub(b1,t0);AttrsEq(b0,b1);PredicateEq(p0,p1);"
+          + "TableEq(t1,t0);AttrsEq(b2,b1);PredicateEq(p2,p0);AttrsSub(b2,t1);";
+
+  private static SubstitutionBank mkBank() {
+    final SubstitutionBank bank = SubstitutionBank.mk();
+    bank.add(Substitution.parse(MERGE_FILTER_0));
+    bank.add(Substitution.parse(MERGE_FILTER_1));
+    assertEquals(2, bank.size());
+    return bank;
+  }
+
+  @Test
+  void testMutuallyImplied() {
+    // Each rule alone is implied by the other one, but at most one of them can go.
+    assertEquals(1, SubstitutionSupport.reduceBank(mkBank()).size());
+    assertEquals(1, SubstitutionSupport.reduceBank(mkBank(), 4).size());
+  }
+}
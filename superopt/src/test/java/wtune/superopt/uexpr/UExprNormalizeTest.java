@@ -2,15 +2,19 @@ package wtune.superopt.uexpr;
 
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
+import wtune.superopt.logic.ProofContext;
 import wtune.superopt.substitution.Substitution;
 import wtune.superopt.substitution.SubstitutionBank;
 import wtune.superopt.substitution.SubstitutionSupport;
+import wtune.superopt.uexpr.normalizer.NormalizationEngine;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Map;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Tag("norm")
@@ -80,6 +84,69 @@ public class UExprNormalizeTest {
     }
   }
 
+  @Test
+  void testSumHash() {
+    final UVar x1 = UVar.mkBase(UName.mk("x1")), x2 = UVar.mkBase(UName.mk("x2"));
+    final UVar y1 = UVar.mkBase(UName.mk("y1")), y2 = UVar.mkBase(UName.mk("y2"));
+    final UName a = UName.mk("a");
+    final UTerm body0 =
+        UMul.mk(
+            UTable.mk(UName.mk("t1"), x1),
+            UTable.mk(UName.mk("t2"), x2),
+            UPred.mkBinary(UPred.PredKind.EQ, UVar.mkProj(a, x1), UVar.mkProj(a, x2)));
+    final UTerm body1 =
+        UMul.mk(
+            UPred.mkBinary(UPred.PredKind.EQ, UVar.mkProj(a, y2), UVar.mkProj(a, y1)),
+            UTable.mk(UName.mk("t2"), y2),
+            UTable.mk(UName.mk("t1"), y1));
+    final USum sum0 = USum.mk(Set.of(x1, x2), body0);
+    final USum sum1 = USum.mk(Set.of(y1, y2), body1);
+    assertEquals(sum0, sum1);
+    assertEquals(sum0.hashCode(), sum1.hashCode());
+
+    final USum sum2 = USum.mk(Set.of(x1, x2), UMul.mk(body0, UTable.mk(UName.mk("t3"), x1)));
+    assertNotEquals(sum0.hashCode(), sum2.hashCode());
+    assertNotEquals(sum0, sum2);
+
+    // weakly equal to sum0: the extra equality is implied by the one of sum0
+    final UTerm body3 =
+        UMul.mk(
+            UTable.mk(UName.mk("t1"), x1),
+            UTable.mk(UName.mk("t2"), x2),
+            UPred.mkBinary(UPred.PredKind.EQ, UVar.mkProj(a, x1), UVar.mkProj(a, x2)),
+            UPred.mkBinary(UPred.PredKind.EQ, UVar.mkProj(a, x2), UVar.mkProj(a, x1)));
+    final USum sum3 = USum.mk(Set.of(x1, x2), body3);
+    final ProofContext ctx = ProofContext.current();
+    ctx.setWeakEquals(true);
+    try {
+      assertEquals(sum0, sum3);
+    } finally {
+      ctx.setWeakEquals(false);
+    }
+    assertEquals(sum0.hashCode(), sum3.hashCode());
+  }
+
+  @Test
+  void testRuleEngineSkipsInapplicableRules() {
+    final UVar x1 = UVar.mkBase(UName.mk("x1")), x2 = UVar.mkBase(UName.mk("x2"));
+    final UTerm squash1 = USquash.mk(UTable.mk(UName.mk("t1"), x1));
+    final UTerm squash2 = USquash.mk(UTable.mk(UName.mk("t2"), x2));
+
+    NormalizationEngine.resetStats();
+    final UTerm normalized = UExprSupport.normalizeExpr(UMul.mk(squash1, squash2));
+    assertEquals(UKind.SQUASH, normalized.kind());
+    assertEquals(
+        UMul.mk(UTable.mk(UName.mk("t1"), x1), UTable.mk(UName.mk("t2"), x2)),
+        ((USquash) normalized).body());
+
+    final Map<String, NormalizationEngine.RuleStat> stats = NormalizationEngine.stats();
+    assertTrue(stats.get("combineSquash").fires() >= 1);
+    // No ADD, SUMMATION or FUNC in the expression.
+    assertTrue(stats.get("distributeAddToMul").skips() >= 1);
+    assertTrue(stats.get("mergeSummation").skips() >= 1);
+    assertTrue(stats.get("applyFuncString").skips() >= 1);
+  }
+
   private static Path dataDir() {
     return Path.of(System.getProperty("wetune.data_dir", "wtune_data"));
   }
@@ -27,11 +27,20 @@ class BasePopulatable implements Populatable {
 
   @Override
   public boolean populateOne(BatchActuator actuator) {
-    actuator.beginOne(collection);
-    for (Generator generator : generators) generator.generate(nextRowId, actuator);
-    actuator.endOne();
-
+    populate(nextRowId, actuator);
     ++nextRowId;
     return true;
   }
+
+  @Override
+  public boolean populateRange(int from, int to, BatchActuator actuator) {
+    for (int rowId = from; rowId < to; ++rowId) populate(rowId, actuator);
+    return true;
+  }
+
+  private void populate(int rowId, BatchActuator actuator) {
+    actuator.beginOne(collection);
+    for (Generator generator : generators) generator.generate(rowId, actuator);
+    actuator.endOne();
+  }
 }
@@ -28,7 +28,7 @@ class BatchActuatorFactoryImpl implements BatchActuatorFactory {
     return dataSource;
   }
 
-  private static String determineDbType(String url) {
+  static String determineDbType(String url) {
     if (url.startsWith("jdbc:mysql")) return MySQL;
     else if (url.startsWith("jdbc:postgresql")) return PostgreSQL;
     else throw new IllegalArgumentException();
@@ -0,0 +1,13 @@
+package wtune.testbed.population;
+
+import wtune.testbed.common.Collection;
+
+import java.io.InputStream;
+
+/** Loads the whole content of a collection from a stream of encoded rows. */
+public interface BulkLoader {
+  RowFormat rowFormat();
+
+  /** Replaces the content of `collection` with `rows`, encoded in {@link #rowFormat()}. */
+  void load(Collection collection, InputStream rows);
+}
@@ -0,0 +1,118 @@
+package wtune.testbed.population;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+import org.postgresql.PGConnection;
+import wtune.testbed.common.Collection;
+import wtune.testbed.common.Element;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static wtune.common.datasource.DbSupport.MySQL;
+import static wtune.common.datasource.DbSupport.makeDataSource;
+import static wtune.testbed.population.BatchActuatorFactoryImpl.determineDbType;
+import static wtune.testbed.population.PopulationActuator.prepareTable;
+import static wtune.testbed.population.PopulationActuator.quotationOf;
+
+/**
+ * Streams rows through the native bulk load path of the database: `COPY ... FROM STDIN` for
+ * PostgreSQL, `LOAD DATA LOCAL INFILE` for MySQL. As {@link PopulationActuator}, the table is
+ * truncated and the key checks are disabled for the loading session.
+ */
+class DbBulkLoader implements BulkLoader {
+  private final Properties dbProperties;
+  private final String dbType;
+  private DataSource dataSource;
+
+  DbBulkLoader(Properties properties) {
+    this.dbType = determineDbType(properties.getProperty("jdbcUrl"));
+    this.dbProperties = MySQL.equals(dbType) ? allowLocalInfile(properties) : properties;
+  }
+
+  DbBulkLoader(String dbType, DataSource dataSource) {
+    this.dbType = dbType;
+    this.dbProperties = null;
+    this.dataSource = dataSource;
+  }
+
+  Properties dbProperties() {
+    return dbProperties;
+  }
+
+  private static Properties allowLocalInfile(Properties properties) {
+    final String url = properties.getProperty("jdbcUrl");
+    if (url.contains("allowLoadLocalInfile=")) return properties;
+
+    final Properties copy = new Properties();
+    copy.putAll(properties);
+    final char delimiter = url.contains("?") ? '&' : '?';
+    copy.setProperty("jdbcUrl", url + delimiter + "allowLoadLocalInfile=true");
+    return copy;
+  }
+
+  private DataSource dataSource() {
+    if (dataSource == null) dataSource = makeDataSource(dbProperties);
+    return dataSource;
+  }
+
+  @Override
+  public RowFormat rowFormat() {
+    return MySQL.equals(dbType) ? RowFormat.MYSQL_LOAD_DATA : RowFormat.PG_COPY;
+  }
+
+  @Override
+  public void load(Collection collection, InputStream rows) {
+    try (final Connection conn = dataSource().getConnection()) {
+      prepareTable(dbType, conn, collection.collectionName());
+      if (MySQL.equals(dbType)) loadData(conn, collection, rows);
+      else copy(conn, collection, rows);
+
+    } catch (SQLException ex) {
+      throw new RuntimeException(ex);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private void copy(Connection conn, Collection collection, InputStream rows)
+      throws SQLException, IOException {
+    final String sql =
+        "COPY %s (%s) FROM STDIN".formatted(tableOf(collection), columnsOf(collection));
+    conn.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, rows);
+  }
+
+  private void loadData(Connection conn, Collection collection, InputStream rows)
+      throws SQLException {
+    // the file name is ignored once an input stream is set. The column list must come last.
+    final String sql =
+        "LOAD DATA LOCAL INFILE 'stdin' INTO TABLE %s CHARACTER SET utf8mb4 (%s)"
+            .formatted(tableOf(collection), columnsOf(collection));
+    try (final Statement stmt = conn.createStatement()) {
+      stmt.unwrap(JdbcStatement.class).setLocalInfileInputStream(rows);
+      stmt.execute(sql);
+    }
+  }
+
+  private String tableOf(Collection collection) {
+    return quoted(collection.collectionName());
+  }
+
+  private String columnsOf(Collection collection) {
+    return collection.elements().stream()
+        .map(Element::elementName)
+        .map(this::quoted)
+        .collect(Collectors.joining(","));
+  }
+
+  private String quoted(String name) {
+    final char quotation = quotationOf(dbType);
+    return quotation + name + quotation;
+  }
+}
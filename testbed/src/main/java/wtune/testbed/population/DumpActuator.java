@@ -0,0 +1,59 @@
+package wtune.testbed.population;
+
+import wtune.testbed.common.Collection;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Dumps the rows of a collection into a file, in the same format as {@link EchoActuator}.
+ *
+ * <p>Rows are encoded into the buffer of {@link TextRowActuator} and handed to the {@link
+ * DumpFile} in blocks, instead of being joined, printed and flushed one by one.
+ */
+class DumpActuator extends TextRowActuator {
+  private static final int BLOCK_SIZE = 1 << 20;
+
+  private final Path path;
+  private DumpFile file;
+
+  DumpActuator(Path path) {
+    super(RowFormat.DUMP, BLOCK_SIZE + (BLOCK_SIZE >> 2));
+    this.path = path;
+  }
+
+  @Override
+  public void begin(Collection collection) {
+    try {
+      file = DumpFile.open(path);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public void endOne() {
+    super.endOne();
+    if (size() >= BLOCK_SIZE) writeBlock();
+  }
+
+  @Override
+  public void end() {
+    writeBlock();
+    try {
+      file.close();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private void writeBlock() {
+    try {
+      file.write(buffer(), 0, size());
+      reset();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+}
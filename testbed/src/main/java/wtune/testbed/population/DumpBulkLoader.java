@@ -0,0 +1,33 @@
+package wtune.testbed.population;
+
+import wtune.testbed.common.Collection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Function;
+
+/** Writes rows to the dump destination of a collection, in the same format as EchoActuator. */
+class DumpBulkLoader implements BulkLoader {
+  private final Function<String, OutputStream> destinations;
+
+  DumpBulkLoader(Function<String, OutputStream> destinations) {
+    this.destinations = destinations;
+  }
+
+  @Override
+  public RowFormat rowFormat() {
+    return RowFormat.DUMP;
+  }
+
+  @Override
+  public void load(Collection collection, InputStream rows) {
+    try (final OutputStream out = destinations.apply(collection.collectionName())) {
+      rows.transferTo(out);
+      out.flush();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package wtune.testbed.population;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A dumped table file. Bytes are collected in a large direct buffer and written to the channel
+ * only when it is full, i.e., one syscall per {@link #BUFFER_SIZE} bytes.
+ */
+class DumpFile extends OutputStream {
+  static final int BUFFER_SIZE = 4 << 20;
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+
+  private DumpFile(FileChannel channel) {
+    this.channel = channel;
+    this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  }
+
+  static DumpFile open(Path path) throws IOException {
+    return new DumpFile(FileChannel.open(path, WRITE, CREATE, TRUNCATE_EXISTING));
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    if (!buffer.hasRemaining()) drain();
+    buffer.put((byte) b);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      if (!buffer.hasRemaining()) drain();
+      final int n = Math.min(len, buffer.remaining());
+      buffer.put(b, off, n);
+      off += n;
+      len -= n;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      drain();
+    } finally {
+      channel.close();
+    }
+  }
+
+  private void drain() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) channel.write(buffer);
+    buffer.clear();
+  }
+}
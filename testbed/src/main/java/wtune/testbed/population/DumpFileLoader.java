@@ -0,0 +1,32 @@
+package wtune.testbed.population;
+
+import wtune.testbed.common.Collection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.function.Function;
+
+/** Writes rows to the dump file of a collection, in the same format as EchoActuator. */
+class DumpFileLoader implements BulkLoader {
+  private final Function<String, Path> files;
+
+  DumpFileLoader(Function<String, Path> files) {
+    this.files = files;
+  }
+
+  @Override
+  public RowFormat rowFormat() {
+    return RowFormat.DUMP;
+  }
+
+  @Override
+  public void load(Collection collection, InputStream rows) {
+    try (final DumpFile file = DumpFile.open(files.apply(collection.collectionName()))) {
+      rows.transferTo(file);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+}
@@ -15,6 +15,9 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 public class EchoActuator implements BatchActuator {
+  private static final DateTimeFormatter DATETIME_FORMATTER =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd'T'hh:mm:ss");
+
   private final PrintWriter writer;
   private List<String> values;
   private int index;
@@ -76,8 +79,7 @@ public class EchoActuator implements BatchActuator {
 
   @Override
   public void setDateTime(int index, LocalDateTime t) {
-    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'hh:mm:ss");
-    values.set(index, t.format(formatter) + "");
+    values.set(index, t.format(DATETIME_FORMATTER));
   }
 
   @Override
@@ -107,7 +109,7 @@ public class EchoActuator implements BatchActuator {
 //    values.set(index, Arrays.toString(bs));
   }
 
-  private String byteArray2String(byte[] bs){
+  static String byteArray2String(byte[] bs){
     StringBuilder bStrBuilder = new StringBuilder();
     for (byte b: bs) {
       bStrBuilder.append(Integer.toHexString(b));
@@ -8,6 +8,12 @@ public interface Populatable {
 
   boolean populateOne(BatchActuator actuator);
 
+  /**
+   * Populates the rows [from, to) regardless of the rows populated before. Thread-safe once the
+   * generators are bound.
+   */
+  boolean populateRange(int from, int to, BatchActuator actuator);
+
   static Populatable ofCollection(Collection collection) {
     return new BasePopulatable(collection);
   }
@@ -28,7 +28,7 @@ class PopulationActuator extends PreparedStatementActuator implements BatchActua
     this.dbType = dbType;
     this.conn = conn;
     this.batchSize = batchSize;
-    this.quotation = MySQL.equals(dbType) ? '`' : '"';
+    this.quotation = quotationOf(dbType);
   }
 
   @Override
@@ -37,21 +37,30 @@ class PopulationActuator extends PreparedStatementActuator implements BatchActua
   }
 
   private void begin0(Collection collection) throws SQLException {
+    prepareTable(dbType, conn, collection.collectionName());
+  }
+
+  /** Disables the key checks of the session of `conn` and truncates the table. */
+  static void prepareTable(String dbType, Connection conn, String tableName) throws SQLException {
+    final char quotation = quotationOf(dbType);
     final Statement stmt = conn.createStatement();
     if (MySQL.equals(dbType)) {
       stmt.execute("set foreign_key_checks=0");
       stmt.execute("set unique_checks=0");
-      stmt.execute("truncate table " + quotation + collection.collectionName() + quotation);
+      stmt.execute("truncate table " + quotation + tableName + quotation);
 
     } else if (PostgreSQL.equals(dbType)) {
       stmt.execute("set session_replication_role='replica'");
-      stmt.execute(
-          "truncate table " + quotation + collection.collectionName() + quotation + " CASCADE");
+      stmt.execute("truncate table " + quotation + tableName + quotation + " CASCADE");
     }
 
     stmt.close();
   }
 
+  static char quotationOf(String dbType) {
+    return MySQL.equals(dbType) ? '`' : '"';
+  }
+
   @Override
   public void end() {
     performSQL(this::end0);
@@ -3,7 +3,8 @@ package wtune.testbed.population;
 import wtune.testbed.common.BatchActuatorFactory;
 import wtune.testbed.util.RandGen;
 
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.Properties;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -21,6 +22,12 @@ public interface PopulationConfig {
 
   Runnable progressCallback();
 
+  /** The number of threads generating the rows of a collection. 1 means the serial population. */
+  int parallelism();
+
+  /** The destination of the rows in the parallel population. */
+  BulkLoader bulkLoader();
+
   void setRandomSeed(int i);
 
   void setDefaultUnitCount(int rowCount);
@@ -37,10 +44,15 @@ public interface PopulationConfig {
 
   void setProgressCallback(Runnable runnable);
 
-  void setDump(Function<String, PrintWriter> factory);
+  void setDump(Function<String, OutputStream> factory);
+
+  /** Dumps each collection to a file, given by `files` from the collection name. */
+  void setDumpFiles(Function<String, Path> files);
 
   void setNeedPrePopulation(boolean flag);
 
+  void setParallelism(int parallelism);
+
   static PopulationConfig mk() {
     return new SQLPopulationConfig();
   }
@@ -0,0 +1,158 @@
+package wtune.testbed.population;
+
+import wtune.testbed.common.Collection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The encoded rows of a collection, generated in parallel.
+ *
+ * <p>The rows [0, unitCount) are cut into chunks of consecutive row ids. Chunks are generated on
+ * the pool, each into its own {@link TextRowActuator}, and read in order, so the stream is the
+ * same as a serial population. Since each value is a pure function of its row id, the chunks are
+ * independent. At most `2 * parallelism` chunks are in flight, which bounds the memory regardless
+ * of the row count.
+ */
+class RowChunkStream extends InputStream {
+  private static final int ROWS_PER_CHUNK = 4096;
+  private static final int INITIAL_CHUNK_CAPACITY = 1 << 20;
+
+  private static final ExecutorService POPULATION_POOL =
+      Executors.newCachedThreadPool(
+          r -> {
+            final Thread t = new Thread(r, "population");
+            t.setDaemon(true);
+            return t;
+          });
+
+  private final Populatable populatable;
+  private final Collection collection;
+  private final RowFormat format;
+  private final int unitCount;
+  private final int maxInFlight;
+  private final Runnable progressCallback;
+
+  private final Deque<Future<TextRowActuator>> inFlight;
+  private final Deque<TextRowActuator> recycled;
+  private int nextRow;
+  private TextRowActuator current;
+  private int offset;
+
+  RowChunkStream(
+      Populatable populatable,
+      Collection collection,
+      RowFormat format,
+      int unitCount,
+      int parallelism,
+      Runnable progressCallback) {
+    this.populatable = populatable;
+    this.collection = collection;
+    this.format = format;
+    this.unitCount = unitCount;
+    this.maxInFlight = Math.max(1, parallelism) << 1;
+    this.progressCallback = progressCallback;
+    this.inFlight = new ArrayDeque<>(maxInFlight);
+    this.recycled = new ArrayDeque<>(maxInFlight);
+
+    while (inFlight.size() < maxInFlight && submitNext()) ;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!ensureAvailable()) return -1;
+    return current.buffer()[offset++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) return 0;
+    if (!ensureAvailable()) return -1;
+
+    final int n = Math.min(len, current.size() - offset);
+    System.arraycopy(current.buffer(), offset, b, off, n);
+    offset += n;
+    return n;
+  }
+
+  @Override
+  public long transferTo(OutputStream out) throws IOException {
+    // hand over whole chunks, rather than through an intermediate 8K buffer
+    long transferred = 0;
+    while (ensureAvailable()) {
+      final int n = current.size() - offset;
+      out.write(current.buffer(), offset, n);
+      offset += n;
+      transferred += n;
+    }
+    return transferred;
+  }
+
+  @Override
+  public void close() {
+    for (Future<TextRowActuator> future : inFlight) future.cancel(true);
+    inFlight.clear();
+    recycled.clear();
+    current = null;
+  }
+
+  private boolean submitNext() {
+    if (nextRow >= unitCount) return false;
+
+    final int from = nextRow, to = Math.min(unitCount, from + ROWS_PER_CHUNK);
+    final TextRowActuator reused = recycled.poll();
+    final TextRowActuator actuator =
+        reused != null ? reused : new TextRowActuator(format, INITIAL_CHUNK_CAPACITY);
+
+    inFlight.add(
+        POPULATION_POOL.submit(
+            () -> {
+              actuator.reset();
+              populatable.populateRange(from, to, actuator);
+              return actuator;
+            }));
+    nextRow = to;
+    return true;
+  }
+
+  private boolean ensureAvailable() throws IOException {
+    while (current == null || offset >= current.size()) {
+      if (current != null) {
+        recycled.add(current);
+        current = null;
+      }
+
+      final Future<TextRowActuator> head = inFlight.poll();
+      if (head == null) return false;
+
+      current = await(head);
+      offset = 0;
+      submitNext();
+
+      if (progressCallback != null)
+        for (int i = 0, bound = current.numRows(); i < bound; ++i) progressCallback.run();
+    }
+    return true;
+  }
+
+  private TextRowActuator await(Future<TextRowActuator> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while populating " + collection.collectionName(), ex);
+    } catch (ExecutionException ex) {
+      final Throwable cause = ex.getCause();
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw new IOException(cause);
+    }
+  }
+}
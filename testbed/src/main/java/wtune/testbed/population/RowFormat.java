@@ -0,0 +1,11 @@
+package wtune.testbed.population;
+
+/** The text encodings of generated rows, one row per line. */
+public enum RowFormat {
+  /** ';'-separated, unescaped. The format of the dumped tables read by the importer scripts. */
+  DUMP,
+  /** The text format of PostgreSQL `COPY FROM STDIN`. */
+  PG_COPY,
+  /** The default format of MySQL `LOAD DATA INFILE`. */
+  MYSQL_LOAD_DATA
+}
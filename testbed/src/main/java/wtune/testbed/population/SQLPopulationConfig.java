@@ -6,13 +6,17 @@ import wtune.testbed.common.BatchActuatorFactory;
 import wtune.testbed.util.RandGen;
 import wtune.testbed.util.RandomHelper;
 
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static wtune.testbed.util.MathHelper.isPow10;
 
 public class SQLPopulationConfig implements PopulationConfig {
@@ -28,12 +32,15 @@ public class SQLPopulationConfig implements PopulationConfig {
   private final Map<String, RandGen> randGenMap = new HashMap<>();
 
   private BatchActuatorFactory actuatorFactory = DEFAULT_ACTUATOR;
+  private BulkLoader bulkLoader = new DumpBulkLoader(ignored -> System.out);
   private Properties dbProperties;
-  private Function<String, PrintWriter> dumpDestinations = ignored -> new PrintWriter(System.out);
+  private Function<String, OutputStream> dumpDestinations = ignored -> System.out;
+  private Function<String, Path> dumpFiles;
 
   private int batchSize = DEFAULT_BATCH_SIZE;
   private Runnable progressCallback = null;
   private boolean needPrePopulation = false;
+  private int parallelism = 1;
 
   private static void checkRowCount(int rowCount) {
     if (!isPow10(rowCount))
@@ -95,6 +102,22 @@ public class SQLPopulationConfig implements PopulationConfig {
     return actuatorFactory;
   }
 
+  @Override
+  public BulkLoader bulkLoader() {
+    return bulkLoader;
+  }
+
+  @Override
+  public int parallelism() {
+    return parallelism;
+  }
+
+  @Override
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1) throw new IllegalArgumentException("parallelism should be positive");
+    this.parallelism = parallelism;
+  }
+
   @Override
   public boolean needPrePopulation() {
     return needPrePopulation;
@@ -117,17 +140,37 @@ public class SQLPopulationConfig implements PopulationConfig {
   }
 
   @Override
-  public void setDump(Function<String, PrintWriter> factory) {
+  public void setDump(Function<String, OutputStream> factory) {
     this.dumpDestinations = factory;
+    this.dumpFiles = null;
+    setDryRun(true);
+  }
+
+  @Override
+  public void setDumpFiles(Function<String, Path> files) {
+    this.dumpFiles = files;
     setDryRun(true);
   }
 
   private void setDryRun(boolean flag) {
     if (flag)
-      if (dumpDestinations == null) actuatorFactory = DEFAULT_ACTUATOR;
-      else
-        actuatorFactory = name -> new EchoActuator(new PrintWriter(dumpDestinations.apply(name)));
-    else actuatorFactory = new BatchActuatorFactoryImpl(dbProperties, batchSize);
+      if (dumpFiles != null) {
+        actuatorFactory = name -> new DumpActuator(dumpFiles.apply(name));
+        bulkLoader = new DumpFileLoader(dumpFiles);
+      } else if (dumpDestinations == null) {
+        actuatorFactory = DEFAULT_ACTUATOR;
+        bulkLoader = new DumpBulkLoader(ignored -> System.out);
+      } else {
+        actuatorFactory =
+            name ->
+                new EchoActuator(
+                    new PrintWriter(new OutputStreamWriter(dumpDestinations.apply(name), UTF_8)));
+        bulkLoader = new DumpBulkLoader(dumpDestinations);
+      }
+    else {
+      actuatorFactory = new BatchActuatorFactoryImpl(dbProperties, batchSize);
+      bulkLoader = new DbBulkLoader(dbProperties);
+    }
   }
 
   @Override
@@ -22,8 +22,10 @@ public class SQLPopulator implements Populator {
     final Populatable populatable = Populatable.ofCollection(collection);
     if (!populatable.bindGen(generators)) return false;
 
-    final BatchActuator actuator = config.actuatorFactory().make(collection.collectionName());
     final int unitCount = config.unitCountOf(collection.collectionName());
+    if (config.parallelism() > 1) return populateInParallel(populatable, collection, unitCount);
+
+    final BatchActuator actuator = config.actuatorFactory().make(collection.collectionName());
 
     actuator.begin(collection);
 
@@ -36,6 +38,26 @@ public class SQLPopulator implements Populator {
     return true;
   }
 
+  /**
+   * Generates disjoint row ranges on `config.parallelism()` threads and streams the encoded rows,
+   * in the order of a serial population, into the bulk loader of the config.
+   */
+  private boolean populateInParallel(
+      Populatable populatable, Collection collection, int unitCount) {
+    final BulkLoader loader = config.bulkLoader();
+    try (final RowChunkStream rows =
+        new RowChunkStream(
+            populatable,
+            collection,
+            loader.rowFormat(),
+            unitCount,
+            config.parallelism(),
+            progressCallback)) {
+      loader.load(collection, rows);
+    }
+    return true;
+  }
+
   @Override
   public Generator getGenerator(Element element) {
     return generators.bind(element);
@@ -0,0 +1,329 @@
+package wtune.testbed.population;
+
+import wtune.testbed.common.BatchActuator;
+import wtune.testbed.common.Collection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import static wtune.testbed.population.RowFormat.DUMP;
+import static wtune.testbed.population.RowFormat.MYSQL_LOAD_DATA;
+
+/**
+ * Encodes rows as UTF-8 text of a {@link RowFormat} into a growing byte buffer.
+ *
+ * <p>Values must be appended in the order of the elements, as the generators of a {@link
+ * Populatable} do. For {@link RowFormat#DUMP} the output is byte-identical to {@link
+ * EchoActuator}.
+ */
+class TextRowActuator implements BatchActuator {
+  private static final DateTimeFormatter DUMP_DATETIME =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd'T'hh:mm:ss");
+  private static final DateTimeFormatter DATETIME =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+  private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+  private final RowFormat format;
+  private final byte separator;
+  private byte[] buffer;
+  private int size;
+  private int index;
+  private int numRows;
+
+  TextRowActuator(RowFormat format, int initialCapacity) {
+    this.format = format;
+    this.separator = (byte) (format == DUMP ? ';' : '\t');
+    this.buffer = new byte[initialCapacity];
+  }
+
+  byte[] buffer() {
+    return buffer;
+  }
+
+  int size() {
+    return size;
+  }
+
+  int numRows() {
+    return numRows;
+  }
+
+  void reset() {
+    size = 0;
+    numRows = 0;
+  }
+
+  @Override
+  public void beginOne(Collection collection) {
+    index = 0;
+  }
+
+  @Override
+  public void endOne() {
+    put('\n');
+    ++numRows;
+  }
+
+  @Override
+  public int getAndForwardIndex() {
+    return index++;
+  }
+
+  @Override
+  public void setInt(int index, int i) {
+    beginValue(index);
+    putInt(i);
+  }
+
+  @Override
+  public void setFraction(int index, double d) {
+    beginValue(index);
+    putAscii(String.valueOf(d));
+  }
+
+  @Override
+  public void setDecimal(int index, BigDecimal d) {
+    beginValue(index);
+    putAscii(String.valueOf(d));
+  }
+
+  @Override
+  public void setBool(int index, boolean b) {
+    beginValue(index);
+    put(b ? '1' : '0');
+  }
+
+  @Override
+  public void setString(int index, String s) {
+    beginValue(index);
+    putText(s);
+  }
+
+  @Override
+  public void setDateTime(int index, LocalDateTime t) {
+    beginValue(index);
+    if (!isPlainYear(t.getYear())) {
+      putAscii((format == DUMP ? DUMP_DATETIME : DATETIME).format(t));
+      return;
+    }
+
+    putDate(t.toLocalDate());
+    if (format == DUMP) {
+      // "hh" of DUMP_DATETIME, the clock hour of am/pm
+      final int hour = t.getHour() % 12;
+      put('T');
+      putDigits(hour == 0 ? 12 : hour, 2);
+      put(':');
+      putDigits(t.getMinute(), 2);
+      put(':');
+      putDigits(t.getSecond(), 2);
+    } else {
+      put(' ');
+      putDigits(t.getHour(), 2);
+      put(':');
+      putDigits(t.getMinute(), 2);
+      put(':');
+      putDigits(t.getSecond(), 2);
+      put('.');
+      putDigits(t.getNano() / 1_000_000, 3);
+    }
+  }
+
+  @Override
+  public void setTime(int index, LocalTime t) {
+    beginValue(index);
+    putTime(t);
+  }
+
+  @Override
+  public void setDate(int index, LocalDate t) {
+    beginValue(index);
+    if (isPlainYear(t.getYear())) putDate(t);
+    else putAscii(t.toString());
+  }
+
+  @Override
+  public void setBlob(int index, InputStream in, int length) {
+    try {
+      setBytes(index, in.readAllBytes());
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public void setBytes(int index, byte[] bs) {
+    beginValue(index);
+    switch (format) {
+      case DUMP -> putAscii(EchoActuator.byteArray2String(bs));
+      case PG_COPY -> putHexBytea(bs);
+      case MYSQL_LOAD_DATA -> {
+        for (byte b : bs) putEscaped(b);
+      }
+    }
+  }
+
+  @Override
+  public void setObject(int index, Object obj, int typeId) {
+    beginValue(index);
+    putText(obj.toString());
+  }
+
+  @Override
+  public void setArray(int index, Object[] array, String type) {
+    beginValue(index);
+    putText(Arrays.stream(array).map(Object::toString).collect(Collectors.joining(",", "{", "}")));
+  }
+
+  private void beginValue(int index) {
+    assert index == this.index - 1 : "values must be appended in order";
+    if (index > 0) put(separator);
+  }
+
+  private void ensureCapacity(int extra) {
+    if (size + extra > buffer.length)
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, size + extra));
+  }
+
+  private void put(int b) {
+    ensureCapacity(1);
+    buffer[size++] = (byte) b;
+  }
+
+  private void putInt(int i) {
+    if (i == Integer.MIN_VALUE) {
+      putAscii(String.valueOf(i));
+      return;
+    }
+
+    ensureCapacity(11);
+    if (i < 0) {
+      buffer[size++] = '-';
+      i = -i;
+    }
+
+    int numDigits = 1;
+    for (int bound = 10; numDigits < 10 && i >= bound; bound *= 10) ++numDigits;
+
+    for (int pos = size + numDigits - 1; pos >= size; --pos) {
+      buffer[pos] = (byte) ('0' + i % 10);
+      i /= 10;
+    }
+    size += numDigits;
+  }
+
+  private static boolean isPlainYear(int year) {
+    // year-of-era "yyyy" and the proleptic year of toString() differ from year 0 on
+    return year >= 1 && year <= 9999;
+  }
+
+  /** Same as {@link LocalDate#toString()} for a plain year. */
+  private void putDate(LocalDate t) {
+    putDigits(t.getYear(), 4);
+    put('-');
+    putDigits(t.getMonthValue(), 2);
+    put('-');
+    putDigits(t.getDayOfMonth(), 2);
+  }
+
+  /** Same as {@link LocalTime#toString()}. */
+  private void putTime(LocalTime t) {
+    putDigits(t.getHour(), 2);
+    put(':');
+    putDigits(t.getMinute(), 2);
+
+    final int second = t.getSecond(), nano = t.getNano();
+    if (second == 0 && nano == 0) return;
+
+    put(':');
+    putDigits(second, 2);
+    if (nano == 0) return;
+
+    put('.');
+    if (nano % 1_000_000 == 0) putDigits(nano / 1_000_000, 3);
+    else if (nano % 1000 == 0) putDigits(nano / 1000, 6);
+    else putDigits(nano, 9);
+  }
+
+  /** Puts the non-negative `value` left-padded with zeros to `width` digits. */
+  private void putDigits(int value, int width) {
+    ensureCapacity(width);
+    for (int pos = size + width - 1; pos >= size; --pos) {
+      buffer[pos] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    size += width;
+  }
+
+  private void putAscii(String s) {
+    final int length = s.length();
+    ensureCapacity(length);
+    for (int i = 0; i < length; ++i) buffer[size++] = (byte) s.charAt(i);
+  }
+
+  private void putText(String s) {
+    for (int i = 0, bound = s.length(); i < bound; ++i) {
+      final char c = s.charAt(i);
+      if (c < 0x80) {
+        putEscaped((byte) c);
+      } else if (c < 0x800) {
+        put(0xC0 | (c >> 6));
+        put(0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < bound) {
+        final int cp = Character.toCodePoint(c, s.charAt(++i));
+        put(0xF0 | (cp >> 18));
+        put(0x80 | ((cp >> 12) & 0x3F));
+        put(0x80 | ((cp >> 6) & 0x3F));
+        put(0x80 | (cp & 0x3F));
+      } else {
+        put(0xE0 | (c >> 12));
+        put(0x80 | ((c >> 6) & 0x3F));
+        put(0x80 | (c & 0x3F));
+      }
+    }
+  }
+
+  private void putEscaped(byte b) {
+    if (format == DUMP) {
+      put(b);
+      return;
+    }
+
+    switch (b) {
+      case '\\' -> putEscape('\\');
+      case '\t' -> putEscape('t');
+      case '\n' -> putEscape('n');
+      case '\r' -> putEscape('r');
+      case 0 -> {
+        if (format == MYSQL_LOAD_DATA) putEscape('0');
+        // NUL cannot be stored in a PostgreSQL text value
+      }
+      default -> put(b);
+    }
+  }
+
+  private void putEscape(char c) {
+    put('\\');
+    put(c);
+  }
+
+  private void putHexBytea(byte[] bs) {
+    // the bytea input `\x0a...`, whose backslash is itself escaped in the COPY text
+    ensureCapacity(3 + (bs.length << 1));
+    buffer[size++] = '\\';
+    buffer[size++] = '\\';
+    buffer[size++] = 'x';
+    for (byte b : bs) {
+      buffer[size++] = HEX[(b >> 4) & 0xF];
+      buffer[size++] = HEX[b & 0xF];
+    }
+  }
+}
@@ -6,6 +6,7 @@ import wtune.common.utils.IOSupport;
 import wtune.common.utils.SetSupport;
 import wtune.sql.ast.SqlNode;
 import wtune.sql.ast.SqlNodes;
+import wtune.sql.schema.Constraint;
 import wtune.sql.schema.Schema;
 import wtune.sql.schema.Table;
 import wtune.stmt.App;
@@ -17,7 +18,6 @@ import wtune.testbed.population.SQLPopulator;
 import wtune.testbed.util.RandomHelper;
 
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
@@ -26,6 +26,7 @@ import java.util.function.Function;
 import static wtune.common.utils.Commons.joining;
 import static wtune.common.utils.FuncSupport.deaf;
 import static wtune.sql.ast.SqlNodeFields.TableName_Table;
+import static wtune.sql.ast.constants.ConstraintKind.FOREIGN;
 import static wtune.sql.ast.TableSourceFields.Simple_Table;
 import static wtune.sql.ast.TableSourceKind.SimpleSource;
 import static wtune.sql.support.locator.LocatorSupport.nodeLocator;
@@ -40,6 +41,9 @@ public class GenerateTableData implements Runner {
   private Map<String, Set<String>> targets;
   private OptimizerType optimizedBy;
   private int verbosity;
+  private int parallelism;
+  private boolean toDb;
+  private String dbType;
   private String tag;
   private Path dir, failure;
   private ProgressBar progressBar;
@@ -66,6 +70,9 @@ public class GenerateTableData implements Runner {
 
     tag = args.getOptional("t", "tag", String.class, BASE);
     verbosity = args.getOptional("v", "verbose", int.class, 0);
+    parallelism = args.getOptional("j", "parallelism", int.class, 1);
+    toDb = args.getOptional("db", boolean.class, false);
+    dbType = args.getOptional("dbType", String.class, null);
     dir = parentDir.resolve(dirName);
     failure = dir.resolve("failed_tables_" + tag + ".txt");
     if (!Files.exists(dir)) Files.createDirectories(dir);
@@ -94,13 +101,17 @@ public class GenerateTableData implements Runner {
 
         final PopulationConfig config = mkConfigForApp(appName, tag);
         final List<String> failed = new ArrayList<>();
+        final List<Table> tables = new ArrayList<>(tableNames.size());
         for (String tableName : tableNames) {
           final Table table = schema.table(tableName);
           if (table == null) {
             if (verbosity >= 1) System.err.println("no such table: " + appName + '.' + tableName);
             continue;
           }
+          tables.add(table);
+        }
 
+        for (Table table : parentsFirst(tables)) {
           if (!populateOne(config, app.name(), table.name())) {
             failed.add(table.name());
           }
@@ -175,6 +186,32 @@ public class GenerateTableData implements Runner {
     }
   }
 
+  /**
+   * Orders `tables` such that a table comes after the tables it refers to by foreign keys, if they
+   * are also in `tables`. (Populating a table into PostgreSQL truncates it with CASCADE, which
+   * would wipe out the referencing tables populated before.) Reference cycles are cut arbitrarily.
+   */
+  static List<Table> parentsFirst(List<Table> tables) {
+    final Map<String, Table> targets = new HashMap<>(tables.size());
+    for (Table table : tables) targets.put(table.name(), table);
+
+    final Set<String> visited = new HashSet<>(tables.size());
+    final List<Table> ordered = new ArrayList<>(tables.size());
+    for (Table table : tables) visitParentsFirst(table, targets, visited, ordered);
+    return ordered;
+  }
+
+  private static void visitParentsFirst(
+      Table table, Map<String, Table> targets, Set<String> visited, List<Table> ordered) {
+    if (!visited.add(table.name())) return;
+
+    for (Constraint fk : table.constraints(FOREIGN)) {
+      final Table parent = fk.refTable() == null ? null : targets.get(fk.refTable().name());
+      if (parent != null) visitParentsFirst(parent, targets, visited, ordered);
+    }
+    ordered.add(table);
+  }
+
   private static void getUsedTables(List<Statement> statements, Map<String, Set<String>> tables) {
     for (Statement stmt : statements) {
       final SqlNode ast = stmt.original().ast();
@@ -206,8 +243,16 @@ public class GenerateTableData implements Runner {
 
   private PopulationConfig mkConfigForApp(String appName, String tag) throws IOException {
     final PopulationConfig config = mkConfig(tag);
-    config.setDump(fileDump(appName, tag));
+    if (toDb) {
+      // Loads into the database of the app, instead of dumping to files.
+      final App app = App.of(appName);
+      if (dbType != null) app.setDbType(dbType);
+      config.setDbProperties(app.dbProps());
+    } else {
+      config.setDumpFiles(fileDump(appName, tag));
+    }
     config.setProgressCallback(progressBar::step);
+    config.setParallelism(parallelism);
     return config;
   }
 
@@ -231,11 +276,9 @@ public class GenerateTableData implements Runner {
     return success;
   }
 
-  @SuppressWarnings("all")
-  private Function<String, PrintWriter> fileDump(String appName, String postfix)
-      throws IOException {
+  private Function<String, Path> fileDump(String appName, String postfix) throws IOException {
     final Path baseDir = dir.resolve(postfix).resolve(appName);
     if (!Files.exists(baseDir)) Files.createDirectories(baseDir);
-    return tableName -> runIO(() -> newPrintWriter(baseDir.resolve(tableName + ".csv")));
+    return tableName -> baseDir.resolve(tableName + ".csv");
   }
 }
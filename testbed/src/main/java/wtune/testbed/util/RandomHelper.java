@@ -3,10 +3,10 @@ package wtune.testbed.util;
 import gnu.trove.list.TDoubleList;
 import gnu.trove.list.array.TDoubleArrayList;
 
-import java.util.Arrays;
 import java.util.NavigableMap;
 import java.util.NoSuchElementException;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import static java.lang.Math.abs;
 import static wtune.testbed.util.MathHelper.hash;
@@ -141,12 +141,14 @@ public abstract class RandomHelper {
   private static class ZipfRand implements RandGen {
     private static final double EPSILON = 1E-3;
     private final NavigableMap<Double, Integer> histogram;
-    private final int[] cache;
+    // The least index generating each value, as the serial population would record. Filled by
+    // the concurrent generators of a parallel population, thus kept by CAS.
+    private final AtomicIntegerArray cache;
 
     private ZipfRand(double skew) {
       this.histogram = makeHistogram(skew);
-      this.cache = new int[histogram.size()];
-      Arrays.fill(cache, -1);
+      this.cache = new AtomicIntegerArray(histogram.size());
+      for (int i = 0, bound = cache.length(); i < bound; ++i) cache.set(i, -1);
     }
 
     private static NavigableMap<Double, Integer> makeHistogram(double skew) {
@@ -180,16 +182,18 @@ public abstract class RandomHelper {
           histogram.ceilingEntry(uniformRandomDouble(GLOBAL_SEED + index)).getValue();
       assert value != null;
 
-      if (cache[value] == -1) cache[value] = index;
+      int cached;
+      while (((cached = cache.get(value)) == -1 || cached > index)
+          && !cache.compareAndSet(value, cached, index)) ;
 
       return value;
     }
 
     @Override
     public int reverse(int value) {
-      if (value >= cache.length) throw new NoSuchElementException();
+      if (value >= cache.length()) throw new NoSuchElementException();
 
-      final int index = cache[value];
+      final int index = cache.get(value);
       if (index >= 0) return index;
 
       throw new NoSuchElementException();
@@ -202,7 +206,7 @@ public abstract class RandomHelper {
 
     @Override
     public boolean isPrePopulated() {
-      return cache[0] >= 0;
+      return cache.get(0) >= 0;
     }
   }
 }
@@ -0,0 +1,170 @@
+package wtune.testbed.population;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+import org.junit.jupiter.api.Test;
+import wtune.testbed.common.BatchActuator;
+import wtune.testbed.common.Collection;
+import wtune.testbed.common.Element;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static wtune.common.datasource.DbSupport.MySQL;
+import static wtune.testbed.population.TestHelper.mkCollection;
+
+public class DbBulkLoaderTest {
+  private static final Collection COLLECTION =
+      mkCollection("t", List.of(element("a"), element("b")));
+
+  private static final Populatable POPULATABLE =
+      new Populatable() {
+        @Override
+        public boolean bindGen(Generators generators) {
+          return true;
+        }
+
+        @Override
+        public boolean populateOne(BatchActuator actuator) {
+          throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean populateRange(int from, int to, BatchActuator actuator) {
+          for (int i = from; i < to; ++i) {
+            actuator.beginOne(COLLECTION);
+            actuator.appendInt(i);
+            actuator.appendString("s\t" + i);
+            actuator.endOne();
+          }
+          return true;
+        }
+      };
+
+  private static Element element(String name) {
+    return new Element() {
+      @Override
+      public String collectionName() {
+        return "t";
+      }
+
+      @Override
+      public String elementName() {
+        return name;
+      }
+
+      @Override
+      public <T> T unwrap(Class<T> cls) {
+        return null;
+      }
+    };
+  }
+
+  private static Object defaultValue(Class<?> type) {
+    if (type == boolean.class) return false;
+    if (type == int.class) return 0;
+    if (type == long.class) return 0L;
+    return null;
+  }
+
+  private static <T> T proxy(Class<T> cls, InvocationHandler handler) {
+    return cls.cast(Proxy.newProxyInstance(cls.getClassLoader(), new Class<?>[] {cls}, handler));
+  }
+
+  /** A MySQL data source that records the executed SQL and the rows of LOAD DATA. */
+  private static DataSource mockMySQL(List<String> executed, StringBuilder loaded) {
+    final InputStream[] localInfile = new InputStream[1];
+    final JdbcStatement stmt =
+        proxy(
+            JdbcStatement.class,
+            (self, method, args) -> {
+              switch (method.getName()) {
+                case "unwrap":
+                  return self;
+                case "setLocalInfileInputStream":
+                  localInfile[0] = (InputStream) args[0];
+                  return null;
+                case "execute":
+                  executed.add((String) args[0]);
+                  if (localInfile[0] != null) {
+                    try (final InputStream in = localInfile[0]) {
+                      loaded.append(new String(in.readAllBytes(), UTF_8));
+                    } catch (IOException ex) {
+                      throw new UncheckedIOException(ex);
+                    }
+                    localInfile[0] = null;
+                  }
+                  return false;
+                default:
+                  return defaultValue(method.getReturnType());
+              }
+            });
+    final Connection conn =
+        proxy(
+            Connection.class,
+            (self, method, args) ->
+                method.getName().equals("createStatement")
+                    ? stmt
+                    : defaultValue(method.getReturnType()));
+    return proxy(
+        DataSource.class,
+        (self, method, args) ->
+            method.getName().equals("getConnection")
+                ? conn
+                : defaultValue(method.getReturnType()));
+  }
+
+  @Test
+  void testDbProperties() {
+    final Properties mysql = new Properties();
+    mysql.setProperty("jdbcUrl", "jdbc:mysql://localhost:3306/db?rewriteBatchedStatements=true");
+    final DbBulkLoader mysqlLoader = new DbBulkLoader(mysql);
+    assertEquals(RowFormat.MYSQL_LOAD_DATA, mysqlLoader.rowFormat());
+    assertEquals(
+        "jdbc:mysql://localhost:3306/db?rewriteBatchedStatements=true&allowLoadLocalInfile=true",
+        mysqlLoader.dbProperties().getProperty("jdbcUrl"));
+    // the given properties are left untouched
+    assertEquals(
+        "jdbc:mysql://localhost:3306/db?rewriteBatchedStatements=true",
+        mysql.getProperty("jdbcUrl"));
+
+    final Properties pg = new Properties();
+    pg.setProperty("jdbcUrl", "jdbc:postgresql://localhost:5432/db");
+    final DbBulkLoader pgLoader = new DbBulkLoader(pg);
+    assertEquals(RowFormat.PG_COPY, pgLoader.rowFormat());
+    assertEquals(pg, pgLoader.dbProperties());
+  }
+
+  @Test
+  void testLoadData() {
+    final List<String> executed = new ArrayList<>();
+    final StringBuilder loaded = new StringBuilder();
+    final DbBulkLoader loader = new DbBulkLoader(MySQL, mockMySQL(executed, loaded));
+
+    final int unitCount = 5000;
+    loader.load(
+        COLLECTION,
+        new RowChunkStream(POPULATABLE, COLLECTION, loader.rowFormat(), unitCount, 2, null));
+
+    assertEquals(
+        List.of(
+            "set foreign_key_checks=0",
+            "set unique_checks=0",
+            "truncate table `t`",
+            "LOAD DATA LOCAL INFILE 'stdin' INTO TABLE `t` CHARACTER SET utf8mb4 (`a`,`b`)"),
+        executed);
+
+    final StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < unitCount; ++i) expected.append(i).append("\ts\\t").append(i).append('\n');
+    assertEquals(expected.toString(), loaded.toString());
+  }
+}
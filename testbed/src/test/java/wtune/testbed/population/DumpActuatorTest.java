@@ -0,0 +1,47 @@
+package wtune.testbed.population;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import wtune.testbed.common.BatchActuator;
+import wtune.testbed.common.Collection;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static wtune.testbed.population.TestHelper.mkCollection;
+
+public class DumpActuatorTest {
+  private static final Collection COLLECTION = mkCollection("t", 5);
+
+  private static void populate(int unitCount, BatchActuator actuator) {
+    final LocalDateTime base = LocalDateTime.of(2004, 1, 1, 0, 0, 0);
+    actuator.begin(COLLECTION);
+    for (int i = 0; i < unitCount; ++i) {
+      actuator.beginOne(COLLECTION);
+      actuator.appendInt(i - unitCount / 2);
+      actuator.appendString("s" + i + "-é");
+      actuator.appendDateTime(base.plusSeconds(i * 37L).plusNanos(i * 1000L));
+      actuator.appendDate(LocalDate.of(2004, 1, 1).plusDays(i));
+      actuator.appendTime(LocalTime.MIDNIGHT.plusSeconds(i).plusNanos(i % 7 * 1_000_000L));
+      actuator.endOne();
+    }
+    actuator.end();
+  }
+
+  @Test
+  void testSameAsEcho(@TempDir Path dir) throws IOException {
+    final int unitCount = 100_000;
+    final Path expected = dir.resolve("echo.csv"), actual = dir.resolve("dump.csv");
+
+    populate(unitCount, new EchoActuator(new PrintWriter(Files.newBufferedWriter(expected))));
+    populate(unitCount, new DumpActuator(actual));
+
+    assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(actual));
+  }
+}
@@ -0,0 +1,74 @@
+package wtune.testbed.population;
+
+import org.junit.jupiter.api.Test;
+import wtune.testbed.common.BatchActuator;
+import wtune.testbed.common.Collection;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static wtune.testbed.population.TestHelper.mkCollection;
+
+public class RowChunkStreamTest {
+  private static final Collection COLLECTION = mkCollection("t", 4);
+
+  private static final Populatable POPULATABLE =
+      new Populatable() {
+        private int nextRowId;
+
+        @Override
+        public boolean bindGen(Generators generators) {
+          return true;
+        }
+
+        @Override
+        public boolean populateOne(BatchActuator actuator) {
+          return populateRange(nextRowId, ++nextRowId, actuator);
+        }
+
+        @Override
+        public boolean populateRange(int from, int to, BatchActuator actuator) {
+          for (int i = from; i < to; ++i) {
+            actuator.beginOne(COLLECTION);
+            actuator.appendInt(i * 7919 - 50000);
+            actuator.appendString("s" + i + "\t\\");
+            actuator.appendDateTime(LocalDateTime.of(2004, 1, 1, 0, 0).plusSeconds(i));
+            actuator.appendBytes(new byte[] {(byte) i, '\n'});
+            actuator.endOne();
+          }
+          return true;
+        }
+      };
+
+  @Test
+  void testSameAsSerialDump() throws IOException {
+    final int unitCount = 10007;
+    final StringWriter expected = new StringWriter();
+    final EchoActuator echo = new EchoActuator(new PrintWriter(expected));
+    for (int i = 0; i < unitCount; i++) POPULATABLE.populateOne(echo);
+    echo.end();
+
+    final int[] progress = {0};
+    try (final RowChunkStream rows =
+        new RowChunkStream(
+            POPULATABLE, COLLECTION, RowFormat.DUMP, unitCount, 4, () -> ++progress[0])) {
+      assertEquals(expected.toString(), new String(rows.readAllBytes(), UTF_8));
+    }
+    assertEquals(unitCount, progress[0]);
+  }
+
+  @Test
+  void testEscape() throws IOException {
+    try (final RowChunkStream rows =
+        new RowChunkStream(POPULATABLE, COLLECTION, RowFormat.PG_COPY, 2, 2, null)) {
+      assertEquals(
+          "-50000\ts0\\t\\\\\t2004-01-01 00:00:00.000\t\\\\x000a\n"
+              + "-42081\ts1\\t\\\\\t2004-01-01 00:00:01.000\t\\\\x010a\n",
+          new String(rows.readAllBytes(), UTF_8));
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package wtune.testbed.population;
+
+import wtune.testbed.common.Collection;
+import wtune.testbed.common.Element;
+
+import java.util.Arrays;
+import java.util.List;
+
+class TestHelper {
+  /** A collection `name` with `numElements` unnamed elements, for actuators that ignore them. */
+  static Collection mkCollection(String name, int numElements) {
+    return mkCollection(name, Arrays.asList(new Element[numElements]));
+  }
+
+  static Collection mkCollection(String name, List<Element> elements) {
+    return new Collection() {
+      @Override
+      public String collectionName() {
+        return name;
+      }
+
+      @Override
+      public List<Element> elements() {
+        return elements;
+      }
+
+      @Override
+      public <T> T unwrap(Class<T> cls) {
+        return null;
+      }
+    };
+  }
+}